@@ -9,13 +9,13 @@ import hillbillies.common.internal.ui.viewmodel.ViewModel;
 import hillbillies.model.Boulder;
 import hillbillies.model.Log;
 import hillbillies.model.Unit;
-import hillbillies.part2.internal.map.ByteMap3D;
 import hillbillies.part2.internal.map.CubeType;
 import hillbillies.part2.internal.providers.IGameObjectInfoProvider;
 import hillbillies.part2.internal.providers.WorldInfoProvider2;
 import hillbillies.part2.internal.ui.sprites.BoulderSprite;
 import hillbillies.part2.internal.ui.sprites.LogSprite;
 import hillbillies.part2.internal.ui.sprites.UnitSprite2;
+import hillbillies.utils.ChunkedByteMap;
 import javafx.geometry.Rectangle2D;
 import ogp.framework.util.internal.Matrix;
 
@@ -84,8 +84,8 @@ public class ViewModelPart2 extends ViewModel implements IViewModel2 {
 
 	@Override
 	protected IByteMap3D createMapCache() {
-		return new ByteMap3D(getWorldInfoProvider().getNbXTiles(), getWorldInfoProvider().getNbYTiles(),
-				getWorldInfoProvider().getNbZTiles());
+		return new ChunkedByteMap(getWorldInfoProvider().getNbXTiles(), getWorldInfoProvider().getNbYTiles(),
+				getWorldInfoProvider().getNbZTiles(), (byte) -1);
 	}
 
 	@Override
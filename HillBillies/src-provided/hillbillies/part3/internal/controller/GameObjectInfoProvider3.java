@@ -11,9 +11,11 @@ import hillbillies.model.Faction;
 import hillbillies.model.Scheduler;
 import hillbillies.model.Task;
 import hillbillies.model.Unit;
+import hillbillies.model.World;
 import hillbillies.part2.internal.controller.GameObjectInfoProvider;
 import hillbillies.part3.facade.IFacade;
 import hillbillies.part3.internal.providers.IGameObjectInfoProvider3;
+import hillbillies.part3.programs.TaskProfiler;
 import ogp.framework.util.ModelException;
 
 public class GameObjectInfoProvider3 extends GameObjectInfoProvider implements IGameObjectInfoProvider3 {
@@ -110,4 +112,18 @@ public class GameObjectInfoProvider3 extends GameObjectInfoProvider implements I
 			return null;
 		}
 	}
+
+	@Override
+	public String getTaskProfile(Task task) {
+		World world = getGame().getWorld();
+		if (world == null || !world.isProfiling())
+			return null;
+		try {
+			StringBuilder report = new StringBuilder();
+			TaskProfiler.writeReport(world.getProfiler().getHotspots(task.getActivity().getProgram()), report);
+			return report.toString();
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
 }
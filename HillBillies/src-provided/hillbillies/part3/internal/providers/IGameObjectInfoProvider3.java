@@ -23,4 +23,10 @@ public interface IGameObjectInfoProvider3 extends IGameObjectInfoProvider {
 	Unit getAssignedUnit(Task task);
 
 	Task getAssignedTask(Unit object);
+
+	/**
+	 * Return a report of the statements of the program of the given task on which most time
+	 * was spent, or null when the task programs of the world are not profiled.
+	 */
+	String getTaskProfile(Task task);
 }
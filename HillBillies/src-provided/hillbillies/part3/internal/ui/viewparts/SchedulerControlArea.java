@@ -33,6 +33,7 @@ import javafx.scene.control.ComboBox;
 import javafx.scene.control.ListCell;
 import javafx.scene.control.ListView;
 import javafx.scene.control.SelectionMode;
+import javafx.scene.control.Tooltip;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
@@ -162,8 +163,11 @@ public class SchedulerControlArea extends ControlArea {
 				busy.fillProperty()
 						.bind(Bindings.when(item.getAssigned()).then(Color.FORESTGREEN).otherwise(Color.DARKGRAY));
 				setGraphic(busy);
+				String profile = oip.getTaskProfile(item.getTask());
+				setTooltip(profile == null ? null : new Tooltip(profile));
 			} else {
 				setGraphic(null);
+				setTooltip(null);
 				textProperty().unbind();
 				setText(null);
 			}
@@ -72,6 +72,18 @@ public interface ITaskFactory<E, S, T> {
 	 */
 	public List<T> createTasks(String name, int priority, S activity, List<int[]> selectedCubes);
 
+	/**
+	 * Returns whether the activities created by this factory may be shared by
+	 * all tasks parsed from the same text, even by other factories of the same
+	 * class. This requires the statements of this factory to be immutable, and
+	 * the factory itself to be stateless.
+	 * 
+	 * When true, {@link TaskParser} caches parsed activities by their text.
+	 */
+	public default boolean canShareActivities() {
+		return false;
+	}
+
 	/* STATEMENTS */
 
 	/**
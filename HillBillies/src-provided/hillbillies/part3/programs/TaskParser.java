@@ -1,23 +1,38 @@
 package hillbillies.part3.programs;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import hillbillies.model.Task;
 import hillbillies.part3.programs.internal.ParserVisitor;
 import hillbillies.part3.programs.internal.generated.HillbilliesTaskLangLexer;
 import hillbillies.part3.programs.internal.generated.HillbilliesTaskLangParser;
+import hillbillies.part3.programs.internal.generated.HillbilliesTaskLangParser.TaskContext;
 import ogp.framework.util.internal.ResourceUtils;
 
 import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.BaseErrorListener;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
 import org.antlr.v4.runtime.RecognitionException;
 import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 
 /**
  * Parser for Hillbillies tasks.
@@ -58,6 +73,12 @@ import org.antlr.v4.runtime.Recognizer;
  * false and <code>parser.getErrors()</code> can be used to retrieve the list of
  * errors during parsing.
  * 
+ * Input is first parsed with SLL prediction, which bails out at the first
+ * error. Only input that fails is parsed again with full LL prediction, which
+ * reports the errors. When the factory can share its activities (see
+ * {@link ITaskFactory#canShareActivities()}), parsed activities are cached by
+ * their text, so parsing the same text again only creates the tasks.
+ * 
  *
  * @param E
  *            The type of expressions
@@ -68,6 +89,26 @@ import org.antlr.v4.runtime.Recognizer;
  */
 public class TaskParser<E, S, T> {
 
+	/**
+	 * The maximum number of texts whose parsed activity is cached.
+	 */
+	private static final int MAX_CACHE_SIZE = 1024;
+
+	/**
+	 * The parsed activities of factories which can share their activities, by
+	 * the class of the factory and the parsed text. Least recently used entries
+	 * are evicted first.
+	 */
+	private static final Map<CacheKey, ParseResult<?>> cache = Collections
+			.synchronizedMap(new LinkedHashMap<CacheKey, ParseResult<?>>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<CacheKey, ParseResult<?>> eldest) {
+					return size() > MAX_CACHE_SIZE;
+				}
+			});
+
 	private final ITaskFactory<E, S, T> factory;
 
 	private final List<String> errors = new ArrayList<>();
@@ -129,28 +170,184 @@ public class TaskParser<E, S, T> {
 	 */
 	protected Optional<List<T>> parse(CharStream input, List<int[]> selectedCubes) {
 		reset();
+		return createTasks(parseActivity(input), selectedCubes, "");
+	}
 
-		HillbilliesTaskLangLexer lexer = new HillbilliesTaskLangLexer(input);
-		HillbilliesTaskLangParser parser = new HillbilliesTaskLangParser(new CommonTokenStream(lexer));
-		parser.addErrorListener(new BaseErrorListener() {
-			@Override
-			public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
-					int charPositionInLine, String msg, RecognitionException e) {
-				errors.add(msg + " (" + line + ", " + charPositionInLine + ")");
-			}
-		});
-		ParserVisitor<E, S, T> visitor = new ParserVisitor<>(factory);
+	/**
+	 * Returns the tasks that result from parsing each task file (*.txt) in the
+	 * given directory, by file. The files are parsed to parse trees in
+	 * parallel, the activities and tasks are created from these trees
+	 * sequentially.
+	 * 
+	 * Files which can't be parsed are left out. The error messages can be
+	 * retrieved with the getErrors() method, prefixed with the name of their
+	 * file.
+	 * 
+	 * @param selectedCubes
+	 *            The cubes which should be used as selected cubes in the
+	 *            created tasks.
+	 */
+	public Map<Path, List<T>> parseAll(Path directory, List<int[]> selectedCubes) throws IOException {
+		reset();
+		List<Path> files;
+		try (Stream<Path> stream = Files.list(directory)) {
+			files = stream.filter(file -> file.getFileName().toString().endsWith(".txt") && Files.isRegularFile(file))
+					.sorted().collect(Collectors.toList());
+		}
+		boolean cached = factory.canShareActivities();
+		List<ParsedText<S>> parsedTexts;
 		try {
-			visitor.visit(parser.task());
-			if (errors.isEmpty()) {
-				return Optional.ofNullable(factory.createTasks(visitor.getName(), visitor.getPriority(),
-						visitor.getActivity(), selectedCubes));
+			// Only the cache and the parser are used in parallel, never the factory
+			parsedTexts = files.parallelStream().map(file -> {
+				try {
+					String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+					ParseResult<S> result = cached ? getCachedActivity(text) : null;
+					if (result != null)
+						return new ParsedText<S>(null, null, null, result);
+					List<String> errors = new ArrayList<>();
+					TaskContext tree = tryParseTree(new ANTLRInputStream(text), errors);
+					return new ParsedText<S>(cached ? text : null, tree, errors, null);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}).collect(Collectors.toList());
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		// The factory creates the activities and tasks on this thread only, it need not be thread-safe
+		Map<Path, List<T>> tasks = new LinkedHashMap<>();
+		for (int i = 0; i < files.size(); i++) {
+			ParsedText<S> parsedText = parsedTexts.get(i);
+			ParseResult<S> result = parsedText.result != null ? parsedText.result
+					: createActivity(parsedText.tree, parsedText.errors, parsedText.text);
+			Optional<List<T>> fileTasks = createTasks(result, selectedCubes, files.get(i).getFileName() + ": ");
+			if (fileTasks.isPresent())
+				tasks.put(files.get(i), fileTasks.get());
+		}
+		return tasks;
+	}
+
+	/**
+	 * Returns the tasks that result from parsing each task file in the given
+	 * directory, without selected cubes.
+	 * 
+	 * @see #parseAll(Path, List)
+	 */
+	public Map<Path, List<T>> parseAll(Path directory) throws IOException {
+		return parseAll(directory, Collections.emptyList());
+	}
+
+	/**
+	 * Create the tasks of the given parse result, or Optional.empty() if
+	 * parsing has failed. Errors are added to the errors of this parser,
+	 * prefixed with the given prefix.
+	 */
+	private Optional<List<T>> createTasks(ParseResult<S> result, List<int[]> selectedCubes, String errorPrefix) {
+		for (String error : result.errors)
+			errors.add(errorPrefix + error);
+		if (!result.errors.isEmpty())
+			return Optional.empty();
+		try {
+			return Optional.ofNullable(factory.createTasks(result.name, result.priority, result.activity, selectedCubes));
+		} catch (Exception e) {
+			e.printStackTrace();
+			errors.add(errorPrefix + e.toString());
+		}
+		return Optional.empty();
+	}
+
+	/**
+	 * Parse the activity of the given input, using the cache when the factory
+	 * can share its activities.
+	 */
+	private ParseResult<S> parseActivity(CharStream input) {
+		String text = factory.canShareActivities() ? input.getText(Interval.of(0, input.size() - 1)) : null;
+		ParseResult<S> result = text != null ? getCachedActivity(text) : null;
+		if (result == null) {
+			List<String> errors = new ArrayList<>();
+			result = createActivity(tryParseTree(input, errors), errors, text);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the cached activity of the given text for the factory of this
+	 * parser, or null if it isn't cached. This method is thread-safe.
+	 */
+	private ParseResult<S> getCachedActivity(String text) {
+		@SuppressWarnings("unchecked")
+		ParseResult<S> result = (ParseResult<S>) cache.get(new CacheKey(factory.getClass(), text));
+		return result;
+	}
+
+	/**
+	 * Create the activity of the given parse tree with the factory of this
+	 * parser, unless the given list of errors is not empty. The activity is
+	 * cached under the given text, unless that text is null. This method calls
+	 * the factory, so it is only thread-safe when the factory is.
+	 */
+	private ParseResult<S> createActivity(TaskContext tree, List<String> errors, String text) {
+		if (errors.isEmpty()) {
+			ParserVisitor<E, S, T> visitor = new ParserVisitor<>(factory);
+			try {
+				visitor.visit(tree);
+				ParseResult<S> result = new ParseResult<>(visitor.getName(), visitor.getPriority(),
+						visitor.getActivity(), errors);
+				if (text != null)
+					cache.put(new CacheKey(factory.getClass(), text), result);
+				return result;
+			} catch (Exception e) {
+				e.printStackTrace();
+				errors.add(e.toString());
 			}
+		}
+		return new ParseResult<>(null, 0, null, errors);
+	}
+
+	/**
+	 * Parse the given input to a parse tree, or null if parsing has failed.
+	 * Errors are added to the given list. This method is thread-safe.
+	 */
+	private static TaskContext tryParseTree(CharStream input, List<String> errors) {
+		try {
+			return parseTree(input, errors);
 		} catch (Exception e) {
 			e.printStackTrace();
 			errors.add(e.toString());
+			return null;
+		}
+	}
+
+	/**
+	 * Parse the given input to a parse tree. Syntax errors are added to the
+	 * given list.
+	 */
+	private static TaskContext parseTree(CharStream input, List<String> errors) {
+		HillbilliesTaskLangLexer lexer = new HillbilliesTaskLangLexer(input);
+		CommonTokenStream tokens = new CommonTokenStream(lexer);
+		HillbilliesTaskLangParser parser = new HillbilliesTaskLangParser(tokens);
+		// SLL prediction is faster and suffices for nearly all input
+		parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+		parser.removeErrorListeners();
+		parser.setErrorHandler(new BailErrorStrategy());
+		try {
+			return parser.task();
+		} catch (ParseCancellationException e) {
+			// Parse again with full LL prediction, which reports the actual errors
+			tokens.seek(0);
+			parser.reset();
+			parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+			parser.setErrorHandler(new DefaultErrorStrategy());
+			parser.addErrorListener(ConsoleErrorListener.INSTANCE);
+			parser.addErrorListener(new BaseErrorListener() {
+				@Override
+				public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+						int charPositionInLine, String msg, RecognitionException re) {
+					errors.add(msg + " (" + line + ", " + charPositionInLine + ")");
+				}
+			});
+			return parser.task();
 		}
-		return Optional.empty();
 	}
 
 	protected void reset() {
@@ -161,6 +358,13 @@ public class TaskParser<E, S, T> {
 		return Collections.unmodifiableList(errors);
 	}
 
+	/**
+	 * Remove all parsed activities from the cache.
+	 */
+	public static void clearCache() {
+		cache.clear();
+	}
+
 	/**
 	 * Create a new parser from the given factory.
 	 * 
@@ -220,4 +424,68 @@ public class TaskParser<E, S, T> {
 			return null;
 		}
 	}
+
+	/**
+	 * The key of a cached activity: the class of its factory and its text.
+	 */
+	private static final class CacheKey {
+
+		private final Class<?> factoryClass;
+		private final String text;
+
+		private CacheKey(Class<?> factoryClass, String text) {
+			this.factoryClass = factoryClass;
+			this.text = text;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof CacheKey && ((CacheKey) other).factoryClass == factoryClass
+					&& ((CacheKey) other).text.equals(text);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * factoryClass.hashCode() + text.hashCode();
+		}
+	}
+
+	/**
+	 * A text parsed to a parse tree, with the syntax errors which occurred, or
+	 * the cached result of parsing that text. The text is only kept when the
+	 * activity of the tree is to be cached.
+	 */
+	private static final class ParsedText<S> {
+
+		private final String text;
+		private final TaskContext tree;
+		private final List<String> errors;
+		private final ParseResult<S> result;
+
+		private ParsedText(String text, TaskContext tree, List<String> errors, ParseResult<S> result) {
+			this.text = text;
+			this.tree = tree;
+			this.errors = errors;
+			this.result = result;
+		}
+	}
+
+	/**
+	 * The result of parsing a task: its name, priority and activity, or the
+	 * errors which occurred.
+	 */
+	private static final class ParseResult<S> {
+
+		private final String name;
+		private final int priority;
+		private final S activity;
+		private final List<String> errors;
+
+		private ParseResult(String name, int priority, S activity, List<String> errors) {
+			this.name = name;
+			this.priority = priority;
+			this.activity = activity;
+			this.errors = errors;
+		}
+	}
 }
@@ -12,6 +12,8 @@ import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import hillbillies.utils.ChunkedByteMap;
+
 /**
  * Interface for a (somewhat efficient) algorithm that determines whether a
  * solid cube is connected to a border of the world through other directly
@@ -47,8 +49,7 @@ public class ConnectedToBorder {
 		this.nbX = nbX;
 		this.nbY = nbY;
 		this.nbZ = nbZ;
-		this.passable = new boolean[nbX * nbY * nbZ];
-		this.notConnected = new boolean[nbX * nbY * nbZ];
+		this.state = new ChunkedByteMap(nbX, nbY, nbZ, (byte) 0);
 	}
 
 	/**
@@ -67,8 +68,7 @@ public class ConnectedToBorder {
 	 * @return true if the cube is connected; false otherwise
 	 */
 	public boolean isSolidConnectedToBorder(int x, int y, int z) {
-		int index = getIndex(x, y, z);
-		return isSolid(index) && !notConnected[index];
+		return state.getValue(x, y, z) == 0;
 	}
 
 	/**
@@ -92,11 +92,11 @@ public class ConnectedToBorder {
 	 *         coordinate itself.
 	 */
 	public List<int[]> changePassableToSolid(int x, int y, int z) {
-		int index = getIndex(x, y, z);
-		if (isSolid(index)) {
+		if (isSolid(x, y, z)) {
 			return Collections.emptyList();
 		}
-		passable[index] = false;
+		isChanged = true;
+		setFlag(x, y, z, PASSABLE, false);
 		List<Integer> coord = Arrays.asList(x, y, z);
 		// if the coordinate is at the border, or one of its solid neighbours is known to be connected, the coordinate becomes connected as well
 		// any adjacent non-connected neighbours now also become connected, and this repeats recursively
@@ -110,7 +110,7 @@ public class ConnectedToBorder {
 				if (alreadyMadeConnected.contains(coordToMakeConnected)) {
 					continue;
 				}
-				notConnected[getIndex(coordToMakeConnected)] = false;
+				setFlag(coordToMakeConnected, NOT_CONNECTED, false);
 				alreadyMadeConnected.add(coordToMakeConnected);
 				result.add(new int[] { coordToMakeConnected.get(0), coordToMakeConnected.get(1), coordToMakeConnected.get(2) });
 				for (List<Integer> neighbour : getDirectlyAdjacentSolids(coordToMakeConnected)) {
@@ -145,12 +145,11 @@ public class ConnectedToBorder {
 	 *         performing this change.
 	 */
 	public List<int[]> changeSolidToPassable(int x, int y, int z) {
-		int index = getIndex(x, y, z);
-		if (passable[index])
+		if (!isSolid(x, y, z))
 			return Collections.emptyList();
 
-		passable[index] = true;
-		notConnected[index] = true;
+		isChanged = true;
+		state.setValue(x, y, z, (byte) (PASSABLE | NOT_CONNECTED));
 
 		Set<List<Integer>> knownConnectedToBorder = new HashSet<>();
 		Set<List<Integer>> knownNotConnectedToBorder = new HashSet<>();
@@ -173,7 +172,7 @@ public class ConnectedToBorder {
 					// connected to the border
 					for (List<Integer> testedCoord : testedWhenFindingPath) {
 						knownNotConnectedToBorder.add(testedCoord);
-						notConnected[getIndex(testedCoord)] = true;
+						setFlag(testedCoord, NOT_CONNECTED, true);
 						changed.add(new int[] { testedCoord.get(0), testedCoord.get(1), testedCoord.get(2) });
 					}
 				} else {
@@ -187,6 +186,85 @@ public class ConnectedToBorder {
 		return changed;
 	}
 
+	/**
+	 * Make all cubes for which the given filter holds passable at once, and
+	 * return the list of solid coordinates that are not connected to a border
+	 * of the world afterwards.
+	 * 
+	 * This has the same outcome as calling
+	 * {@link #changeSolidToPassable(int, int, int)} for each passable cube, but
+	 * runs a single flood fill from the solid border cubes instead of a search
+	 * per passable cube, so it visits each cube a constant number of times.
+	 * 
+	 * @param passable
+	 *            The filter deciding which cubes are passable
+	 * 
+	 * @return The list of cube coordinates (where each coordinate is an array
+	 *         {x, y, z}) of the solid cubes that are not connected to the
+	 *         border.
+	 * 
+	 * @throws IllegalStateException
+	 *             When the state of a cube was already changed, this operation
+	 *             is only valid on a world that is still entirely solid.
+	 */
+	public List<int[]> initializePassable(CubeFilter passable) throws IllegalStateException {
+		if (isChanged)
+			throw new IllegalStateException("Only an entirely solid world can be initialized.");
+		isChanged = true;
+		// Mark every solid cube as not connected, except the border cubes from which the flood fill starts
+		int[] stack = new int[1024];
+		int size = 0;
+		for (int x = 0; x < nbX; x++) {
+			for (int y = 0; y < nbY; y++) {
+				for (int z = 0; z < nbZ; z++) {
+					if (passable.test(x, y, z)) {
+						state.setValue(x, y, z, (byte) (PASSABLE | NOT_CONNECTED));
+					} else if (isBorder(x, y, z)) {
+						if (size == stack.length)
+							stack = Arrays.copyOf(stack, 2 * size);
+						stack[size++] = toIndex(x, y, z);
+					} else {
+						state.setValue(x, y, z, NOT_CONNECTED);
+					}
+				}
+			}
+		}
+		// Every solid cube reached from the border is connected, each cube is pushed at most once
+		while (size > 0) {
+			int index = stack[--size];
+			int x = index % nbX, y = (index / nbX) % nbY, z = index / nbX / nbY;
+			for (int[] offset : directAdjacentOffsets) {
+				int nx = x + offset[0], ny = y + offset[1], nz = z + offset[2];
+				if (nx >= 0 && nx < nbX && ny >= 0 && ny < nbY && nz >= 0 && nz < nbZ
+						&& state.getValue(nx, ny, nz) == NOT_CONNECTED) {
+					state.setValue(nx, ny, nz, (byte) 0);
+					if (size == stack.length)
+						stack = Arrays.copyOf(stack, 2 * size);
+					stack[size++] = toIndex(nx, ny, nz);
+				}
+			}
+		}
+		List<int[]> result = new ArrayList<>();
+		for (int x = 0; x < nbX; x++)
+			for (int y = 0; y < nbY; y++)
+				for (int z = 0; z < nbZ; z++)
+					if (state.getValue(x, y, z) == NOT_CONNECTED)
+						result.add(new int[] { x, y, z });
+		return result;
+	}
+
+	/**
+	 * Interface for a filter on the cubes of the world.
+	 */
+	@FunctionalInterface
+	public interface CubeFilter {
+
+		/**
+		 * Returns whether the cube at the given position passes this filter.
+		 */
+		boolean test(int x, int y, int z);
+	}
+
 	/*
 	 * THE FIELDS AND OPERATIONS BELOW ARE PRIVATE AND MAY NOT BE USED BY YOUR
 	 * IMPLEMENTATION
@@ -196,28 +274,62 @@ public class ConnectedToBorder {
 	private final int nbY;
 	private final int nbZ;
 
-	private final boolean[] passable;
-	private final boolean[] notConnected;
+	/**
+	 * Flag set in the state of a cube when that cube is passable.
+	 */
+	private static final byte PASSABLE = 1;
 
-	private int getIndex(List<Integer> coord) {
-		return getIndex(coord.get(0), coord.get(1), coord.get(2));
+	/**
+	 * Flag set in the state of a cube when that cube is not connected to the
+	 * border.
+	 */
+	private static final byte NOT_CONNECTED = 2;
+
+	/**
+	 * The PASSABLE and NOT_CONNECTED flags of each cube. Large homogeneous
+	 * regions of the world share a single chunk value.
+	 */
+	private final ChunkedByteMap state;
+
+	/**
+	 * Whether the state of any cube was changed since this instance was
+	 * created.
+	 */
+	private boolean isChanged = false;
+
+	private void setFlag(List<Integer> coord, byte flag, boolean value) {
+		setFlag(coord.get(0), coord.get(1), coord.get(2), flag, value);
 	}
 
-	private int getIndex(int x, int y, int z) {
-		return x + y * nbX + z * (nbX * nbY);
+	private void setFlag(int x, int y, int z, byte flag, boolean value) {
+		byte old = state.getValue(x, y, z);
+		state.setValue(x, y, z, (byte) (value ? old | flag : old & ~flag));
 	}
 
-	private boolean isSolid(int index) {
-		return !passable[index];
+	private boolean isSolid(int x, int y, int z) {
+		return (state.getValue(x, y, z) & PASSABLE) == 0;
+	}
+
+	/**
+	 * Release the memory of all regions of the world whose cubes share the same
+	 * state. This does not change the result of any query.
+	 */
+	public void compact() {
+		state.compact();
 	}
 
 	private boolean isBorder(List<Integer> coord) {
-		int x = coord.get(0);
-		int y = coord.get(1);
-		int z = coord.get(2);
+		return isBorder(coord.get(0), coord.get(1), coord.get(2));
+	}
+
+	private boolean isBorder(int x, int y, int z) {
 		return x == 0 || x == nbX - 1 || y == 0 || y == nbY - 1 || z == 0 || z == nbZ - 1;
 	}
 
+	private int toIndex(int x, int y, int z) {
+		return x + nbX * (y + nbY * z);
+	}
+
 	private final int[][] directAdjacentOffsets = new int[][] { { -1, 0, 0 }, { +1, 0, 0 }, { 0, -1, 0 }, { 0, +1, 0 },
 			{ 0, 0, -1 }, { 0, 0, +1 } };
 
@@ -260,7 +372,7 @@ public class ConnectedToBorder {
 			int x = c.get(0);
 			int y = c.get(1);
 			int z = c.get(2);
-			return x >= 0 && x < nbX && y >= 0 && y < nbY && z >= 0 && z < nbZ && isSolid(getIndex(c));
+			return x >= 0 && x < nbX && y >= 0 && y < nbY && z >= 0 && z < nbZ && isSolid(x, y, z);
 		}).collect(Collectors.toList());
 	}
 
@@ -277,8 +389,7 @@ public class ConnectedToBorder {
 		for (int z = 0; z < nbZ; z++) {
 			for (int y = 0; y < nbY; y++) {
 				for (int x = 0; x < nbX; x++) {
-					int index = getIndex(x, y, z);
-					result.append((isSolidConnectedToBorder(x, y, z) ? "@@" : (isSolid(index) ? "oo" : "..")));
+					result.append((isSolidConnectedToBorder(x, y, z) ? "@@" : (isSolid(x, y, z) ? "oo" : "..")));
 				}
 				result.append("\n");
 			}
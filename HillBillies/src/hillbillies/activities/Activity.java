@@ -2,6 +2,10 @@ package hillbillies.activities;
 
 import hillbillies.model.Unit;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
  * Abstract base class for each Activity a Unit can perform
  * @author Kenneth & Bram
@@ -83,6 +87,8 @@ public abstract class Activity {
      *          when default mode is not enabled. Or when this Activity is not set as
      *          the Unit's current Activity.
      *          | (!isDefault && !isAbleTo()) || !controller.isCurrentActivity(this)
+     * @post A started Activity was not completed successfully yet.
+     *          | !new.wasSuccessful()
      */
     public final void start(boolean isDefault) throws IllegalStateException{
         if(!isDefault && !isAbleTo())
@@ -92,6 +98,7 @@ public abstract class Activity {
         this.isDefault = isDefault;
         this.activityProgress = 0d;
         this.isActive = true;
+        this.success = false;
         this.startActivity();
     }
 
@@ -255,4 +262,50 @@ public abstract class Activity {
     public boolean isParentActivity(Activity activity){
         return this.parentActivity==activity;
     }
+
+    /**
+     * Write the state of this Activity to the given output. The constructor arguments of this
+     * Activity are not written, they are the responsibility of the caller.
+     * @param out The output to write to.
+     * @effect The state specific to the kind of this Activity is written.
+     *          | writeActivityState(out)
+     * @throws IOException When an I/O error occurs.
+     */
+    public final void writeTo(DataOutput out) throws IOException{
+        out.writeBoolean(this.isDefault);
+        out.writeBoolean(this.isActive);
+        out.writeBoolean(this.success);
+        out.writeDouble(this.activityProgress);
+        this.writeActivityState(out);
+    }
+
+    /**
+     * Restore the state of this Activity, which was written by writeTo, from the given input.
+     * This Activity is not started again, so restoring an active Activity has no side effects
+     * on its Unit.
+     * @param in The input to read from.
+     * @effect The state specific to the kind of this Activity is read.
+     *          | readActivityState(in)
+     * @throws IOException When an I/O error occurs.
+     */
+    public final void readFrom(DataInput in) throws IOException{
+        this.isDefault = in.readBoolean();
+        this.isActive = in.readBoolean();
+        this.success = in.readBoolean();
+        this.activityProgress = in.readDouble();
+        this.readActivityState(in);
+    }
+
+    /**
+     * Write the state specific to the kind of this Activity. Activities with state which is
+     * not derived from their constructor arguments must override this method.
+     */
+    protected void writeActivityState(DataOutput out) throws IOException{
+    }
+
+    /**
+     * Read the state specific to the kind of this Activity, which was written by writeActivityState.
+     */
+    protected void readActivityState(DataInput in) throws IOException{
+    }
 }
@@ -14,7 +14,7 @@ public class AdjacentMove extends Move {
     /**
      * Variable registering the unit's next position, this is the position the unit is moving to.
      */
-    private final Vector nextPosition;
+    private Vector nextPosition;
     /**
      * Variable registering this AdjacentMove's parentActivity, if any.
      */
@@ -79,6 +79,51 @@ public class AdjacentMove extends Move {
         this.targetMove = extendedMovement;
     }
 
+    /**
+     * Initialize a restored AdjacentMove for the given unit towards the given next position.
+     * The next position is not checked, as the unit may already be on its way to it.
+     * @param unit The unit to move
+     * @param extendedMovement ParentActivity of this AdjacentMove, if any.
+     * @param nextPosition The position the unit is moving to.
+     * @post A new Activity for the given unit is created, its state should be restored
+     *          with readFrom.
+     * @throws NullPointerException
+     *          When the given next position is not effective.
+     *          | nextPosition == null
+     */
+    public AdjacentMove(Unit unit, TargetMove extendedMovement, Vector nextPosition) throws NullPointerException{
+        super(extendedMovement, unit, false);
+        if(nextPosition == null)
+            throw new NullPointerException("The given next position is not effective.");
+        this.nextPosition = nextPosition;
+        this.targetMove = extendedMovement;
+    }
+
+    /**
+     * Reuse this finished AdjacentMove of an extended movement for its next step.
+     * @param direction The direction in which the unit should move.
+     * @param sprinting Boolean value indicating whether the unit should sprint.
+     * @post | new.getNextPosition().equals(unit.getPosition().getCubeCenterCoordinates().add(direction))
+     * @throws IllegalStateException
+     *          When this AdjacentMove is still active, or when the unit should sprint but cannot.
+     *          | isActive() || (sprinting && !isAbleToSprint())
+     * @throws IllegalArgumentException
+     *          When the destination is not reachable.
+     *          | !isValidNextPosition(unit.getPosition(), unit.getPosition().getCubeCenterCoordinates().add(direction))
+     */
+    void restart(Vector direction, boolean sprinting) throws IllegalStateException, IllegalArgumentException{
+        if(this.isActive())
+            throw new IllegalStateException("An active AdjacentMove cannot be restarted.");
+        Vector nextPosition = unit.getPosition().getCubeCenterCoordinates().add(direction);
+        if (!isValidNextPosition(unit.getPosition(), nextPosition))
+            throw new IllegalArgumentException("Invalid position to move to.");
+        if(sprinting)
+            super.sprint();
+        else
+            super.stopSprint();
+        this.nextPosition = nextPosition;
+    }
+
     /**
      * Activity specific code which is called when the Activity is started.
      */
@@ -111,6 +156,8 @@ public class AdjacentMove extends Move {
 
     /**
      * Activity specific code which is called when advanceTime of this Activity is called.
+     * The step is computed on the coordinates directly, so only the new position of the
+     * unit is allocated.
      *
      * @param dt
      */
@@ -120,25 +167,28 @@ public class AdjacentMove extends Move {
         if (nextPosition.equals(cpos)) {
             this.requestFinish(true);
         } else {
-            Vector difference = nextPosition.difference(cpos);
-            double d = difference.length();
-            double v = this.isSprinting() ? getSprintSpeed(difference) : getWalkingSpeed(difference);
+            double dx = nextPosition.X() - cpos.X(), dy = nextPosition.Y() - cpos.Y(), dz = nextPosition.Z() - cpos.Z();
+            double d = Math.sqrt(dx*dx + dy*dy + dz*dz);
+            double v = this.isSprinting() ? getSprintSpeed(dz) : getWalkingSpeed(dz);
             this.setCurrentSpeed(v);
-            Vector dPos = difference.multiply(v / d * dt);
-            Vector velocity = difference.multiply(v / d);
-            Vector newPos = cpos.add(dPos);
-            for (int i = 0; i < 3; i++) {
-                if (nextPosition.isInBetween(i, cpos, newPos)) {
-                    double[] a = newPos.asArray();
-                    a[i] = nextPosition.get(i);
-                    newPos = new Vector(a);
-                }
-            }
-            unit.setPosition(newPos);
-            unit.setOrientation((float) Math.atan2(velocity.Y(), velocity.X()));
+            double f = v / d * dt;
+            unit.setPosition(new Vector(step(cpos.X(), dx*f, nextPosition.X()), step(cpos.Y(), dy*f, nextPosition.Y()),
+                    step(cpos.Z(), dz*f, nextPosition.Z())));
+            unit.setOrientation((float) Math.atan2(dy, dx));
         }
     }
 
+    /**
+     * Return the coordinate reached by moving the given distance from the given coordinate,
+     * without passing the given target coordinate.
+     * @return | if(target is in between from and from + distance) result == target
+     *         | else result == from + distance
+     */
+    private static double step(double from, double distance, double target){
+        double to = from + distance;
+        return (target >= from && target <= to) || (target >= to && target <= from) ? target : to;
+    }
+
     /**
      * Return a boolean indicating whether or not this unit
      * is able to perform an adjacent movement. (When not in default mode!)
@@ -40,6 +40,15 @@ public class Attack extends Activity{
         super(attacker);
         this.defender = defender;
     }
+
+    /**
+     * Return the Unit which is attacked by this Activity.
+     */
+    @Basic
+    public Unit getDefender(){
+        return this.defender;
+    }
+
 	/**
 	 * Let the unit of this activity attack the defender.
 	 * @post   	The orientation of this unit and the defender is changed. 
@@ -1,8 +1,15 @@
 package hillbillies.activities;
 
+import hillbillies.model.Cube;
+import hillbillies.model.IWorld;
 import hillbillies.model.Unit;
+import hillbillies.model.World;
 import hillbillies.utils.Vector;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
  * Created by Bram on 17-4-2016.
  */
@@ -12,6 +19,12 @@ public class Fall extends Move {
      * Variable registering the starting falling level of this unit.
      */
     private int fallingLevel = 0;
+    /**
+     * Variable registering the z-coordinate of the cube this unit lands in, computed once
+     * and again only when the terrain of its world changes.
+     */
+    private int landingLevel = -1;
+    private long landingTerrainVersion = -1;
 
     public Fall(Unit unit){
         super(unit);
@@ -26,23 +39,38 @@ public class Fall extends Move {
     @Override
     protected void advanceMove(double dt) {
         Vector cPos = unit.getPosition();
-        Vector cPosCube = cPos.getCubeCenterCoordinates();
-        if (cPos.equals(cPosCube) && unit.getWorld().isLowerSolid(cPos) && unit.getWorld().getCube(cPos.getCubeCoordinates()).isPassable()) {
+        int landingLevel = getLandingLevel(cPos);
+        if (landingLevel == cPos.cubeZ() && cPos.equals(cPos.getCubeCenterCoordinates())) {
             setCurrentSpeed(0);
             unit.removeHitpoints(10*(int)(fallingLevel - cPos.cubeZ()));
             //setHitpoints((int)(getHitpoints()-(fallingLevel-cPos.Z())));
             fallingLevel = 0;
             this.requestFinish();
         } else {
-            double speed = this.getCurrentSpeed();
-            Vector nextPos = cPos.add(new Vector(0, 0, -speed * dt));
-            if (unit.getWorld().isLowerSolid(cPos) && unit.getWorld().getCube(cPos.getCubeCoordinates()).isPassable() && (cPosCube.isInBetween(2, cPos, nextPos) || cPos.Z() <= cPosCube.Z()))
-                unit.setPosition(cPosCube);
-            else if (nextPos.getCubeCenterCoordinates().isInBetween(2, cPos, nextPos) && unit.getWorld().isLowerSolid(nextPos) && unit.getWorld().getCube(nextPos.getCubeCoordinates()).isPassable())
-                unit.setPosition(nextPos.getCubeCenterCoordinates());
-            else
-                unit.setPosition(nextPos);
+            double nextZ = cPos.Z() - this.getCurrentSpeed() * dt;
+            // The unit stops at the centre of the landing cube, it is not integrated past it
+            double landingZ = landingLevel * Cube.CUBE_SIDE_LENGTH + Cube.CUBE_SIDE_LENGTH / 2;
+            if (landingLevel != -1 && nextZ <= landingZ) {
+                Vector cPosCube = cPos.getCubeCenterCoordinates();
+                unit.setPosition(new Vector(cPosCube.X(), cPosCube.Y(), landingZ));
+            } else
+                unit.setPosition(new Vector(cPos.X(), cPos.Y(), nextZ));
+        }
+    }
+
+    /**
+     * Return the z-coordinate of the cube this unit lands in when it falls from the given position.
+     * The landing level is looked up in the world once and again only after the terrain changed.
+     * @return -1 when there is no cube to land in below the given position.
+     */
+    private int getLandingLevel(Vector position){
+        IWorld world = unit.getWorld();
+        long terrainVersion = world instanceof World ? ((World)world).getTerrainVersion() : -1;
+        if(terrainVersion == -1 || terrainVersion != landingTerrainVersion || landingLevel > position.cubeZ()){
+            landingLevel = world.getLandingLevel(position);
+            landingTerrainVersion = terrainVersion;
         }
+        return landingLevel;
     }
 
     /**
@@ -102,4 +130,16 @@ public class Fall extends Move {
     public int getXp() {
         return 0;
     }
+
+    @Override
+    protected void writeActivityState(DataOutput out) throws IOException {
+        super.writeActivityState(out);
+        out.writeInt(this.fallingLevel);
+    }
+
+    @Override
+    protected void readActivityState(DataInput in) throws IOException {
+        super.readActivityState(in);
+        this.fallingLevel = in.readInt();
+    }
 }
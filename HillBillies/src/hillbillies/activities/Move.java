@@ -3,7 +3,9 @@ package hillbillies.activities;
 import hillbillies.model.Unit;
 import hillbillies.utils.Vector;
 
-import java.util.List;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 import static hillbillies.utils.Utils.*;
 
@@ -197,7 +199,15 @@ public abstract class Move extends Activity {
      * @param direction The direction the Unit is sprinting in
      */
     protected double getSprintSpeed(Vector direction){
-        return 2*this.getWalkingSpeed(direction);
+        return this.getSprintSpeed(direction.Z());
+    }
+
+    /**
+     * Retrieve the Unit's sprinting speed
+     * @param directionZ The Z-coordinate of the direction the Unit is sprinting in
+     */
+    protected double getSprintSpeed(double directionZ){
+        return 2*this.getWalkingSpeed(directionZ);
     }
 
     /**
@@ -205,8 +215,16 @@ public abstract class Move extends Activity {
      * @param direction The direction the Unit is walking in
      */
     protected double getWalkingSpeed(Vector direction){
-        if(direction.Z()<-0.5) return 1.2*this.getBaseSpeed();
-        else if(direction.Z()>0.5) return 0.5*this.getBaseSpeed();
+        return this.getWalkingSpeed(direction.Z());
+    }
+
+    /**
+     * Retrieve the Unit's walking speed
+     * @param directionZ The Z-coordinate of the direction the Unit is walking in
+     */
+    protected double getWalkingSpeed(double directionZ){
+        if(directionZ<-0.5) return 1.2*this.getBaseSpeed();
+        else if(directionZ>0.5) return 0.5*this.getBaseSpeed();
         else return this.getBaseSpeed();
     }
 
@@ -238,11 +256,35 @@ public abstract class Move extends Activity {
         if(fromPosition==null || nextPosition==null)
             throw new IllegalArgumentException("The from and next position must be effective positions in order to check their validity.");
         if(!unit.isValidPosition(nextPosition)) return false;// Check if it's a valid position itself
-        List<Vector> decomposed = nextPosition.difference(fromPosition).decompose();
-        for(Vector d : decomposed){
-            if(!unit.isValidPosition(fromPosition.add(d)) || !unit.isValidPosition(nextPosition.difference(d))) 
-            	return false;// Check if surrounding positions are valid too (prevent corner glitch)
+        for(int i=0;i<3;i++){// Only build the intermediate positions, this is checked for each step of a path
+            double from = fromPosition.get(i), next = nextPosition.get(i);
+            if(from == next){
+                if(!unit.isValidPosition(fromPosition))
+                    return false;
+            }else if(!unit.isValidPosition(withCoordinate(fromPosition, i, next)) ||
+                    !unit.isValidPosition(withCoordinate(nextPosition, i, from)))
+                return false;// Check if surrounding positions are valid too (prevent corner glitch)
         }
         return true;
     }
+
+    /**
+     * Return the given position with its coordinate at the given index replaced by the given coordinate.
+     */
+    private static Vector withCoordinate(Vector position, int index, double coordinate){
+        return new Vector(index == Vector.X_INDEX ? coordinate : position.X(), index == Vector.Y_INDEX ? coordinate : position.Y(),
+                index == Vector.Z_INDEX ? coordinate : position.Z());
+    }
+
+    @Override
+    protected void writeActivityState(DataOutput out) throws IOException {
+        out.writeBoolean(this.isSprinting);
+        out.writeDouble(this.currentSpeed);
+    }
+
+    @Override
+    protected void readActivityState(DataInput in) throws IOException {
+        this.isSprinting = in.readBoolean();
+        this.currentSpeed = in.readDouble();
+    }
 }
@@ -1,8 +1,8 @@
 package hillbillies.activities;
 
 import hillbillies.model.Cube;
-import hillbillies.model.Task;
 import hillbillies.model.Unit;
+import hillbillies.model.World;
 import hillbillies.utils.Vector;
 
 import java.util.ArrayList;
@@ -54,14 +54,11 @@ public class None extends Activity {
     protected void advanceActivity(double dt) {
         if(this.isDefault()) {
             if(this.unit.getTask()==null) {
-                Task availableTask = this.unit.getFaction().getScheduler().getHighestPriorityAssignableTask();
-                if (availableTask == null)
+                // Available tasks are assigned by the faction's assignment pass at the start of the next tick
+                if (this.unit.getFaction().getScheduler().getHighestPriorityAssignableTask() == null)
                     setDefaultBehaviour();// No task available => do something random
-                else {
-                    this.unit.getFaction().getScheduler().schedule(availableTask, unit);
-                }
-            }else{
-                this.unit.getTask().getRunner().advanceTask(dt);
+            }else if(this.unit.getTask().getRunner().isDue()){
+                this.unit.getTask().getRunner().advanceTask();
             }
         }
     }
@@ -116,10 +113,13 @@ public class None extends Activity {
         if(!this.isDefault())
             throw new IllegalStateException("The default behaviour of unit is not activated");
 
-        List<Cube> AdjCubes = new ArrayList<Cube>(unit.getWorld().getDirectlyAdjacentCubes(unit.getPosition().getCubeCoordinates()));
         List<Unit> units = new ArrayList<>();
-        for (int i = 0; i < AdjCubes.size(); i++){
-            units.addAll(unit.getWorld().getUnitsInCube(AdjCubes.get(i)));
+        // The adjacent cubes are only searched for enemies when the influence maps report enemies nearby
+        if(!(unit.getWorld() instanceof World) || ((World)unit.getWorld()).getThreat(unit.getFaction(), unit.getCubeCoordinates()) > 0){
+            List<Cube> AdjCubes = new ArrayList<Cube>(unit.getWorld().getDirectlyAdjacentCubes(unit.getPosition().getCubeCoordinates()));
+            for (int i = 0; i < AdjCubes.size(); i++){
+                units.addAll(unit.getWorld().getUnitsInCube(AdjCubes.get(i)));
+            }
         }
         units.removeIf(defender -> unit.getFaction() == defender.getFaction() || Attack.isAccessible(this.unit, defender.getPosition().getCubeCoordinates()));
         int nb = 2;
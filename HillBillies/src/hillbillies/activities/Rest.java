@@ -2,6 +2,10 @@ package hillbillies.activities;
 
 import hillbillies.model.Unit;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import static hillbillies.utils.Utils.*;
 
 /**
@@ -139,4 +143,16 @@ public class Rest extends Activity {
     private double getRestStaminaGain(){
         return unit.getToughness()/100d;
     }
+
+    @Override
+    protected void writeActivityState(DataOutput out) throws IOException {
+        out.writeDouble(this.restHitpoints);
+        out.writeDouble(this.restStamina);
+    }
+
+    @Override
+    protected void readActivityState(DataInput in) throws IOException {
+        this.restHitpoints = in.readDouble();
+        this.restStamina = in.readDouble();
+    }
 }
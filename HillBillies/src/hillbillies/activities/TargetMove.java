@@ -3,6 +3,9 @@ package hillbillies.activities;
 import hillbillies.model.*;
 import hillbillies.utils.Vector;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
 
 import static hillbillies.utils.Utils.randDouble;
@@ -14,8 +17,13 @@ import static hillbillies.utils.Utils.randInt;
 public class TargetMove extends Move {
 
     private Path path;
+    /**
+     * Variable referencing the AdjacentMove performing the current or last step of this TargetMove,
+     * it is reused for the next step once it finished.
+     */
+    private AdjacentMove step = null;
 	private IWorldObject leader;
-    private Set<? extends IWorldObject> targets = new HashSet<>();
+    private Set<? extends IWorldObject> targets = new LinkedHashSet<>();
 
 //    public TargetMove(Unit unit, Set<Vector> targets)throws IllegalArgumentException, NullPointerException{
 //    	super(unit);
@@ -42,6 +50,20 @@ public class TargetMove extends Move {
             throw new IllegalArgumentException("The given target position is not reachable from the Unit's current position.");
     }
 
+    /**
+     * Initialize a new TargetMove for the given unit, moving towards the given leader which
+     * is one of the given targets. The path of the new TargetMove is not calculated, it must
+     * be restored by readFrom.
+     * @param unit The Unit this new TargetMove is bound to.
+     * @param leader The object this new TargetMove is moving to, or null when it moves to a position.
+     * @param targets The objects this new TargetMove can choose a new leader from.
+     */
+    public TargetMove(Unit unit, IWorldObject leader, Set<? extends IWorldObject> targets){
+        super(unit);
+        this.leader = leader;
+        this.targets = new LinkedHashSet<>(targets);
+    }
+
     public TargetMove(Unit unit){// Find random target
         super(unit);
             Vector target = (new Vector(randDouble(unit.getWorld().getMinPosition().X(), unit.getWorld().getMaxPosition().X()),
@@ -120,8 +142,11 @@ public class TargetMove extends Move {
         if(this.path!=null && this.path.hasNext()){
         	Vector nextblub = path.getNext();
             try{
-            	AdjacentMove nextMove = new AdjacentMove(unit, nextblub.difference(cpos), this.isSprinting(), this);
-            	unit.requestNewActivity(nextMove);
+                if(this.step != null && !this.step.isActive())
+                    this.step.restart(nextblub.difference(cpos), this.isSprinting());
+                else
+                    this.step = new AdjacentMove(unit, nextblub.difference(cpos), this.isSprinting(), this);
+            	unit.requestNewActivity(this.step);
             }catch(Exception e){
             	if(!calculatePath(unit.getPosition().getCubeCoordinates(), this.path.getTarget()))
                     this.requestFinish();
@@ -175,6 +200,22 @@ public class TargetMove extends Move {
 		return leader;
 	}
 
+    /**
+     * Return the number of cubes left on the path of this TargetMove. Each cube on the path
+     * neighbours the previous one, so the target lies at most this many cubes away along
+     * each axis.
+     */
+    public int getPathLength(){
+        return this.path.size();
+    }
+
+    /**
+     * Return the objects this TargetMove can choose a new leader from.
+     */
+    public Set<IWorldObject> getTargets(){
+        return new LinkedHashSet<>(this.targets);
+    }
+
     private boolean hasNextLeader(){
         return !this.targets.isEmpty();
     }
@@ -359,6 +400,10 @@ public class TargetMove extends Move {
             return !path.isEmpty();
         }
 
+        public int size(){
+            return path.size();
+        }
+
         public Vector getNext(){
             Vector next = path.removeFirst();
             Vector newNext = null;
@@ -418,4 +463,35 @@ public class TargetMove extends Move {
             pathPositions.removeAll(redundantPathPositions);
         }
     }
+
+    @Override
+    protected void writeActivityState(DataOutput out) throws IOException {
+        super.writeActivityState(out);
+        if(this.path == null){
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(this.path.path.size());
+        for(Vector position : this.path.path){
+            out.writeDouble(position.X());
+            out.writeDouble(position.Y());
+            out.writeDouble(position.Z());
+        }
+    }
+
+    @Override
+    protected void readActivityState(DataInput in) throws IOException {
+        super.readActivityState(in);
+        int size = in.readInt();
+        if(size < 0){
+            this.path = null;
+            return;
+        }
+        Vector[] positions = new Vector[size];
+        for(int i = 0; i < size; i++)
+            positions[i] = new Vector(in.readDouble(), in.readDouble(), in.readDouble());
+        this.path = new Path();
+        for(int i = size - 1; i >= 0; i--)// Path.add prepends the given position
+            this.path.add(positions[i]);
+    }
 }
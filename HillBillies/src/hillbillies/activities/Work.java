@@ -7,6 +7,10 @@ import hillbillies.model.Terrain;
 import hillbillies.model.Unit;
 import hillbillies.utils.Vector;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
  * Created by Bram on 29-3-2016.
  */
@@ -138,6 +142,14 @@ public class Work extends Activity {
         return this.workDuration;
     }
 
+    /**
+     * Return the cube this unit works on.
+     */
+    @Basic
+    public Cube getWorkCube(){
+        return this.workCube;
+    }
+
     /**
      * Check whether the given workCube is a valid workCube for
      * this Unit.
@@ -154,4 +166,13 @@ public class Work extends Activity {
                         unit.getWorld().getNeighbouringCubesPositions(unit.getPosition().getCubeCoordinates()).contains(workCube.getPosition()));
     }
 
+    @Override
+    protected void writeActivityState(DataOutput out) throws IOException {
+        out.writeFloat(this.workDuration);
+    }
+
+    @Override
+    protected void readActivityState(DataInput in) throws IOException {
+        this.workDuration = in.readFloat();
+    }
 }
@@ -1,5 +1,7 @@
 package hillbillies.model;
 
+import hillbillies.utils.Vector;
+
 /**
  * Class representing a Boulder
  * @author Kenneth & Bram
@@ -26,4 +28,13 @@ public class Boulder extends Material {
     public Boulder(World world, WorldObject owner){
         super(world, owner);
     }
+
+    /**
+     * Initialize a restored Boulder in the given world with the given owner and weight.
+     * @effect This new Boulder is initialized as a restored Material.
+     *       | super(world, owner, fallingPosition, weight)
+     */
+    Boulder(World world, WorldObject owner, Vector fallingPosition, int weight){
+        super(world, owner, fallingPosition, weight);
+    }
 }
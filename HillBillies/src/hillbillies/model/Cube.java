@@ -50,6 +50,28 @@ public class Cube extends WorldObject {
         return this.collapseTime>=0d;
     }
 
+    /**
+     * Return the remaining time before this cube collapses, or a negative
+     * value when this cube is not collapsing.
+     */
+    @Basic
+    double getCollapseTime(){
+        return this.collapseTime;
+    }
+
+    /**
+     * Set the remaining time before this collapsing cube collapses.
+     * @param collapseTime The remaining collapse time.
+     * @pre This cube is collapsing.
+     *      | this.isCollapsing()
+     * @post The remaining collapse time of this cube is equal to the given time.
+     *      | new.getCollapseTime() == collapseTime
+     */
+    void setCollapseTime(double collapseTime){
+        assert this.isCollapsing();
+        this.collapseTime = collapseTime;
+    }
+
     @Override
     public void advanceTime(double dt) {
         if(this.collapseTime>0d){
@@ -96,7 +118,8 @@ public class Cube extends WorldObject {
 
     @Override
     protected boolean validatePosition(Vector position){
-        return this.getWorld().getCube(position)==null || this.getWorld().getCube(position)==this;
+        Cube materialized = ((World)this.getWorld()).getMaterializedCube(position);
+        return materialized==null || materialized==this;
     }
 
     /**
@@ -0,0 +1,271 @@
+package hillbillies.model;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Immutable;
+
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Class representing the instruction budget of the task programs of a world. Each tick, the
+ * program executed by a unit may spend up to the unit budget, and the programs of all units
+ * together up to the global budget. Units are served in the order the world advances them, so
+ * the execution is deterministic and independent of the duration of a tick. A unit which got less
+ * than its unit budget because the global budget was used up is starved: at the start of the next
+ * tick its unit budget is reserved before any other unit is served, the longest starved units
+ * first. This way the units served last don't starve every tick when the global budget is too
+ * small for all units.
+ *
+ * Each kind of instruction has its own cost: a statement, the evaluation of an expression, an
+ * action of the unit, and the extra cost of an expression which searches the world (e.g. for the
+ * nearest log or a path next to a position). A program only pauses at the start of a statement,
+ * so it may overspend its budget with the expressions and action of its last statement. The
+ * overspent budget is taken from the global budget as well.
+ *
+ * The budget counts how often a program paused because it ran out of budget, distinguishing
+ * between programs which used up their unit budget and programs which got less than their unit
+ * budget because the global budget was used up.
+ *
+ * @invar All budgets and costs are positive or zero.
+ *          | getUnitBudget() >= 0 && getGlobalBudget() >= 0 && getStatementCost() >= 0 &&
+ *          | getExpressionCost() >= 0 && getSearchCost() >= 0 && getActionCost() >= 0
+ * @author Kenneth & Bram
+ * @version 1.0
+ */
+public class ExecutionBudget {
+
+    /**
+     * Constants reflecting the default budgets and costs. By default a unit can execute 200 simple
+     * statements each tick, which is as much as 0.2s of game time used to allow.
+     */
+    public static final int DEFAULT_UNIT_BUDGET = 2000, DEFAULT_GLOBAL_BUDGET = 1000000,
+            DEFAULT_STATEMENT_COST = 10, DEFAULT_EXPRESSION_COST = 1, DEFAULT_SEARCH_COST = 50,
+            DEFAULT_ACTION_COST = 10;
+
+    /**
+     * Variables registering the budget of each unit and of all units together, per tick.
+     */
+    private final int unitBudget, globalBudget;
+    /**
+     * Variables registering the cost of each kind of instruction.
+     */
+    private final int statementCost, expressionCost, searchCost, actionCost;
+    /**
+     * Variable registering the budget which is left for the current tick.
+     */
+    private int remainingGlobalBudget;
+    /**
+     * Variable referencing the units which got less than their unit budget, in the order they
+     * starved.
+     */
+    private final Set<Unit> starvedUnits = new LinkedHashSet<>();
+    /**
+     * Variable referencing the starved units whose unit budget is reserved in the current tick.
+     */
+    private final Set<Unit> reservedUnits = new HashSet<>();
+    /**
+     * Variables registering the number of times a program ran out of its unit budget, and the
+     * number of times a program ran out of budget because the global budget was used up.
+     */
+    private long nbUnitBudgetHits = 0, nbGlobalBudgetHits = 0;
+    /**
+     * Variable registering the total budget spent by all programs.
+     */
+    private long spentBudget = 0;
+
+    /**
+     * Initialize a new ExecutionBudget with the default budgets and costs.
+     * @effect | this(DEFAULT_UNIT_BUDGET, DEFAULT_GLOBAL_BUDGET, DEFAULT_STATEMENT_COST,
+     *         |      DEFAULT_EXPRESSION_COST, DEFAULT_SEARCH_COST, DEFAULT_ACTION_COST)
+     */
+    public ExecutionBudget(){
+        this(DEFAULT_UNIT_BUDGET, DEFAULT_GLOBAL_BUDGET, DEFAULT_STATEMENT_COST, DEFAULT_EXPRESSION_COST,
+                DEFAULT_SEARCH_COST, DEFAULT_ACTION_COST);
+    }
+
+    /**
+     * Initialize a new ExecutionBudget with the given budgets and costs.
+     * @param unitBudget The budget of each unit, per tick.
+     * @param globalBudget The budget of all units together, per tick.
+     * @param statementCost The cost of a statement.
+     * @param expressionCost The cost of the evaluation of an expression.
+     * @param searchCost The extra cost of the evaluation of an expression which searches the world.
+     * @param actionCost The cost of an action of the unit.
+     * @post | new.getUnitBudget() == unitBudget && new.getGlobalBudget() == globalBudget
+     * @post | new.getStatementCost() == statementCost && new.getExpressionCost() == expressionCost
+     * @post | new.getSearchCost() == searchCost && new.getActionCost() == actionCost
+     * @throws IllegalArgumentException
+     *          When one of the given budgets or costs is negative.
+     */
+    public ExecutionBudget(int unitBudget, int globalBudget, int statementCost, int expressionCost, int searchCost,
+                           int actionCost) throws IllegalArgumentException {
+        if(unitBudget < 0 || globalBudget < 0 || statementCost < 0 || expressionCost < 0 || searchCost < 0 || actionCost < 0)
+            throw new IllegalArgumentException("Budgets and costs cannot be negative.");
+        this.unitBudget = unitBudget;
+        this.globalBudget = globalBudget;
+        this.statementCost = statementCost;
+        this.expressionCost = expressionCost;
+        this.searchCost = searchCost;
+        this.actionCost = actionCost;
+        this.remainingGlobalBudget = globalBudget;
+    }
+
+    //region Configuration
+
+    /**
+     * Return the budget of each unit, per tick.
+     */
+    @Basic @Immutable
+    public int getUnitBudget(){
+        return unitBudget;
+    }
+
+    /**
+     * Return the budget of all units together, per tick.
+     */
+    @Basic @Immutable
+    public int getGlobalBudget(){
+        return globalBudget;
+    }
+
+    /**
+     * Return the cost of a statement.
+     */
+    @Basic @Immutable
+    public int getStatementCost(){
+        return statementCost;
+    }
+
+    /**
+     * Return the cost of the evaluation of an expression.
+     */
+    @Basic @Immutable
+    public int getExpressionCost(){
+        return expressionCost;
+    }
+
+    /**
+     * Return the extra cost of the evaluation of an expression which searches the world.
+     */
+    @Basic @Immutable
+    public int getSearchCost(){
+        return searchCost;
+    }
+
+    /**
+     * Return the cost of an action of the unit.
+     */
+    @Basic @Immutable
+    public int getActionCost(){
+        return actionCost;
+    }
+
+    //endregion
+
+    //region Spending
+
+    /**
+     * Restore the global budget at the start of a tick, and reserve the unit budget of as many
+     * starved units as the global budget allows. Units which didn't claim their reservation in
+     * the previous tick, because they no longer execute a program, are no longer starved.
+     * @post | new.getRemainingGlobalBudget() ==
+     *       |      getGlobalBudget() - getUnitBudget() * (number of reserved units)
+     */
+    void startTick(){
+        this.starvedUnits.removeAll(this.reservedUnits);
+        this.starvedUnits.removeIf(Unit::isTerminated);
+        this.reservedUnits.clear();
+        this.remainingGlobalBudget = globalBudget;
+        for(Unit unit : this.starvedUnits){
+            if(this.remainingGlobalBudget < unitBudget)
+                break;
+            this.reservedUnits.add(unit);
+            this.remainingGlobalBudget -= unitBudget;
+        }
+    }
+
+    /**
+     * Return the budget which is left for the current tick, apart from the budget reserved for
+     * starved units.
+     */
+    @Basic
+    public int getRemainingGlobalBudget(){
+        return remainingGlobalBudget;
+    }
+
+    /**
+     * Take the budget of the given unit for the current tick from the global budget.
+     * @param unit The unit executing a program.
+     * @return The unit budget when it was reserved for the given unit in this tick.
+     *          Otherwise the unit budget, or the remaining global budget when it is smaller.
+     *          | if(!(reserved for unit)) result == Math.max(Math.min(getUnitBudget(), getRemainingGlobalBudget()), 0)
+     * @post | if(!(reserved for unit)) new.getRemainingGlobalBudget() == getRemainingGlobalBudget() - result
+     * @post The given unit is starved if and only if the result is less than the unit budget.
+     */
+    int allocate(Unit unit){
+        if(this.reservedUnits.remove(unit)){
+            this.starvedUnits.remove(unit);
+            return unitBudget;
+        }
+        int budget = Math.max(Math.min(unitBudget, remainingGlobalBudget), 0);
+        remainingGlobalBudget -= budget;
+        if(budget < unitBudget)
+            this.starvedUnits.add(unit);// Keeps its place when it already starved
+        else
+            this.starvedUnits.remove(unit);
+        return budget;
+    }
+
+    /**
+     * Return the budget a unit did not spend to the global budget, or take the budget it
+     * overspent from the global budget.
+     * @param allocated The budget which was allocated to the unit.
+     * @param remaining The budget the unit did not spend, which is negative when the unit overspent.
+     * @post | new.getRemainingGlobalBudget() == getRemainingGlobalBudget() + remaining
+     * @post | new.getSpentBudget() == getSpentBudget() + allocated - remaining
+     */
+    void release(int allocated, int remaining){
+        remainingGlobalBudget += remaining;
+        spentBudget += allocated - remaining;
+    }
+
+    /**
+     * Register that a program paused because it ran out of the given allocated budget.
+     * @param allocated The budget which was allocated to the program.
+     * @post | if(allocated < getUnitBudget()) new.getNbGlobalBudgetHits() == getNbGlobalBudgetHits() + 1
+     *       | else new.getNbUnitBudgetHits() == getNbUnitBudgetHits() + 1
+     */
+    void registerExhausted(int allocated){
+        if(allocated < unitBudget)
+            nbGlobalBudgetHits++;
+        else
+            nbUnitBudgetHits++;
+    }
+
+    /**
+     * Return the number of times a program paused because it spent its whole unit budget.
+     */
+    @Basic
+    public long getNbUnitBudgetHits(){
+        return nbUnitBudgetHits;
+    }
+
+    /**
+     * Return the number of times a program paused because the global budget was used up.
+     */
+    @Basic
+    public long getNbGlobalBudgetHits(){
+        return nbGlobalBudgetHits;
+    }
+
+    /**
+     * Return the total budget spent by all programs.
+     */
+    @Basic
+    public long getSpentBudget(){
+        return spentBudget;
+    }
+
+    //endregion
+}
@@ -1,6 +1,6 @@
 package hillbillies.model;
 
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 import be.kuleuven.cs.som.annotate.*;
@@ -19,7 +19,15 @@ import be.kuleuven.cs.som.annotate.*;
  */
 public class Faction {
 	
-	private static final int MAX_UNITS_PER_FACTION = 50;
+	/**
+	 * Constant reflecting the maximum number of units of a faction in the game.
+	 */
+	static final int MAX_UNITS_PER_FACTION = 50;
+
+	/**
+	 * Variable registering the maximum number of units of this faction, which is set by its world.
+	 */
+	private int maxUnits = MAX_UNITS_PER_FACTION;
 
 
 	/**
@@ -61,25 +69,45 @@ public class Faction {
 	@Basic
 	@Raw
 	public Set<Unit> getUnits() {
-		return new HashSet<>(units);
+		return new LinkedHashSet<>(units);
 	}
 
 	/**
 	 * Check whether this Faction is a valid Faction.
 	 *
 	 * @return
-	 *       | result == (this.getNbUnits() <= MAX_UNITS_PER_FACTION)
+	 *       | result == (this.getNbUnits() <= getMaxUnits())
 	*/
 	public boolean isValidFaction() {
-		return (this.getNbUnits() <= MAX_UNITS_PER_FACTION);
+		return (this.getNbUnits() <= maxUnits);
 	}
 
 	/**
 	 * Check whether this Faction can have a new Unit.
-	 * @return True as long as the MAX_UNITS_PER_FACTION limit is not reached.
-	 * 			| result == (this.getNbUnits()+1 <= MAX_UNITS_PER_FACTION)
+	 * @return True as long as the getMaxUnits() limit is not reached.
+	 * 			| result == (this.getNbUnits()+1 <= getMaxUnits())
      */
-	public boolean canHaveNewUnit() { return this.getNbUnits()+1 <= MAX_UNITS_PER_FACTION; }
+	public boolean canHaveNewUnit() { return this.getNbUnits()+1 <= maxUnits; }
+
+	/**
+	 * Return the maximum number of units of this faction.
+	 */
+	@Basic
+	public int getMaxUnits() {
+		return maxUnits;
+	}
+
+	/**
+	 * Set the maximum number of units of this faction to the given number.
+	 * @param maxUnits The new maximum number of units.
+	 * @pre This faction doesn't have more units than the given number.
+	 * 		| getNbUnits() <= maxUnits
+	 * @post | new.getMaxUnits() == maxUnits
+	 */
+	void setMaxUnits(int maxUnits) {
+		assert this.getNbUnits() <= maxUnits;
+		this.maxUnits = maxUnits;
+	}
 
 
 
@@ -194,7 +222,7 @@ public class Faction {
 	 * | ( (unit != null) &&
 	 * | (! unit.isTerminated()) )
 	 */
-	private final Set<Unit> units = new HashSet<>();
+	private final Set<Unit> units = new LinkedHashSet<>();
 
 	/**
 	 * Return the scheduler of this Faction.
@@ -23,6 +23,13 @@ public interface IWorld {
      */
     int MAX_FACTIONS = 5;
 
+    /**
+     * Return the maximum number of units in this world.
+     */
+    default int getMaxUnits(){
+        return MAX_UNITS;
+    }
+
     /**
      * Check whether the given position is a valid position
      * for any IWorldObject in this world.
@@ -94,4 +101,6 @@ public interface IWorld {
 
     public boolean isLowerSolid(Vector position);
 
+    public int getLandingLevel(Vector position);
+
 }
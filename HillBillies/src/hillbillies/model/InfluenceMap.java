@@ -0,0 +1,250 @@
+package hillbillies.model;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Immutable;
+import hillbillies.utils.Vector;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class registering where the units of one faction are, at a lower resolution than the cubes
+ * of the world. The world is divided in cells of CELL_SIZE by CELL_SIZE by CELL_SIZE cubes and
+ * the map keeps the number of units and the units themselves for each cell. The world updates
+ * the map when a unit enters another cell, so queries cost a number of cell lookups which
+ * doesn't depend on the number of units.
+ *
+ * The distance between two cells is the largest difference of their cell coordinates.
+ *
+ * @invar The number of units of this map is the sum of the influence of all cells.
+ * @author Kenneth & Bram
+ * @version 1.0
+ */
+public class InfluenceMap {
+
+    /**
+     * Constant reflecting the number of cubes along each side of a cell.
+     */
+    public static final int CELL_SIZE = 4;
+
+    /**
+     * Variables registering the number of cells along each axis.
+     */
+    private final int nbCellsX, nbCellsY, nbCellsZ;
+    /**
+     * Variable registering the number of units in each cell.
+     */
+    private final int[] counts;
+    /**
+     * Variable referencing the units of each non-empty cell.
+     */
+    private final Map<Integer, Set<Unit>> cellUnits = new HashMap<>();
+    /**
+     * Variable registering the number of units of this map.
+     */
+    private int nbUnits = 0;
+
+    /**
+     * Initialize a new empty InfluenceMap covering a world with the given number of cubes.
+     * @param nbCubesX The number of cubes of the world along the x-axis.
+     * @param nbCubesY The number of cubes of the world along the y-axis.
+     * @param nbCubesZ The number of cubes of the world along the z-axis.
+     * @post | new.getNbUnits() == 0
+     */
+    InfluenceMap(int nbCubesX, int nbCubesY, int nbCubesZ){
+        this.nbCellsX = (nbCubesX + CELL_SIZE - 1) / CELL_SIZE;
+        this.nbCellsY = (nbCubesY + CELL_SIZE - 1) / CELL_SIZE;
+        this.nbCellsZ = (nbCubesZ + CELL_SIZE - 1) / CELL_SIZE;
+        this.counts = new int[nbCellsX * nbCellsY * nbCellsZ];
+    }
+
+    /**
+     * Return the number of units of this map.
+     */
+    @Basic
+    public int getNbUnits(){
+        return nbUnits;
+    }
+
+    /**
+     * Return the number of cells along the x-axis.
+     */
+    @Basic @Immutable
+    public int getNbCellsX(){
+        return nbCellsX;
+    }
+
+    /**
+     * Return the number of cells along the y-axis.
+     */
+    @Basic @Immutable
+    public int getNbCellsY(){
+        return nbCellsY;
+    }
+
+    /**
+     * Return the number of cells along the z-axis.
+     */
+    @Basic @Immutable
+    public int getNbCellsZ(){
+        return nbCellsZ;
+    }
+
+    /**
+     * Add the given unit, standing in the cube with the given coordinates, to this map.
+     * @post | new.getNbUnits() == getNbUnits() + 1
+     */
+    void add(Unit unit, Vector cubeCoordinates){
+        int cell = getCell(cubeCoordinates);
+        Set<Unit> units = cellUnits.get(cell);
+        if(units == null){
+            units = new LinkedHashSet<>();
+            cellUnits.put(cell, units);
+        }
+        if(units.add(unit)){
+            counts[cell]++;
+            nbUnits++;
+        }
+    }
+
+    /**
+     * Remove the given unit, standing in the cube with the given coordinates, from this map.
+     * @post | new.getNbUnits() == getNbUnits() - 1
+     */
+    void remove(Unit unit, Vector cubeCoordinates){
+        int cell = getCell(cubeCoordinates);
+        Set<Unit> units = cellUnits.get(cell);
+        if(units != null && units.remove(unit)){
+            if(units.isEmpty())
+                cellUnits.remove(cell);
+            counts[cell]--;
+            nbUnits--;
+        }
+    }
+
+    /**
+     * Move the given unit of this map from the cube with the given old coordinates to the cube
+     * with the given new coordinates. Nothing changes when both cubes lie in the same cell.
+     */
+    void move(Unit unit, Vector oldCubeCoordinates, Vector newCubeCoordinates){
+        if(getCell(oldCubeCoordinates) != getCell(newCubeCoordinates)){
+            remove(unit, oldCubeCoordinates);
+            add(unit, newCubeCoordinates);
+        }
+    }
+
+    /**
+     * Return the number of units in the cell of the cube with the given coordinates.
+     * @throws NullPointerException
+     *          When the given coordinates are not effective.
+     *          | cubeCoordinates == null
+     */
+    public int getInfluence(Vector cubeCoordinates) throws NullPointerException {
+        return counts[getCell(cubeCoordinates)];
+    }
+
+    /**
+     * Return the number of units in the cell of the cube with the given coordinates and in
+     * the cells next to it.
+     * @throws NullPointerException
+     *          When the given coordinates are not effective.
+     *          | cubeCoordinates == null
+     */
+    public int getInfluenceNear(Vector cubeCoordinates) throws NullPointerException {
+        if(nbUnits == 0)
+            return 0;
+        int cx = cellX(cubeCoordinates), cy = cellY(cubeCoordinates), cz = cellZ(cubeCoordinates);
+        int result = 0;
+        for(int x = Math.max(cx - 1, 0); x <= Math.min(cx + 1, nbCellsX - 1); x++)
+            for(int y = Math.max(cy - 1, 0); y <= Math.min(cy + 1, nbCellsY - 1); y++)
+                for(int z = Math.max(cz - 1, 0); z <= Math.min(cz + 1, nbCellsZ - 1); z++)
+                    result += counts[index(x, y, z)];
+        return result;
+    }
+
+    /**
+     * Return the distance from the cell of the cube with the given coordinates to the nearest
+     * cell holding a unit of this map other than the given excluded unit.
+     * @param cubeCoordinates The coordinates of the cube to search from.
+     * @param excluded The unit to ignore, or null.
+     * @return -1 when this map holds no other units than the excluded unit.
+     * @throws NullPointerException
+     *          When the given coordinates are not effective.
+     *          | cubeCoordinates == null
+     */
+    public int getDistanceToNearestUnit(Vector cubeCoordinates, Unit excluded) throws NullPointerException {
+        int excludedCell = excluded != null && contains(excluded) ?
+                getCell(excluded.getCubeCoordinates()) : -1;
+        if(nbUnits == (excludedCell == -1 ? 0 : 1))
+            return -1;
+        int cx = cellX(cubeCoordinates), cy = cellY(cubeCoordinates), cz = cellZ(cubeCoordinates);
+        int maxDistance = Math.max(Math.max(nbCellsX, nbCellsY), nbCellsZ);
+        for(int distance = 0; distance < maxDistance; distance++)
+            for(int x = Math.max(cx - distance, 0); x <= Math.min(cx + distance, nbCellsX - 1); x++)
+                for(int y = Math.max(cy - distance, 0); y <= Math.min(cy + distance, nbCellsY - 1); y++){
+                    // Only visit the cells on the shell at the current distance
+                    boolean onShell = Math.abs(x - cx) == distance || Math.abs(y - cy) == distance;
+                    int step = onShell ? 1 : Math.max(2 * distance, 1);
+                    for(int z = cz - distance; z <= cz + distance; z += step){
+                        if(z < 0 || z >= nbCellsZ)
+                            continue;
+                        int cell = index(x, y, z);
+                        if(counts[cell] > (cell == excludedCell ? 1 : 0))
+                            return distance;
+                    }
+                }
+        return -1;
+    }
+
+    /**
+     * Return the units of this map in the cells at most the given distance away from the
+     * cell of the cube with the given coordinates.
+     * @throws NullPointerException
+     *          When the given coordinates are not effective.
+     *          | cubeCoordinates == null
+     */
+    public Set<Unit> getUnitsWithin(Vector cubeCoordinates, int distance) throws NullPointerException {
+        Set<Unit> result = new LinkedHashSet<>();
+        if(nbUnits == 0 || distance < 0)
+            return result;
+        int cx = cellX(cubeCoordinates), cy = cellY(cubeCoordinates), cz = cellZ(cubeCoordinates);
+        for(int x = Math.max(cx - distance, 0); x <= Math.min(cx + distance, nbCellsX - 1); x++)
+            for(int y = Math.max(cy - distance, 0); y <= Math.min(cy + distance, nbCellsY - 1); y++)
+                for(int z = Math.max(cz - distance, 0); z <= Math.min(cz + distance, nbCellsZ - 1); z++){
+                    int cell = index(x, y, z);
+                    if(counts[cell] > 0)
+                        result.addAll(cellUnits.get(cell));
+                }
+        return result;
+    }
+
+    /**
+     * Check whether the given unit is registered in this map.
+     */
+    private boolean contains(Unit unit){
+        Set<Unit> units = cellUnits.get(getCell(unit.getCubeCoordinates()));
+        return units != null && units.contains(unit);
+    }
+
+    private int getCell(Vector cubeCoordinates){
+        return index(cellX(cubeCoordinates), cellY(cubeCoordinates), cellZ(cubeCoordinates));
+    }
+
+    private int cellX(Vector cubeCoordinates){
+        return Math.min(Math.max(cubeCoordinates.cubeX() / CELL_SIZE, 0), nbCellsX - 1);
+    }
+
+    private int cellY(Vector cubeCoordinates){
+        return Math.min(Math.max(cubeCoordinates.cubeY() / CELL_SIZE, 0), nbCellsY - 1);
+    }
+
+    private int cellZ(Vector cubeCoordinates){
+        return Math.min(Math.max(cubeCoordinates.cubeZ() / CELL_SIZE, 0), nbCellsZ - 1);
+    }
+
+    private int index(int x, int y, int z){
+        return (x * nbCellsY + y) * nbCellsZ + z;
+    }
+}
@@ -0,0 +1,358 @@
+package hillbillies.model;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Immutable;
+import hillbillies.part2.listener.TerrainChangeListener;
+import hillbillies.part3.programs.ProgramCodec;
+import hillbillies.part3.programs.TaskFactory;
+import hillbillies.part3.programs.TaskProfiler;
+import hillbillies.utils.ChannelDataInput;
+import hillbillies.utils.Utils;
+import hillbillies.utils.Vector;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static hillbillies.model.JournalRecorder.*;
+
+/**
+ * Class re-executing a journal written by a JournalRecorder. The player restores the recorded
+ * world, seeds the random generator with the recorded seed and executes the recorded commands
+ * in order, which reproduces the recorded simulation exactly.
+ *
+ * Commands which failed during the recording fail again when they are replayed, these
+ * failures are ignored.
+ *
+ * @note The random generator stays seeded after the journal is played, so the replayed world
+ *       can be advanced further deterministically.
+ * @author Kenneth & Bram
+ * @version 1.0
+ */
+public class JournalPlayer {
+
+    /**
+     * Variable referencing the input of the journal.
+     */
+    private final ChannelDataInput in;
+    /**
+     * Variable referencing the seed of the random generator during the recording.
+     */
+    private final long seed;
+    /**
+     * Variable referencing the restored world.
+     */
+    private final World world;
+    /**
+     * Variables referencing the units and tasks of the journal by their index.
+     */
+    private final List<Unit> units = new ArrayList<>();
+    private final List<Task> tasks = new ArrayList<>();
+    /**
+     * Variable referencing the factory which rebuilds the programs of recorded tasks.
+     */
+    private final TaskFactory taskFactory = new TaskFactory();
+    /**
+     * Variables registering the number of executed commands and failed commands.
+     */
+    private long nbCommands = 0, nbFailedCommands = 0;
+    /**
+     * Variable registering whether the end of the journal is reached.
+     */
+    private boolean isFinished = false;
+
+    /**
+     * Initialize a new JournalPlayer reading the journal from the given channel.
+     * @param channel The channel to read the journal from.
+     * @param terrainChangeListener The terrainChangeListener of the replayed world.
+     * @effect The recorded world is restored and the random generator is seeded with the recorded seed.
+     *          | Utils.setRandomSeed(getSeed())
+     * @throws IOException When an I/O error occurs or the channel contains no valid journal.
+     */
+    public JournalPlayer(ReadableByteChannel channel, TerrainChangeListener terrainChangeListener) throws IOException {
+        this.in = new ChannelDataInput(channel);
+        if(in.readInt() != MAGIC)
+            throw new IOException("The input is no journal.");
+        int version = in.readShort();
+        if(version != VERSION)
+            throw new IOException("Unsupported journal version " + version + ".");
+        this.seed = in.readLong();
+        byte[] snapshot = new byte[in.readInt()];
+        in.readFully(snapshot);
+        this.world = new WorldSerializer().restore(Channels.newChannel(new ByteArrayInputStream(snapshot)), terrainChangeListener);
+        for(Unit unit : world.getUnits())
+            units.add(unit);
+        tasks.addAll(world.getScheduledTasks());
+        Utils.setRandomSeed(seed);
+    }
+
+    /**
+     * Initialize a new JournalPlayer reading the journal from the given file.
+     * @effect | this(FileChannel.open(file, READ), terrainChangeListener)
+     */
+    public JournalPlayer(Path file, TerrainChangeListener terrainChangeListener) throws IOException {
+        this(FileChannel.open(file, StandardOpenOption.READ), terrainChangeListener);
+    }
+
+    /**
+     * Return the replayed world.
+     */
+    @Basic @Immutable
+    public World getWorld(){
+        return this.world;
+    }
+
+    /**
+     * Return the seed of the random generator during the recording.
+     */
+    @Basic @Immutable
+    public long getSeed(){
+        return this.seed;
+    }
+
+    /**
+     * Return the number of commands executed so far.
+     */
+    @Basic
+    public long getNbCommands(){
+        return this.nbCommands;
+    }
+
+    /**
+     * Return the number of executed commands which failed.
+     */
+    @Basic
+    public long getNbFailedCommands(){
+        return this.nbFailedCommands;
+    }
+
+    /**
+     * Check whether all commands of the journal are executed.
+     */
+    @Basic
+    public boolean isFinished(){
+        return this.isFinished;
+    }
+
+    /**
+     * Execute all remaining commands of the journal.
+     * @effect | while(step()) ;
+     */
+    public void play() throws IOException {
+        while(step());
+    }
+
+    /**
+     * Execute the next command of the journal.
+     * @return False when the end of the journal is reached, true otherwise.
+     * @throws IOException When an I/O error occurs or the journal is corrupt.
+     */
+    public boolean step() throws IOException {
+        if(isFinished)
+            return false;
+        int type;
+        try {
+            type = in.readUnsignedByte();
+        }catch(EOFException e){// A journal which was not closed properly
+            type = END;
+        }
+        if(type == END){
+            isFinished = true;
+            return false;
+        }
+        nbCommands++;
+        try {
+            execute(type);
+        }catch(IllegalArgumentException | IllegalStateException | NullPointerException | ClassCastException e){
+            nbFailedCommands++;
+        }
+        return true;
+    }
+
+    private void execute(int type) throws IOException {
+        switch(type){
+            case ADVANCE_TIME:
+                world.advanceTime(in.readDouble());
+                break;
+            case SET_CUBE_TYPE:
+                Vector cube = readCoordinates();
+                world.getCube(cube).setTerrain(Terrain.fromId(in.readUnsignedByte()));
+                break;
+            case SPAWN_UNIT:
+                units.add(world.spawnUnit(in.readBoolean()));
+                break;
+            case ADD_UNIT:
+                String name = in.readUTF();
+                Vector position = readCoordinates();
+                int strength = in.readInt(), agility = in.readInt(), toughness = in.readInt(), weight = in.readInt();
+                int stamina = in.readInt(), hitpoints = in.readInt();
+                boolean isDefaultActive = in.readBoolean();
+                Unit unit = new Unit(LobbyWorld.lobby, name, position, strength, agility, toughness, weight, stamina, hitpoints);
+                if(isDefaultActive)
+                    unit.startDefaultBehaviour();
+                world.addUnit(unit);
+                units.add(unit);
+                break;
+            case MOVE_TO_ADJACENT:
+                unit = readUnit();
+                unit.moveToAdjacent(readCoordinates());
+                break;
+            case MOVE_TO:
+                unit = readUnit();
+                unit.moveToTarget(readCoordinates());
+                break;
+            case WORK:
+                unit = readUnit();
+                unit.work(readCoordinates());
+                break;
+            case ATTACK:
+                unit = readUnit();
+                unit.attack(readUnit());
+                break;
+            case REST:
+                readUnit().rest();
+                break;
+            case SPRINT:
+                unit = readUnit();
+                if(in.readBoolean())
+                    unit.sprint();
+                else
+                    unit.stopSprint();
+                break;
+            case DEFAULT_BEHAVIOUR:
+                unit = readUnit();
+                if(in.readBoolean())
+                    unit.startDefaultBehaviour();
+                else
+                    unit.stopDefaultBehaviour();
+                break;
+            case SET_NAME:
+                unit = readUnit();
+                unit.setName(in.readUTF());
+                break;
+            case SET_ATTRIBUTE:
+                unit = readUnit();
+                int attribute = in.readUnsignedByte(), value = in.readInt();
+                if(attribute == WEIGHT)
+                    unit.setWeight(value);
+                else if(attribute == STRENGTH)
+                    unit.setStrength(value);
+                else if(attribute == AGILITY)
+                    unit.setAgility(value);
+                else if(attribute == TOUGHNESS)
+                    unit.setToughness(value);
+                else
+                    throw new IOException("Invalid attribute " + attribute + ".");
+                break;
+            case SCHEDULE:
+                Scheduler scheduler = readScheduler();
+                scheduler.addTask(readTask());
+                break;
+            case REPLACE:
+                scheduler = readScheduler();
+                Task original = readTask();
+                scheduler.replaceTask(original, readTask());
+                break;
+            default:
+                throw new IOException("Invalid record type " + type + ".");
+        }
+    }
+
+    private Vector readCoordinates() throws IOException {
+        return new Vector(in.readInt(), in.readInt(), in.readInt());
+    }
+
+    private Unit readUnit() throws IOException {
+        int index = in.readInt();
+        if(index < 0 || index >= units.size())
+            throw new IOException("Invalid unit reference " + index + ".");
+        return units.get(index);
+    }
+
+    private Scheduler readScheduler() throws IOException {
+        int index = in.readUnsignedByte();
+        List<Faction> factions = new ArrayList<>(world.getFactions());
+        if(index >= factions.size())
+            throw new IOException("Invalid faction reference " + index + ".");
+        return factions.get(index).getScheduler();
+    }
+
+    /**
+     * Read a reference to a task. The first reference to a task is followed by its definition.
+     */
+    private Task readTask() throws IOException {
+        int index = in.readInt();
+        if(index < tasks.size() && index >= 0)
+            return tasks.get(index);
+        if(index != tasks.size())
+            throw new IOException("Invalid task reference " + index + ".");
+        String name = in.readUTF();
+        int priority = in.readInt();
+        int[] selectedCube = null;
+        if(in.readBoolean())
+            selectedCube = new int[]{ in.readInt(), in.readInt(), in.readInt() };
+        Task task = new Task(name, priority, ProgramCodec.readStatement(in, taskFactory), selectedCube);
+        tasks.add(task);
+        return task;
+    }
+
+    /**
+     * Replay the journal in the given file headlessly and report the time it took.
+     * Usage: JournalPlayer [-profile] [-sleep] journal [extraSeconds]
+     * When extraSeconds is given, the replayed world is advanced for that many more seconds
+     * of game time afterwards, which is useful to benchmark a recorded workload.
+     * With -profile, the task programs are profiled and their hotspots are reported at the end.
+     * With -sleep, idle units fall asleep and the number of sleeping units is reported at the end.
+     */
+    public static void main(String[] args) throws IOException {
+        boolean profile = false, sleep = false;
+        int first = 0;
+        for(; first < args.length && args[first].startsWith("-"); first++){
+            if(args[first].equals("-profile"))
+                profile = true;
+            else if(args[first].equals("-sleep"))
+                sleep = true;
+            else{
+                System.err.println("Unknown option " + args[first]);
+                System.exit(1);
+            }
+        }
+        args = Arrays.copyOfRange(args, first, args.length);
+        if(args.length < 1){
+            System.err.println("Usage: JournalPlayer [-profile] [-sleep] journal [extraSeconds]");
+            System.exit(1);
+        }
+        long start = System.nanoTime();
+        JournalPlayer player = new JournalPlayer(Paths.get(args[0]), null);
+        if(profile)
+            player.getWorld().setProfiling(true);
+        if(sleep)
+            player.getWorld().setLettingUnitsSleep(true);
+        long restored = System.nanoTime();
+        player.play();
+        long played = System.nanoTime();
+        System.out.printf("Restored world in %.1f ms%n", (restored - start) / 1e6);
+        System.out.printf("Replayed %d commands (%d failed) in %.1f ms, world is at tick %d%n",
+                player.getNbCommands(), player.getNbFailedCommands(), (played - restored) / 1e6, player.getWorld().getTick());
+        if(args.length > 1){
+            double seconds = Double.parseDouble(args[1]);
+            for(double time = 0; time < seconds; time += 0.1)
+                player.getWorld().advanceTime(0.1);
+            System.out.printf("Advanced %.1f more seconds in %.1f ms%n", seconds, (System.nanoTime() - played) / 1e6);
+        }
+        if(sleep)
+            System.out.printf("%d units sleeping, %d awake%n", player.getWorld().getNbSleepingUnits(),
+                    player.getWorld().getNbAwakeUnits());
+        if(profile)
+            TaskProfiler.writeReport(player.getWorld().getProfiler().getHotspots(), System.out);
+    }
+}
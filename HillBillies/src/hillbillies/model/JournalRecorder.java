@@ -0,0 +1,352 @@
+package hillbillies.model;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Immutable;
+import hillbillies.part3.programs.ProgramCodec;
+import hillbillies.utils.ChannelDataOutput;
+import hillbillies.utils.Utils;
+import hillbillies.utils.Vector;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Class recording the external commands given to a World in a compact binary journal. The
+ * journal starts with the seed of the random generator and a snapshot of the world, followed
+ * by one record per command. A JournalPlayer re-executes the journal headlessly and reproduces
+ * the exact simulation.
+ *
+ * Each command must be recorded right before it is executed on the world. Units which are
+ * created by a recorded command must be registered once they are added to the world.
+ *
+ * @note Recording makes Utils.randInt and Utils.randDouble deterministic for the whole
+ *       application, the simulation is only reproducible when no other world consumes
+ *       random values during the recording.
+ * @author Kenneth & Bram
+ * @version 1.0
+ */
+public class JournalRecorder implements Closeable {
+
+    /**
+     * Constant reflecting the first bytes of each journal.
+     */
+    public static final int MAGIC = 0x48424A4E;// "HBJN"
+    /**
+     * Constant reflecting the version of the journal format written by this recorder.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Constants reflecting the record types of a journal.
+     */
+    static final int END = 0, ADVANCE_TIME = 1, SET_CUBE_TYPE = 2, SPAWN_UNIT = 3, ADD_UNIT = 4,
+            MOVE_TO_ADJACENT = 5, MOVE_TO = 6, WORK = 7, ATTACK = 8, REST = 9, SPRINT = 10,
+            DEFAULT_BEHAVIOUR = 11, SET_ATTRIBUTE = 12, SET_NAME = 13, SCHEDULE = 14, REPLACE = 15;
+    /**
+     * Constants reflecting the attributes which can be set by a SET_ATTRIBUTE record.
+     */
+    static final int WEIGHT = 0, STRENGTH = 1, AGILITY = 2, TOUGHNESS = 3;
+
+    /**
+     * Variable referencing the world whose commands are recorded.
+     */
+    private final World world;
+    /**
+     * Variable referencing the channel the journal is written to.
+     */
+    private final WritableByteChannel channel;
+    /**
+     * Variable referencing the buffered output of the journal.
+     */
+    private final ChannelDataOutput out;
+    /**
+     * Variables referencing the index of each unit and task in the journal.
+     */
+    private final Map<Unit, Integer> unitIndices = new IdentityHashMap<>();
+    private final Map<Task, Integer> taskIndices = new IdentityHashMap<>();
+    /**
+     * Variable registering the number of recorded commands.
+     */
+    private long nbCommands = 0;
+    /**
+     * Variable registering whether this recorder is closed.
+     */
+    private boolean isClosed = false;
+
+    /**
+     * Initialize a new JournalRecorder for the given world, writing to the given channel.
+     * @param world The world whose commands will be recorded.
+     * @param seed The seed of the random generator during the recording.
+     * @param channel The channel to write the journal to.
+     * @effect The header and a snapshot of the given world are written to the given channel.
+     * @effect The random generator is seeded with the given seed.
+     *          | Utils.setRandomSeed(seed)
+     * @throws IOException When an I/O error occurs or the world cannot be saved.
+     */
+    public JournalRecorder(World world, long seed, WritableByteChannel channel) throws IOException {
+        if(world == null)
+            throw new NullPointerException("The given world is not effective.");
+        this.world = world;
+        this.channel = channel;
+        this.out = new ChannelDataOutput(channel);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(seed);
+        // The snapshot is length prefixed, so the player can restore it without reading past its end
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        new WorldSerializer().save(world, Channels.newChannel(snapshot));
+        out.writeInt(snapshot.size());
+        out.write(snapshot.toByteArray());
+        for(Unit unit : world.getUnits())
+            if(!unit.isTerminated())
+                registerUnit(unit);
+        for(Task task : world.getScheduledTasks())
+            taskIndices.put(task, taskIndices.size());
+        Utils.setRandomSeed(seed);
+    }
+
+    /**
+     * Initialize a new JournalRecorder for the given world, writing to the given file.
+     * An existing file is overwritten.
+     * @effect | this(world, seed, FileChannel.open(file, WRITE, CREATE, TRUNCATE_EXISTING))
+     */
+    public JournalRecorder(World world, long seed, Path file) throws IOException {
+        this(world, seed, FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    /**
+     * Return the world whose commands are recorded.
+     */
+    @Basic @Immutable
+    public World getWorld(){
+        return this.world;
+    }
+
+    /**
+     * Return the number of commands recorded so far.
+     */
+    @Basic
+    public long getNbCommands(){
+        return this.nbCommands;
+    }
+
+    //region Commands
+
+    public void recordAdvanceTime(double dt) throws IOException {
+        startRecord(ADVANCE_TIME);
+        out.writeDouble(dt);
+    }
+
+    public void recordSetCubeType(int x, int y, int z, int value) throws IOException {
+        startRecord(SET_CUBE_TYPE);
+        writeCoordinates(x, y, z);
+        out.writeByte(value);
+    }
+
+    /**
+     * Record the spawning of a unit. The spawned unit must be registered afterwards.
+     */
+    public void recordSpawnUnit(boolean enableDefaultBehaviour) throws IOException {
+        startRecord(SPAWN_UNIT);
+        out.writeBoolean(enableDefaultBehaviour);
+    }
+
+    /**
+     * Record the addition of the given unit, which is not yet part of the world. The unit
+     * must be registered once it is added.
+     */
+    public void recordAddUnit(Unit unit) throws IOException {
+        startRecord(ADD_UNIT);
+        out.writeUTF(unit.getName());
+        Vector position = unit.getPosition().getCubeCoordinates();
+        writeCoordinates(position.cubeX(), position.cubeY(), position.cubeZ());
+        out.writeInt(unit.getStrength());
+        out.writeInt(unit.getAgility());
+        out.writeInt(unit.getToughness());
+        out.writeInt(unit.getWeight());
+        out.writeInt(unit.getStamina());
+        out.writeInt(unit.getHitpoints());
+        out.writeBoolean(unit.isDefaultActive());
+    }
+
+    public void recordMoveToAdjacent(Unit unit, int dx, int dy, int dz) throws IOException {
+        startRecord(MOVE_TO_ADJACENT);
+        writeUnit(unit);
+        writeCoordinates(dx, dy, dz);
+    }
+
+    public void recordMoveTo(Unit unit, int x, int y, int z) throws IOException {
+        startRecord(MOVE_TO);
+        writeUnit(unit);
+        writeCoordinates(x, y, z);
+    }
+
+    public void recordWork(Unit unit, int x, int y, int z) throws IOException {
+        startRecord(WORK);
+        writeUnit(unit);
+        writeCoordinates(x, y, z);
+    }
+
+    public void recordAttack(Unit attacker, Unit defender) throws IOException {
+        startRecord(ATTACK);
+        writeUnit(attacker);
+        writeUnit(defender);
+    }
+
+    public void recordRest(Unit unit) throws IOException {
+        startRecord(REST);
+        writeUnit(unit);
+    }
+
+    public void recordSprint(Unit unit, boolean sprinting) throws IOException {
+        startRecord(SPRINT);
+        writeUnit(unit);
+        out.writeBoolean(sprinting);
+    }
+
+    public void recordDefaultBehaviour(Unit unit, boolean enabled) throws IOException {
+        startRecord(DEFAULT_BEHAVIOUR);
+        writeUnit(unit);
+        out.writeBoolean(enabled);
+    }
+
+    public void recordSetName(Unit unit, String name) throws IOException {
+        startRecord(SET_NAME);
+        writeUnit(unit);
+        out.writeUTF(name);
+    }
+
+    public void recordSetWeight(Unit unit, int weight) throws IOException {
+        recordSetAttribute(unit, WEIGHT, weight);
+    }
+
+    public void recordSetStrength(Unit unit, int strength) throws IOException {
+        recordSetAttribute(unit, STRENGTH, strength);
+    }
+
+    public void recordSetAgility(Unit unit, int agility) throws IOException {
+        recordSetAttribute(unit, AGILITY, agility);
+    }
+
+    public void recordSetToughness(Unit unit, int toughness) throws IOException {
+        recordSetAttribute(unit, TOUGHNESS, toughness);
+    }
+
+    private void recordSetAttribute(Unit unit, int attribute, int value) throws IOException {
+        startRecord(SET_ATTRIBUTE);
+        writeUnit(unit);
+        out.writeByte(attribute);
+        out.writeInt(value);
+    }
+
+    public void recordSchedule(Scheduler scheduler, Task task) throws IOException {
+        startRecord(SCHEDULE);
+        writeFaction(scheduler.getFaction());
+        writeTask(task);
+    }
+
+    public void recordReplace(Scheduler scheduler, Task original, Task replacement) throws IOException {
+        startRecord(REPLACE);
+        writeFaction(scheduler.getFaction());
+        writeTask(original);
+        writeTask(replacement);
+    }
+
+    /**
+     * Register the given unit, which was added to the world by the last recorded command.
+     * @throws IllegalArgumentException
+     *          When the given unit does not belong to the recorded world.
+     */
+    public void registerUnit(Unit unit) throws IllegalArgumentException {
+        if(unit.getWorld() != world)
+            throw new IllegalArgumentException("The given unit does not belong to the recorded world.");
+        if(!unitIndices.containsKey(unit))
+            unitIndices.put(unit, unitIndices.size());
+    }
+
+    //endregion
+
+    /**
+     * Write all buffered records to the channel.
+     * @throws IOException When an I/O error occurs.
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Terminate the journal and close its channel.
+     * @effect The random generator is no longer seeded.
+     *          | Utils.clearRandomSeed()
+     */
+    @Override
+    public void close() throws IOException {
+        if(isClosed)
+            return;
+        isClosed = true;
+        try {
+            out.writeByte(END);
+            out.flush();
+        }finally{
+            channel.close();
+            Utils.clearRandomSeed();
+        }
+    }
+
+    private void startRecord(int type) throws IOException {
+        if(isClosed)
+            throw new IllegalStateException("This recorder is closed.");
+        out.writeByte(type);
+        nbCommands++;
+    }
+
+    private void writeCoordinates(int x, int y, int z) throws IOException {
+        out.writeInt(x);
+        out.writeInt(y);
+        out.writeInt(z);
+    }
+
+    private void writeUnit(Unit unit) throws IOException {
+        Integer index = unitIndices.get(unit);
+        if(index == null)
+            throw new IllegalArgumentException("The given unit is not registered in this journal.");
+        out.writeInt(index);
+    }
+
+    private void writeFaction(Faction faction) throws IOException {
+        List<Faction> factions = new ArrayList<>(world.getFactions());
+        int index = factions.indexOf(faction);
+        if(index < 0)
+            throw new IllegalArgumentException("The given faction does not belong to the recorded world.");
+        out.writeByte(index);
+    }
+
+    /**
+     * Write a reference to the given task. The first reference to a task is followed by its definition.
+     */
+    private void writeTask(Task task) throws IOException {
+        Integer index = taskIndices.get(task);
+        if(index != null){
+            out.writeInt(index);
+            return;
+        }
+        index = taskIndices.size();
+        taskIndices.put(task, index);
+        out.writeInt(index);
+        out.writeUTF(task.getName());
+        out.writeInt(task.getPriority());
+        Vector selectedCube = task.getSelectedCube();
+        out.writeBoolean(selectedCube != null);
+        if(selectedCube != null)
+            writeCoordinates(selectedCube.cubeX(), selectedCube.cubeY(), selectedCube.cubeZ());
+        ProgramCodec.write(task.getActivity(), out);
+    }
+}
@@ -0,0 +1,185 @@
+package hillbillies.model;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Immutable;
+import hillbillies.utils.Vector;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Class describing which units of a world are simulated at full detail. Units inside the
+ * viewport, extended by the detail radius, and focus units advance every tick. Other units
+ * collect the duration of the ticks and advance once every coarse step ticks, in sub-steps
+ * of at most MAX_STEP seconds. Each unit is advanced in another tick of the coarse step
+ * (depending on its id), which spreads the work over the ticks.
+ *
+ * The viewport is a box of cubes, its z-range holds the z-levels which are shown.
+ *
+ * @invar The coarse step is at least 1.
+ *          | getCoarseStep() >= 1
+ * @invar The detail radius is positive or zero.
+ *          | getDetailRadius() >= 0
+ * @author Kenneth & Bram
+ * @version 1.0
+ */
+public class LevelOfDetail {
+
+    /**
+     * Constant reflecting the longest duration a unit can advance with at once.
+     */
+    public static final double MAX_STEP = 0.2;
+
+    /**
+     * Variable registering the number of ticks a unit outside the detail region waits between updates.
+     */
+    private final int coarseStep;
+    /**
+     * Variable registering the distance around the viewport in which units are simulated at full detail.
+     */
+    private double detailRadius;
+    /**
+     * Variables registering the bounds of the viewport, in cube coordinates, inclusive.
+     */
+    private int minX = 0, minY = 0, minZ = 0, maxX = -1, maxY = -1, maxZ = -1;
+    /**
+     * Variable referencing the units which are always simulated at full detail.
+     */
+    private final Set<Unit> focusUnits = new LinkedHashSet<>();
+
+    /**
+     * Initialize a new LevelOfDetail with the given coarse step and detail radius, and an empty viewport.
+     * @param coarseStep The number of ticks a unit outside the detail region waits between updates.
+     * @param detailRadius The distance around the viewport in which units are simulated at full detail.
+     * @post | new.getCoarseStep() == coarseStep && new.getDetailRadius() == detailRadius
+     * @throws IllegalArgumentException
+     *          When the given coarse step is smaller than 1 or the given radius is negative.
+     *          | coarseStep < 1 || detailRadius < 0
+     */
+    public LevelOfDetail(int coarseStep, double detailRadius) throws IllegalArgumentException {
+        if(coarseStep < 1)
+            throw new IllegalArgumentException("The coarse step must be at least 1.");
+        this.coarseStep = coarseStep;
+        this.setDetailRadius(detailRadius);
+    }
+
+    /**
+     * Return the number of ticks a unit outside the detail region waits between updates.
+     */
+    @Basic @Immutable
+    public int getCoarseStep(){
+        return coarseStep;
+    }
+
+    /**
+     * Return the distance around the viewport in which units are simulated at full detail.
+     */
+    @Basic
+    public double getDetailRadius(){
+        return detailRadius;
+    }
+
+    /**
+     * Set the distance around the viewport in which units are simulated at full detail.
+     * @param detailRadius The new detail radius.
+     * @post | new.getDetailRadius() == detailRadius
+     * @throws IllegalArgumentException
+     *          When the given radius is negative.
+     *          | detailRadius < 0
+     */
+    public void setDetailRadius(double detailRadius) throws IllegalArgumentException {
+        if(!(detailRadius >= 0))
+            throw new IllegalArgumentException("The detail radius cannot be negative.");
+        this.detailRadius = detailRadius;
+    }
+
+    /**
+     * Set the viewport to the box of cubes between the given bounds, inclusive. When a maximum
+     * is smaller than its minimum, the viewport is empty.
+     * @post | new.isInViewport(new Vector(minX, minY, minZ)) == (minX <= maxX && minY <= maxY && minZ <= maxZ)
+     */
+    public void setViewport(int minX, int minY, int minZ, int maxX, int maxY, int maxZ){
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+    }
+
+    /**
+     * Check whether the given position lies in a cube of the viewport.
+     * @param position The position to check.
+     */
+    public boolean isInViewport(Vector position){
+        int x = position.cubeX(), y = position.cubeY(), z = position.cubeZ();
+        return minX <= x && x <= maxX && minY <= y && y <= maxY && minZ <= z && z <= maxZ;
+    }
+
+    /**
+     * Add the given unit to the focus units, which are always simulated at full detail.
+     * @param unit The unit to focus on.
+     * @post | new.getFocusUnits().contains(unit)
+     * @throws NullPointerException
+     *          When the given unit is not effective.
+     *          | unit == null
+     */
+    public void addFocusUnit(Unit unit) throws NullPointerException {
+        if(unit == null)
+            throw new NullPointerException("The focus unit must be effective.");
+        focusUnits.add(unit);
+    }
+
+    /**
+     * Remove the given unit from the focus units.
+     * @param unit The unit to remove.
+     * @post | !new.getFocusUnits().contains(unit)
+     */
+    public void removeFocusUnit(Unit unit){
+        focusUnits.remove(unit);
+    }
+
+    /**
+     * Return the units which are always simulated at full detail.
+     */
+    public Set<Unit> getFocusUnits(){
+        return Collections.unmodifiableSet(focusUnits);
+    }
+
+    /**
+     * Check whether the given unit is simulated at full detail.
+     * @param unit The unit to check.
+     * @return True if the unit is a focus unit, or its distance to the viewport along each axis
+     *          is at most the detail radius.
+     */
+    public boolean isDetailed(Unit unit){
+        if(focusUnits.contains(unit))
+            return true;
+        if(maxX < minX || maxY < minY || maxZ < minZ)
+            return false;
+        Vector position = unit.getPosition();
+        return distance(position.X(), minX, maxX) <= detailRadius &&
+                distance(position.Y(), minY, maxY) <= detailRadius &&
+                distance(position.Z(), minZ, maxZ) <= detailRadius;
+    }
+
+    /**
+     * Return the distance of the given coordinate to the cubes between the given bounds.
+     */
+    private static double distance(double coordinate, int min, int max){
+        if(coordinate < min)
+            return min - coordinate;
+        if(coordinate > max + 1)
+            return coordinate - max - 1;
+        return 0;
+    }
+
+    /**
+     * Check whether a unit with the given id which isn't simulated at full detail advances in the given tick.
+     * @return | result == ((tick + id) % getCoarseStep() == 0)
+     */
+    boolean isCoarseTick(long tick, long id){
+        return (tick + id) % coarseStep == 0;
+    }
+}
@@ -172,4 +172,9 @@ public class LobbyWorld implements IWorld {
 		throw new NoSuchMethodError("This method is not supported by the lobby.");
 	}
 
+	@Override
+	public int getLandingLevel(Vector position) {
+		throw new NoSuchMethodError("This method is not supported by the lobby.");
+	}
+
 }
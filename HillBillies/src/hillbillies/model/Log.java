@@ -1,5 +1,7 @@
 package hillbillies.model;
 
+import hillbillies.utils.Vector;
+
 /**
  * Class representing a Log
  * @author Kenneth & Bram
@@ -26,4 +28,13 @@ public class Log extends Material {
     public Log(World world, WorldObject owner){
         super(world, owner);
     }
+
+    /**
+     * Initialize a restored Log in the given world with the given owner and weight.
+     * @effect This new Log is initialized as a restored Material.
+     *       | super(world, owner, fallingPosition, weight)
+     */
+    Log(World world, WorldObject owner, Vector fallingPosition, int weight){
+        super(world, owner, fallingPosition, weight);
+    }
 }
@@ -50,6 +50,17 @@ public abstract class Material implements IWorldObject {
      * Variable registering the Material's position while it's falling.
      */
     private Vector fallingPosition;
+    /**
+     * Variable registering the terrain version of the world at which the position of this
+     * owned Material was last found valid, or -1 when it has to be checked again.
+     */
+    private long validatedTerrainVersion = -1;
+    /**
+     * Variable registering the z-coordinate of the cube this falling Material comes to rest
+     * in, and the terrain version of the world at which it was computed.
+     */
+    private int supportLevel = -1;
+    private long supportTerrainVersion = -1;
 
     /**
      * Initialize this new Material in the given world with the given owner.
@@ -83,33 +94,84 @@ public abstract class Material implements IWorldObject {
         this.weight = randInt(MIN_WEIGHT, MAX_WEIGHT);
     }
 
+    /**
+     * Initialize a restored Material in the given world with the given owner and weight.
+     * @param world The world for this restored Material.
+     * @param owner The owner for this restored Material, or null when it is falling.
+     * @param fallingPosition The position of this restored Material when it is falling.
+     * @param weight The weight for this restored Material.
+     * @pre The given weight is a valid weight for any Material.
+     * | canHaveAsWeight(weight)
+     * @effect The owner of this new Material is set to the given owner.
+     * | this.setOwner(owner)
+     * @post The weight of this new Material is equal to the given weight.
+     * | new.getWeight() == weight
+     * @post If the given owner is null, the position of this new Material is
+     * equal to the given falling position.
+     * | if(owner == null) new.getPosition().equals(fallingPosition)
+     * @throws NullPointerException When the world is not an effective world
+     * 			or when neither the owner nor the falling position are effective.
+     * |world == null || (owner == null && fallingPosition == null)
+     */
+    Material(World world, WorldObject owner, Vector fallingPosition, int weight)
+            throws IllegalArgumentException, IllegalStateException, NullPointerException{
+        if(world == null)
+            throw new NullPointerException("The given world is not effective");
+        if(owner == null && fallingPosition == null)
+            throw new NullPointerException("The given owner and falling position are not effective");
+        assert canHaveAsWeight(weight);
+        this.world = world;
+        this.fallingPosition = fallingPosition;
+        this.setOwner(owner);
+        world.addMaterial(this);
+        this.weight = weight;
+    }
+
     @Override
     public void advanceTime(double dt) {
     	if (isTerminated())
     		return;
-        if(!this.hasValidPosition() && this.getOwner()!=null){
-            this.fallingPosition = this.getPosition();
-            this.setOwner(null);
+        // The position of an owned Material only has to be checked again after the terrain changed
+        if(this.getOwner()!=null && this.getWorld().getTerrainVersion() != validatedTerrainVersion){
+            if(!this.hasValidPosition()){
+                this.fallingPosition = this.getPosition();
+                this.setOwner(null);
+            }else
+                validatedTerrainVersion = this.getWorld().getTerrainVersion();
         }
         if(this.getOwner() == null) {
             Vector cPos = this.getPosition();
-            Vector cPosCube = cPos.getCubeCenterCoordinates();
-            if (cPos.equals(cPosCube) && this.isValidPosition(cPos)) {
+            int supportLevel = this.getSupportLevel(cPos);
+            if (supportLevel == cPos.cubeZ() && cPos.equals(cPos.getCubeCenterCoordinates())) {
                 Cube newOwner = this.getWorld().getCube(cPos.getCubeCoordinates());
                 this.setOwner(newOwner);
             } else {
                 double speed = 3;
-                Vector nextPos = cPos.add(new Vector(0, 0, -speed * dt));
-                if (this.hasValidPosition() && ((cPosCube.isInBetween(2, cPos, nextPos) || cPos.Z() <= cPosCube.Z())))
-                    this.fallingPosition = cPosCube;
-                else if (nextPos.getCubeCenterCoordinates().isInBetween(2, cPos, nextPos) && isValidPosition(nextPos))
-                    this.fallingPosition = nextPos.getCubeCenterCoordinates();
-                else
-                    this.fallingPosition = nextPos;
+                double nextZ = cPos.Z() - speed * dt;
+                // The Material stops at the centre of the cube it comes to rest in
+                double supportZ = supportLevel * Cube.CUBE_SIDE_LENGTH + Cube.CUBE_SIDE_LENGTH / 2;
+                if (nextZ <= supportZ) {
+                    Vector cPosCube = cPos.getCubeCenterCoordinates();
+                    this.fallingPosition = new Vector(cPosCube.X(), cPosCube.Y(), supportZ);
+                } else
+                    this.fallingPosition = new Vector(cPos.X(), cPos.Y(), nextZ);
             }
         }
     }
 
+    /**
+     * Return the z-coordinate of the cube this Material comes to rest in when it falls from the
+     * given position. The level is looked up in the world once and again only after the terrain changed.
+     */
+    private int getSupportLevel(Vector position){
+        long terrainVersion = this.getWorld().getTerrainVersion();
+        if(terrainVersion != supportTerrainVersion || supportLevel > position.cubeZ()){
+            supportLevel = this.getWorld().getSupportLevel(position);
+            supportTerrainVersion = terrainVersion;
+        }
+        return supportLevel;
+    }
+
     //region Setters
     /**
      * Set the owner of this Material to the given owner.
@@ -132,10 +194,12 @@ public abstract class Material implements IWorldObject {
             throw new IllegalArgumentException("The given owner already has this material as an owned Material.");
         WorldObject oldOwner = this.getOwner();
         this.owner = owner;// Set new owner
+        this.validatedTerrainVersion = this.supportTerrainVersion = -1;
         if(oldOwner != null)
             oldOwner.removeOwnedMaterial(this);// Remove this material from old owner
         if(owner != null)
             owner.addOwnedMaterial(this);// Add this material to new owner
+        this.getWorld().notifyMaterialMoved();
     }
     //endregion
 
@@ -243,7 +307,7 @@ public abstract class Material implements IWorldObject {
      *          |               !getWorld().getCube(position.getCubeCoordinates().add(new Vector(0,0,-1)).isPassable()
      */
     private boolean isValidPosition(Vector position){
-        return position.cubeZ()==0 || !getWorld().getCube(position.getCubeCoordinates().add(new Vector(0,0,-1))).isPassable();
+        return getWorld().isLowerSolid(position);
     }
     //endregion
 
@@ -1,10 +1,11 @@
 package hillbillies.model;
 
 import be.kuleuven.cs.som.annotate.*;
+import hillbillies.activities.None;
+import hillbillies.utils.Vector;
 
 import java.util.*;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 /**
  * Class representing a Faction's Task Scheduler
@@ -39,6 +40,20 @@ public class Scheduler implements Iterable<Task> {
      * | )
      */
     private final SortedMap<Integer, HashSet<Task>> tasks = new TreeMap<>(Collections.reverseOrder());
+    /**
+     * Variable referencing a sorted map collecting the tasks of this
+     * scheduler which are not assigned to a unit, grouped by their
+     * priority. Within a priority, the tasks are in the same order
+     * as in the map collecting all the tasks.
+     *
+     * @invar Each task in the referenced map is a task of this scheduler
+     * without an assigned unit, and each such task is in the map.
+     * | for each task in Task:
+     * |    unassignedTasks.containsKey(task.getPriority()) &&
+     * |    unassignedTasks.get(task.getPriority()).contains(task) ==
+     * |        (hasAsTask(task) && task.getAssignedUnit() == null)
+     */
+    private final SortedMap<Integer, HashSet<Task>> unassignedTasks = new TreeMap<>(Collections.reverseOrder());
     /**
      * Variable registering the current number of tasks.
      */
@@ -191,9 +206,9 @@ public class Scheduler implements Iterable<Task> {
      */
     public void addTask(@Raw Task task) {
     	assert(task != null) && (!task.hasAsScheduler(this));
-        if(!tasks.containsKey(task.getPriority()))
-            tasks.put(task.getPriority(), new HashSet<>());
-        tasks.get(task.getPriority()).add(task);
+        index(tasks, task.getPriority(), task);
+        if(task.getAssignedUnit()==null)
+            index(unassignedTasks, task.getPriority(), task);
         task.addScheduler(this);
         this.nbTasks++;
     }
@@ -223,10 +238,8 @@ public class Scheduler implements Iterable<Task> {
     	assert this.hasAsTask(task) && (task.hasAsScheduler(this));
         if(task.getAssignedUnit()!=null && task.getAssignedUnit().getFaction().getScheduler()==this)
             deschedule(task);// Deschedule the task
-        HashSet<Task> taskSet = tasks.get(task.getPriority());
-        taskSet.remove(task);
-        if(taskSet.isEmpty())
-            tasks.remove(task.getPriority());
+        unindex(tasks, task.getPriority(), task);
+        unindex(unassignedTasks, task.getPriority(), task);
         task.removeScheduler(this);
         this.nbTasks--;
     }
@@ -263,10 +276,11 @@ public class Scheduler implements Iterable<Task> {
      *          | condition == null
      */
     public Collection<Task> getAllTasksSatisfying(Predicate<Task> condition) throws NullPointerException{
-        Set<Task> result = new HashSet<>();
-        for(Map.Entry<Integer,HashSet<Task>> taskSet : tasks.entrySet()){
-            result.addAll(taskSet.getValue().stream().filter(condition).collect(Collectors.toList()));
-        }
+        Set<Task> result = new LinkedHashSet<>();
+        for(HashSet<Task> taskSet : tasks.values())
+            for(Task task : taskSet)
+                if(condition.test(task))
+                    result.add(task);
         return result;
     }
 
@@ -290,22 +304,46 @@ public class Scheduler implements Iterable<Task> {
      *          | condition == null
      */
     public Task getTaskSatisfying(Predicate<Task> condition) throws NullPointerException{
-        for(Map.Entry<Integer, HashSet<Task>> taskSet : tasks.entrySet()) {
-            Task result = taskSet.getValue().stream().filter(condition).findFirst().orElse(null);
-            if(result!=null)
-                return result;
-        }
+        for(HashSet<Task> taskSet : tasks.values())
+            for(Task task : taskSet)
+                if(condition.test(task))
+                    return task;
         return null;
     }
 
     /**
      * @return The task with highest priority in this scheduler which is
      *          not currently assigned to a Unit.
-     * @effect Get the highest priority task which has no assigned Unit
-     *          | getTaskSatisfying(task -> task.getAssignedUnit()==null)
+     * @return The highest priority task which has no assigned Unit
+     *          | result == getTaskSatisfying(task -> task.getAssignedUnit()==null)
+     * @note The unassigned tasks are indexed separately, so this task is found
+     *       without visiting the assigned tasks.
      */
     public Task getHighestPriorityAssignableTask(){
-        return getTaskSatisfying(task -> task.getAssignedUnit()==null);
+        if(unassignedTasks.isEmpty())
+            return null;
+        return unassignedTasks.get(unassignedTasks.firstKey()).iterator().next();
+    }
+
+    /**
+     * Return the number of tasks in this scheduler which are not assigned to a unit.
+     * @return | result == getAllTasksSatisfying(task -> task.getAssignedUnit()==null).size()
+     */
+    public int getNbAssignableTasks(){
+        int nbAssignableTasks = 0;
+        for(HashSet<Task> taskSet : unassignedTasks.values())
+            nbAssignableTasks += taskSet.size();
+        return nbAssignableTasks;
+    }
+
+    /**
+     * Return the tasks in this scheduler which are not assigned to a unit, in
+     * decreasing order of priority. The returned iterable is a view on this
+     * scheduler, its iterators don't copy the tasks and don't support removal.
+     * @return | for each task in result : hasAsTask(task) && task.getAssignedUnit()==null
+     */
+    public Iterable<Task> getAssignableTasks(){
+        return () -> new TaskIterator(unassignedTasks);
     }
 
     /**
@@ -354,6 +392,85 @@ public class Scheduler implements Iterable<Task> {
         }
     }
 
+    /**
+     * Assign the unassigned tasks of this scheduler to the idle units of its faction. Tasks
+     * are assigned in decreasing order of priority, each task to the idle unit closest to its
+     * selected cube. Only as many tasks as there are idle units are considered, so a pass
+     * compares at most the square of the number of idle units of the faction.
+     * @return The number of tasks which are assigned.
+     * @effect Each considered task is scheduled for the idle unit with the smallest distance
+     *          to its selected cube, earlier units of the faction winning ties.
+     *          | for each task in the first card(idle units) tasks of getAssignableTasks():
+     *          |   schedule(task, unit with minimal getDistance(unit, task))
+     * @note The distance is a lower bound of the number of steps of the path to the selected
+     *       cube, no path is searched for. Whether the cube can be reached is only known once
+     *       the task moves its unit.
+     */
+    public int assignTasks(){
+        if(unassignedTasks.isEmpty())
+            return 0;
+        List<Unit> idleUnits = new ArrayList<>();
+        for(Unit unit : faction.getUnits())
+            if(isIdle(unit))
+                idleUnits.add(unit);
+        if(idleUnits.isEmpty())
+            return 0;
+        List<Task> candidates = new ArrayList<>(idleUnits.size());// Scheduling changes the index
+        for(Task task : getAssignableTasks()){
+            candidates.add(task);
+            if(candidates.size() == idleUnits.size())
+                break;
+        }
+        int nbAssigned = 0;
+        for(Task task : candidates){
+            Unit nearest = null;
+            int nearestDistance = Integer.MAX_VALUE;
+            for(Unit unit : idleUnits){
+                int distance = getDistance(unit, task);
+                if(distance < nearestDistance){
+                    nearest = unit;
+                    nearestDistance = distance;
+                }
+            }
+            try{
+                schedule(task, nearest);
+            }catch(IllegalStateException e){
+                continue;// The task is not well-formed and removed from this scheduler
+            }
+            if(nearest.getTask() == task){
+                idleUnits.remove(nearest);
+                nbAssigned++;
+            }
+        }
+        return nbAssigned;
+    }
+
+    /**
+     * Check whether the given unit is waiting for a task of this scheduler.
+     * @return | result == unit.getFaction().getScheduler() == this && unit.getTask() == null &&
+     *         |    unit.isDefaultActive() && unit.isExecuting(None.class) && !unit.isTerminated()
+     */
+    private boolean isIdle(Unit unit){
+        return !unit.isTerminated() && unit.getFaction().getScheduler() == this && unit.getTask() == null &&
+                unit.isDefaultActive() && unit.isExecuting(None.class);
+    }
+
+    /**
+     * Return the distance between the cube of the given unit and the selected cube of the given
+     * task, which is the smallest number of steps between both cubes. The distance is zero for
+     * tasks without a selected cube.
+     * @return | if(task.getSelectedCube() == null) result == 0
+     *         | else result == max(abs(difference in each coordinate of both cubes))
+     */
+    private static int getDistance(Unit unit, Task task){
+        Vector target = task.getSelectedCube();
+        if(target == null)
+            return 0;
+        Vector cube = unit.getPosition().getCubeCoordinates();
+        return Math.max(Math.abs(cube.cubeX() - target.cubeX()),
+                Math.max(Math.abs(cube.cubeY() - target.cubeY()), Math.abs(cube.cubeZ() - target.cubeZ())));
+    }
+
     /**
      * Deschedule the given task
      * @param task The task to deschedule
@@ -388,42 +505,96 @@ public class Scheduler implements Iterable<Task> {
     public void notifyTaskPriorityChange(int oldPriority, Task task){
         if(task==null || !this.tasks.containsKey(oldPriority) || !this.tasks.get(oldPriority).contains(task))
             throw new IllegalArgumentException("The given task could not be found inside the TreeMap.");
-        HashSet<Task> taskSet = tasks.get(oldPriority);
-        taskSet.remove(task);
+        unindex(tasks, oldPriority, task);
+        index(tasks, task.getPriority(), task);
+        if(unindex(unassignedTasks, oldPriority, task))
+            index(unassignedTasks, task.getPriority(), task);
+    }
+
+    /**
+     * Method that every task that is part of this scheduler should
+     * call once it is assigned to a unit or once its unit is unassigned.
+     * @param task The task of which the assigned unit has changed
+     * @post The given task is found as an assignable task if and only if it
+     *       has no assigned unit.
+     *       | getTaskSatisfying(t -> t.getAssignedUnit()==null && t==task) ==
+     *       |      (task.getAssignedUnit()==null ? task : null)
+     * @throws IllegalArgumentException
+     *          When the given task is not a task of this scheduler.
+     *          | task==null || !hasAsTask(task)
+     */
+    void notifyTaskAssignmentChange(Task task) throws IllegalArgumentException {
+        if(task==null || !this.hasAsTask(task))
+            throw new IllegalArgumentException("The given task could not be found inside the TreeMap.");
+        if(task.getAssignedUnit()==null)
+            index(unassignedTasks, task.getPriority(), task);
+        else
+            unindex(unassignedTasks, task.getPriority(), task);
+    }
+
+    /**
+     * Add the given task with the given priority to the given map of tasks grouped by priority.
+     */
+    private static void index(SortedMap<Integer, HashSet<Task>> taskMap, int priority, Task task){
+        HashSet<Task> taskSet = taskMap.get(priority);
+        if(taskSet==null) {
+            taskSet = new LinkedHashSet<>();
+            taskMap.put(priority, taskSet);
+        }
+        taskSet.add(task);
+    }
+
+    /**
+     * Remove the given task with the given priority from the given map of tasks grouped by priority.
+     * @return True if the given map contained the given task.
+     */
+    private static boolean unindex(SortedMap<Integer, HashSet<Task>> taskMap, int priority, Task task){
+        HashSet<Task> taskSet = taskMap.get(priority);
+        if(taskSet==null || !taskSet.remove(task))
+            return false;
         if(taskSet.isEmpty())
-            tasks.remove(oldPriority);
-        if(!tasks.containsKey(task.getPriority()))
-            tasks.put(task.getPriority(), new HashSet<>());
-        tasks.get(task.getPriority()).add(task);
+            taskMap.remove(priority);
+        return true;
     }
 
     /**
-     * Returns an iterator over elements of type {@code Task}.
+     * Returns an iterator over elements of type {@code Task}, in decreasing
+     * order of priority. The iterator doesn't copy the tasks of this scheduler
+     * and doesn't support removal.
      *
      * @return an Iterator.
      */
     @Override
     public Iterator<Task> iterator() {
-        return new Iterator<Task>() {
+        return new TaskIterator(tasks);
+    }
 
-            private Iterator<HashSet<Task>> taskSetIterator = tasks.values().iterator();
-            private Iterator<Task> taskIterator;
+    /**
+     * Class iterating over the tasks of a map of tasks grouped by priority.
+     */
+    private static class TaskIterator implements Iterator<Task> {
 
-            @Override
-            public boolean hasNext() {
-                if(tasks.isEmpty()) return false;
-                return taskSetIterator.hasNext() || taskIterator.hasNext();
-            }
+        private final Iterator<HashSet<Task>> taskSetIterator;
+        private Iterator<Task> taskIterator = Collections.emptyIterator();
 
-            @Override
-            public Task next() throws NoSuchElementException {
-                if(!hasNext())
-                    throw new NoSuchElementException("The iterator has no more elements to iterate over.");
-                if(taskIterator==null || !taskIterator.hasNext())
-                    taskIterator = taskSetIterator.next().iterator();
-                return taskIterator.next();
-            }
-        };
+        private TaskIterator(SortedMap<Integer, HashSet<Task>> taskMap){
+            this.taskSetIterator = taskMap.values().iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            // Sets are removed from the map once empty, so each next set has a next task
+            return taskIterator.hasNext() || taskSetIterator.hasNext();
+        }
+
+        @Override
+        public Task next() throws NoSuchElementException {
+            if(!hasNext())
+                throw new NoSuchElementException("The iterator has no more elements to iterate over.");
+            if(!taskIterator.hasNext())
+                taskIterator = taskSetIterator.next().iterator();
+            return taskIterator.next();
+        }
     }
 
 }
@@ -1,12 +1,13 @@
 package hillbillies.model;
 
 import be.kuleuven.cs.som.annotate.*;
-import hillbillies.part3.programs.VariableCollection;
+import hillbillies.activities.None;
+import hillbillies.part3.programs.Frame;
+import hillbillies.part3.programs.Program;
 import hillbillies.part3.programs.expressions.Expression;
 
 import java.util.*;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.function.Predicate;
 
 import hillbillies.part3.programs.statements.Statement;
 import hillbillies.utils.Vector;
@@ -62,7 +63,7 @@ public class Task implements Comparable<Task> {
      * | ( (scheduler != null) &&
      * | (! scheduler.isTerminated()) )
      */
-    private final Set<Scheduler> schedulers = new HashSet<>();
+    private final Set<Scheduler> schedulers = new LinkedHashSet<>();
 
     /**
      * Initialize this new Task with given name, priority and activity.
@@ -199,12 +200,23 @@ public class Task implements Comparable<Task> {
      *
      * @param activity
      * The activity to check.
-     * @return
-     * | result ==
+     * @return False if the given activity is well-formed, but uses a variable with values
+     * of different types. Activities which are not well-formed are only rejected once
+     * the task is scheduled.
+     * | if(activity != null && activity.check())
+     * |    result == (activity.getProgram() doesn't throw IllegalArgumentException)
+     * | else result == true
      */
     @Raw
     public boolean canHaveAsActivity(Statement activity) {
-        return true;
+        if(activity == null || !activity.check())
+            return true;
+        try {
+            activity.getProgram();// Compiling resolves the types of all variables
+            return true;
+        }catch(IllegalArgumentException e){
+            return false;
+        }
     }
 
     /**
@@ -254,11 +266,15 @@ public class Task implements Comparable<Task> {
         if (! isValidAssignedUnit(assignedUnit))
             throw new IllegalArgumentException();
         this.assignedUnit = assignedUnit;
+        for(Scheduler s : this.schedulers)
+            s.notifyTaskAssignmentChange(this);
         try {
             if (assignedUnit != null)
                 this.run();
         }catch(IllegalStateException e){
             this.assignedUnit = null;// Revert changes
+            for(Scheduler s : this.schedulers)
+                s.notifyTaskAssignmentChange(this);
             for(Scheduler s : this.schedulers)
                 s.removeTask(this);// Remove the task from all schedulers
             throw e;
@@ -372,7 +388,7 @@ public class Task implements Comparable<Task> {
     }
 
     public Set<Scheduler> getSchedulers(){
-        return new HashSet<>(schedulers);
+        return new LinkedHashSet<>(schedulers);
     }
 
     /**
@@ -423,7 +439,7 @@ public class Task implements Comparable<Task> {
             throw new IllegalStateException("This task's activity is not well-formed.");
         if(runner!=null)
             throw new IllegalStateException("This task is already running.");
-        runner = new TaskRunner();
+        runner = new TaskRunner(this.getActivity().getProgram());
     }
 
     public TaskRunner getRunner(){
@@ -452,20 +468,42 @@ public class Task implements Comparable<Task> {
 
     private TaskRunner runner;
 
+    /**
+     * Class executing the program of a task for its assigned unit. The program is shared by all
+     * runners of the same activity, the runner only keeps a frame with the program counter, the
+     * operand stack and the variables of its own execution, so runners are cheap to create and
+     * resuming a runner doesn't replay any part of the statement tree.
+     *
+     * A runner only suspends its program at two park points: at the start of a statement once its
+     * instruction budget for the tick is spent, and after an action once its unit started the
+     * requested activity. A runner parked on its budget is due again in the next tick, a runner
+     * parked on an activity is due once its unit finished that activity. Due runners are resumed
+     * when their unit advances its default behaviour, so they are resumed once per tick in the
+     * order in which the world advances its units, and a runner which isn't due isn't visited.
+     *
+     * @note Each runner executes on the thread advancing the world. Running programs as blocking
+     *       code on threads of their own would make the order of their effects depend on the
+     *       thread scheduler, and their suspended state couldn't be saved in world snapshots.
+     */
     public class TaskRunner{
 
-        private final VariableCollection assignedVariables;
-        private final LinkedList<Integer> savedState;
+        private final Frame frame;
         private boolean isStopping, isPausing, isPaused;
 
-        private TaskRunner(){
-            this.assignedVariables = new VariableCollection();
-            this.savedState = new LinkedList<>();
+        private TaskRunner(Program program){
+            this.frame = new Frame(program);
             this.isStopping = false;
             this.isPausing = false;
             this.isPaused = false;
         }
 
+        /**
+         * Return the task whose program this runner executes.
+         */
+        public Task getTask(){
+            return Task.this;
+        }
+
         public Unit getExecutingUnit(){
             return Task.this.assignedUnit;
         }
@@ -476,52 +514,66 @@ public class Task implements Comparable<Task> {
 
         public Cube getSelectedCube(){ return getExecutingWorld().getCube(Task.this.getSelectedCube()); }
 
-        public <T> void assignVariable(String variableName, T value) throws ClassCastException{
-            if(!this.assignedVariables.contains(variableName))
-                this.assignedVariables.add(variableName, value);
-            else {
-                this.assignedVariables.assign(variableName, value);
-            }
+        public <T> void assignVariable(String variableName, T value) throws IllegalArgumentException, ClassCastException{
+            this.frame.assignVariable(variableName, value);
         }
 
         public boolean isVariableAssigned(String variableName){
-            return this.assignedVariables.contains(variableName);
+            return this.frame.isVariableAssigned(variableName);
         }
 
         public <T> T getVariableValue(String variableName) throws IllegalArgumentException, ClassCastException{
-            if(!this.isVariableAssigned(variableName))
-                throw new IllegalArgumentException("This variable isn't assigned.");
-            return this.assignedVariables.getValue(variableName);
+            return this.frame.getVariableValue(variableName);
         }
 
-        public boolean breakLoop = false;
-
         public void pause(){
             this.isPausing = true;
         }
 
         public void resume(){
             this.isPaused = false;
-            this.resumeCondition = unit -> true;
+            this.isWaiting = false;
         }
 
         public void stop(){
             this.isStopping = true;
         }
 
-        private boolean isPaused(){ return this.isPaused; }
+        boolean isPaused(){ return this.isPaused; }
 
         public boolean isPausing(){ return this.isPausing; }
 
         public boolean isStopping(){ return this.isStopping; }
 
+        /**
+         * Check whether this runner continues its program the next time it is advanced. A runner
+         * isn't due while it waits for its unit to finish the activity its program requested.
+         * @return | result == !isWaiting()
+         */
+        public boolean isDue(){
+            return !this.isWaiting();
+        }
 
-        public void advanceTask(double dt){
-            if(this.isPaused() && this.resumeCondition.test(this.getExecutingUnit()))
+        /**
+         * Execute the program of this runner with the unit budget of the world of its unit,
+         * unless the runner is paused. The budget the program doesn't spend is left to the
+         * programs of the other units.
+         */
+        public void advanceTask(){
+            if(this.isPaused() && !this.isWaiting)
                 this.resume();
             if(!this.isPaused()) {
-                this.dt = dt;
-                Task.this.getActivity().start(Task.this);
+                World world = (World)this.getExecutingWorld();
+                ExecutionBudget budget = world.getExecutionBudget();
+                this.allocatedBudget = budget.allocate(this.getExecutingUnit());
+                int remaining;
+                try {
+                    remaining = this.frame.execute(this, budget, this.allocatedBudget, world.getProfiler());
+                }catch(ClassCastException e){
+                    Task.this.finish();
+                    throw new IllegalArgumentException("Illegal use of a variable of another type.", e);
+                }
+                budget.release(this.allocatedBudget, remaining);
                 if (this.isStopping()) {
                     // Program called stop => deschedule this task
                     Task.this.getAssignedUnit().getFaction().getScheduler().deschedule(Task.this);
@@ -536,41 +588,132 @@ public class Task implements Comparable<Task> {
             }
         }
 
-        public double getDt(){
-            return dt;
+        /**
+         * Variable registering the budget allocated to the program of this runner in the current tick.
+         */
+        private int allocatedBudget = 0;
+
+        /**
+         * Pause this runner because its program spent the budget allocated to it in this tick.
+         * @effect | pause()
+         * @effect | ((World)getExecutingWorld()).getExecutionBudget().registerExhausted(allocatedBudget)
+         */
+        public void exhaustBudget(){
+            this.pause();
+            ((World)this.getExecutingWorld()).getExecutionBudget().registerExhausted(this.allocatedBudget);
         }
 
-        public void consumeDt(){
-            this.dt -= 0.001;
-            if(this.dt<0d)
-                this.dt = 0d;
+        /**
+         * Return the value the given search expression had when this runner evaluated it
+         * earlier in the same tick, while the terrain, units and materials of the world
+         * didn't change. Search expressions have no sub expressions, so all search expressions
+         * of the same class have the same value for the unit of this runner.
+         * @param expression The search expression to look up.
+         * @return The value of the given expression, or null when it must be evaluated again.
+         * @effect The lookup is registered in the world of the unit of this runner.
+         *          | ((World)getExecutingWorld()).registerSearchLookup(result != null)
+         */
+        public Object recallSearch(Expression<?> expression){
+            World world = (World)this.getExecutingWorld();
+            if(world.getTick() != this.searchTick || world.getTerrainVersion() != this.searchTerrainVersion
+                    || world.getObjectVersion() != this.searchObjectVersion){
+                if(this.searchResults != null)
+                    this.searchResults.clear();
+                this.searchTick = world.getTick();
+                this.searchTerrainVersion = world.getTerrainVersion();
+                this.searchObjectVersion = world.getObjectVersion();
+            }
+            Object value = this.searchResults == null ? null : this.searchResults.get(expression.getClass());
+            world.registerSearchLookup(value != null);
+            return value;
         }
 
-        private double dt = 0d;
+        /**
+         * Remember the value of the given search expression for the rest of the tick.
+         * @param expression The evaluated search expression.
+         * @param value The value of the given expression.
+         * @post | recallSearch(expression) == value, as long as the tick and world don't change
+         */
+        public void memorizeSearch(Expression<?> expression, Object value){
+            if(this.searchResults == null)
+                this.searchResults = new HashMap<>();// Most programs never search, allocate on first use
+            this.searchResults.put(expression.getClass(), value);
+        }
 
-        public void saveState(int index){
-            if(this.savedState.isEmpty())
-                // If it's the first item to add, it's the last statement in stack, so when resuming we should start
-                // at the statement's next child
-                this.savedState.addFirst(++index);
-            else
-                this.savedState.addFirst(index);
+        /**
+         * Variable referencing the values of the search expressions evaluated in the current tick,
+         * by the class of the expression.
+         */
+        private Map<Class<?>, Object> searchResults = null;
+        /**
+         * Variables registering the tick and versions of the world the memorized search values belong to.
+         */
+        private long searchTick = -1, searchTerrainVersion = -1, searchObjectVersion = -1;
+
+        /**
+         * Pause this runner until its unit has finished the activity the program requested.
+         * The runner is woken up by its unit when the unit becomes idle again, the runner
+         * doesn't check its unit while it waits.
+         * @effect | pause()
+         * @post The runner waits when its unit isn't idle.
+         *          | new.isWaiting() == !getExecutingUnit().isExecuting(None.class)
+         */
+        public void waitForActivity(){
+            this.pause();
+            // The requested activity may already be finished, no wake-up will follow then
+            this.isWaiting = !this.getExecutingUnit().isExecuting(None.class);
         }
 
-        public int resumeState(){
-            return this.savedState.removeFirst();
+        /**
+         * Variable registering whether this runner waits for its unit to finish its activity.
+         */
+        private boolean isWaiting = false;
+
+        /**
+         * Wake up this runner when it is waiting for its unit, which just finished its activity.
+         * @post | !new.isWaiting()
+         */
+        void notifyActivityFinished(){
+            this.isWaiting = false;
         }
 
-        public boolean isResuming(){
-            return !this.savedState.isEmpty();
+        /**
+         * Return the index of the next instruction of the program of this runner.
+         */
+        int getProgramCounter(){
+            return this.frame.getProgramCounter();
         }
 
-        public void waitFor(Predicate<Unit> resumeCondition){
-            this.pause();
-            this.resumeCondition = resumeCondition;
+        /**
+         * Check whether this runner is paused and waits for its unit to finish its activity.
+         */
+        boolean isWaiting(){
+            return this.isPaused() && this.isWaiting;
         }
 
-        private Predicate<Unit> resumeCondition = unit -> true;
+        /**
+         * Return the names of the variables assigned by the program of this runner.
+         */
+        Set<String> getVariableNames(){
+            return this.frame.getVariableNames();
+        }
+
+        /**
+         * Restore the execution state of this runner between two calls of advanceTask.
+         * @param programCounter The index of the next instruction of the program.
+         * @param isPaused Whether this runner is paused.
+         * @param isWaiting Whether this runner waits for its unit to finish its activity.
+         * @post The program counter, pause flag and waiting flag of this runner are restored.
+         *          | new.getProgramCounter() == programCounter && new.isPaused() == isPaused
+         *          | new.isWaiting() == (isPaused && isWaiting)
+         * @throws IndexOutOfBoundsException
+         *          When the given program counter is outside the program of this runner.
+         */
+        void restore(int programCounter, boolean isPaused, boolean isWaiting) throws IndexOutOfBoundsException {
+            this.frame.setProgramCounter(programCounter);
+            this.isPaused = isPaused;
+            this.isWaiting = isPaused && isWaiting;
+        }
 
     }
 }
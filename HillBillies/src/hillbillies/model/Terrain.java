@@ -15,6 +15,12 @@ public enum Terrain {
     WOOD(2,false),
     WORKSHOP(3,true);
 
+    /**
+     * Constant referencing all terrain types, indexed by their id. Enum.values() returns a new
+     * array for each call, while terrain lookups happen for each moving unit in each tick.
+     */
+    private static final Terrain[] VALUES = values();
+
     /**
      * The id of the terrain type
      */
@@ -58,6 +64,6 @@ public enum Terrain {
      * @return The corresponding terrain type
      */
     public static Terrain fromId(int id){
-        return Terrain.values()[id];
+        return VALUES[id];
     }
 }
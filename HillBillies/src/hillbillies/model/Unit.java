@@ -667,6 +667,7 @@ public class Unit extends WorldObject {
 	@Raw
 	public void setHitpoints(int hitpoints) {
 		assert !isTerminated() && isValidHitpoints(hitpoints, this.getWeight(), this.getToughness());
+		this.wake();
 		this.hitpoints = hitpoints;
 	}
 
@@ -784,6 +785,7 @@ public class Unit extends WorldObject {
 	@Raw
 	public void setStamina(int stamina) {
 		assert isValidStamina(stamina, this.getWeight(), this.getToughness());
+		this.wake();
 		this.stamina = stamina;
 	}
 
@@ -828,8 +830,10 @@ public class Unit extends WorldObject {
 	 */
 	@Raw
 	public void setToughness(int toughness) {
-		if (isValidToughness(toughness))
+		if (isValidToughness(toughness)) {
+			this.wake();
 			this.toughness = toughness;
+		}
 	}
 
 	/**
@@ -845,8 +849,10 @@ public class Unit extends WorldObject {
 	 */
 	@Raw
 	public void setWeight(int weight) {
-		if (isValidWeight(weight, this.getStrength(), this.getAgility()))
+		if (isValidWeight(weight, this.getStrength(), this.getAgility())) {
+			this.wake();
 			this.weight = weight;
+		}
 	}
 	//endregion
 
@@ -860,7 +866,7 @@ public class Unit extends WorldObject {
 	 * @throws IllegalArgumentException
 	 * 			When the given name is invalid or the given world has
 	 * 			reached its maximum number of units.
-	 * 			| !isValidName(name) || world.getNbUnits() >= world.MAX_UNITS	 
+	 * 			| !isValidName(name) || world.getNbUnits() >= world.getMaxUnits()	 
 	 */
 	public Unit(IWorld world) throws IllegalArgumentException{
 		this(world,randInt(INITIAL_MIN_TOUGHNESS, INITIAL_MAX_TOUGHNESS),
@@ -877,7 +883,7 @@ public class Unit extends WorldObject {
 	 * @throws IllegalArgumentException
 	 * 			When the given name is invalid or the given world has
 	 * 			reached its maximum number of units.
-	 * 			| !isValidName(name) || world.getNbUnits() >= world.MAX_UNITS	 
+	 * 			| !isValidName(name) || world.getNbUnits() >= world.getMaxUnits()	 
 	 */
 	private Unit(IWorld world, int toughness, int weight) throws IllegalArgumentException{
 		this(world, "Unnamed Unit", world.getSpawnPosition(), randInt(INITIAL_MIN_STRENGTH, INITIAL_MAX_STRENGTH),
@@ -894,7 +900,7 @@ public class Unit extends WorldObject {
 	 * @throws IllegalArgumentException
 	 * 			When the given name is invalid or the given world has
 	 * 			reached its maximum number of units.
-	 * 			| !isValidName(name) || world.getNbUnits() >= world.MAX_UNITS
+	 * 			| !isValidName(name) || world.getNbUnits() >= world.getMaxUnits()
      * @throws NullPointerException if the given world or position are not effective.
      * 			|world == null || position==null
      * @throws IllegalArgumentException * The given position is not a valid position for any
@@ -919,7 +925,7 @@ public class Unit extends WorldObject {
 	 * @throws IllegalArgumentException
 	 * 			When the given name is invalid or the given world has
 	 * 			reached its maximum number of units.
-	 * 			| !isValidName(name) || world.getNbUnits() >= world.MAX_UNITS 
+	 * 			| !isValidName(name) || world.getNbUnits() >= world.getMaxUnits() 
      * @throws NullPointerException if the given world or position are not effective.
      * 			|world == null || position==null
      * @throws IllegalArgumentException * The given position is not a valid position for any
@@ -1007,7 +1013,7 @@ public class Unit extends WorldObject {
 	 * @throws IllegalArgumentException
 	 * 			When the given name is invalid or the given world has
 	 * 			reached its maximum number of units.
-	 * 			| !isValidName(name) || world.getNbUnits() >= world.MAX_UNITS
+	 * 			| !isValidName(name) || world.getNbUnits() >= world.getMaxUnits()
      * @throws NullPointerException if the given world or position are not effective.
      * 			|world == null || position==null
      * @throws IllegalArgumentException * The given position is not a valid position for any
@@ -1016,7 +1022,7 @@ public class Unit extends WorldObject {
 	 */
 	public Unit(IWorld world, String name, Vector position, int strength, int agility, int toughness, int weight, int stamina, int hitpoints) throws IllegalArgumentException {
 		super(world, position.add(Cube.CUBE_SIDE_LENGTH/2));
-		if(world.getClass() != LobbyWorld.class && world.getNbUnits() >= World.MAX_UNITS)//TODO ik heb effe lobbyworld omzeild, ma als we abstract maken, mag dit eventueel weg
+		if(world.getClass() != LobbyWorld.class && world.getNbUnits() >= world.getMaxUnits())//TODO ik heb effe lobbyworld omzeild, ma als we abstract maken, mag dit eventueel weg
 			throw new IllegalArgumentException("The given world has reached its maximum number of units.");
 		world.addUnit(this);
 
@@ -1053,6 +1059,48 @@ public class Unit extends WorldObject {
 		this.getCurrentActivity().start();
 	}
 
+	/**
+	 * Initialize a restored Unit in the given world with the given faction and properties. The
+	 * position and properties are not checked against the current state of the world, as they
+	 * are restored from a consistent snapshot.
+	 * @param world The world this restored Unit belongs to.
+	 * @param faction The faction of this restored Unit.
+	 * @param name The name of this restored Unit.
+	 * @param position The exact position of this restored Unit.
+	 * @pre The given properties are valid properties for any Unit.
+	 * @post This Unit belongs to the given faction.
+	 * 			| new.getFaction() == faction
+	 * @post The current activity of this Unit is NONE, until its activities are restored
+	 * 			by restoreActivities.
+	 * @throws IllegalArgumentException
+	 * 			When the given name is invalid or the given world has
+	 * 			reached its maximum number of units.
+	 * 			| !isValidName(name) || world.getNbUnits() >= world.getMaxUnits()
+	 */
+	@Raw
+	Unit(World world, Faction faction, String name, Vector position, int strength, int agility, int toughness,
+		 int weight, int stamina, int hitpoints, float orientation, int experiencePoints, double restTimer)
+			throws IllegalArgumentException {
+		super(world, position, false);
+		if(world.getNbUnits() >= world.getMaxUnits())
+			throw new IllegalArgumentException("The given world has reached its maximum number of units.");
+		this.Id = ID;
+		ID++;
+		this.setName(name);
+		this.strength = strength;
+		this.agility = agility;
+		this.toughness = toughness;
+		this.weight = weight;
+		this.stamina = stamina;
+		this.hitpoints = hitpoints;
+		this.setOrientation(orientation);
+		this.experiencePoints = experiencePoints;
+		this.restTimer = restTimer;
+		this.activityStack = new Stack<>();
+		this.activityStack.push(NONE);
+		world.addUnit(this, faction);
+	}
+
 	//endregion
 
 	//region AdvanceTime
@@ -1066,6 +1114,7 @@ public class Unit extends WorldObject {
 			return;
 		if(dt<0 || dt>0.2)
 			throw new IllegalArgumentException("The parameter dt must be in the range [0;0.2]");
+		this.wake();
 		// Defensively without documentation
 		if (!isFalling() && !validatePosition(getPosition())){
 			this.requestNewActivity(new Fall(this));
@@ -1106,7 +1155,7 @@ public class Unit extends WorldObject {
 	protected boolean validatePosition(Vector position) {
 		IWorld world = this.getWorld();
 		if(world instanceof LobbyWorld) return true;
-		if(world.isCubePassable(position.getCubeCoordinates())){
+		if(world.isCubePassable(position)){
 			if(world.isAdjacentSolid(position))
 				return true;
 			if(this.getCurrentActivity() != null && isFalling())
@@ -1115,6 +1164,17 @@ public class Unit extends WorldObject {
 		return false;
 	}
 
+	/**
+	 * Move this unit to the set of units of its new cube in its world.
+	 * @param oldCubeCoordinates The coordinates of the cube this unit left.
+	 */
+	@Override
+	protected void notifyCubeChange(Vector oldCubeCoordinates){
+		this.wake();// Its new position may not be valid
+		if(this.getWorld() instanceof World)
+			((World)this.getWorld()).notifyUnitMoved(this, oldCubeCoordinates);
+	}
+
 	//endregion
 
 	//region Default behaviour
@@ -1126,6 +1186,7 @@ public class Unit extends WorldObject {
 	 *       	| new.isDefaultActive() == true
 	 */
 	public void startDefaultBehaviour(){
+		this.wake();
 		this.getCurrentActivity().setDefault(true);
 	}
 
@@ -1256,7 +1317,7 @@ public class Unit extends WorldObject {
 	public void follow(Unit unit) throws IllegalArgumentException{
 		if(unit==null || unit == this)
 			throw new IllegalArgumentException("The unit is not a valid unit.");
-		Set<Unit> units = new HashSet<>();
+		Set<Unit> units = new LinkedHashSet<>();
 		units.add(unit);
 		requestNewActivity(new TargetMove(this, units));
 	}
@@ -1394,12 +1455,15 @@ public class Unit extends WorldObject {
 	@Override
 	public void terminate() {
 		if(!this.isTerminated()){
+			this.wake();
 			this.setHitpoints(MIN_HITPOINTS);
 			this.isTerminated = true;
 			this.dropCarriedMaterial(this.getWorld().getCube(getPosition().getCubeCoordinates()));
 			Faction f = this.getFaction();
 			this.faction = null;
 			f.removeUnit(this);
+			if(this.getWorld() instanceof World)
+				((World)this.getWorld()).notifyUnitTerminated(this, f);
 			
 		}
 	}
@@ -1501,6 +1565,7 @@ public class Unit extends WorldObject {
 	public void setTask(Task task) throws IllegalArgumentException {
 	    if (! isValidTask(task))
 	        throw new IllegalArgumentException();
+	    this.wake();
 	    this.task = task;
 	}
 	/**
@@ -1644,6 +1709,7 @@ public class Unit extends WorldObject {
 			throw new IllegalStateException("This unit cannot " + activity.toString() + " at this moment");
 		if(this.isTerminated())
 			throw new IllegalArgumentException("This unit is terminated.");
+		this.wake();
 		boolean isDefault = this.getCurrentActivity().isDefault();
 		try{
 			this.getCurrentActivity().interrupt(activity);
@@ -1658,6 +1724,7 @@ public class Unit extends WorldObject {
 		this.getCurrentActivity().start(isDefault);
 		if(this.getCurrentActivity() instanceof Rest)
 			restTimer = 0d;// Reset rest timer
+		this.activityChanged();
 	}
 	/**
 	 * Method to request the finish of the given activity for this unit.
@@ -1704,6 +1771,9 @@ public class Unit extends WorldObject {
 		if(this.activityStack.size()==0)
 			this.activityStack.push(NONE);
 		this.getCurrentActivity().start(isDefault);// Resume previous activity in stack
+		this.activityChanged();
+		if(this.getTask()!=null && this.getTask().isRunning() && this.isExecuting(None.class))
+			this.getTask().getRunner().notifyActivityFinished();// Wake up the task waiting for this activity
 	}
 	/**
 	 * Method to restart the current activity of this unit.
@@ -1724,6 +1794,7 @@ public class Unit extends WorldObject {
 	 * 				this.getCurrentActivity().start(this.getCurrentActivity().isDefault())
 	 */
 	public void restartActivity(boolean restartParent){
+		this.wake();
 		Activity activity = this.getCurrentActivity();
 		boolean isDefault = activity.isDefault();
 		if(restartParent && !activity.isParentActivity(null)){
@@ -1733,6 +1804,7 @@ public class Unit extends WorldObject {
 		}else {
 			activity.stop();
 			activity.start(isDefault);
+			this.activityChanged();
 		}
 	}
 	/**
@@ -1753,6 +1825,159 @@ public class Unit extends WorldObject {
 		if(finishParent && oldActivity.isParentActivity(this.getCurrentActivity()))
 			stopCurrentActivity(true);
 	}
+	/**
+	 * Return the activities in the stack of this unit, from the bottom of the stack
+	 * to the current activity.
+	 */
+	List<Activity> getActivities(){
+		return new ArrayList<>(this.activityStack);
+	}
+
+	/**
+	 * Replace the activity stack of this unit by the given restored activities. The activities
+	 * are not started, their state must already be restored.
+	 * @param activities The activities of this unit, from the bottom of the stack to the current activity.
+	 * @post The current activity of this unit is the last of the given activities.
+	 * 		| new.getCurrentActivity() == activities.get(activities.size()-1)
+	 * @throws IllegalArgumentException
+	 * 		When no activities are given or one of them is not bound to this unit.
+	 */
+	void restoreActivities(List<Activity> activities) throws IllegalArgumentException{
+		if(activities.isEmpty())
+			throw new IllegalArgumentException("A unit must have at least one activity.");
+		for(Activity activity : activities)
+			if(activity.getUnitId()!=this.getId())
+				throw new IllegalArgumentException("This activity is not bound to this unit.");
+		this.activityStack.clear();
+		this.activityStack.addAll(activities);
+		this.activityChanged();
+	}
+
+	/**
+	 * Variable registering whether the world of this unit registered it as a moving unit.
+	 */
+	private boolean isRegisteredAsMoving = false;
+
+	/**
+	 * Register whether this unit moves, without falling, with its world after its current activity changed.
+	 * @effect | if(getWorld() instanceof World) getWorld().notifyUnitMoving(this, isMoving() && !isFalling())
+	 */
+	private void activityChanged(){
+		boolean moving = this.isMoving() && !this.isFalling();
+		if(moving != this.isRegisteredAsMoving && this.getWorld() instanceof World){
+			this.isRegisteredAsMoving = moving;
+			((World)this.getWorld()).notifyUnitMoving(this, moving);
+		}
+	}
+
+	/**
+	 * Return the time passed since the last rest of this unit.
+	 */
+	double getRestTimer(){
+		return this.restTimer;
+	}
+
+	//region Sleeping
+
+	/**
+	 * Variable registering whether this unit is sleeping.
+	 */
+	private boolean isSleeping = false;
+	/**
+	 * Variable registering the game time of the world of this unit at which it fell asleep.
+	 */
+	private double sleepingSince = 0d;
+
+	/**
+	 * Check whether this unit is sleeping. The world of a sleeping unit does not advance its
+	 * time, until an event wakes it up.
+	 */
+	@Basic
+	public boolean isSleeping(){
+		return this.isSleeping;
+	}
+
+	/**
+	 * Return the game time of the world of this unit at which it fell asleep.
+	 */
+	@Basic
+	double getSleepingSince(){
+		return this.sleepingSince;
+	}
+
+	/**
+	 * Check whether this unit can sleep. Advancing the time of a unit which does nothing, has no
+	 * task and no default behaviour, and stands on a valid position only advances its rest timer.
+	 * @return | result == !isTerminated() && !isSleeping() && isExecuting(None.class) && !isDefaultActive() &&
+	 *         |    getTask() == null && validatePosition(getPosition())
+	 */
+	boolean canSleep(){
+		return !this.isTerminated() && !this.isSleeping && this.isExecuting(None.class) && !this.isDefaultActive() &&
+				this.task == null && this.validatePosition(this.getPosition());
+	}
+
+	/**
+	 * Let this unit fall asleep at the given game time of its world.
+	 * @param gameTime The game time at which this unit falls asleep.
+	 * @post | new.isSleeping() && new.getSleepingSince() == gameTime
+	 */
+	void fallAsleep(double gameTime){
+		this.isSleeping = true;
+		this.sleepingSince = gameTime;
+	}
+
+	/**
+	 * Wake this unit up at the given game time of its world, advancing its rest timer and
+	 * its current activity over the time it slept.
+	 * @param gameTime The game time at which this unit wakes up.
+	 * @post | !new.isSleeping()
+	 * @post | new.getRestTimer() == getRestTimer() + gameTime - getSleepingSince()
+	 */
+	void wakeUp(double gameTime){
+		double slept = gameTime - this.sleepingSince;
+		this.isSleeping = false;
+		this.restTimer += slept;
+		this.getCurrentActivity().advanceTime(slept);// Only advances the progress of None
+	}
+
+	/**
+	 * Wake this unit up when it is sleeping, because its state is about to change.
+	 * @effect | if(isSleeping()) getWorld().wakeUnit(this)
+	 */
+	private void wake(){
+		if(this.isSleeping)
+			((World)this.getWorld()).wakeUnit(this);
+	}
+
+	//endregion
+
+	//region Level of detail
+
+	/**
+	 * Variable registering the game time this unit still has to advance, because its world
+	 * simulates it at a coarser level of detail.
+	 */
+	private double pendingTime = 0d;
+
+	/**
+	 * Return the game time this unit still has to advance.
+	 */
+	@Basic
+	double getPendingTime(){
+		return this.pendingTime;
+	}
+
+	/**
+	 * Set the game time this unit still has to advance to the given time.
+	 * @param pendingTime The game time this unit still has to advance.
+	 * @post | new.getPendingTime() == pendingTime
+	 */
+	void setPendingTime(double pendingTime){
+		this.pendingTime = pendingTime;
+	}
+
+	//endregion
+
 	/**
 	 * Return the current activity of this unit.
 	 * @return This units current activity if the activityStack is not null.
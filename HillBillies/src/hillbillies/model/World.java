@@ -3,14 +3,22 @@ package hillbillies.model;
 
 import static hillbillies.utils.Utils.*;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
 import be.kuleuven.cs.som.annotate.*;
 import hillbillies.activities.AdjacentMove;
+import hillbillies.activities.Rest;
 import hillbillies.part2.listener.TerrainChangeListener;
+import hillbillies.part3.programs.TaskProfiler;
 import hillbillies.util.ConnectedToBorder;
+import hillbillies.utils.ChunkedByteMap;
+import hillbillies.utils.RunLengthColumns;
+import hillbillies.utils.SolidColumns;
 import hillbillies.utils.Vector;
 
 /**
@@ -45,10 +53,14 @@ public class World implements IWorld {
 	 */
 	private static final int NB_NEIGHBOURING_DIRECTIONS = 26;
 	/**
-	 * A map of all passable positions.
-	 * Vector in CubeCoordinates.
+	 * Constant reflecting the maximum number of random positions tried by
+	 * getSpawnPosition before it falls back to a linear scan of the terrain.
 	 */
-	private List<Vector> passableList = new ArrayList<>();
+	private static final int MAX_RANDOM_SPAWN_TRIES = 64;
+	/**
+	 * Variable registering the number of passable cubes in this world.
+	 */
+	private int nbPassableCubes = 0;
 
 	/**
 	 * Static initializer to set-up DIRECTLY_ADJACANT_ and NEIGHBOURING_ DIRECTIONS
@@ -103,7 +115,7 @@ public class World implements IWorld {
 	 * | for each faction in factions:
 	 * | ( (faction != null) )
 	 */
-	private final Set<Faction> factions = new HashSet<>(MAX_FACTIONS);
+	private final Set<Faction> factions = new LinkedHashSet<>();
 	/**
 	 * Variable referencing a set collecting all the units
 	 * of this world.
@@ -118,10 +130,20 @@ public class World implements IWorld {
 	 * | (! unit.isTerminated()) ) &&
 	 * | ( unit.getWorld() == this)
 	 */
-	private final Set<Unit> units = new HashSet<>(MAX_UNITS);
+	private final Set<Unit> units = new LinkedHashSet<>();
 	/**
-	 * Variable referencing a map collecting all the cubes
-	 * in this world. The key of each map entry is equal to
+	 * Variable referencing the terrain of this world. Each cell
+	 * holds the id of the Terrain of the corresponding cube.
+	 * @invar The terrain of each materialized cube equals the
+	 * terrain registered in the referenced map.
+	 * | for each cube in CubeMap.values():
+	 * | 	terrainMap.getValue(cube.getPosition()) == cube.getTerrain().getId()
+	 */
+	private final ChunkedByteMap terrainMap;
+	/**
+	 * Variable referencing a map collecting all the materialized
+	 * cubes in this world. Cubes are only materialized once they are
+	 * requested through getCube. The key of each map entry is equal to
 	 * the cube's position in this world, the value references
 	 * the cube itself.
 	 * @invar Each cube registered in the referenced list is
@@ -145,7 +167,15 @@ public class World implements IWorld {
 	 * | ( workshop.getWorld() == this ) &&
 	 * | ( workshop.getTerrain() == Terrain.WORKSHOP) )
 	 */
-	private final Set<Cube> workshops = new HashSet<>();
+	private final Set<Cube> workshops = new LinkedHashSet<>();
+	/**
+	 * Variable referencing a set collecting all the collapsing cubes
+	 * in this world.
+	 * @invar Each cube registered in the referenced set is materialized.
+	 * | for each cube in collapsingCubes:
+	 * | 	CubeMap.get(cube.getPosition()) == cube
+	 */
+	private final Set<Cube> collapsingCubes = new LinkedHashSet<>();
 	/**
 	 * Variable referencing a map collecting all the units
 	 * in this world. The key of each map entry is equal to
@@ -163,6 +193,17 @@ public class World implements IWorld {
 	 * | )
 	 */
 	private final Map<Vector, Set<Unit>> unitsByCubePosition = new HashMap<>();
+	/**
+	 * Variable referencing the units of this world which move without falling, in the order in
+	 * which they started moving. Only these units react to terrain changes.
+	 */
+	private final Set<Unit> movingUnits = new LinkedHashSet<>();
+	/**
+	 * Variable referencing the influence map of each faction of this world.
+	 * @invar Each unit of a faction is registered in the influence map of that faction, in the
+	 * cell of its cube.
+	 */
+	private final Map<Faction, InfluenceMap> influenceMaps = new LinkedHashMap<>();
 	/**
 	 * Variable referencing a set collecting all the materials
 	 * of this world.
@@ -175,11 +216,73 @@ public class World implements IWorld {
 	 * | ( (material != null) &&
 	 * | (! material.isTerminated()) )
 	 */
-	private final Set<Material> materials = new HashSet<>();
+	private final Set<Material> materials = new LinkedHashSet<>();
 	/**
 	 * Variable referencing a connectedToBorder instance.
 	 */
 	private final ConnectedToBorder connectedToBorder;
+	/**
+	 * Variable referencing the index of the solid cubes of each column of this world.
+	 * @invar | for each cube of this world : solidColumns.isSolid(x, y, z) == !cube.isPassable()
+	 */
+	private final SolidColumns solidColumns;
+	/**
+	 * Variable registering the number of times the game time of this world advanced.
+	 */
+	private long tick = 0;
+	/**
+	 * Variable registering the total game time this world advanced.
+	 */
+	private double gameTime = 0d;
+	/**
+	 * Variables registering whether idle units of this world fall asleep, and the number of
+	 * sleeping units.
+	 */
+	private boolean isLettingUnitsSleep = false;
+	private int nbSleepingUnits = 0;
+	/**
+	 * Variable referencing the moments at which sleeping units have to wake up to rest, the
+	 * earliest first. Deadlines of units which were woken up earlier are skipped.
+	 */
+	private final PriorityQueue<RestDeadline> restDeadlines = new PriorityQueue<>();
+	/**
+	 * Variable registering whether this world publishes a snapshot at the end of each tick.
+	 */
+	private boolean isPublishingSnapshots = false;
+	/**
+	 * Variable referencing the last published snapshot of this world. This reference is
+	 * volatile, so observers on other threads always see a completely initialized snapshot.
+	 */
+	private volatile WorldSnapshot snapshot = null;
+	/**
+	 * Variable referencing the capacity of this world.
+	 */
+	private WorldLimits limits = WorldLimits.DEFAULT;
+	/**
+	 * Variable referencing the instruction budget of the task programs executed in this world.
+	 */
+	private ExecutionBudget executionBudget = new ExecutionBudget();
+	/**
+	 * Variable referencing the profiler measuring the task programs executed in this world,
+	 * null when they aren't profiled. Profiling is enabled by default when the system property
+	 * hillbillies.profile is true.
+	 */
+	private TaskProfiler profiler = Boolean.getBoolean("hillbillies.profile") ? new TaskProfiler() : null;
+	/**
+	 * Variable referencing the level of detail at which the units of this world are simulated,
+	 * null when all units are simulated at full detail.
+	 */
+	private LevelOfDetail levelOfDetail = null;
+	/**
+	 * Variables registering the number of changes to the terrain of this world, and to its
+	 * set of units and materials, including the owners of its materials.
+	 */
+	private long terrainVersion = 0, objectVersion = 0;
+	/**
+	 * Variables registering the number of search expressions whose value was reused from
+	 * earlier in the same tick, and the number of search expressions which were evaluated.
+	 */
+	private long nbSearchCacheHits = 0, nbSearchCacheMisses = 0;
 
 	/**
 	 * Initialize this new World with given Terrain Matrix and terrainChangeListener.
@@ -233,26 +336,46 @@ public class World implements IWorld {
 		if(this.NbCubesZ==0)
 			throw new IllegalArgumentException("Invalid terrain matrix, a World must have at least 1 cube.");
 		connectedToBorder = new ConnectedToBorder(this.getNbCubesX(), this.getNbCubesY(), this.getNbCubesZ());// Initialize connectedToBorder
+		terrainMap = new ChunkedByteMap(this.getNbCubesX(), this.getNbCubesY(), this.getNbCubesZ(), (byte)Terrain.AIR.getId());
+		solidColumns = new SolidColumns(this.getNbCubesX(), this.getNbCubesY(), this.getNbCubesZ());
 
 		// Construct this world:
 		for (int x = 0; x < getNbCubesX(); x++) {
+			if (terrainTypes[x].length != getNbCubesY())
+				throw new IllegalArgumentException("The Terrain Matrix' dimensions do not match.");
 			for (int y = 0; y < getNbCubesY(); y++) {
-				if (terrainTypes[x].length != getNbCubesY())
+				if (terrainTypes[x][y].length != getNbCubesZ())
 					throw new IllegalArgumentException("The Terrain Matrix' dimensions do not match.");
 
 				for (int z = 0; z < getNbCubesZ(); z++) {
-					if (terrainTypes[x][y].length != getNbCubesZ())
-						throw new IllegalArgumentException("The Terrain Matrix' dimensions do not match.");
-
-					Vector position = new Vector(x, y, z);
 					Terrain terrain = Terrain.fromId(terrainTypes[x][y][z]);
-					Cube cube = new Cube(this, position, terrain, this::onTerrainChange);
-					CubeMap.put(position, cube);
-					if (terrain == Terrain.WORKSHOP)
-						this.workshops.add(cube);
+					terrainMap.setValue(x, y, z, (byte)terrain.getId());
+					if (terrain.isPassable())
+						this.nbPassableCubes++;
+					else
+						solidColumns.setSolid(x, y, z, true);
 				}
 			}
 		}
+		// The connectivity of the whole terrain is computed by a single flood fill
+		List<int[]> detachedCubes = connectedToBorder.initializePassable(
+				(x, y, z) -> Terrain.fromId(terrainTypes[x][y][z]).isPassable());
+		// Homogeneous regions of the terrain are stored as a single value from here on,
+		// the other regions are compressed until they are modified
+		terrainMap.compress();
+		connectedToBorder.compact();
+		for (int x = 0; x < getNbCubesX(); x++)
+			for (int y = 0; y < getNbCubesY(); y++)
+				for (int z = 0; z < getNbCubesZ(); z++)
+					if (terrainTypes[x][y][z] == Terrain.WORKSHOP.getId())
+						this.workshops.add(this.getCube(new Vector(x, y, z)));
+		// Collapse the solid cubes which are not connected to the border of this world
+		for (int[] coord : detachedCubes) {
+			if (connectedToBorder.isSolidConnectedToBorder(coord[0], coord[1], coord[2]) ||
+					Terrain.fromId(terrainMap.getValue(coord[0], coord[1], coord[2])).isPassable())
+				continue;
+			this.collapseCube(this.getCube(new Vector(coord)));
+		}
 	}
 	
 	/**
@@ -266,7 +389,14 @@ public class World implements IWorld {
 	 */
 	@Override
 	public boolean isValidPosition(Vector position){
-		return position!=null && position.isInBetweenStrict(this.getMinPosition(), this.getMaxPosition());
+		if(position == null)
+			return false;
+		if(position.dimension() != 3)
+			return position.isInBetweenStrict(this.getMinPosition(), this.getMaxPosition());
+		// Compare the coordinates directly, this check is done for each moving unit in each tick
+		return position.X() >= 0 && position.X() < Cube.CUBE_SIDE_LENGTH * getNbCubesX() &&
+				position.Y() >= 0 && position.Y() < Cube.CUBE_SIDE_LENGTH * getNbCubesY() &&
+				position.Z() >= 0 && position.Z() < Cube.CUBE_SIDE_LENGTH * getNbCubesZ();
 	}
 
 	/**
@@ -345,10 +475,10 @@ public class World implements IWorld {
 	 * | for each faction in Faction:
 	 * | if (hasAsFaction(faction))
 	 * | then canHaveAsFaction(faction)
-	 * | if(this.getNbFactions()>MAX_FACTIONS) result == false
+	 * | if(this.getNbFactions()>getLimits().getMaxFactions()) result == false
 	 */
 	public boolean hasProperFactions() {
-		if(this.getNbFactions()>MAX_FACTIONS) return false;
+		if(this.getNbFactions()>limits.getMaxFactions()) return false;
 		for (Faction faction: factions) {
 			if (!canHaveAsFaction(faction))
 			    return false;
@@ -376,13 +506,17 @@ public class World implements IWorld {
 	 * this world. And this world has not the maximum number of
 	 * allowed factions yet.
 	 * | (faction != null) && (faction.getWorld() == this) &&
-	 * | this.getNbFactions()<MAX_FACTIONS
+	 * | this.getNbFactions()<getLimits().getMaxFactions()
 	 * @post This world has the given faction as one of its factions.
 	 * | new.hasAsFaction(faction)
+	 * @post The maximum number of units of the given faction is the limit of this world.
+	 * | faction.getMaxUnits() == getLimits().getMaxUnitsPerFaction()
 	 */
-	private void addFaction(Faction faction) {
-		assert canHaveAsFaction(faction) && this.getNbFactions()<MAX_FACTIONS;
+	void addFaction(Faction faction) {
+		assert canHaveAsFaction(faction) && this.getNbFactions()<limits.getMaxFactions();
+		faction.setMaxUnits(limits.getMaxUnitsPerFaction());
 		this.factions.add(faction);
+		this.influenceMaps.put(faction, new InfluenceMap(getNbCubesX(), getNbCubesY(), getNbCubesZ()));
 	}
 
 	/**
@@ -403,7 +537,7 @@ public class World implements IWorld {
 	 * 			| foreach(Faction f in result : this.hasAsFaction(f))
      */
 	public Set<Faction> getFactions(){
-		return new HashSet<>(factions);
+		return new LinkedHashSet<>(factions);
 	}
 
 	/**
@@ -440,7 +574,7 @@ public class World implements IWorld {
 	 * @pre The given unit is effective and is not yet terminated.
 	 * And this world has not reached the maximum number of units yet.
 	 * | (unit != null) && (unit.getWorld() == this) &&
-	 * | && (!unit.isTerminated()) && this.getNbUnits() < MAX_UNITS
+	 * | && (!unit.isTerminated()) && this.getNbUnits() < getMaxUnits()
 	 * @post This world has the given unit as one of its units.
 	 * | new.hasAsUnit(unit)
 	 * @post The given unit is added to a proper faction of this
@@ -449,31 +583,52 @@ public class World implements IWorld {
 	 * 		 Otherwise the unit is added to the faction containing
 	 * 		 the least units.
 	 * 		 | Faction f = this.getFactionWithLeastUnits()
-	 * 		 | if(this.factions.size()<MAX_FACTIONS)
+	 * 		 | if(this.factions.size()<getLimits().getMaxFactions())
 	 * 		 |		(new this).getNbFactions() == this.getNbFactions()+1
 	 * 		 |		f = new Faction()
 	 * 		 | unit.getFaction() == f
 	 */
 	@Override
 	public void addUnit(@Raw Unit unit){
-		assert (unit != null) && !unit.isTerminated() && this.getNbUnits()<MAX_UNITS;
-		// Bind unit to this world
-		unit.setWorld(this);
-		units.add(unit);
-		Vector position = unit.getPosition().getCubeCoordinates();
-		if(!unitsByCubePosition.containsKey(position))
-			unitsByCubePosition.put(position, new HashSet<>());
-		unitsByCubePosition.get(position).add(unit);
 		Faction f;
-		if(this.factions.size()<MAX_FACTIONS) {
+		if(this.factions.size()<limits.getMaxFactions()) {
 			f = new Faction();
 			this.addFaction(f);
 		}else {
 			f = getFactionWithLeastUnits();
 		}
+		this.addUnit(unit, f);
+	}
+
+	/**
+	 * Add the given unit to the set of units of this world, as a member of
+	 * the given faction of this world.
+	 *
+	 * @param unit
+	 * The unit to be added.
+	 * @param faction
+	 * The faction of the given unit.
+	 * @pre The given unit is effective and is not yet terminated.
+	 * And this world has not reached the maximum number of units yet.
+	 * The given faction is one of the factions of this world.
+	 * | (unit != null) && (!unit.isTerminated()) && this.getNbUnits() < getMaxUnits() &&
+	 * | this.hasAsFaction(faction)
+	 * @post This world has the given unit as one of its units.
+	 * | new.hasAsUnit(unit)
+	 * @post The given unit is a member of the given faction.
+	 * | unit.getFaction() == faction
+	 */
+	void addUnit(@Raw Unit unit, Faction faction){
+		assert (unit != null) && !unit.isTerminated() && this.getNbUnits()<limits.getMaxUnits() && this.hasAsFaction(faction);
+		// Bind unit to this world
+		unit.setWorld(this);
+		units.add(unit);
+		objectVersion++;
+		indexUnit(unit, unit.getCubeCoordinates());
 		// Bind unit to its faction
-		f.addUnit(unit);
-		unit.setFaction(f);
+		faction.addUnit(unit);
+		unit.setFaction(faction);
+		influenceMaps.get(faction).add(unit, unit.getCubeCoordinates());
 	}
 
 	/**
@@ -520,10 +675,10 @@ public class World implements IWorld {
 	 * | if (hasAsUnit(unit))
 	 * | then canHaveAsUnit(unit) &&
 	 * | (unit.getWorld() == this)
-	 * | if(this.getNbUnits()>MAX_UNITS) result == false
+	 * | if(this.getNbUnits()>getMaxUnits()) result == false
 	 */
 	public boolean hasProperUnits() {
-		if(this.getNbUnits()>MAX_UNITS) return false;
+		if(this.getNbUnits()>limits.getMaxUnits()) return false;
 		for (Unit unit: units) {
 			if (!canHaveAsUnit(unit))
 			    return false;
@@ -550,7 +705,7 @@ public class World implements IWorld {
 	 */
 	@Override
 	public Set<Unit> getUnits(){
-		return new HashSet<>(units);
+		return new LinkedHashSet<>(units);
 	}
 
 	/**
@@ -558,7 +713,7 @@ public class World implements IWorld {
 	 * 			| foreach(Cube c in result : c.getWorld()==this && c.getTerrain()==Terrain.WORKSHOP)
 	 */
 	public Set<Cube> getWorkshops(){
-		return new HashSet<>(workshops);
+		return new LinkedHashSet<>(workshops);
 	}
 
 	/**
@@ -572,7 +727,64 @@ public class World implements IWorld {
      */
 	@Override
 	public boolean isCubePassable(Vector cubeCoordinates) throws IllegalArgumentException{
-		return this.getCube(cubeCoordinates).isPassable();
+		if(!isValidPosition(cubeCoordinates))
+			throw new IllegalArgumentException("The given coordinates do not reference a valid position.");
+		return this.getTerrain(cubeCoordinates.cubeX(), cubeCoordinates.cubeY(), cubeCoordinates.cubeZ()).isPassable();
+	}
+
+	/**
+	 * Get the Terrain of the cube with the given cube indices, without
+	 * materializing that cube.
+	 * @param x The x-index of the cube.
+	 * @param y The y-index of the cube.
+	 * @param z The z-index of the cube.
+	 * @return The terrain of the cube with the given indices.
+	 * 			| result == this.getCube(new Vector(x, y, z)).getTerrain()
+	 * @throws IndexOutOfBoundsException
+	 * 			When the given indices do not reference a cube of this world.
+	 */
+	public Terrain getTerrain(int x, int y, int z) throws IndexOutOfBoundsException{
+		return Terrain.fromId(terrainMap.getValue(x, y, z));
+	}
+
+	/**
+	 * Write the terrain of this world to the given output, using a palette and
+	 * run-length encoding of its columns.
+	 * @param out The output to write to.
+	 * @effect The terrain is encoded as RunLengthColumns and written to out.
+	 * 			| RunLengthColumns.encode(terrainMap).writeTo(out)
+	 * @throws IOException
+	 * 			When an I/O error occurs.
+	 */
+	public void writeTerrain(DataOutput out) throws IOException{
+		RunLengthColumns.encode(terrainMap).writeTo(out);
+	}
+
+	/**
+	 * Read a terrain matrix which was written by writeTerrain from the given input.
+	 * @param in The input to read from.
+	 * @return The terrain matrix which was written, suitable as the terrainTypes of
+	 * 			a new World.
+	 * 			| result[x][y][z] == old.getTerrain(x, y, z).getId()
+	 * @throws IOException
+	 * 			When an I/O error occurs or the input contains no valid terrain.
+	 */
+	public static int[][][] readTerrain(DataInput in) throws IOException{
+		RunLengthColumns terrain = RunLengthColumns.readFrom(in);
+		int[][][] terrainTypes = new int[terrain.getNbX()][terrain.getNbY()][terrain.getNbZ()];
+		for(int x=0;x<terrain.getNbX();x++)
+			for(int y=0;y<terrain.getNbY();y++)
+				for(int z=0;z<terrain.getNbZ();z++)
+					terrainTypes[x][y][z] = terrain.getValue(x, y, z);
+		return terrainTypes;
+	}
+
+	/**
+	 * @return The number of cube objects which are currently materialized
+	 * 			in this world.
+	 */
+	public int getNbMaterializedCubes(){
+		return this.CubeMap.size();
 	}
 
 	/**
@@ -587,9 +799,9 @@ public class World implements IWorld {
      */
 	@Override
 	public Vector getSpawnPosition() throws IllegalStateException{
-		if(passableList.isEmpty())
+		if(nbPassableCubes == 0)
 			throw new IllegalStateException("There are no passable cubes in this world");
-		Vector position = passableList.get(randInt(0, passableList.size()-1));
+		Vector position = getRandomPassablePosition();
 		Vector lower = new Vector(0,0,-Cube.CUBE_SIDE_LENGTH);
 		while(!isCorrectSpawnPosition(position)){
 			position = position.add(lower);
@@ -597,6 +809,36 @@ public class World implements IWorld {
 		return position;
 	}
 
+	/**
+	 * Get the position of a random passable cube in this world. Random cubes are
+	 * tried first, when none of them is passable the terrain is scanned starting
+	 * from a random cube.
+	 * @pre This world contains at least one passable cube.
+	 * 		| nbPassableCubes > 0
+	 * @return The cube coordinates of a passable cube in this world.
+	 * 			| this.isCubePassable(result)
+	 */
+	private Vector getRandomPassablePosition(){
+		for(int i=0;i<MAX_RANDOM_SPAWN_TRIES;i++){
+			int x = randInt(0, getNbCubesX()-1);
+			int y = randInt(0, getNbCubesY()-1);
+			int z = randInt(0, getNbCubesZ()-1);
+			if(getTerrain(x, y, z).isPassable())
+				return new Vector(x, y, z);
+		}
+		int nbCubes = getNbCubesX()*getNbCubesY()*getNbCubesZ();
+		int start = randInt(0, nbCubes-1);
+		for(int i=0;i<nbCubes;i++){
+			int index = (start + i) % nbCubes;
+			int x = index % getNbCubesX();
+			int y = (index / getNbCubesX()) % getNbCubesY();
+			int z = index / (getNbCubesX()*getNbCubesY());
+			if(getTerrain(x, y, z).isPassable())
+				return new Vector(x, y, z);
+		}
+		throw new IllegalStateException("There are no passable cubes in this world");
+	}
+
 	/**
 	 * Check whether the given position is a correct position to spawn
 	 * for any unit.
@@ -613,7 +855,8 @@ public class World implements IWorld {
 	}
 
 	/**
-	 * Get the Cube at the corresponding position.
+	 * Get the Cube at the corresponding position. The Cube is materialized
+	 * on the first request for it and reused afterwards.
 	 * @param cubeCoordinates The position of the cube. This position must be
 	 *                        given in cube coordinates!
 	 * @pre The given cubeCoordinates must be valid cube coordinates.
@@ -626,6 +869,22 @@ public class World implements IWorld {
 	public Cube getCube(Vector cubeCoordinates) throws IllegalArgumentException{
 		if(!isValidPosition(cubeCoordinates))
 			throw new IllegalArgumentException("The given coordinates do not reference a valid position.");
+		Cube cube = this.CubeMap.get(cubeCoordinates);
+		if(cube == null){
+			Terrain terrain = getTerrain(cubeCoordinates.cubeX(), cubeCoordinates.cubeY(), cubeCoordinates.cubeZ());
+			cube = new Cube(this, cubeCoordinates, terrain, this::onTerrainChange);
+			this.CubeMap.put(cubeCoordinates, cube);
+		}
+		return cube;
+	}
+
+	/**
+	 * Get the Cube at the corresponding position, if it is already materialized.
+	 * @param cubeCoordinates The position of the cube in cube coordinates.
+	 * @return The materialized Cube at the given position or null if that Cube
+	 * 			isn't materialized yet.
+	 */
+	Cube getMaterializedCube(Vector cubeCoordinates){
 		return this.CubeMap.get(cubeCoordinates);
 	}
 
@@ -637,9 +896,9 @@ public class World implements IWorld {
 	 *                        These coordinates must be cube coordinates!
 	 * @pre The given cubeCoordinates must be valid cube coordinates.
 	 * 		| cubeCoordinates.equals(cubeCoordinates.getCubeCoordinates())
-	 * @effect Create a new HashSet and fill it with the directly adjacent
+	 * @effect Create a new LinkedHashSet and fill it with the directly adjacent
 	 * 			cubes of the cube with given cubeCoordinates.
-	 * 			| Set<Cube> result = new HashSet<>();
+	 * 			| Set<Cube> result = new LinkedHashSet<>();
 	 * 			| getDirectlyAdjacentCubesSatisfying(result, cubeCoordinates, cube -> true, cube -> cube)
 	 * @return A set containing the directly adjacent cubes of the cube
 	 * 			with the given cubeCoordinates.
@@ -649,7 +908,7 @@ public class World implements IWorld {
      */
 	@Override
 	public Set<Cube> getDirectlyAdjacentCubes(Vector cubeCoordinates) throws NullPointerException{
-		Set<Cube> result = new HashSet<>(NB_DIRECTLY_ADJACENT_DIRECTIONS);
+		Set<Cube> result = new LinkedHashSet<>(NB_DIRECTLY_ADJACENT_DIRECTIONS);
 		this.getDirectlyAdjacentCubesSatisfying(result, cubeCoordinates, cube -> true, cube -> cube);
 		return result;
 	}
@@ -662,9 +921,9 @@ public class World implements IWorld {
 	 *                        These coordinates must be cube coordinates!
 	 * @pre The given cubeCoordinates must be valid cube coordinates.
 	 * 		| cubeCoordinates.equals(cubeCoordinates.getCubeCoordinates())
-	 * @effect Create a new HashSet and fill it with the neighbouring
+	 * @effect Create a new LinkedHashSet and fill it with the neighbouring
 	 * 			cubes of the cube with given cubeCoordinates.
-	 * 			| Set<Cube> result = new HashSet<>();
+	 * 			| Set<Cube> result = new LinkedHashSet<>();
 	 * 			| getNeighbouringCubesSatisfying(result, cubeCoordinates, cube -> true, cube -> cube)
 	 * @return A set containing the neighbouring cubes of the cube
 	 * 			with the given cubeCoordinates.
@@ -673,7 +932,7 @@ public class World implements IWorld {
 	 * 			| cubeCoordinates == null
 	 */
 	public Set<Cube> getNeighbouringCubes(Vector cubeCoordinates) throws NullPointerException{
-		Set<Cube> result = new HashSet<>(NB_NEIGHBOURING_DIRECTIONS);
+		Set<Cube> result = new LinkedHashSet<>(NB_NEIGHBOURING_DIRECTIONS);
 		this.getNeighbouringCubesSatisfying(result, cubeCoordinates, cube -> true, cube -> cube);
 		return result;
 	}
@@ -812,13 +1071,19 @@ public class World implements IWorld {
 	 * 			| position == null
      */
 	public boolean isAdjacentSolid(Vector position) throws NullPointerException{
-		if(position.cubeZ() == 0)
+		int x = position.cubeX(), y = position.cubeY(), z = position.cubeZ();
+		if(z == 0)
 			return true;
-		Collection<Cube> solidAdjacentCubes = new ArrayList<>();
-		this.getDirectlyAdjacentCubesSatisfying(
-				solidAdjacentCubes, position.getCubeCoordinates(), cube -> !cube.isPassable(), cube -> cube
-		);
-		return !solidAdjacentCubes.isEmpty();
+		return isSolid(x-1, y, z) || isSolid(x+1, y, z) || isSolid(x, y-1, z) || isSolid(x, y+1, z) ||
+				isSolid(x, y, z-1) || isSolid(x, y, z+1);
+	}
+
+	/**
+	 * Check whether the cube with the given cube indices lies in this world and is solid.
+	 */
+	private boolean isSolid(int x, int y, int z){
+		return x >= 0 && x < getNbCubesX() && y >= 0 && y < getNbCubesY() && z >= 0 && z < getNbCubesZ() &&
+				!getTerrain(x, y, z).isPassable();
 	}
 
 	/**
@@ -837,42 +1102,574 @@ public class World implements IWorld {
 	 * 			| position == null
      */
 	public boolean isLowerSolid(Vector position) throws NullPointerException{
-		if(position.cubeZ() == 0)
+		int x = position.cubeX(), y = position.cubeY(), z = position.cubeZ();
+		if(z == 0)
 			return true;
+		if(x >= 0 && x < NbCubesX && y >= 0 && y < NbCubesY && z > 0 && z <= NbCubesZ)
+			return solidColumns.isSolid(x, y, z - 1);// Looked up in the index, no cube is materialized
 		if(!this.getCube(position.getCubeCoordinates().add(new Vector(0,0,-1))).isPassable())
 			return true;
 		return false;
 	}
 
+	/**
+	 * Return the z-coordinate of the cube in which an object falling from the given position
+	 * comes to rest: the cube right above the highest solid cube below the given position,
+	 * or the bottom cube of this world.
+	 * @param position The position to fall from.
+	 * @return | result <= position.cubeZ() && isLowerSolid(new Vector(position.X(), position.Y(), result))
+	 * 		   | for each z in result+1..position.cubeZ() : !isLowerSolid(new Vector(position.X(), position.Y(), z))
+	 * @throws NullPointerException
+	 * 			When the given position is not effective
+	 * 			| position == null
+	 * @throws IndexOutOfBoundsException
+	 * 			When the given position does not lie in this world.
+	 * 			| !isValidPosition(position)
+	 */
+	public int getSupportLevel(Vector position) throws NullPointerException, IndexOutOfBoundsException{
+		return solidColumns.getSupportLevel(position.cubeX(), position.cubeY(), position.cubeZ());
+	}
+
+	/**
+	 * Return the z-coordinate of the cube in which a unit falling from the given position
+	 * lands: the highest passable cube at or below the given position whose lower cube is solid.
+	 * @param position The position to fall from.
+	 * @return -1 when there is no such cube.
+	 * 		   | if(result != -1) result <= position.cubeZ() &&
+	 * 		   |	isCubePassable(new Vector(position.X(), position.Y(), result)) &&
+	 * 		   |	isLowerSolid(new Vector(position.X(), position.Y(), result))
+	 * @throws NullPointerException
+	 * 			When the given position is not effective
+	 * 			| position == null
+	 * @throws IndexOutOfBoundsException
+	 * 			When the given position does not lie in this world.
+	 * 			| !isValidPosition(position)
+	 */
+	@Override
+	public int getLandingLevel(Vector position) throws NullPointerException, IndexOutOfBoundsException{
+		return solidColumns.getLandingLevel(position.cubeX(), position.cubeY(), position.cubeZ());
+	}
+
 	/**
 	 * Advance the game time of this world with the given amount
 	 * of time.
 	 * @param dt The amount of time to advance the game time with.
+	 * @effect The global instruction budget is restored before the units advance.
+	 * 			| getExecutionBudget().startTick()
+	 * @effect The unassigned tasks of each faction are assigned to its idle units before the units advance.
+	 * 			| for each faction in getFactions() : faction.getScheduler().assignTasks()
+	 * @effect Sleeping units whose rest timer expires during this tick are woken up before the units advance.
+	 * @effect When this world lets idle units sleep, the units which can sleep fall asleep once they advanced,
+	 * 			and sleeping units do not advance.
+	 * 			| for each unit in getUnits() : if(isLettingUnitsSleep() && unit.canSleep()) unit.isSleeping()
+	 * @effect When this world has a level of detail, units which aren't simulated at full detail only advance
+	 * 			in their coarse ticks, over the time collected since their last update.
+	 * 			| if(getLevelOfDetail() != null) for each unit in getUnits() : advanceAtLevelOfDetail(unit, dt)
+	 * @effect When this world publishes snapshots, a new snapshot is published once all objects advanced.
+	 * 			| if(isPublishingSnapshots()) publishSnapshot()
      */
 	public void advanceTime(double dt){
+		executionBudget.startTick();
+		for(Faction faction : factions)
+			faction.getScheduler().assignTasks();
+		// Sleeping units which have to rest during this tick are woken up, so they start resting on time
+		while(!restDeadlines.isEmpty() && restDeadlines.peek().time <= gameTime + dt){
+			RestDeadline deadline = restDeadlines.poll();
+			if(deadline.unit.isSleeping() && deadline.unit.getSleepingSince() == deadline.since)
+				wakeUnit(deadline.unit);
+		}
 		Iterator<Unit> unitsIterator = units.iterator();
-		unitsByCubePosition.clear();
 		while(unitsIterator.hasNext()){
 			Unit unit = unitsIterator.next();
+			if(unit.isSleeping())
+				continue;
 			if(!unit.isTerminated()){
-				unit.advanceTime(dt);
-				if(!unitsByCubePosition.containsKey(unit.getPosition().getCubeCoordinates()))
-					unitsByCubePosition.put(unit.getPosition().getCubeCoordinates(), new HashSet<>());
-				unitsByCubePosition.get(unit.getPosition().getCubeCoordinates()).add(unit);
-			}else
+				if(levelOfDetail == null)
+					unit.advanceTime(dt);// Units update unitsByCubePosition when they enter another cube
+				else if(!advanceAtLevelOfDetail(unit, dt))
+					continue;
+				if(isLettingUnitsSleep && unit.canSleep())
+					putToSleep(unit, gameTime + dt);
+			}else{
 				unitsIterator.remove();
+				unindexUnit(unit, unit.getCubeCoordinates());
+				movingUnits.remove(unit);
+				if(levelOfDetail != null)
+					levelOfDetail.removeFocusUnit(unit);
+				objectVersion++;
+			}
 		}
-		for(Vector cubePosition : CubeMap.keySet())
-			this.getCube(cubePosition).advanceTime(dt);
+		// Only collapsing cubes have to advance their time
+		if(!collapsingCubes.isEmpty())
+			for(Cube cube : new ArrayList<>(collapsingCubes)){
+				cube.advanceTime(dt);
+				if(!cube.isCollapsing())
+					collapsingCubes.remove(cube);
+			}
 
 		Iterator<Material> materialsIterator = materials.iterator();
 		while(materialsIterator.hasNext()){
 			Material m = materialsIterator.next();
 			if (!m.isTerminated())
 				m.advanceTime(dt);
-			else
+			else{
 				materialsIterator.remove();
+				objectVersion++;
+			}
 		}
+		tick++;
+		gameTime += dt;
+		if(this.isPublishingSnapshots())
+			this.publishSnapshot();
+	}
+
+	/**
+	 * Return the tasks of the schedulers of all factions of this world, in a deterministic order.
+	 * @return A set containing each task of each faction's scheduler.
+	 * 			| for each faction in getFactions() : result.containsAll(faction.getScheduler().getAllTasks())
+	 */
+	Set<Task> getScheduledTasks(){
+		Set<Task> tasks = new LinkedHashSet<>();
+		for(Faction faction : factions)
+			tasks.addAll(faction.getScheduler().getAllTasks());
+		return tasks;
+	}
+
+	/**
+	 * Return the number of times the game time of this world advanced.
+	 */
+	@Basic
+	public long getTick(){
+		return this.tick;
+	}
+
+	/**
+	 * Return the number of changes to the terrain of this world.
+	 */
+	@Basic
+	public long getTerrainVersion(){
+		return this.terrainVersion;
+	}
+
+	/**
+	 * Return the number of changes to the units and materials of this world, including
+	 * changes of the owners of its materials.
+	 */
+	@Basic
+	public long getObjectVersion(){
+		return this.objectVersion;
+	}
+
+	/**
+	 * Register a change of the owner of one of the materials of this world.
+	 * @post | new.getObjectVersion() == getObjectVersion() + 1
+	 */
+	void notifyMaterialMoved(){
+		this.objectVersion++;
+	}
+
+	/**
+	 * Return the number of search expressions whose value was reused from earlier in the same tick.
+	 */
+	@Basic
+	public long getNbSearchCacheHits(){
+		return this.nbSearchCacheHits;
+	}
+
+	/**
+	 * Return the number of search expressions which were evaluated because no value from
+	 * earlier in the same tick could be reused.
+	 */
+	@Basic
+	public long getNbSearchCacheMisses(){
+		return this.nbSearchCacheMisses;
+	}
+
+	/**
+	 * Return the fraction of search expressions whose value was reused.
+	 * @return | if(getNbSearchCacheHits() + getNbSearchCacheMisses() == 0) result == 0
+	 *         | else result == (double)getNbSearchCacheHits() / (getNbSearchCacheHits() + getNbSearchCacheMisses())
+	 */
+	public double getSearchCacheHitRate(){
+		long lookups = nbSearchCacheHits + nbSearchCacheMisses;
+		return lookups == 0 ? 0d : (double)nbSearchCacheHits / lookups;
+	}
+
+	/**
+	 * Register a lookup of the value of a search expression.
+	 * @param hit Whether the value from earlier in the same tick was reused.
+	 * @post | if(hit) new.getNbSearchCacheHits() == getNbSearchCacheHits() + 1
+	 *       | else new.getNbSearchCacheMisses() == getNbSearchCacheMisses() + 1
+	 */
+	void registerSearchLookup(boolean hit){
+		if(hit)
+			nbSearchCacheHits++;
+		else
+			nbSearchCacheMisses++;
+	}
+
+	/**
+	 * Return the instruction budget of the task programs executed in this world.
+	 */
+	@Basic
+	public ExecutionBudget getExecutionBudget(){
+		return this.executionBudget;
+	}
+
+	/**
+	 * Set the instruction budget of the task programs executed in this world.
+	 * @param executionBudget The new instruction budget.
+	 * @post | new.getExecutionBudget() == executionBudget
+	 * @throws NullPointerException
+	 * 			When the given budget is not effective.
+	 * 			| executionBudget == null
+	 */
+	public void setExecutionBudget(ExecutionBudget executionBudget) throws NullPointerException {
+		if(executionBudget == null)
+			throw new NullPointerException("The execution budget must be effective.");
+		this.executionBudget = executionBudget;
+	}
+
+	/**
+	 * Return the capacity of this world.
+	 */
+	@Basic
+	public WorldLimits getLimits(){
+		return this.limits;
+	}
+
+	/**
+	 * Return the maximum number of units in this world.
+	 * @return | result == getLimits().getMaxUnits()
+	 */
+	@Override
+	public int getMaxUnits(){
+		return this.limits.getMaxUnits();
+	}
+
+	/**
+	 * Set the capacity of this world to the given limits.
+	 * @param limits The new limits.
+	 * @post | new.getLimits() == limits
+	 * @post | for each faction in getFactions() : faction.getMaxUnits() == limits.getMaxUnitsPerFaction()
+	 * @throws NullPointerException
+	 * 			When the given limits are not effective.
+	 * 			| limits == null
+	 * @throws IllegalArgumentException
+	 * 			When this world already has more units or factions than the given limits allow.
+	 * 			| getNbUnits() > limits.getMaxUnits() || getNbFactions() > limits.getMaxFactions() ||
+	 * 			| for some faction in getFactions() : faction.getNbUnits() > limits.getMaxUnitsPerFaction()
+	 */
+	public void setLimits(WorldLimits limits) throws NullPointerException, IllegalArgumentException {
+		if(limits == null)
+			throw new NullPointerException("The limits must be effective.");
+		if(getNbUnits() > limits.getMaxUnits() || getNbFactions() > limits.getMaxFactions())
+			throw new IllegalArgumentException("This world has more units or factions than the given limits allow.");
+		for(Faction faction : factions)
+			if(faction.getNbUnits() > limits.getMaxUnitsPerFaction())
+				throw new IllegalArgumentException("A faction of this world has more units than the given limits allow.");
+		for(Faction faction : factions)
+			faction.setMaxUnits(limits.getMaxUnitsPerFaction());
+		this.limits = limits;
+	}
+
+	/**
+	 * Return the profiler measuring the task programs executed in this world, or null when
+	 * they aren't profiled.
+	 */
+	@Basic
+	public TaskProfiler getProfiler(){
+		return this.profiler;
+	}
+
+	/**
+	 * Check whether the task programs executed in this world are profiled.
+	 * @return | result == (getProfiler() != null)
+	 */
+	public boolean isProfiling(){
+		return this.profiler != null;
+	}
+
+	/**
+	 * Enable or disable the profiling of the task programs executed in this world. Enabling
+	 * profiling when it is already enabled keeps the current measurements.
+	 * @param profiling Whether task programs should be profiled.
+	 * @post | new.isProfiling() == profiling
+	 * @post | if(profiling && isProfiling()) new.getProfiler() == getProfiler()
+	 */
+	public void setProfiling(boolean profiling){
+		if(!profiling)
+			this.profiler = null;
+		else if(this.profiler == null)
+			this.profiler = new TaskProfiler();
+	}
+
+	/**
+	 * Advance the time of the given unit at the level of detail of this world. A unit which isn't
+	 * simulated at full detail collects the given duration and only advances in its coarse ticks.
+	 * A unit advances over all collected time at once, in equal sub-steps of at most
+	 * LevelOfDetail.MAX_STEP seconds.
+	 * @param unit The unit to advance.
+	 * @param dt The duration of the current tick.
+	 * @return True if and only if the unit advanced.
+	 */
+	private boolean advanceAtLevelOfDetail(Unit unit, double dt){
+		double time = unit.getPendingTime() + dt;
+		if(!levelOfDetail.isDetailed(unit) && !levelOfDetail.isCoarseTick(tick, unit.getId())){
+			unit.setPendingTime(time);
+			return false;
+		}
+		unit.setPendingTime(0d);
+		advanceInSteps(unit, time);
+		return true;
+	}
+
+	/**
+	 * Advance the time of the given unit with the given duration, in equal sub-steps of at most
+	 * LevelOfDetail.MAX_STEP seconds, until the unit is terminated.
+	 */
+	private static void advanceInSteps(Unit unit, double time){
+		int steps = Math.max(1, (int)Math.ceil(time / LevelOfDetail.MAX_STEP));
+		double step = Math.min(time / steps, LevelOfDetail.MAX_STEP);// Guard against rounding
+		for(int i = 0; i < steps && !unit.isTerminated(); i++)
+			unit.advanceTime(step);
+	}
+
+	/**
+	 * Return the level of detail at which the units of this world are simulated, or null when
+	 * all units are simulated at full detail.
+	 */
+	@Basic
+	public LevelOfDetail getLevelOfDetail(){
+		return this.levelOfDetail;
+	}
+
+	/**
+	 * Set the level of detail at which the units of this world are simulated. When the level of
+	 * detail is removed, the units first advance over the time they collected.
+	 * @param levelOfDetail The new level of detail, or null to simulate all units at full detail.
+	 * @post | new.getLevelOfDetail() == levelOfDetail
+	 */
+	public void setLevelOfDetail(LevelOfDetail levelOfDetail){
+		if(levelOfDetail == null && this.levelOfDetail != null)
+			for(Unit unit : units)
+				if(!unit.isTerminated() && unit.getPendingTime() > 0){
+					advanceInSteps(unit, unit.getPendingTime());
+					unit.setPendingTime(0d);
+				}
+		this.levelOfDetail = levelOfDetail;
+	}
+
+	/**
+	 * Check whether idle units of this world fall asleep.
+	 */
+	@Basic
+	public boolean isLettingUnitsSleep(){
+		return this.isLettingUnitsSleep;
+	}
+
+	/**
+	 * Let idle units of this world fall asleep or not. Sleeping units are not advanced until they
+	 * are woken up by a change of their state or their activity, a change of the terrain they stand
+	 * on or next to, or the end of their rest interval. Disabling sleep wakes up all sleeping units.
+	 * @param letUnitsSleep Whether idle units should fall asleep.
+	 * @post | new.isLettingUnitsSleep() == letUnitsSleep
+	 * @effect | if(!letUnitsSleep) wakeAllUnits()
+	 */
+	public void setLettingUnitsSleep(boolean letUnitsSleep){
+		this.isLettingUnitsSleep = letUnitsSleep;
+		if(!letUnitsSleep)
+			wakeAllUnits();
+	}
+
+	/**
+	 * Return the number of sleeping units of this world.
+	 */
+	@Basic
+	public int getNbSleepingUnits(){
+		return this.nbSleepingUnits;
+	}
+
+	/**
+	 * Return the number of units of this world which are not sleeping.
+	 * @return | result == getNbUnits() - getNbSleepingUnits()
+	 */
+	public int getNbAwakeUnits(){
+		return this.getNbUnits() - this.nbSleepingUnits;
+	}
+
+	/**
+	 * Let the given unit fall asleep at the given game time. When the unit has to rest later on,
+	 * it is woken up at the end of its rest interval.
+	 * @param unit The unit which falls asleep.
+	 * @param since The game time at which the unit falls asleep.
+	 * @effect | unit.fallAsleep(since)
+	 * @post | new.getNbSleepingUnits() == getNbSleepingUnits() + 1
+	 */
+	private void putToSleep(Unit unit, double since){
+		unit.fallAsleep(since);
+		nbSleepingUnits++;
+		// A unit which passed its rest interval rests as soon as it is able to, which changes its state
+		if(unit.getRestTimer() < Rest.REST_INTERVAL)
+			restDeadlines.add(new RestDeadline(since + Rest.REST_INTERVAL - unit.getRestTimer(), unit, since));
+	}
+
+	/**
+	 * Wake up the given sleeping unit at the current game time of this world.
+	 * @param unit The sleeping unit to wake up.
+	 * @effect | unit.wakeUp(gameTime)
+	 * @post | new.getNbSleepingUnits() == getNbSleepingUnits() - 1
+	 */
+	void wakeUnit(Unit unit){
+		assert unit.isSleeping();
+		unit.wakeUp(gameTime);
+		nbSleepingUnits--;
+	}
+
+	/**
+	 * Wake up the sleeping units in the cube with the given coordinates and in its neighbouring
+	 * cubes, because the cube they stand in or the cubes supporting them changed.
+	 */
+	private void wakeUnitsNear(int x, int y, int z){
+		for(int dx = -1; dx <= 1; dx++)
+			for(int dy = -1; dy <= 1; dy++)
+				for(int dz = -1; dz <= 1; dz++){
+					Set<Unit> cubeUnits = unitsByCubePosition.get(new Vector(x + dx, y + dy, z + dz));
+					if(cubeUnits != null)
+						for(Unit unit : cubeUnits)
+							if(unit.isSleeping())
+								wakeUnit(unit);
+				}
+	}
+
+	/**
+	 * Register whether the given unit moves without falling.
+	 * @param unit The unit whose activity changed.
+	 * @param moving Whether the given unit moves without falling.
+	 */
+	void notifyUnitMoving(Unit unit, boolean moving){
+		if(moving)
+			movingUnits.add(unit);
+		else
+			movingUnits.remove(unit);
+	}
+
+	/**
+	 * Wake up all sleeping units of this world, e.g. before the state of all units is saved.
+	 * @post | new.getNbSleepingUnits() == 0
+	 */
+	void wakeAllUnits(){
+		if(nbSleepingUnits > 0)
+			for(Unit unit : units)
+				if(unit.isSleeping())
+					wakeUnit(unit);
+		restDeadlines.clear();
+	}
+
+	/**
+	 * Class representing the moment at which a sleeping unit has to wake up to rest.
+	 */
+	private static final class RestDeadline implements Comparable<RestDeadline> {
+
+		private final double time, since;
+		private final Unit unit;
+
+		private RestDeadline(double time, Unit unit, double since){
+			this.time = time;
+			this.unit = unit;
+			this.since = since;
+		}
+
+		@Override
+		public int compareTo(RestDeadline other){
+			return Double.compare(time, other.time);
+		}
+	}
+
+	/**
+	 * Check whether this world publishes a snapshot at the end of each tick.
+	 */
+	@Basic
+	public boolean isPublishingSnapshots(){
+		return this.isPublishingSnapshots;
+	}
+
+	/**
+	 * Enable or disable the publication of snapshots at the end of each tick.
+	 * @param publishing Whether snapshots should be published.
+	 * @post The publishing state of this world equals the given state.
+	 * 			| new.isPublishingSnapshots() == publishing
+	 * @effect When publication is enabled, a snapshot of the current state is published right away.
+	 * 			| if(publishing) publishSnapshot()
+	 * @post When publication is disabled, no snapshot is published any more.
+	 * 			| if(!publishing) new.getSnapshot() == null
+	 */
+	public void setPublishingSnapshots(boolean publishing){
+		this.isPublishingSnapshots = publishing;
+		if(publishing)
+			this.publishSnapshot();
+		else
+			this.snapshot = null;
+	}
+
+	/**
+	 * Return the last published snapshot of this world. This method can be called from any thread.
+	 * @return The snapshot published at the end of the last tick, or null when this world does not
+	 * 			publish snapshots.
+	 */
+	public WorldSnapshot getSnapshot(){
+		return this.snapshot;
+	}
+
+	/**
+	 * Take a snapshot of the current state of this world and publish it. The terrain is
+	 * shared copy-on-write with the snapshot, only the state of the units and materials is copied.
+	 * @post The published snapshot reflects the current state of this world.
+	 * 			| new.getSnapshot().getTick() == this.getTick()
+	 */
+	private void publishSnapshot(){
+		this.snapshot = new WorldSnapshot(this, this.tick, terrainMap.snapshot());
+	}
+
+	/**
+	 * Move the given unit, which entered another cube, to the set of units of its new cube.
+	 * @param unit The unit which moved.
+	 * @param oldCubeCoordinates The coordinates of the cube the given unit left.
+	 */
+	void notifyUnitMoved(Unit unit, Vector oldCubeCoordinates){
+		if(!units.contains(unit))
+			return;// The unit is being created or restored, addUnit will index it
+		unindexUnit(unit, oldCubeCoordinates);
+		indexUnit(unit, unit.getCubeCoordinates());
+		InfluenceMap influenceMap = influenceMaps.get(unit.getFaction());
+		if(influenceMap != null)
+			influenceMap.move(unit, oldCubeCoordinates, unit.getCubeCoordinates());
+	}
+
+	/**
+	 * Remove the given unit, which is terminated, from the influence map of the given faction it belonged to.
+	 * @param unit The terminated unit.
+	 * @param faction The faction of the given unit before it was terminated.
+	 */
+	void notifyUnitTerminated(Unit unit, Faction faction){
+		InfluenceMap influenceMap = influenceMaps.get(faction);
+		if(influenceMap != null)
+			influenceMap.remove(unit, unit.getCubeCoordinates());
+	}
+
+	private void indexUnit(Unit unit, Vector cubeCoordinates){
+		Set<Unit> cubeUnits = unitsByCubePosition.get(cubeCoordinates);
+		if(cubeUnits == null){
+			cubeUnits = new LinkedHashSet<>();
+			unitsByCubePosition.put(cubeCoordinates, cubeUnits);
+		}
+		cubeUnits.add(unit);
+	}
+
+	private void unindexUnit(Unit unit, Vector cubeCoordinates){
+		Set<Unit> cubeUnits = unitsByCubePosition.get(cubeCoordinates);
+		if(cubeUnits != null && cubeUnits.remove(unit) && cubeUnits.isEmpty())
+			unitsByCubePosition.remove(cubeCoordinates);
 	}
 
 	/**
@@ -887,7 +1684,106 @@ public class World implements IWorld {
      */
 	@Override
 	public Set<Unit> getUnitsInCube(Cube cube) throws NullPointerException{
-		return unitsByCubePosition.getOrDefault(cube.getPosition(), new HashSet<>());
+		return unitsByCubePosition.getOrDefault(cube.getPosition(), new LinkedHashSet<>());
+	}
+
+	/**
+	 * Return the influence map of the given faction, or null when the given faction is not
+	 * one of the factions of this world.
+	 */
+	public InfluenceMap getInfluenceMap(Faction faction){
+		return influenceMaps.get(faction);
+	}
+
+	/**
+	 * Return the threat level for a unit of the given faction in the cube with the given coordinates.
+	 * @return The number of units of other factions in the cell of the cube and the cells next to it.
+	 * 			| result == sum({getInfluenceMap(f).getInfluenceNear(cubeCoordinates)
+	 * 			|	for each f in getFactions() if f != faction})
+	 * @throws NullPointerException
+	 * 			When the given coordinates are not effective.
+	 * 			| cubeCoordinates == null
+	 */
+	public int getThreat(Faction faction, Vector cubeCoordinates) throws NullPointerException {
+		int result = 0;
+		for(Map.Entry<Faction, InfluenceMap> entry : influenceMaps.entrySet())
+			if(entry.getKey() != faction)
+				result += entry.getValue().getInfluenceNear(cubeCoordinates);
+		return result;
+	}
+
+	/**
+	 * Return the units of other factions than the given faction in the nearest cells holding
+	 * such units, seen from the cube with the given coordinates, together with the units of
+	 * other factions one cell further. The nearest unit of another faction is always part of
+	 * the result.
+	 * @return An empty set when this world holds no units of another faction.
+	 * @throws NullPointerException
+	 * 			When the given coordinates are not effective.
+	 * 			| cubeCoordinates == null
+	 */
+	public Set<Unit> getNearestEnemies(Faction faction, Vector cubeCoordinates) throws NullPointerException {
+		int distance = -1;
+		for(Map.Entry<Faction, InfluenceMap> entry : influenceMaps.entrySet())
+			if(entry.getKey() != faction){
+				int factionDistance = entry.getValue().getDistanceToNearestUnit(cubeCoordinates, null);
+				if(factionDistance != -1 && (distance == -1 || factionDistance < distance))
+					distance = factionDistance;
+			}
+		if(distance == -1)
+			return new LinkedHashSet<>();
+		return getEnemiesWithin(faction, cubeCoordinates, distance + 1);
+	}
+
+	/**
+	 * Return the units of other factions than the given faction in the cells of the influence
+	 * maps at most the given distance away from the cell of the cube with the given coordinates.
+	 * @return | result == { unit in getUnits() | unit.getFaction() != faction &&
+	 * 			|	unit lies in a cell at most distance away }
+	 * @throws NullPointerException
+	 * 			When the given coordinates are not effective.
+	 * 			| cubeCoordinates == null
+	 */
+	public Set<Unit> getEnemiesWithin(Faction faction, Vector cubeCoordinates, int distance) throws NullPointerException {
+		Set<Unit> result = new LinkedHashSet<>();
+		for(Map.Entry<Faction, InfluenceMap> entry : influenceMaps.entrySet())
+			if(entry.getKey() != faction)
+				result.addAll(entry.getValue().getUnitsWithin(cubeCoordinates, distance));
+		return result;
+	}
+
+	/**
+	 * Return the units of the faction of the given unit, other than the given unit, in the
+	 * nearest cells holding such units together with those one cell further.
+	 * @return An empty set when the given unit has no faction or is the only unit of its faction.
+	 * @throws NullPointerException
+	 * 			When the given unit is not effective.
+	 * 			| unit == null
+	 */
+	public Set<Unit> getNearestFriends(Unit unit) throws NullPointerException {
+		InfluenceMap influenceMap = influenceMaps.get(unit.getFaction());
+		int distance = influenceMap == null ? -1 : influenceMap.getDistanceToNearestUnit(unit.getCubeCoordinates(), unit);
+		if(distance == -1)
+			return new LinkedHashSet<>();
+		return getFriendsWithin(unit, distance + 1);
+	}
+
+	/**
+	 * Return the units of the faction of the given unit, other than the given unit, in the cells
+	 * of its influence map at most the given distance away from the cell of the given unit.
+	 * @return | result == { friend in unit.getFaction().getUnits() | friend != unit &&
+	 * 			|	friend lies in a cell at most distance away }
+	 * @throws NullPointerException
+	 * 			When the given unit is not effective.
+	 * 			| unit == null
+	 */
+	public Set<Unit> getFriendsWithin(Unit unit, int distance) throws NullPointerException {
+		Set<Unit> result = new LinkedHashSet<>();
+		InfluenceMap influenceMap = influenceMaps.get(unit.getFaction());
+		if(influenceMap != null)
+			result.addAll(influenceMap.getUnitsWithin(unit.getCubeCoordinates(), distance));
+		result.remove(unit);
+		return result;
 	}
 
 	/**
@@ -900,27 +1796,70 @@ public class World implements IWorld {
 	 * @param cube The cube whose terrain is changed
      */
 	private void onTerrainChange(Terrain oldTerrain, Cube cube){
+		if(oldTerrain==null)// The cube is being materialized, its terrain is already registered
+			return;
+		terrainVersion++;
 		int x = (int)cube.getPosition().X();
 		int y = (int)cube.getPosition().Y();
 		int z = (int)cube.getPosition().Z();
-		if(oldTerrain!=null) {// Notify terrainChangeListener and units of change
-			if(terrainChangeListener!=null)
-				terrainChangeListener.notifyTerrainChanged(x, y, z);
+		terrainMap.setValue(x, y, z, (byte)cube.getTerrain().getId());
+		solidColumns.setSolid(x, y, z, !cube.isPassable());
+		// Notify terrainChangeListener and units of change
+		if(terrainChangeListener!=null)
+			terrainChangeListener.notifyTerrainChanged(x, y, z);
 
-			for(Unit unit : units)
+		// Only moving units react to terrain changes, notifying them may change the moving units
+		if(!movingUnits.isEmpty())
+			for(Unit unit : new ArrayList<>(movingUnits))
 				unit.notifyTerrainChange(oldTerrain, cube);
-		}
-		if (cube.isPassable() && (oldTerrain==null || !oldTerrain.isPassable())){
+		if(nbSleepingUnits > 0)
+			wakeUnitsNear(x, y, z);
+
+		if (cube.isPassable() && !oldTerrain.isPassable()){
 			List<int[]> changingCubes = connectedToBorder.changeSolidToPassable(x, y, z);
 			for (int[] coord : changingCubes){
-				Cube changingCube = this.getCube(new Vector(coord));
-				if(!changingCube.isCollapsing())
-					changingCube.collapse();
+				this.collapseCube(this.getCube(new Vector(coord)));
 			}
-			this.passableList.add(cube.getPosition());
+			this.nbPassableCubes++;
 		}
-		else if (!cube.isPassable() && (oldTerrain==null || oldTerrain.isPassable()))
+		else if (!cube.isPassable() && oldTerrain.isPassable()) {
 			connectedToBorder.changePassableToSolid(x, y, z);
+			this.nbPassableCubes--;
+		}
+	}
+
+	/**
+	 * Start the collapse of the given cube, unless it is already collapsing.
+	 * @param cube The cube to collapse.
+	 * @effect If the cube isn't collapsing yet, it is collapsed.
+	 * 			| if(!cube.isCollapsing()) cube.collapse()
+	 */
+	private void collapseCube(Cube cube){
+		if(!cube.isCollapsing()) {
+			cube.collapse();
+			collapsingCubes.add(cube);
+		}
+	}
+
+	/**
+	 * Return the cubes of this world which are collapsing, in the order in which
+	 * they started collapsing.
+	 */
+	List<Cube> getCollapsingCubes(){
+		return new ArrayList<>(collapsingCubes);
+	}
+
+	/**
+	 * Restore the collapse of the given cube of this world.
+	 * @param cube The collapsing cube.
+	 * @param collapseTime The remaining time before the given cube collapses.
+	 * @effect The given cube is collapsing and collapses after the given time.
+	 * 			| collapseCube(cube)
+	 * 			| cube.setCollapseTime(collapseTime)
+	 */
+	void restoreCollapse(Cube cube, double collapseTime){
+		this.collapseCube(cube);
+		cube.setCollapseTime(collapseTime);
 	}
 
 	/**
@@ -1012,6 +1951,7 @@ public class World implements IWorld {
 	public void addMaterial(@Raw Material material) {
 		assert (material != null) && (material.getWorld() == this);
 		materials.add(material);
+		objectVersion++;
 	}
 
 	/**
@@ -1031,7 +1971,7 @@ public class World implements IWorld {
 	 * 		 | foreach(T material in result : if(inCube) material.getOwner() instanceof Cube || material.getOwner()==null)
      */
 	public <T extends Material> Set<T> getMaterials(Class<T> type, boolean inCube){
-		Set<T> result = new HashSet<>();
+		Set<T> result = new LinkedHashSet<>();
 		for(Material m : materials){
 			if(type.isInstance(m) && (!inCube || m.getOwner() instanceof Cube || m.getOwner() == null))
 				result.add((T)m);
@@ -0,0 +1,95 @@
+package hillbillies.model;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Immutable;
+import be.kuleuven.cs.som.annotate.Value;
+
+/**
+ * Class representing the capacity of a world: the maximum number of units, of factions and of
+ * units in each faction. The default limits are those of the game, the scale-out limits allow
+ * large headless simulations.
+ *
+ * @invar All limits are at least 1.
+ *          | getMaxUnits() >= 1 && getMaxFactions() >= 1 && getMaxUnitsPerFaction() >= 1
+ * @author Kenneth & Bram
+ * @version 1.0
+ */
+@Value
+public final class WorldLimits {
+
+    /**
+     * Constant reflecting the limits of the game.
+     */
+    public static final WorldLimits DEFAULT = new WorldLimits(IWorld.MAX_UNITS, IWorld.MAX_FACTIONS,
+            Faction.MAX_UNITS_PER_FACTION);
+    /**
+     * Constant reflecting the limits of large headless simulations.
+     */
+    public static final WorldLimits SCALE_OUT = new WorldLimits(10000, IWorld.MAX_FACTIONS, 10000 / IWorld.MAX_FACTIONS);
+
+    /**
+     * Variables registering the maximum number of units, of factions and of units in each faction.
+     */
+    private final int maxUnits, maxFactions, maxUnitsPerFaction;
+
+    /**
+     * Initialize new WorldLimits with the given limits.
+     * @param maxUnits The maximum number of units in a world.
+     * @param maxFactions The maximum number of factions in a world.
+     * @param maxUnitsPerFaction The maximum number of units in each faction.
+     * @post | new.getMaxUnits() == maxUnits && new.getMaxFactions() == maxFactions &&
+     *       | new.getMaxUnitsPerFaction() == maxUnitsPerFaction
+     * @throws IllegalArgumentException
+     *          When one of the given limits is smaller than 1.
+     */
+    public WorldLimits(int maxUnits, int maxFactions, int maxUnitsPerFaction) throws IllegalArgumentException {
+        if(maxUnits < 1 || maxFactions < 1 || maxUnitsPerFaction < 1)
+            throw new IllegalArgumentException("Limits must be at least 1.");
+        this.maxUnits = maxUnits;
+        this.maxFactions = maxFactions;
+        this.maxUnitsPerFaction = maxUnitsPerFaction;
+    }
+
+    /**
+     * Return the maximum number of units in a world.
+     */
+    @Basic @Immutable
+    public int getMaxUnits(){
+        return maxUnits;
+    }
+
+    /**
+     * Return the maximum number of factions in a world.
+     */
+    @Basic @Immutable
+    public int getMaxFactions(){
+        return maxFactions;
+    }
+
+    /**
+     * Return the maximum number of units in each faction.
+     */
+    @Basic @Immutable
+    public int getMaxUnitsPerFaction(){
+        return maxUnitsPerFaction;
+    }
+
+    @Override
+    public boolean equals(Object other){
+        if(!(other instanceof WorldLimits))
+            return false;
+        WorldLimits limits = (WorldLimits)other;
+        return maxUnits == limits.maxUnits && maxFactions == limits.maxFactions &&
+                maxUnitsPerFaction == limits.maxUnitsPerFaction;
+    }
+
+    @Override
+    public int hashCode(){
+        return (maxUnits * 31 + maxFactions) * 31 + maxUnitsPerFaction;
+    }
+
+    @Override
+    public String toString(){
+        return maxUnits + " units, " + maxFactions + " factions, " + maxUnitsPerFaction + " units per faction";
+    }
+}
@@ -50,6 +50,40 @@ public abstract class WorldObject implements IWorldObject {
         this.setWorld(world);
         this.setPosition(position);
     }
+
+    /**
+     * Initialize this new WorldObject with given position in the
+     * given world with no ownedMaterials yet. The position is only
+     * checked when checkPosition is true, which allows restoring a
+     * saved WorldObject whose position can only be validated once the
+     * rest of its state is restored.
+     *
+     * @param world The World this WorldObject belongs to.
+     * @param position The position for this new WorldObject.
+     * @param checkPosition Whether the given position must be checked.
+     * @effect The world this new WorldObject belongs to is set
+     * to the given world.
+     * | this.setWorld(world)
+     * @effect If checkPosition is true, the position of this new WorldObject
+     * is set to the given position.
+     * | if(checkPosition) this.setPosition(position)
+     * @post The position of this new WorldObject is equal to the given position.
+     * | new.getPosition().equals(position)
+     * @throws NullPointerException if the given world or position are not effective.
+     * |world == null || position==null
+     */
+    @Raw
+    protected WorldObject(IWorld world, Vector position, boolean checkPosition){
+        if(position == null)
+            throw new NullPointerException("The given position is not effective");
+        this.setWorld(world);
+        if(checkPosition)
+            this.setPosition(position);
+        else {
+            this.position = position;
+            this.cubeCoordinates = position.getCubeCoordinates();
+        }
+    }
     /**
      * @throws IllegalArgumentException
      */
@@ -78,7 +112,7 @@ public abstract class WorldObject implements IWorldObject {
     @Raw
     @Override
     public Vector getPosition() {
-        return this.position.clone();
+        return this.position;// Vectors are immutable
     }
     /**
      * Check whether the given position is a valid position for
@@ -109,11 +143,41 @@ public abstract class WorldObject implements IWorldObject {
         if (! isValidPosition(position))
             throw new IllegalArgumentException("The given position is an invalid position for this WorldObject.");
         this.position = position;
+        Vector oldCubeCoordinates = this.cubeCoordinates;
+        if(oldCubeCoordinates == null || position.cubeX() != oldCubeCoordinates.cubeX() ||
+                position.cubeY() != oldCubeCoordinates.cubeY() || position.cubeZ() != oldCubeCoordinates.cubeZ()){
+            this.cubeCoordinates = position.getCubeCoordinates();
+            if(oldCubeCoordinates != null)
+                this.notifyCubeChange(oldCubeCoordinates);
+        }
+    }
+
+    /**
+     * Return the coordinates of the cube the position of this WorldObject lies in.
+     * @return | result.equals(getPosition().getCubeCoordinates())
+     */
+    @Raw
+    public Vector getCubeCoordinates(){
+        return this.cubeCoordinates;
     }
+
+    /**
+     * Called when this WorldObject moved to another cube. The new cube is given by getCubeCoordinates().
+     * @param oldCubeCoordinates The coordinates of the cube this WorldObject left.
+     */
+    protected void notifyCubeChange(Vector oldCubeCoordinates){
+
+    }
+
     /**
      * Variable registering the position of this WorldObject.
      */
     private Vector position;
+    /**
+     * Variable registering the coordinates of the cube the position of this WorldObject lies in,
+     * which only changes when this WorldObject moves to another cube.
+     */
+    private Vector cubeCoordinates;
 
     /**
      * Return the world of this WorldObject.
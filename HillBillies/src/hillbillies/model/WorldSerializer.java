@@ -0,0 +1,562 @@
+package hillbillies.model;
+
+import hillbillies.activities.*;
+import hillbillies.part2.listener.TerrainChangeListener;
+import hillbillies.part3.programs.ProgramCodec;
+import hillbillies.part3.programs.TaskFactory;
+import hillbillies.part3.programs.statements.Statement;
+import hillbillies.utils.ChannelDataInput;
+import hillbillies.utils.ChannelDataOutput;
+import hillbillies.utils.Vector;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Class saving a running World to a binary snapshot and restoring it. A snapshot covers the
+ * terrain and collapsing cubes of the world, its execution budget and limits, its factions, its units (attributes, position,
+ * activity stack and carried material), its materials and the tasks of each scheduler,
+ * including the execution state of their runners.
+ *
+ * A serializer reuses its buffers and object tables, so checkpointing the same world
+ * repeatedly allocates little besides the encoded terrain.
+ *
+ * @note Units which are restored get new ids. Objects are referenced inside a snapshot
+ *       by their index in the snapshot.
+ * @note A paused task runner is restored waiting for its unit to finish its activity,
+ *       which is the only resume condition used by the statements of the task language.
+ * @author Kenneth & Bram
+ * @version 1.0
+ */
+public class WorldSerializer {
+
+    /**
+     * Constant reflecting the first bytes of each snapshot.
+     */
+    public static final int MAGIC = 0x48424C53;// "HBLS"
+    /**
+     * Constant reflecting the version of the snapshot format written by this serializer.
+     */
+    public static final int VERSION = 4;
+
+    /**
+     * Constants reflecting the kinds of activities in a snapshot.
+     */
+    private static final int NONE = 0, REST = 1, WORK = 2, ATTACK = 3, FALL = 4, TARGET_MOVE = 5, ADJACENT_MOVE = 6;
+    /**
+     * Constants reflecting the kinds of object references in a snapshot.
+     */
+    private static final int NULL_REF = 0, UNIT_REF = 1, MATERIAL_REF = 2, CUBE_REF = 3;
+    /**
+     * Constants reflecting the kinds of variable values in a snapshot.
+     */
+    private static final int BOOLEAN_VALUE = 0, VECTOR_VALUE = 1, UNIT_VALUE = 2;
+    /**
+     * Constants reflecting the kinds of materials in a snapshot.
+     */
+    private static final int LOG = 0, BOULDER = 1;
+
+    /**
+     * Variables referencing the reusable buffered output and input.
+     */
+    private final ChannelDataOutput output = new ChannelDataOutput(ChannelDataOutput.DEFAULT_BUFFER_SIZE);
+    private final ChannelDataInput input = new ChannelDataInput(ChannelDataOutput.DEFAULT_BUFFER_SIZE);
+    /**
+     * Variables referencing the index of each saved object.
+     */
+    private final Map<Faction, Integer> factionIndices = new IdentityHashMap<>();
+    private final Map<Unit, Integer> unitIndices = new IdentityHashMap<>();
+    private final Map<Material, Integer> materialIndices = new IdentityHashMap<>();
+    /**
+     * Variables referencing the restored objects by their index.
+     */
+    private final List<Faction> factions = new ArrayList<>();
+    private final List<Unit> units = new ArrayList<>();
+    private final List<Material> materials = new ArrayList<>();
+    /**
+     * Variable referencing the factory which rebuilds the programs of restored tasks.
+     */
+    private final TaskFactory taskFactory = new TaskFactory();
+
+    //region Save
+
+    /**
+     * Save a snapshot of the given world to the given file. An existing file is overwritten.
+     * @param world The world to save.
+     * @param file The file to write to.
+     * @effect The snapshot is written to a channel of the given file.
+     *          | save(world, FileChannel.open(file, WRITE, CREATE, TRUNCATE_EXISTING))
+     * @throws IOException When an I/O error occurs.
+     */
+    public void save(World world, Path file) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)){
+            save(world, channel);
+        }
+    }
+
+    /**
+     * Save a snapshot of the given world to the given channel. The channel is not closed.
+     * @param world The world to save.
+     * @param channel The channel to write to.
+     * @effect The sleeping units of the given world are woken up first.
+     *          | world.wakeAllUnits()
+     * @throws IOException
+     *          When an I/O error occurs or the world contains state which cannot be saved.
+     */
+    public void save(World world, WritableByteChannel channel) throws IOException {
+        world.wakeAllUnits();// The rest timers of sleeping units lag behind
+        output.bind(channel);
+        try {
+            writeWorld(world, output);
+        }finally{
+            output.flush();
+            factionIndices.clear();
+            unitIndices.clear();
+            materialIndices.clear();
+        }
+    }
+
+    private void writeWorld(World world, DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        world.writeTerrain(out);
+        List<Cube> collapsingCubes = world.getCollapsingCubes();
+        out.writeInt(collapsingCubes.size());
+        for(Cube cube : collapsingCubes){
+            writeCubePosition(cube.getPosition(), out);
+            out.writeDouble(cube.getCollapseTime());
+        }
+        ExecutionBudget budget = world.getExecutionBudget();
+        out.writeInt(budget.getUnitBudget());
+        out.writeInt(budget.getGlobalBudget());
+        out.writeInt(budget.getStatementCost());
+        out.writeInt(budget.getExpressionCost());
+        out.writeInt(budget.getSearchCost());
+        out.writeInt(budget.getActionCost());
+        WorldLimits limits = world.getLimits();
+        out.writeInt(limits.getMaxUnits());
+        out.writeInt(limits.getMaxFactions());
+        out.writeInt(limits.getMaxUnitsPerFaction());
+
+        List<Faction> factions = new ArrayList<>(world.getFactions());
+        out.writeInt(factions.size());
+        for(Faction faction : factions)
+            factionIndices.put(faction, factionIndices.size());
+
+        List<Unit> units = new ArrayList<>(world.getNbUnits());
+        for(Unit unit : world.getUnits())
+            if(!unit.isTerminated()){
+                unitIndices.put(unit, units.size());
+                units.add(unit);
+            }
+        out.writeInt(units.size());
+        for(Unit unit : units)
+            writeUnit(unit, out);
+
+        List<Material> materials = new ArrayList<>(world.getMaterials(Material.class, false));
+        materials.removeIf(Material::isTerminated);
+        for(Material material : materials)
+            materialIndices.put(material, materialIndices.size());
+        out.writeInt(materials.size());
+        for(Material material : materials)
+            writeMaterial(material, out);
+
+        // Activities can reference other units and materials, so they are written once these are known
+        for(Unit unit : units)
+            writeActivities(unit, out);
+
+        Set<Task> tasks = world.getScheduledTasks();
+        out.writeInt(tasks.size());
+        for(Task task : tasks)
+            writeTask(task, out);
+    }
+
+    private void writeUnit(Unit unit, DataOutput out) throws IOException {
+        out.writeByte(factionIndices.get(unit.getFaction()));
+        out.writeUTF(unit.getName());
+        Vector position = unit.getPosition();
+        out.writeDouble(position.X());
+        out.writeDouble(position.Y());
+        out.writeDouble(position.Z());
+        out.writeInt(unit.getStrength());
+        out.writeInt(unit.getAgility());
+        out.writeInt(unit.getToughness());
+        // The weight of a unit includes the weight of its carried material, which is restored separately
+        out.writeInt(unit.getWeight() - (unit.isCarryingMaterial() ? unit.getCarriedMaterial().getWeight() : 0));
+        out.writeInt(unit.getStamina());
+        out.writeInt(unit.getHitpoints());
+        out.writeFloat(unit.getOrientation());
+        out.writeInt(unit.getXP());
+        out.writeDouble(unit.getRestTimer());
+    }
+
+    private void writeMaterial(Material material, DataOutput out) throws IOException {
+        out.writeByte(material instanceof Log ? LOG : BOULDER);
+        out.writeInt(material.getWeight());
+        writeReference(material.getOwner(), out);
+        if(material.getOwner() == null){
+            Vector position = material.getPosition();
+            out.writeDouble(position.X());
+            out.writeDouble(position.Y());
+            out.writeDouble(position.Z());
+        }
+    }
+
+    private void writeActivities(Unit unit, DataOutput out) throws IOException {
+        List<Activity> activities = unit.getActivities();
+        out.writeInt(activities.size());
+        Activity previous = null;
+        for(Activity activity : activities){
+            if(activity == unit.NONE){
+                out.writeByte(NONE);
+            }else if(activity == unit.REST){
+                out.writeByte(REST);
+            }else if(activity instanceof Work){
+                out.writeByte(WORK);
+                writeCubePosition(((Work)activity).getWorkCube().getPosition(), out);
+            }else if(activity instanceof Attack){
+                out.writeByte(ATTACK);
+                writeReference(((Attack)activity).getDefender(), out);
+            }else if(activity instanceof Fall){
+                out.writeByte(FALL);
+            }else if(activity instanceof TargetMove){
+                TargetMove move = (TargetMove)activity;
+                out.writeByte(TARGET_MOVE);
+                writeReference(move.getNearestObject(), out);
+                Set<IWorldObject> targets = move.getTargets();
+                out.writeInt(targets.size());
+                for(IWorldObject target : targets)
+                    writeReference(target, out);
+            }else if(activity instanceof AdjacentMove){
+                out.writeByte(ADJACENT_MOVE);
+                Vector nextPosition = ((AdjacentMove)activity).getNextPosition();
+                out.writeDouble(nextPosition.X());
+                out.writeDouble(nextPosition.Y());
+                out.writeDouble(nextPosition.Z());
+                out.writeBoolean(previous != null && activity.isParentActivity(previous));
+            }else
+                throw new IOException("Activities of type " + activity.getClass().getSimpleName() + " cannot be saved.");
+            activity.writeTo(out);
+            previous = activity;
+        }
+    }
+
+    private void writeTask(Task task, DataOutput out) throws IOException {
+        out.writeUTF(task.getName());
+        out.writeInt(task.getPriority());
+        Vector selectedCube = task.getSelectedCube();
+        out.writeBoolean(selectedCube != null);
+        if(selectedCube != null)
+            writeCubePosition(selectedCube, out);
+        ProgramCodec.write(task.getActivity(), out);
+        Set<Scheduler> schedulers = task.getSchedulers();
+        out.writeByte(schedulers.size());
+        for(Scheduler scheduler : schedulers)
+            out.writeByte(factionIndices.get(scheduler.getFaction()));
+        Unit assignedUnit = task.getAssignedUnit();
+        out.writeInt(assignedUnit != null && unitIndices.containsKey(assignedUnit) ? unitIndices.get(assignedUnit) : -1);
+        if(assignedUnit == null || !unitIndices.containsKey(assignedUnit))
+            return;
+        Task.TaskRunner runner = task.getRunner();
+        out.writeInt(runner.getProgramCounter());
+        out.writeBoolean(runner.isPaused());
+        out.writeBoolean(runner.isWaiting());
+        Set<String> variableNames = runner.getVariableNames();
+        out.writeInt(variableNames.size());
+        for(String variableName : variableNames){
+            out.writeUTF(variableName);
+            writeValue(runner.getVariableValue(variableName), out);
+        }
+    }
+
+    private void writeValue(Object value, DataOutput out) throws IOException {
+        if(value instanceof Boolean){
+            out.writeByte(BOOLEAN_VALUE);
+            out.writeBoolean((Boolean)value);
+        }else if(value instanceof Vector){
+            Vector vector = (Vector)value;
+            out.writeByte(VECTOR_VALUE);
+            out.writeDouble(vector.X());
+            out.writeDouble(vector.Y());
+            out.writeDouble(vector.Z());
+        }else if(value instanceof Unit || value == null){// Only unit variables can hold null, for a unit that no longer exists
+            out.writeByte(UNIT_VALUE);
+            Integer index = value == null ? null : unitIndices.get(value);
+            out.writeInt(index == null ? -1 : index);
+        }else
+            throw new IOException("Variables of type " + (value == null ? "null" : value.getClass().getSimpleName()) + " cannot be saved.");
+    }
+
+    private void writeReference(IWorldObject object, DataOutput out) throws IOException {
+        if(object instanceof Unit && unitIndices.containsKey(object)){
+            out.writeByte(UNIT_REF);
+            out.writeInt(unitIndices.get(object));
+        }else if(object instanceof Material && materialIndices.containsKey(object)){
+            out.writeByte(MATERIAL_REF);
+            out.writeInt(materialIndices.get(object));
+        }else if(object instanceof Cube){
+            out.writeByte(CUBE_REF);
+            writeCubePosition(object.getPosition(), out);
+        }else// Not effective or terminated
+            out.writeByte(NULL_REF);
+    }
+
+    private static void writeCubePosition(Vector position, DataOutput out) throws IOException {
+        out.writeInt(position.cubeX());
+        out.writeInt(position.cubeY());
+        out.writeInt(position.cubeZ());
+    }
+
+    //endregion
+
+    //region Restore
+
+    /**
+     * Restore the world saved in the given file.
+     * @param file The file to read from.
+     * @param terrainChangeListener The terrainChangeListener of the restored world.
+     * @effect The world is restored from a channel of the given file.
+     *          | restore(FileChannel.open(file, READ), terrainChangeListener)
+     * @throws IOException When an I/O error occurs or the file contains no valid snapshot.
+     */
+    public World restore(Path file, TerrainChangeListener terrainChangeListener) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            return restore(channel, terrainChangeListener);
+        }
+    }
+
+    /**
+     * Restore the world saved in the given channel. The channel is not closed.
+     * @param channel The channel to read from.
+     * @param terrainChangeListener The terrainChangeListener of the restored world.
+     * @return A new world in the same state as the saved world.
+     * @throws IOException When an I/O error occurs or the channel contains no valid snapshot.
+     */
+    public World restore(ReadableByteChannel channel, TerrainChangeListener terrainChangeListener) throws IOException {
+        input.bind(channel);
+        try {
+            return readWorld(input, terrainChangeListener);
+        }catch(IllegalArgumentException | IllegalStateException | IndexOutOfBoundsException | NullPointerException e){
+            throw new IOException("The snapshot does not describe a valid world.", e);
+        }finally{
+            factions.clear();
+            units.clear();
+            materials.clear();
+        }
+    }
+
+    private World readWorld(DataInput in, TerrainChangeListener terrainChangeListener) throws IOException {
+        if(in.readInt() != MAGIC)
+            throw new IOException("The input is no world snapshot.");
+        int version = in.readShort();
+        if(version != VERSION)
+            throw new IOException("Unsupported snapshot version " + version + ".");
+        World world = new World(World.readTerrain(in), terrainChangeListener);
+        int nbCollapsingCubes = in.readInt();
+        for(int i = 0; i < nbCollapsingCubes; i++){
+            Cube cube = world.getCube(readCubePosition(in));
+            world.restoreCollapse(cube, in.readDouble());
+        }
+        try{
+            world.setExecutionBudget(new ExecutionBudget(in.readInt(), in.readInt(), in.readInt(), in.readInt(),
+                    in.readInt(), in.readInt()));
+        }catch(IllegalArgumentException e){
+            throw new IOException("Invalid execution budget.", e);
+        }
+        try{
+            world.setLimits(new WorldLimits(in.readInt(), in.readInt(), in.readInt()));
+        }catch(IllegalArgumentException e){
+            throw new IOException("Invalid world limits.", e);
+        }
+
+        int nbFactions = in.readInt();
+        if(nbFactions > world.getLimits().getMaxFactions())
+            throw new IOException("Too many factions.");
+        for(int i = 0; i < nbFactions; i++){
+            Faction faction = new Faction();
+            world.addFaction(faction);
+            factions.add(faction);
+        }
+        int nbUnits = in.readInt();
+        for(int i = 0; i < nbUnits; i++)
+            units.add(readUnit(world, in));
+        int nbMaterials = in.readInt();
+        for(int i = 0; i < nbMaterials; i++)
+            materials.add(readMaterial(world, in));
+        for(Unit unit : units)
+            readActivities(unit, in);
+        int nbTasks = in.readInt();
+        for(int i = 0; i < nbTasks; i++)
+            readTask(in);
+        return world;
+    }
+
+    private Unit readUnit(World world, DataInput in) throws IOException {
+        Faction faction = factions.get(in.readUnsignedByte());
+        String name = in.readUTF();
+        Vector position = new Vector(in.readDouble(), in.readDouble(), in.readDouble());
+        if(!world.isValidPosition(position))
+            throw new IOException("Invalid unit position.");
+        int strength = in.readInt(), agility = in.readInt(), toughness = in.readInt(), weight = in.readInt();
+        int stamina = in.readInt(), hitpoints = in.readInt();
+        if(!Unit.isValidStrength(strength) || !Unit.isValidAgility(agility) || !Unit.isValidToughness(toughness) ||
+                !Unit.isValidWeight(weight, strength, agility) || !Unit.isValidStamina(stamina, weight, toughness) ||
+                !Unit.isValidHitpoints(hitpoints, weight, toughness))
+            throw new IOException("Invalid unit attributes.");
+        return new Unit(world, faction, name, position, strength, agility, toughness, weight, stamina, hitpoints,
+                in.readFloat(), in.readInt(), in.readDouble());
+    }
+
+    private Material readMaterial(World world, DataInput in) throws IOException {
+        int type = in.readUnsignedByte();
+        int weight = in.readInt();
+        if(!Material.canHaveAsWeight(weight))
+            throw new IOException("Invalid material weight.");
+        WorldObject owner = (WorldObject)readReference(world, in, false);
+        Vector fallingPosition = null;
+        if(owner == null)
+            fallingPosition = new Vector(in.readDouble(), in.readDouble(), in.readDouble());
+        if(type == LOG)
+            return new Log(world, owner, fallingPosition, weight);
+        if(type == BOULDER)
+            return new Boulder(world, owner, fallingPosition, weight);
+        throw new IOException("Invalid material type " + type + ".");
+    }
+
+    private void readActivities(Unit unit, DataInput in) throws IOException {
+        int nbActivities = in.readInt();
+        List<Activity> activities = new ArrayList<>(nbActivities);
+        for(int i = 0; i < nbActivities; i++){
+            int kind = in.readUnsignedByte();
+            Activity activity;
+            switch(kind){
+                case NONE:
+                    activity = unit.NONE;
+                    break;
+                case REST:
+                    activity = unit.REST;
+                    break;
+                case WORK:
+                    activity = new Work(unit, readCubePosition(in));
+                    break;
+                case ATTACK:
+                    activity = new Attack(unit, (Unit)readReference(unit.getWorld(), in, true));
+                    break;
+                case FALL:
+                    activity = new Fall(unit);
+                    break;
+                case TARGET_MOVE:
+                    IWorldObject leader = readReference(unit.getWorld(), in, true);
+                    int nbTargets = in.readInt();
+                    Set<IWorldObject> targets = new LinkedHashSet<>(nbTargets);
+                    for(int j = 0; j < nbTargets; j++){
+                        IWorldObject target = readReference(unit.getWorld(), in, true);
+                        if(target != null)
+                            targets.add(target);
+                    }
+                    activity = new TargetMove(unit, leader, targets);
+                    break;
+                case ADJACENT_MOVE:
+                    Vector nextPosition = new Vector(in.readDouble(), in.readDouble(), in.readDouble());
+                    boolean hasParent = in.readBoolean();
+                    if(hasParent && (activities.isEmpty() || !(activities.get(activities.size()-1) instanceof TargetMove)))
+                        throw new IOException("Invalid parent activity.");
+                    TargetMove parent = hasParent ? (TargetMove)activities.get(activities.size()-1) : null;
+                    activity = new AdjacentMove(unit, parent, nextPosition);
+                    break;
+                default:
+                    throw new IOException("Invalid activity kind " + kind + ".");
+            }
+            activity.readFrom(in);
+            activities.add(activity);
+        }
+        unit.restoreActivities(activities);
+        if(!unit.isValidPosition(unit.getPosition()))
+            throw new IOException("Invalid unit position.");
+    }
+
+    private void readTask(DataInput in) throws IOException {
+        String name = in.readUTF();
+        int priority = in.readInt();
+        int[] selectedCube = null;
+        if(in.readBoolean())
+            selectedCube = new int[]{ in.readInt(), in.readInt(), in.readInt() };
+        Statement program = ProgramCodec.readStatement(in, taskFactory);
+        Task task = new Task(name, priority, program, selectedCube);
+        int nbSchedulers = in.readUnsignedByte();
+        for(int i = 0; i < nbSchedulers; i++)
+            factions.get(in.readUnsignedByte()).getScheduler().addTask(task);
+        int assignedUnit = in.readInt();
+        if(assignedUnit < 0)
+            return;
+        Unit unit = units.get(assignedUnit);
+        unit.getFaction().getScheduler().schedule(task, unit);
+        if(task.getAssignedUnit() != unit)
+            throw new IOException("The task could not be assigned to its unit.");
+        int programCounter = in.readInt();
+        boolean isPaused = in.readBoolean();
+        boolean isWaiting = in.readBoolean();
+        Task.TaskRunner runner = task.getRunner();
+        try {
+            runner.restore(programCounter, isPaused, isWaiting);
+        }catch(IndexOutOfBoundsException e){
+            throw new IOException("Invalid program counter " + programCounter + ".", e);
+        }
+        int nbVariables = in.readInt();
+        for(int i = 0; i < nbVariables; i++){
+            String variableName = in.readUTF();
+            try {
+                runner.assignVariable(variableName, readValue(in));
+            }catch(IllegalArgumentException | ClassCastException e){
+                throw new IOException("Invalid value for variable " + variableName + ".", e);
+            }
+        }
+    }
+
+    private Object readValue(DataInput in) throws IOException {
+        int kind = in.readUnsignedByte();
+        switch(kind){
+            case BOOLEAN_VALUE:
+                return in.readBoolean();
+            case VECTOR_VALUE:
+                return new Vector(in.readDouble(), in.readDouble(), in.readDouble());
+            case UNIT_VALUE:
+                int index = in.readInt();
+                return index < 0 ? null : units.get(index);// A unit which was terminated before the save
+            default:
+                throw new IOException("Invalid variable kind " + kind + ".");
+        }
+    }
+
+    private IWorldObject readReference(IWorld world, DataInput in, boolean allowMaterials) throws IOException {
+        int kind = in.readUnsignedByte();
+        switch(kind){
+            case NULL_REF:
+                return null;
+            case UNIT_REF:
+                return units.get(in.readInt());
+            case MATERIAL_REF:
+                if(!allowMaterials)
+                    throw new IOException("A material cannot reference another material.");
+                return materials.get(in.readInt());
+            case CUBE_REF:
+                return world.getCube(readCubePosition(in));
+            default:
+                throw new IOException("Invalid reference kind " + kind + ".");
+        }
+    }
+
+    private static Vector readCubePosition(DataInput in) throws IOException {
+        return new Vector(in.readInt(), in.readInt(), in.readInt());
+    }
+
+    //endregion
+}
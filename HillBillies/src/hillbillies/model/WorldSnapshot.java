@@ -0,0 +1,283 @@
+package hillbillies.model;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Immutable;
+import be.kuleuven.cs.som.annotate.Value;
+import hillbillies.utils.ChunkedByteMap;
+import hillbillies.utils.Vector;
+
+import java.util.*;
+
+/**
+ * Class representing an immutable snapshot of the state of a World at the end of a tick.
+ * Snapshots are published by the world through a volatile reference, so renderers and other
+ * observers can read a consistent state from any thread without locking the world.
+ *
+ * @note The units, factions and materials referenced by a snapshot are live model objects.
+ *       They only serve as identity keys, their state must be read from the snapshot.
+ * @note Snapshots are compared by identity, the world publishes a new snapshot for each tick.
+ *       The states of the units and materials are values.
+ * @author Kenneth & Bram
+ * @version 1.0
+ */
+public final class WorldSnapshot {
+
+    /**
+     * Variable registering the number of ticks the world advanced before this snapshot was taken.
+     */
+    private final long tick;
+    /**
+     * Variable referencing the terrain of the world when this snapshot was taken.
+     */
+    private final ChunkedByteMap.Snapshot terrain;
+    /**
+     * Variables referencing the state of each unit and material of the world.
+     */
+    private final List<UnitState> units;
+    private final List<MaterialState> materials;
+
+    /**
+     * Initialize a new snapshot of the given world.
+     * @param world The world to take a snapshot of.
+     * @param tick The number of ticks the given world advanced.
+     * @param terrain The snapshot of the given world's terrain.
+     */
+    WorldSnapshot(World world, long tick, ChunkedByteMap.Snapshot terrain){
+        this.tick = tick;
+        this.terrain = terrain;
+        List<UnitState> units = new ArrayList<>(world.getNbUnits());
+        for(Unit unit : world.getUnits())
+            if(!unit.isTerminated())
+                units.add(new UnitState(unit));
+        this.units = Collections.unmodifiableList(units);
+        List<MaterialState> materials = new ArrayList<>(world.getNbMaterials());
+        for(Material material : world.getMaterials(Material.class, false))
+            if(!material.isTerminated())
+                materials.add(new MaterialState(material));
+        this.materials = Collections.unmodifiableList(materials);
+    }
+
+    /**
+     * Return the number of ticks the world advanced before this snapshot was taken.
+     */
+    @Basic @Immutable
+    public long getTick(){
+        return tick;
+    }
+
+    /**
+     * Return the number of cubes of the world along each axis.
+     */
+    @Immutable
+    public int getNbCubesX(){
+        return terrain.getNbX();
+    }
+
+    @Immutable
+    public int getNbCubesY(){
+        return terrain.getNbY();
+    }
+
+    @Immutable
+    public int getNbCubesZ(){
+        return terrain.getNbZ();
+    }
+
+    /**
+     * Return the terrain of the cube with given coordinates when this snapshot was taken.
+     * @throws IndexOutOfBoundsException
+     *          When the given coordinates do not reference a cube of the world.
+     */
+    @Immutable
+    public Terrain getTerrain(int x, int y, int z) throws IndexOutOfBoundsException {
+        return Terrain.fromId(terrain.getValue(x, y, z));
+    }
+
+    /**
+     * Return the state of each unit of the world when this snapshot was taken.
+     */
+    @Basic @Immutable
+    public List<UnitState> getUnits(){
+        return units;
+    }
+
+    /**
+     * Return the state of each material of the world when this snapshot was taken.
+     */
+    @Basic @Immutable
+    public List<MaterialState> getMaterials(){
+        return materials;
+    }
+
+    /**
+     * Class representing the immutable state of a Unit.
+     */
+    @Value
+    public static final class UnitState {
+
+        private final Unit unit;
+        private final Faction faction;
+        private final String name;
+        private final Vector position;
+        private final float orientation;
+        private final int strength, agility, toughness, weight, stamina, hitpoints, experiencePoints;
+        private final String activity;
+        private final boolean isDefaultActive, isSprinting, isCarryingLog, isCarryingBoulder;
+
+        private UnitState(Unit unit){
+            this.unit = unit;
+            this.faction = unit.getFaction();
+            this.name = unit.getName();
+            this.position = unit.getPosition();
+            this.orientation = unit.getOrientation();
+            this.strength = unit.getStrength();
+            this.agility = unit.getAgility();
+            this.toughness = unit.getToughness();
+            this.weight = unit.getWeight();
+            this.stamina = unit.getStamina();
+            this.hitpoints = unit.getHitpoints();
+            this.experiencePoints = unit.getXP();
+            this.activity = unit.getCurrentActivity().toString();
+            this.isDefaultActive = unit.isDefaultActive();
+            this.isSprinting = unit.isSprinting();
+            this.isCarryingLog = unit.isCarryingLog();
+            this.isCarryingBoulder = unit.isCarryingBoulder();
+        }
+
+        /**
+         * Return the unit this state belongs to. The returned unit is live and may only be used as an identity key.
+         */
+        @Basic @Immutable
+        public Unit getUnit(){ return unit; }
+
+        /**
+         * Return the faction of the unit. The returned faction is live and may only be used as an identity key.
+         */
+        @Basic @Immutable
+        public Faction getFaction(){ return faction; }
+
+        @Basic @Immutable
+        public String getName(){ return name; }
+
+        @Basic @Immutable
+        public Vector getPosition(){ return position; }
+
+        @Basic @Immutable
+        public float getOrientation(){ return orientation; }
+
+        @Basic @Immutable
+        public int getStrength(){ return strength; }
+
+        @Basic @Immutable
+        public int getAgility(){ return agility; }
+
+        @Basic @Immutable
+        public int getToughness(){ return toughness; }
+
+        @Basic @Immutable
+        public int getWeight(){ return weight; }
+
+        @Basic @Immutable
+        public int getStamina(){ return stamina; }
+
+        @Basic @Immutable
+        public int getHitpoints(){ return hitpoints; }
+
+        @Basic @Immutable
+        public int getXP(){ return experiencePoints; }
+
+        /**
+         * Return the name of the activity the unit was executing.
+         */
+        @Basic @Immutable
+        public String getActivity(){ return activity; }
+
+        @Basic @Immutable
+        public boolean isDefaultActive(){ return isDefaultActive; }
+
+        @Basic @Immutable
+        public boolean isSprinting(){ return isSprinting; }
+
+        @Basic @Immutable
+        public boolean isCarryingLog(){ return isCarryingLog; }
+
+        @Basic @Immutable
+        public boolean isCarryingBoulder(){ return isCarryingBoulder; }
+
+        @Override
+        public boolean equals(Object other){
+            if(!(other instanceof UnitState))
+                return false;
+            UnitState state = (UnitState)other;
+            return unit == state.unit && faction == state.faction && name.equals(state.name) &&
+                    position.equals(state.position) && Float.compare(orientation, state.orientation) == 0 &&
+                    strength == state.strength && agility == state.agility && toughness == state.toughness &&
+                    weight == state.weight && stamina == state.stamina && hitpoints == state.hitpoints &&
+                    experiencePoints == state.experiencePoints && activity.equals(state.activity) &&
+                    isDefaultActive == state.isDefaultActive && isSprinting == state.isSprinting &&
+                    isCarryingLog == state.isCarryingLog && isCarryingBoulder == state.isCarryingBoulder;
+        }
+
+        @Override
+        public int hashCode(){
+            // The position is left out, equal positions may differ slightly
+            return Objects.hash(unit, faction, name, orientation, strength, agility, toughness, weight, stamina,
+                    hitpoints, experiencePoints, activity, isDefaultActive, isSprinting, isCarryingLog, isCarryingBoulder);
+        }
+    }
+
+    /**
+     * Class representing the immutable state of a Material.
+     */
+    @Value
+    public static final class MaterialState {
+
+        private final Material material;
+        private final boolean isLog;
+        private final Vector position;
+        private final boolean isCarried;
+
+        private MaterialState(Material material){
+            this.material = material;
+            this.isLog = material instanceof Log;
+            this.position = material.getPosition();
+            this.isCarried = material.getOwner() instanceof Unit;
+        }
+
+        /**
+         * Return the material this state belongs to. The returned material is live and may only be used as an identity key.
+         */
+        @Basic @Immutable
+        public Material getMaterial(){ return material; }
+
+        /**
+         * Check whether the material is a Log, otherwise it is a Boulder.
+         */
+        @Basic @Immutable
+        public boolean isLog(){ return isLog; }
+
+        @Basic @Immutable
+        public Vector getPosition(){ return position; }
+
+        /**
+         * Check whether the material was carried by a unit.
+         */
+        @Basic @Immutable
+        public boolean isCarried(){ return isCarried; }
+
+        @Override
+        public boolean equals(Object other){
+            if(!(other instanceof MaterialState))
+                return false;
+            MaterialState state = (MaterialState)other;
+            return material == state.material && isLog == state.isLog && position.equals(state.position) &&
+                    isCarried == state.isCarried;
+        }
+
+        @Override
+        public int hashCode(){
+            // The position is left out, equal positions may differ slightly
+            return Objects.hash(material, isLog, isCarried);
+        }
+    }
+}
@@ -14,6 +14,8 @@ import hillbillies.tests.facade.Part3TestPartial;
 import hillbillies.utils.*;
 import ogp.framework.util.ModelException;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Set;
@@ -24,6 +26,92 @@ import java.util.Set;
  * @version 1.0
  */
 public class Facade implements IFacade {
+
+    /**
+     * Constant reflecting the system property holding the file a journal of the last created
+     * world is recorded to. No journal is recorded when this property is not set.
+     */
+    public static final String JOURNAL_PROPERTY = "hillbillies.journal";
+    /**
+     * Constant reflecting the system property holding the random seed of a recorded journal.
+     * A seed based on the current time is used when this property is not set.
+     */
+    public static final String JOURNAL_SEED_PROPERTY = "hillbillies.journal.seed";
+
+    /**
+     * Variable referencing the recorder of the last created world, if its commands are recorded.
+     */
+    private JournalRecorder recorder = null;
+    /**
+     * Variable registering whether the recorder is closed when the application exits.
+     */
+    private boolean isRecorderClosedOnExit = false;
+
+    /**
+     * Interface for a command which is written to a journal.
+     */
+    private interface Record {
+        void writeTo(JournalRecorder recorder) throws IOException;
+    }
+
+    /**
+     * Record a command given to the given world, if the commands of that world are recorded.
+     * Recording stops when the journal cannot be written.
+     */
+    private synchronized void record(IWorld world, Record record){
+        if(recorder == null || recorder.getWorld() != world)
+            return;
+        try {
+            record.writeTo(recorder);
+        }catch(IOException e){
+            System.err.println("Stopped recording the journal: " + e.getMessage());
+            stopRecording();
+        }
+    }
+
+    /**
+     * Record a command given to the given scheduler, if the commands of its world are recorded.
+     */
+    private void record(Scheduler scheduler, Record record){
+        JournalRecorder recorder = this.recorder;
+        if(recorder != null && recorder.getWorld().getFactions().contains(scheduler.getFaction()))
+            record(recorder.getWorld(), record);
+    }
+
+    /**
+     * Start recording a journal of the given world when the journal property is set.
+     */
+    private synchronized void startRecording(World world){
+        String file = System.getProperty(JOURNAL_PROPERTY);
+        if(file == null)
+            return;
+        stopRecording();
+        try {
+            recorder = new JournalRecorder(world, Long.getLong(JOURNAL_SEED_PROPERTY, System.nanoTime()), Paths.get(file));
+        }catch(IOException e){
+            System.err.println("Could not record the journal: " + e.getMessage());
+            return;
+        }
+        if(!isRecorderClosedOnExit){
+            isRecorderClosedOnExit = true;
+            Runtime.getRuntime().addShutdownHook(new Thread(this::stopRecording));
+        }
+    }
+
+    /**
+     * Stop recording the current journal, if any.
+     */
+    private synchronized void stopRecording(){
+        if(recorder == null)
+            return;
+        try {
+            recorder.close();
+        }catch(IOException e){
+            System.err.println("Could not close the journal: " + e.getMessage());
+        }
+        recorder = null;
+    }
+
     /**
      * Create a new world of the given size and with the given terrain. To keep
      * the GUI display up to date, the method in the given listener must be
@@ -54,7 +142,9 @@ public class Facade implements IFacade {
     @Override
     public World createWorld(int[][][] terrainTypes, TerrainChangeListener modelListener) throws ModelException {
         try {
-            return new World(terrainTypes, modelListener);
+            World world = new World(terrainTypes, modelListener);
+            startRecording(world);
+            return world;
         }catch(IllegalArgumentException e){
             throw new ModelException("Invalid terrainTypes matrix", e);
         }
@@ -117,6 +207,7 @@ public class Facade implements IFacade {
         if(world==null)
             throw new ModelException("The given world is not effective.");
         try {
+            record(world, r -> r.recordAdvanceTime(dt));
             world.advanceTime(dt);
         }catch(Exception e){
             throw new ModelException(e);
@@ -164,6 +255,7 @@ public class Facade implements IFacade {
         if(world==null)
             throw new ModelException("The given world is not effective.");
         try {
+            record(world, r -> r.recordSetCubeType(x, y, z, value));
             world.getCube(new Vector(x, y, z)).setTerrain(Terrain.fromId(value));
         }catch(IllegalArgumentException e){
             throw new ModelException("The given coordinates do not reference a valid position in this world.",e);
@@ -204,7 +296,10 @@ public class Facade implements IFacade {
         if(world==null)
             throw new ModelException("The given world is not effective.");
         try{
-            return world.spawnUnit(enableDefaultBehavior);
+            record(world, r -> r.recordSpawnUnit(enableDefaultBehavior));
+            Unit unit = world.spawnUnit(enableDefaultBehavior);
+            record(world, r -> r.registerUnit(unit));
+            return unit;
         }catch(IllegalStateException e){
         	throw new ModelException("There are no passable cubes in this world", e);
         }catch(IllegalArgumentException e){
@@ -225,9 +320,11 @@ public class Facade implements IFacade {
             throw new ModelException("The given world is not effective.");
         if(unit==null)
             throw new ModelException("The given unit is not effective.");
-        if(unit.isTerminated() || world.getNbUnits()>=World.MAX_UNITS)
+        if(unit.isTerminated() || world.getNbUnits()>=world.getMaxUnits())
             throw new ModelException("world.addUnit's preconditions are violated.");
+        record(world, r -> r.recordAddUnit(unit));
         world.addUnit(unit);
+        record(world, r -> r.registerUnit(unit));
     }
 
     /**
@@ -315,6 +412,7 @@ public class Facade implements IFacade {
         if(unit==null)
             throw new ModelException("The given unit is not effective.");
         try{
+            record(unit.getWorld(), r -> r.recordWork(unit, x, y, z));
             unit.work(new Vector(x,y,z));
         }catch(IllegalArgumentException e){
             throw new ModelException("The target cube is not a valid cube to work on.", e);
@@ -507,6 +605,7 @@ public class Facade implements IFacade {
         if(unit==null)
             throw new ModelException("The given unit is not effective.");
         try {
+            record(unit.getWorld(), r -> r.recordSetName(unit, newName));
             unit.setName(newName);
         }catch(IllegalArgumentException e){
             throw new ModelException("Invalid newName for unit.", e);
@@ -540,6 +639,7 @@ public class Facade implements IFacade {
             throw new ModelException("The given unit is not effective.");
         if (!Unit.isValidWeight(newValue, unit.getStrength(), unit.getAgility()))
             throw new ModelException("Invalid weight for this unit");
+        record(unit.getWorld(), r -> r.recordSetWeight(unit, newValue));
         unit.setWeight(newValue);
     }
 
@@ -570,6 +670,7 @@ public class Facade implements IFacade {
             throw new ModelException("The given unit is not effective.");
         if (!Unit.isValidStrength(newValue))
             throw new ModelException("Invalid strength for this unit");
+        record(unit.getWorld(), r -> r.recordSetStrength(unit, newValue));
         unit.setStrength(newValue);
     }
 
@@ -600,6 +701,7 @@ public class Facade implements IFacade {
             throw new ModelException("The given unit is not effective.");
         if (!Unit.isValidAgility(newValue))
             throw new ModelException("Invalid agility for this unit");
+        record(unit.getWorld(), r -> r.recordSetAgility(unit, newValue));
         unit.setAgility(newValue);
     }
 
@@ -631,6 +733,7 @@ public class Facade implements IFacade {
             throw new ModelException("The given unit is not effective.");
         if (!Unit.isValidToughness(newValue))
             throw new ModelException("Invalid toughness for this unit");
+        record(unit.getWorld(), r -> r.recordSetToughness(unit, newValue));
         unit.setToughness(newValue);
     }
 
@@ -709,6 +812,7 @@ public class Facade implements IFacade {
         if(unit==null)
             throw new ModelException("The given unit is not effective.");
         try{
+            record(unit.getWorld(), r -> r.recordMoveToAdjacent(unit, dx, dy, dz));
             unit.moveToAdjacent(new Vector(dx,dy,dz));
         }catch(IllegalStateException e){
             throw new ModelException("Unit is not able to move at this moment.",e);
@@ -756,6 +860,7 @@ public class Facade implements IFacade {
         if(unit==null)
             throw new ModelException("The given unit is not effective.");
         try{
+            record(unit.getWorld(), r -> r.recordSprint(unit, true));
             unit.sprint();
         }catch(IllegalStateException e){
             throw new ModelException("The Unit is not able to sprint!", e);
@@ -774,6 +879,7 @@ public class Facade implements IFacade {
             throw new ModelException("The given unit is not effective.");
         if(!unit.isSprinting())
             throw new ModelException("Unit was not sprinting");
+        record(unit.getWorld(), r -> r.recordSprint(unit, false));
         unit.stopSprint();
     }
 
@@ -818,6 +924,7 @@ public class Facade implements IFacade {
         if(unit==null)
             throw new ModelException("The given unit is not effective.");
         try{
+            record(unit.getWorld(), r -> r.recordMoveTo(unit, cube[0], cube[1], cube[2]));
             unit.moveToTarget(new Vector (cube));
         }catch (IllegalStateException e){
             throw new ModelException("Unit is not able to move at this moment.",e );
@@ -852,6 +959,7 @@ public class Facade implements IFacade {
         if(attacker==null || defender==null)
             throw new ModelException("One of the given units is not effective.");
         try{
+            record(attacker.getWorld(), r -> r.recordAttack(attacker, defender));
             attacker.attack(defender);
         }catch(IllegalArgumentException e){
             throw new ModelException("Cannot attack that unit", e);
@@ -886,6 +994,7 @@ public class Facade implements IFacade {
         if(unit==null)
             throw new ModelException("The given unit is not effective.");
         try{
+            record(unit.getWorld(), r -> r.recordRest(unit));
             unit.rest();
         }catch(IllegalStateException e){
             throw new ModelException("This unit cannot rest at this moment", e);
@@ -918,6 +1027,7 @@ public class Facade implements IFacade {
     public void setDefaultBehaviorEnabled(Unit unit, boolean value) throws ModelException {
         if(unit==null)
             throw new ModelException("The given unit is not effective.");
+        record(unit.getWorld(), r -> r.recordDefaultBehaviour(unit, value));
         if (value)
             unit.startDefaultBehaviour();
         else unit.stopDefaultBehaviour();
@@ -1025,6 +1135,7 @@ public class Facade implements IFacade {
             throw new ModelException("The given task is not effective.");
         if(task.hasAsScheduler(scheduler))
             throw new ModelException("A precondition of scheduler.addTask is violated.");
+        record(scheduler, r -> r.recordSchedule(scheduler, task));
         scheduler.addTask(task);
     }
 
@@ -1043,6 +1154,7 @@ public class Facade implements IFacade {
         if(original==null || replacement==null)
             throw new ModelException("One of the given tasks is not effective.");
         try{
+            record(scheduler, r -> r.recordReplace(scheduler, original, replacement));
             scheduler.replaceTask(original, replacement);
         }catch(IllegalArgumentException e){
             throw new ModelException("The original or replacement task are invalid.", e);
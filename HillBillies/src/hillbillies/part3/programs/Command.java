@@ -1,8 +1,5 @@
 package hillbillies.part3.programs;
 
-import be.kuleuven.cs.som.annotate.Basic;
-import be.kuleuven.cs.som.annotate.Raw;
-import hillbillies.model.Task;
 import hillbillies.part3.programs.expressions.ReadVariable;
 import hillbillies.part3.programs.statements.Assignment;
 import hillbillies.part3.programs.statements.Statement;
@@ -11,9 +8,9 @@ import java.util.*;
 import java.util.function.Predicate;
 
 /**
- * Abstract class representing a Command. A Command can be associated with a Task.
- * Once associated, this Command can be ran. The return type of this run method
- * is given by the generic parameter T.
+ * Abstract class representing a Command. Commands form the tree of a task's program,
+ * which is compiled to a Program before it is executed. The type of the result of a
+ * Command is given by the generic parameter T.
  *
  * Statements are Commands that return void, they DO stuff or CONTROL the program flow.
  * Expressions are Commands that return a result, they CALCULATE stuff.
@@ -23,18 +20,10 @@ import java.util.function.Predicate;
  */
 public abstract class Command<T> implements Iterable<Command<?>> {
     /**
-     * List referencing this Command's children
+     * List referencing this Command's children. Commands are immutable, so one
+     * program tree can be executed by several tasks at once.
      */
     private final List<Command<?>> children;
-    /**
-     * Variable registering the current task. This is the task that
-     * is currently running this Command.
-     */
-    private Task currentTask;
-    /**
-     * HashSet registering the already executed children.
-     */
-    private HashSet<Integer> executedChildren;
 
     /**
      * Create a new Command with given children.
@@ -44,15 +33,15 @@ public abstract class Command<T> implements Iterable<Command<?>> {
      *                 time.
      * @throws IllegalArgumentException
      *          When one of the given children is invalid.
-     *          | for any(Command child in children : child==null || indicesSatisfying(command -> this==command).size()!=0)
+     *          | for any(Command child in children : child==null)
+     * @note A Command can never be one of its own sub Commands: its children are created
+     *       before it and can't be changed afterwards. The tree doesn't have to be searched.
      */
     public Command(Command<?>... children) throws IllegalArgumentException {
-        this.children = new ArrayList<>(Arrays.asList(children));
-        for(int i=0;i<this.children.size();i++)
-            if(this.children.get(i)==null || this.indicesSatisfying(command -> this==command).size()!=0)
-                // Child is null or it contains this Command in its subCommands
+        for(int i=0;i<children.length;i++)
+            if(children[i]==null)
                 throw new IllegalArgumentException("The child at index " + i + " is an invalid child for this command.");
-        this.executedChildren = new HashSet<>();
+        this.children = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(children)));
     }
 
     /**
@@ -94,135 +83,6 @@ public abstract class Command<T> implements Iterable<Command<?>> {
         return this.children.size();
     }
 
-    /**
-     * Return the current task of this Command.
-     */
-    @Basic
-    @Raw
-    protected Task getCurrentTask() {
-        return this.currentTask;
-    }
-
-    /**
-     * Check whether the given task is a valid task for
-     * this Command.
-     *
-     * @param task
-     * The task to check.
-     * @return True when the task's activity is set to this Command.
-     * | result == (task.getActivity()==this)
-     */
-    private boolean isValidTask(Task task) {
-        return task.getActivity()==this;
-    }
-
-    /**
-     * Set the currentTask of this Command to the given task.
-     *
-     * @param task
-     * The new currentTask for this Command.
-     * @pre The given task is a valid currentTask for this Command.
-     *      | isValidTask(task)
-     * @post The currentTask of this new Command is equal to
-     * the given task.
-     * | new.getCurrentTask() == task
-     * @post The Command's progress is reset.
-     *       | this.getCurrentChild() == 0 ; this.executedChildren.size() == 0
-     */
-    @Raw
-    private void setCurrentTask(Task task) throws IllegalArgumentException {
-        for (Command<?> child : this.children)
-            child.setCurrentTask(task);
-        this.currentTask = task;
-        this.executedChildren.clear();
-        this.currentChild = 0;
-    }
-
-    /**
-     * Set the currentTask of this Command and all its children to null.
-     */
-    private void resetCurrentTask(){
-        for(Command<?> child : this)
-            child.resetCurrentTask();
-        this.currentTask = null;
-    }
-
-    /**
-     * @return Boolean value indicating whether this Command's currentTask is null or not.
-     */
-    private boolean isCurrentTaskSet(){
-        return this.currentTask!=null;
-    }
-
-    /**
-     * Run this command.
-     * @return
-     * @throws IllegalStateException
-     * @throws NullPointerException
-     *          Possibly by Expression -> use Liskov question mark?
-     */
-    private T run() throws IllegalStateException, NullPointerException{
-        if(!this.isCurrentTaskSet())
-            throw new IllegalStateException("This command is not linked to any task yet, so it can't be executed.");
-        if(!this.getCurrentTask().isRunning() || this.getRunner().isPausing())
-            return null;
-        T result = process();
-        this.currentChild = 0;
-        this.executedChildren.clear();
-        return result;
-    }
-
-    protected <E> E runChild(Command<E> child) throws IllegalStateException, IllegalArgumentException{
-        if(!this.isCurrentTaskSet())
-            throw new IllegalStateException("This command is not linked to any task yet, so it can't be executed.");
-        if(this.getRunner().isStopping() || this.getRunner().isPausing())
-            return null;// We are stopping / pausing
-        int childIndex = this.children.indexOf(child);
-        if(childIndex<currentChild && !executedChildren.contains(childIndex))
-            throw new IllegalArgumentException("The given child command should be run before the currently running command.");
-        setCurrentChild(childIndex);
-        executedChildren.add(childIndex);
-        return child.run();
-    }
-
-    public int getCurrentChild(){
-        return this.currentChild;
-    }
-
-    protected void setCurrentChild(int childIndex){
-        if(childIndex>=currentChild){
-            while(currentChild<childIndex){
-                this.executedChildren.add(currentChild);
-                currentChild++;// Ugly quick fix for while
-            }
-        }
-    }
-
-    private int currentChild = 0;
-
-    protected abstract T process() throws NullPointerException;
-
-    public final void start(Task task) throws IllegalArgumentException, IllegalStateException{
-        if(!isValidTask(task))
-            throw new IllegalArgumentException("The given task does not have this Command as its activity.");
-
-        this.setCurrentTask(task);
-
-        if(this.getRunner().isStopping() || this.getRunner().isPausing())
-            throw new IllegalStateException("The taskRunner linked to this command is stopping or pausing.");
-
-        this.run();
-        this.resetCurrentTask();
-    }
-
-    protected Task.TaskRunner getRunner() throws IllegalStateException{
-        if(!this.isCurrentTaskSet())
-            throw new IllegalStateException("This command is not linked to any task yet, so there's no runner available.");
-        if(!this.getCurrentTask().isRunning())
-            throw new IllegalStateException("The task linked to this command is not running yet, so there's no runner available.");
-        return this.getCurrentTask().getRunner();
-    }
-
     /**
      * Returns an iterator over elements of type {@code Command<?>}.
      *
@@ -0,0 +1,335 @@
+package hillbillies.part3.programs;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Immutable;
+import hillbillies.model.ExecutionBudget;
+import hillbillies.model.Task.TaskRunner;
+import hillbillies.model.Unit;
+import hillbillies.part3.programs.expressions.BinaryExpression;
+import hillbillies.part3.programs.expressions.Expression;
+import hillbillies.part3.programs.expressions.UnaryExpression;
+import hillbillies.part3.programs.statements.ActionStatement;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static hillbillies.part3.programs.Program.*;
+
+/**
+ * Class representing the execution state of a compiled program: its program counter, its
+ * operand stack and its variables. Programs are immutable and shared by all tasks executing
+ * the same statement, each TaskRunner executes the program with its own frame. A frame is
+ * executed for a TaskRunner, which provides the unit, and with an instruction budget, which
+ * the program spends on its instructions.
+ *
+ * @author Kenneth & Bram
+ * @version 1.0
+ */
+public class Frame {
+
+    /**
+     * Variable referencing the program executed by this frame.
+     */
+    private final Program program;
+    /**
+     * Variable referencing the operand stack of this frame.
+     */
+    private final Object[] stack;
+    /**
+     * Variable registering the number of values on the operand stack.
+     */
+    private int stackSize = 0;
+    /**
+     * Variable registering the index of the next instruction to execute.
+     */
+    private int programCounter = 0;
+    /**
+     * Variable referencing the values of the variables of this frame, indexed by their slot
+     * in the program. Unassigned variables have a null value, unit variables which are assigned
+     * a unit that no longer exists (e.g. after a restore) hold NO_UNIT.
+     */
+    private final Object[] variables;
+    /**
+     * Constant marking a unit variable which is assigned a unit that no longer exists.
+     */
+    private static final Object NO_UNIT = new Object();
+
+    /**
+     * Initialize a new frame executing the given program from its first instruction.
+     * @param program The program to execute.
+     * @post | new.getProgram() == program && new.getProgramCounter() == 0
+     * @throws NullPointerException
+     *          When the given program is not effective.
+     *          | program == null
+     */
+    public Frame(Program program) throws NullPointerException {
+        this.program = program;
+        this.stack = new Object[program.getMaxStackSize()];
+        this.variables = new Object[program.getNbVariables()];
+    }
+
+    /**
+     * Return the program executed by this frame.
+     */
+    @Basic @Immutable
+    public Program getProgram(){
+        return this.program;
+    }
+
+    /**
+     * Return the index of the next instruction this frame will execute.
+     */
+    @Basic
+    public int getProgramCounter(){
+        return this.programCounter;
+    }
+
+    /**
+     * Set the program counter of this frame to the given index, which must be the program
+     * counter of a paused frame of the same program.
+     * @param programCounter The new program counter.
+     * @post | new.getProgramCounter() == programCounter
+     * @throws IndexOutOfBoundsException
+     *          When the given program counter is outside the program.
+     *          | programCounter < 0 || programCounter > getProgram().getNbInstructions()
+     */
+    public void setProgramCounter(int programCounter) throws IndexOutOfBoundsException {
+        if(programCounter < 0 || programCounter > program.code.length)
+            throw new IndexOutOfBoundsException("Invalid program counter " + programCounter + ".");
+        this.programCounter = programCounter;
+        this.stackSize = 0;
+    }
+
+    /**
+     * Assign the given value to the variable with the given name.
+     * @param variableName The name of the variable.
+     * @param value The new value of the variable.
+     * A unit variable can be assigned null, which stands for a unit that no longer exists.
+     * @post | new.getVariableValue(variableName) == value
+     * @throws IllegalArgumentException
+     *          When the program of this frame has no variable with the given name.
+     *          | getProgram().getVariableSlot(variableName) == -1
+     * @throws ClassCastException
+     *          When the given value does not match the type of the variable.
+     *          | value == null ? getProgram().getVariableType(getProgram().getVariableSlot(variableName)) != Unit.class
+     *          |   : !getProgram().getVariableType(getProgram().getVariableSlot(variableName)).isInstance(value)
+     */
+    public void assignVariable(String variableName, Object value) throws IllegalArgumentException, ClassCastException {
+        int slot = slotOf(variableName);
+        Class<?> type = program.getVariableType(slot);
+        if(value == null ? type != Unit.class : !type.isInstance(value))
+            throw new ClassCastException("The variable's name and type do not match.");
+        variables[slot] = value == null ? NO_UNIT : value;
+    }
+
+    /**
+     * Check whether the variable with the given name is assigned.
+     */
+    public boolean isVariableAssigned(String variableName){
+        int slot = program.getVariableSlot(variableName);
+        return slot != -1 && variables[slot] != null;
+    }
+
+    /**
+     * Return the value of the variable with the given name, which is null for a unit variable
+     * assigned a unit that no longer exists.
+     * @throws IllegalArgumentException
+     *          When the variable is not assigned.
+     *          | !isVariableAssigned(variableName)
+     */
+    @SuppressWarnings("unchecked")// The caller states the type of the variable, as for a generic getter
+    public <T> T getVariableValue(String variableName) throws IllegalArgumentException {
+        Object value = variables[slotOf(variableName)];
+        if(value == null)
+            throw new IllegalArgumentException("This variable isn't assigned.");
+        return value == NO_UNIT ? null : (T)value;
+    }
+
+    /**
+     * Return the names of the variables assigned by the program of this frame.
+     */
+    public Set<String> getVariableNames(){
+        Set<String> names = new LinkedHashSet<>();
+        for(int slot = 0; slot < variables.length; slot++)
+            if(variables[slot] != null)
+                names.add(program.getVariableName(slot));
+        return names;
+    }
+
+    private int slotOf(String variableName) throws IllegalArgumentException {
+        int slot = program.getVariableSlot(variableName);
+        if(slot == -1)
+            throw new IllegalArgumentException("The program has no variable " + variableName + ".");
+        return slot;
+    }
+
+    /**
+     * Check whether all instructions of the program are executed.
+     */
+    public boolean isFinished(){
+        return this.programCounter >= program.code.length;
+    }
+
+    /**
+     * Execute the program of this frame for the given runner, until the program finishes, the
+     * runner is pausing or stopping, or the given budget is spent. The program only pauses for
+     * its budget at the start of a statement, so it can overspend the budget with the remaining
+     * instructions of its last statement.
+     * @param runner The runner to execute the program for.
+     * @param costs The costs of the instructions.
+     * @param budget The budget the program can spend.
+     * @param profiler The profiler measuring the statements of the program, null when the
+     *          program isn't profiled.
+     * @return The budget which is left, which is negative when the program overspent.
+     * @effect When the budget is spent before the program finishes, the runner is paused.
+     *          | runner.exhaustBudget()
+     * @throws NullPointerException
+     *          When an expression yields null without stopping the given runner.
+     * @throws ClassCastException
+     *          When an expression yields a value of another type than its static type.
+     * @throws IllegalStateException
+     *          When a variable is read before it is assigned.
+     */
+    public int execute(TaskRunner runner, ExecutionBudget costs, int budget, TaskProfiler profiler)
+            throws NullPointerException, ClassCastException, IllegalStateException {
+        try {
+            return execute(runner, costs, budget, profiler, program.code, program.constants);
+        }finally{
+            if(profiler != null)
+                profiler.end();
+        }
+    }
+
+    // The constants of COMPUTE, COMBINE and EXECUTE are the expressions and statements compiled into
+    // them. Their erased methods check the values popped from the stack, a mismatch throws a
+    // ClassCastException which the runner reports.
+    @SuppressWarnings("unchecked")
+    private int execute(TaskRunner runner, ExecutionBudget costs, int budget, TaskProfiler profiler, int[] code,
+                        Object[] constants) throws NullPointerException, ClassCastException, IllegalStateException {
+        final int statementCost = costs.getStatementCost(), expressionCost = costs.getExpressionCost();
+        boolean isSearching = false;// Whether the next COMPUTE searches the world
+        while(programCounter < code.length){
+            int instruction = code[programCounter];
+            int operand = operand(instruction);
+            switch(opcode(instruction)){
+                case STEP:
+                    if(budget <= 0){
+                        runner.exhaustBudget();// Resume at this statement once budget is available again
+                        return budget;
+                    }
+                    budget -= statementCost;
+                    if(profiler != null)
+                        profiler.start(runner.getTask().getName(), program, programCounter);
+                    programCounter++;
+                    break;
+                case JUMP:
+                    programCounter = operand;
+                    break;
+                case JUMP_IF_FALSE:
+                    programCounter = (Boolean)pop() ? programCounter + 1 : operand;
+                    break;
+                case PUSH:
+                    stack[stackSize++] = constants[operand];
+                    programCounter++;
+                    break;
+                case LOAD:
+                    if(variables[operand] == null)
+                        throw new IllegalStateException("The variable to evaluate isn't assigned.");
+                    // A unit which no longer exists stops the program like a search yielding null
+                    if(variables[operand] == NO_UNIT)
+                        runner.stop();
+                    if(!push(runner, variables[operand]))
+                        return budget;
+                    programCounter++;
+                    break;
+                case STORE:
+                    variables[operand] = pop();
+                    programCounter++;
+                    break;
+                case SEARCH:
+                    budget -= costs.getSearchCost();
+                    isSearching = profiler != null;
+                    programCounter++;
+                    break;
+                case EVALUATE:
+                    budget -= expressionCost;
+                    if(!push(runner, ((Expression<?>)constants[operand]).evaluate(runner)))
+                        return budget;
+                    programCounter++;
+                    break;
+                case RECALL:
+                    budget -= expressionCost;
+                    Expression<?> search = (Expression<?>)constants[operand];
+                    Object value = runner.recallSearch(search);
+                    if(value == null){
+                        budget -= costs.getSearchCost();
+                        long start = profiler == null ? 0 : System.nanoTime();
+                        value = search.evaluate(runner);
+                        if(profiler != null)
+                            profiler.addSearchTime(System.nanoTime() - start);
+                        if(value != null)
+                            runner.memorizeSearch(search, value);
+                    }
+                    if(!push(runner, value))
+                        return budget;
+                    programCounter++;
+                    break;
+                case COMPUTE:
+                    budget -= expressionCost;
+                    long start = isSearching ? System.nanoTime() : 0;
+                    Object result = ((UnaryExpression<Object,?>)constants[operand]).compute(runner, pop());
+                    if(isSearching){
+                        profiler.addSearchTime(System.nanoTime() - start);
+                        isSearching = false;
+                    }
+                    if(!push(runner, result))
+                        return budget;
+                    programCounter++;
+                    break;
+                case COMBINE:
+                    budget -= expressionCost;
+                    Object right = pop(), left = pop();
+                    if(!push(runner, ((BinaryExpression<Object,Object,?>)constants[operand]).combine(left, right)))
+                        return budget;
+                    programCounter++;
+                    break;
+                case EXECUTE:
+                    budget -= costs.getActionCost();
+                    programCounter++;
+                    ((ActionStatement<Object>)constants[operand]).execute(runner, pop());
+                    if(runner.isPausing() || runner.isStopping())
+                        return budget;
+                    break;
+                default:
+                    throw new IllegalStateException("Invalid instruction " + instruction + " at " + programCounter + ".");
+            }
+        }
+        return budget;
+    }
+
+    private Object pop(){
+        Object value = stack[--stackSize];
+        stack[stackSize] = null;
+        return value;
+    }
+
+    /**
+     * Push the given value, which is the result of an expression. An expression yields null
+     * when it stopped the given runner, the program is halted in that case.
+     * @return False when the program must halt.
+     * @throws NullPointerException
+     *          When the given value is null while the given runner is not stopping.
+     */
+    private boolean push(TaskRunner runner, Object value) throws NullPointerException {
+        if(runner.isStopping()){
+            Arrays.fill(stack, null);
+            stackSize = 0;
+            return false;
+        }
+        if(value == null)
+            throw new NullPointerException("Strange NullPointerException occurred.");
+        stack[stackSize++] = value;
+        return true;
+    }
+}
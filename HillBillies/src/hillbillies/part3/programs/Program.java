@@ -0,0 +1,395 @@
+package hillbillies.part3.programs;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Immutable;
+import hillbillies.part3.programs.expressions.*;
+import hillbillies.part3.programs.statements.*;
+
+import java.util.*;
+
+/**
+ * Class representing a compiled task program. The statement tree of a task is compiled to
+ * a flat array of instructions, which a Frame executes with an explicit program counter
+ * and operand stack.
+ *
+ * Each instruction is a single int holding its opcode in the lowest 8 bits and its operand
+ * in the remaining bits. Operands are jump targets or indices in the constant pool of the
+ * program, which holds literal values, variable names and the expressions and statements
+ * whose behaviour is invoked by the instruction.
+ *
+ * Variables are resolved when a program is compiled. Each variable name is mapped to a slot
+ * of the frame executing the program, and to the static type of the values assigned to it.
+ * Programs which use a variable inconsistently with its type are rejected by the compiler.
+ *
+ * Every statement starts with a STEP instruction, which consumes the time a statement takes.
+ * A program can only pause at a STEP instruction or after an EXECUTE instruction, at which
+ * points the operand stack is empty, so the state of a paused program is its program counter.
+ *
+ * Programs are immutable. They compare by identity, as the expressions and statements in their
+ * constant pool do.
+ *
+ * @author Kenneth & Bram
+ * @version 1.0
+ */
+public final class Program {
+
+    /**
+     * Constants reflecting the opcodes of the instructions.
+     *  STEP            Start the statement given by the operand, charging its cost or pausing when no budget is left.
+     *  JUMP            Continue at the instruction given by the operand.
+     *  JUMP_IF_FALSE   Pop a Boolean, continue at the instruction given by the operand when it is false.
+     *  PUSH            Push the constant given by the operand.
+     *  LOAD            Push the value of the variable in the slot given by the operand.
+     *  STORE           Pop a value and assign it to the variable in the slot given by the operand.
+     *  EVALUATE        Push the value of the expression given by the operand, which has no sub expressions.
+     *  COMPUTE         Pop a value and push the result of the unary expression given by the operand.
+     *  COMBINE         Pop two values and push the result of the binary expression given by the operand.
+     *  EXECUTE         Pop a value and execute the action statement given by the operand with it.
+     *  SEARCH          Charge the extra cost of the next expression, which searches the world.
+     *  RECALL          Push the value of the search expression given by the operand, which has no sub
+     *                  expressions, reusing its value from earlier in the same tick when possible.
+     */
+    static final int STEP = 0, JUMP = 1, JUMP_IF_FALSE = 2, PUSH = 3, LOAD = 4, STORE = 5, EVALUATE = 6,
+            COMPUTE = 7, COMBINE = 8, EXECUTE = 9, SEARCH = 10, RECALL = 11;
+
+    /**
+     * Constant reflecting the names of the opcodes, indexed by opcode.
+     */
+    private static final String[] OPCODE_NAMES = { "STEP", "JUMP", "JUMP_IF_FALSE", "PUSH", "LOAD", "STORE",
+            "EVALUATE", "COMPUTE", "COMBINE", "EXECUTE", "SEARCH", "RECALL" };
+
+    /**
+     * Constant reflecting the number of bits used by the opcode of an instruction.
+     */
+    static final int OPCODE_BITS = 8;
+
+    /**
+     * Constant reflecting the largest operand an instruction can hold.
+     */
+    private static final int MAX_OPERAND = (1 << (32 - OPCODE_BITS)) - 1;
+
+    /**
+     * Variable referencing the instructions of this program.
+     */
+    final int[] code;
+    /**
+     * Variable referencing the constant pool of this program.
+     */
+    final Object[] constants;
+    /**
+     * Variables referencing the name and static type of the variable in each slot.
+     */
+    private final String[] variableNames;
+    private final Class<?>[] variableTypes;
+    /**
+     * Variable registering the maximum number of values on the operand stack during execution.
+     */
+    private final int maxStackSize;
+    /**
+     * Variable referencing the statement this program was compiled from.
+     */
+    private final Statement statement;
+
+    private Program(Statement statement, int[] code, Object[] constants, String[] variableNames,
+                    Class<?>[] variableTypes, int maxStackSize){
+        this.statement = statement;
+        this.code = code;
+        this.constants = constants;
+        this.variableNames = variableNames;
+        this.variableTypes = variableTypes;
+        this.maxStackSize = maxStackSize;
+    }
+
+    /**
+     * Compile the given statement to a program.
+     * @param statement The statement to compile.
+     * @return A program executing the given statement.
+     * @throws NullPointerException
+     *          When the given statement is not effective.
+     *          | statement == null
+     * @throws IllegalArgumentException
+     *          When the given statement contains a break outside of a loop, a variable which is
+     *          read before it is assigned, a variable which is used with different types, or a
+     *          command which cannot be compiled.
+     */
+    public static Program compile(Statement statement) throws NullPointerException, IllegalArgumentException {
+        if(statement == null)
+            throw new NullPointerException("The given statement is not effective.");
+        Compiler compiler = new Compiler();
+        compiler.compileStatement(statement);
+        return new Program(statement, Arrays.copyOf(compiler.code, compiler.size), compiler.constants.toArray(),
+                compiler.variableNames.toArray(new String[0]), compiler.variableTypes.toArray(new Class<?>[0]),
+                compiler.maxStackSize);
+    }
+
+    /**
+     * Return the statement this program was compiled from.
+     */
+    @Basic @Immutable
+    public Statement getStatement(){
+        return this.statement;
+    }
+
+    /**
+     * Return the number of instructions of this program.
+     */
+    @Immutable
+    public int getNbInstructions(){
+        return this.code.length;
+    }
+
+    /**
+     * Return the maximum number of values on the operand stack while this program is executed.
+     */
+    @Basic @Immutable
+    public int getMaxStackSize(){
+        return this.maxStackSize;
+    }
+
+    /**
+     * Return the number of variables of this program.
+     */
+    @Immutable
+    public int getNbVariables(){
+        return this.variableNames.length;
+    }
+
+    /**
+     * Return the name of the variable in the given slot.
+     * @throws IndexOutOfBoundsException
+     *          | slot < 0 || slot >= getNbVariables()
+     */
+    public String getVariableName(int slot) throws IndexOutOfBoundsException {
+        return this.variableNames[slot];
+    }
+
+    /**
+     * Return the static type of the variable in the given slot.
+     * @throws IndexOutOfBoundsException
+     *          | slot < 0 || slot >= getNbVariables()
+     */
+    public Class<?> getVariableType(int slot) throws IndexOutOfBoundsException {
+        return this.variableTypes[slot];
+    }
+
+    /**
+     * Return the slot of the variable with the given name.
+     * @return The slot of the variable, or -1 when this program has no variable with the given name.
+     *          | if(result != -1) getVariableName(result).equals(variableName)
+     */
+    public int getVariableSlot(String variableName){
+        for(int slot = 0; slot < variableNames.length; slot++)
+            if(variableNames[slot].equals(variableName))
+                return slot;
+        return -1;
+    }
+
+    /**
+     * Return the opcode of the given instruction.
+     */
+    static int opcode(int instruction){
+        return instruction & ((1 << OPCODE_BITS) - 1);
+    }
+
+    /**
+     * Return the operand of the given instruction.
+     */
+    static int operand(int instruction){
+        return instruction >>> OPCODE_BITS;
+    }
+
+    /**
+     * Return a listing of the instructions of this program, one instruction per line.
+     */
+    @Override
+    public String toString(){
+        StringBuilder listing = new StringBuilder();
+        for(int pc = 0; pc < code.length; pc++){
+            int opcode = opcode(code[pc]), operand = operand(code[pc]);
+            listing.append(pc).append(": ").append(OPCODE_NAMES[opcode]);
+            if(opcode == JUMP || opcode == JUMP_IF_FALSE)
+                listing.append(' ').append(operand);
+            else if(opcode == LOAD || opcode == STORE)
+                listing.append(' ').append(variableNames[operand]);
+            else if(opcode != STEP && opcode != SEARCH){
+                Object constant = constants[operand];
+                listing.append(' ').append(constant instanceof Command ? constant.getClass().getSimpleName() : constant);
+            }
+            listing.append('\n');
+        }
+        return listing.toString();
+    }
+
+    /**
+     * Class compiling a statement tree to instructions.
+     */
+    private static final class Compiler {
+
+        private int[] code = new int[32];
+        private int size = 0;
+        private final List<Object> constants = new ArrayList<>();
+        private final Map<Object, Integer> constantIndices = new HashMap<>();
+        private int stackSize = 0, maxStackSize = 0;
+        private final Map<String, Integer> variableSlots = new HashMap<>();
+        private final List<String> variableNames = new ArrayList<>();
+        private final List<Class<?>> variableTypes = new ArrayList<>();
+        /**
+         * The positions of the jumps of the break statements of each enclosing loop, innermost loop last.
+         */
+        private final Deque<List<Integer>> breakJumps = new ArrayDeque<>();
+
+        private void compileStatement(Statement statement){
+            emit(STEP, constant(statement));
+            if(statement instanceof Sequence){
+                for(Statement child : ((Sequence)statement).getStatements())
+                    compileStatement(child);
+            }else if(statement instanceof Assignment){
+                Assignment<?> assignment = (Assignment<?>)statement;
+                Class<?> type = compileExpression(assignment.getValue(), Object.class);
+                emit(STORE, assign(assignment.getVariableName(), type));
+                pop(1);
+            }else if(statement instanceof While){
+                While loop = (While)statement;
+                int start = size;
+                compileExpression(loop.getCondition(), Boolean.class);
+                int exit = emit(JUMP_IF_FALSE, 0);
+                pop(1);
+                breakJumps.addLast(new ArrayList<>());
+                compileStatement(loop.getBody());
+                emit(JUMP, start);
+                patch(exit, size);
+                for(int jump : breakJumps.removeLast())
+                    patch(jump, size);
+            }else if(statement instanceof If){
+                If ifStatement = (If)statement;
+                compileExpression(ifStatement.getCondition(), Boolean.class);
+                int skip = emit(JUMP_IF_FALSE, 0);
+                pop(1);
+                compileStatement(ifStatement.getIfBody());
+                patch(skip, size);
+            }else if(statement instanceof IfElse){
+                IfElse ifElse = (IfElse)statement;
+                compileExpression(ifElse.getCondition(), Boolean.class);
+                int toElse = emit(JUMP_IF_FALSE, 0);
+                pop(1);
+                compileStatement(ifElse.getIfBody());
+                int toEnd = emit(JUMP, 0);
+                patch(toElse, size);
+                compileStatement(ifElse.getElseBody());
+                patch(toEnd, size);
+            }else if(statement instanceof Break){
+                if(breakJumps.isEmpty())
+                    throw new IllegalArgumentException("A break statement must be part of a loop.");
+                breakJumps.peekLast().add(emit(JUMP, 0));
+            }else if(statement instanceof ActionStatement){
+                ActionStatement<?> action = (ActionStatement<?>)statement;
+                compileExpression(action.getArgument(), action.getArgumentType());
+                emit(EXECUTE, constant(statement));
+                pop(1);
+            }else
+                throw new IllegalArgumentException("Statements of type " + statement.getClass().getSimpleName() + " cannot be compiled.");
+        }
+
+        /**
+         * Compile the given expression, whose value must be of the given type, and return
+         * the static type of its value.
+         */
+        private Class<?> compileExpression(Expression<?> expression, Class<?> expectedType){
+            Class<?> type = expression.getType();
+            if(expression instanceof ReadVariable){
+                String variableName = ((ReadVariable<?>)expression).getVariableName();
+                Integer slot = variableSlots.get(variableName);
+                if(slot == null)
+                    throw new IllegalArgumentException("The variable " + variableName + " is read before it is assigned.");
+                type = variableTypes.get(slot);
+                emit(LOAD, slot);
+                push();
+            }else if(expression instanceof LiteralPosition){
+                emit(PUSH, constant(((LiteralPosition)expression).getPosition()));
+                push();
+            }else if(expression instanceof True || expression instanceof False){
+                emit(PUSH, constant(expression instanceof True));
+                push();
+            }else if(expression instanceof UnaryExpression){
+                UnaryExpression<?,?> unary = (UnaryExpression<?,?>)expression;
+                compileExpression(unary.getExpression(), unary.getSubType());
+                if(expression.isSearch())
+                    emit(SEARCH, 0);
+                emit(COMPUTE, constant(expression));
+            }else if(expression instanceof BinaryExpression){
+                BinaryExpression<?,?,?> binary = (BinaryExpression<?,?,?>)expression;
+                compileExpression(binary.getLeftExpression(), binary.getLeftType());
+                compileExpression(binary.getRightExpression(), binary.getRightType());
+                emit(COMBINE, constant(expression));
+                pop(1);
+            }else{
+                if(expression.iterator().hasNext())
+                    throw new IllegalArgumentException("Expressions of type " + expression.getClass().getSimpleName() + " cannot be compiled.");
+                emit(expression.isSearch() ? RECALL : EVALUATE, constant(expression));
+                push();
+            }
+            if(type == null || !expectedType.isAssignableFrom(type))
+                throw new IllegalArgumentException("An expression of type " + (type == null ? "unknown" : type.getSimpleName())
+                        + " is used where a " + expectedType.getSimpleName() + " is expected.");
+            return type;
+        }
+
+        /**
+         * Return the slot of the variable with the given name, which is assigned a value of the
+         * given type, adding the variable when needed.
+         */
+        private int assign(String variableName, Class<?> type){
+            Integer slot = variableSlots.get(variableName);
+            if(slot == null){
+                slot = variableNames.size();
+                variableSlots.put(variableName, slot);
+                variableNames.add(variableName);
+                variableTypes.add(type);
+            }else if(variableTypes.get(slot) != type)
+                throw new IllegalArgumentException("The variable " + variableName + " of type " + variableTypes.get(slot).getSimpleName()
+                        + " cannot be assigned a value of type " + type.getSimpleName() + ".");
+            return slot;
+        }
+
+        /**
+         * Append the given instruction and return its position.
+         */
+        private int emit(int opcode, int operand){
+            if(operand > MAX_OPERAND)
+                throw new IllegalArgumentException("The program is too large to be compiled.");
+            if(size == code.length)
+                code = Arrays.copyOf(code, 2 * size);
+            code[size] = opcode | (operand << OPCODE_BITS);
+            return size++;
+        }
+
+        /**
+         * Set the operand of the jump at the given position to the given target.
+         */
+        private void patch(int position, int target){
+            code[position] = opcode(code[position]) | (target << OPCODE_BITS);
+        }
+
+        /**
+         * Return the index of the given value in the constant pool, adding it when needed.
+         */
+        private int constant(Object value){
+            Integer index = constantIndices.get(value);
+            if(index == null){
+                index = constants.size();
+                constants.add(value);
+                constantIndices.put(value, index);
+            }
+            return index;
+        }
+
+        private void push(){
+            stackSize++;
+            maxStackSize = Math.max(maxStackSize, stackSize);
+        }
+
+        private void pop(int nbValues){
+            stackSize -= nbValues;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package hillbillies.part3.programs;
+
+import hillbillies.part3.programs.expressions.*;
+import hillbillies.part3.programs.statements.*;
+import hillbillies.utils.Vector;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class encoding the command tree of a program in a compact binary form. Each command is
+ * written as the index of its kind, followed by its literal arguments and its children.
+ * Programs are decoded through a TaskFactory, so a decoded program is built in the same way
+ * as a parsed one.
+ * @author Kenneth & Bram
+ * @version 1.0
+ */
+public final class ProgramCodec {
+
+    /**
+     * Constant reflecting the kinds of commands which can be encoded. The index of a kind in
+     * this list is part of the encoding, so new kinds must be appended.
+     */
+    private static final List<Class<?>> KINDS = Arrays.asList(
+            Assignment.class, While.class, If.class, IfElse.class, Break.class, Print.class, Sequence.class,
+            MoveTo.class, WorkAt.class, FollowUnit.class, AttackUnit.class,
+            ReadVariable.class, IsSolid.class, IsPassable.class, IsFriend.class, IsEnemy.class, IsAlive.class,
+            CarriesItem.class, Not.class, And.class, Or.class, HerePosition.class, LogPosition.class,
+            BoulderPosition.class, WorkshopPosition.class, SelectedPosition.class, NextToPosition.class,
+            PositionOfUnit.class, LiteralPosition.class, This.class, Friend.class, Enemy.class, Any.class,
+            True.class, False.class
+    );
+
+    private ProgramCodec(){
+    }
+
+    /**
+     * Write the given command and all its sub commands to the given output.
+     * @param command The command to write.
+     * @param out The output to write to.
+     * @throws IOException
+     *          When an I/O error occurs or when the given command tree contains a kind of
+     *          command which cannot be encoded.
+     */
+    public static void write(Command<?> command, DataOutput out) throws IOException {
+        int kind = KINDS.indexOf(command.getClass());
+        if(kind < 0)
+            throw new IOException("Commands of type " + command.getClass().getSimpleName() + " cannot be encoded.");
+        out.writeByte(kind);
+        if(command instanceof Assignment)
+            out.writeUTF(((Assignment<?>)command).getVariableName());
+        else if(command instanceof ReadVariable)
+            out.writeUTF(((ReadVariable<?>)command).getVariableName());
+        else if(command instanceof LiteralPosition){
+            Vector position = ((LiteralPosition)command).getPosition();
+            out.writeInt(position.cubeX());
+            out.writeInt(position.cubeY());
+            out.writeInt(position.cubeZ());
+        }
+        int nbChildren = 0;
+        for(Command<?> ignored : command)
+            nbChildren++;
+        out.writeShort(nbChildren);
+        for(Command<?> child : command)
+            write(child, out);
+    }
+
+    /**
+     * Read a statement which was written by write from the given input.
+     * @param in The input to read from.
+     * @param factory The factory used to build the statement.
+     * @return A statement equal to the written one.
+     * @throws IOException
+     *          When an I/O error occurs or when the read data is no valid statement.
+     */
+    public static Statement readStatement(DataInput in, TaskFactory factory) throws IOException {
+        Command<?> command = read(in, factory);
+        if(!(command instanceof Statement))
+            throw new IOException("The encoded command is not a statement.");
+        return (Statement)command;
+    }
+
+    /**
+     * Read a command which was written by write from the given input.
+     */
+    private static Command<?> read(DataInput in, TaskFactory factory) throws IOException {
+        int kind = in.readUnsignedByte();
+        if(kind >= KINDS.size())
+            throw new IOException("Invalid command kind " + kind + ".");
+        Class<?> type = KINDS.get(kind);
+        String variableName = null;
+        int[] position = null;
+        if(type == Assignment.class || type == ReadVariable.class)
+            variableName = in.readUTF();
+        else if(type == LiteralPosition.class)
+            position = new int[]{ in.readInt(), in.readInt(), in.readInt() };
+        int nbChildren = in.readUnsignedShort();
+        List<Command<?>> children = new ArrayList<>(nbChildren);
+        for(int i = 0; i < nbChildren; i++)
+            children.add(read(in, factory));
+        try {
+            return create(type, variableName, position, children, factory);
+        }catch(ClassCastException | IndexOutOfBoundsException | IllegalArgumentException e){
+            throw new IOException("Invalid children for a command of type " + type.getSimpleName() + ".", e);
+        }
+    }
+
+    /**
+     * Create a command of the given type with the given arguments and children through the given factory.
+     */
+    private static Command<?> create(Class<?> type, String variableName, int[] position, List<Command<?>> children,
+                                     TaskFactory factory) throws IOException {
+        if(type == Assignment.class) return factory.createAssignment(variableName, expression(children, 0), null);
+        if(type == While.class) return factory.createWhile(expression(children, 0), statement(children, 1), null);
+        if(type == If.class) return factory.createIf(expression(children, 0), statement(children, 1), null, null);
+        if(type == IfElse.class) return factory.createIf(expression(children, 0), statement(children, 1), statement(children, 2), null);
+        if(type == Break.class) return factory.createBreak(null);
+        if(type == Print.class) return factory.createPrint(expression(children, 0), null);
+        if(type == Sequence.class){
+            List<Statement> statements = new ArrayList<>(children.size());
+            for(int i = 0; i < children.size(); i++)
+                statements.add(statement(children, i));
+            return factory.createSequence(statements, null);
+        }
+        if(type == MoveTo.class) return factory.createMoveTo(expression(children, 0), null);
+        if(type == WorkAt.class) return factory.createWork(expression(children, 0), null);
+        if(type == FollowUnit.class) return factory.createFollow(expression(children, 0), null);
+        if(type == AttackUnit.class) return factory.createAttack(expression(children, 0), null);
+        if(type == ReadVariable.class) return factory.createReadVariable(variableName, null);
+        if(type == IsSolid.class) return factory.createIsSolid(expression(children, 0), null);
+        if(type == IsPassable.class) return factory.createIsPassable(expression(children, 0), null);
+        if(type == IsFriend.class) return factory.createIsFriend(expression(children, 0), null);
+        if(type == IsEnemy.class) return factory.createIsEnemy(expression(children, 0), null);
+        if(type == IsAlive.class) return factory.createIsAlive(expression(children, 0), null);
+        if(type == CarriesItem.class) return factory.createCarriesItem(expression(children, 0), null);
+        if(type == Not.class) return factory.createNot(expression(children, 0), null);
+        if(type == And.class) return factory.createAnd(expression(children, 0), expression(children, 1), null);
+        if(type == Or.class) return factory.createOr(expression(children, 0), expression(children, 1), null);
+        if(type == HerePosition.class) return factory.createHerePosition(null);
+        if(type == LogPosition.class) return factory.createLogPosition(null);
+        if(type == BoulderPosition.class) return factory.createBoulderPosition(null);
+        if(type == WorkshopPosition.class) return factory.createWorkshopPosition(null);
+        if(type == SelectedPosition.class) return factory.createSelectedPosition(null);
+        if(type == NextToPosition.class) return factory.createNextToPosition(expression(children, 0), null);
+        if(type == PositionOfUnit.class) return factory.createPositionOf(expression(children, 0), null);
+        if(type == LiteralPosition.class) return factory.createLiteralPosition(position[0], position[1], position[2], null);
+        if(type == This.class) return factory.createThis(null);
+        if(type == Friend.class) return factory.createFriend(null);
+        if(type == Enemy.class) return factory.createEnemy(null);
+        if(type == Any.class) return factory.createAny(null);
+        if(type == True.class) return factory.createTrue(null);
+        if(type == False.class) return factory.createFalse(null);
+        throw new IOException("Commands of type " + type.getSimpleName() + " cannot be decoded.");
+    }
+
+    private static Expression<?> expression(List<Command<?>> children, int index){
+        return (Expression<?>)children.get(index);
+    }
+
+    private static Statement statement(List<Command<?>> children, int index){
+        return (Statement)children.get(index);
+    }
+}
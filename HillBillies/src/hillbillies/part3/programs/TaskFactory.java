@@ -40,6 +40,16 @@ public class TaskFactory implements ITaskFactory<Expression<?>, Statement, Task>
         return tasks;
     }
 
+    /**
+     * Statements are immutable and this factory has no state, so tasks parsed from the same
+     * text can share their activity and its compiled program.
+     * @return | result == true
+     */
+    @Override
+    public boolean canShareActivities() {
+        return true;
+    }
+
     /**
      * Create a statement that represents the assignment of a variable.
      *
@@ -49,7 +59,7 @@ public class TaskFactory implements ITaskFactory<Expression<?>, Statement, Task>
      */
     @Override
     public Statement createAssignment(String variableName, Expression<?> value, SourceLocation sourceLocation) {
-        return new Assignment<>(variableName, value);
+        return located(new Assignment<>(variableName, value), sourceLocation);
     }
 
     /**
@@ -61,7 +71,7 @@ public class TaskFactory implements ITaskFactory<Expression<?>, Statement, Task>
      */
     @Override
     public Statement createWhile(Expression<?> condition, Statement body, SourceLocation sourceLocation) {
-        return new While((Expression<Boolean>)condition, body);
+        return located(new While((Expression<Boolean>)condition, body), sourceLocation);
     }
 
     /**
@@ -77,9 +87,9 @@ public class TaskFactory implements ITaskFactory<Expression<?>, Statement, Task>
     @Override
     public Statement createIf(Expression<?> condition, Statement ifBody, Statement elseBody, SourceLocation sourceLocation) {
         if(elseBody!=null)
-            return new IfElse((Expression<Boolean>)condition, ifBody, elseBody);
+            return located(new IfElse((Expression<Boolean>)condition, ifBody, elseBody), sourceLocation);
         else
-            return new If((Expression<Boolean>)condition, ifBody);
+            return located(new If((Expression<Boolean>)condition, ifBody), sourceLocation);
     }
 
     /**
@@ -90,7 +100,7 @@ public class TaskFactory implements ITaskFactory<Expression<?>, Statement, Task>
      */
     @Override
     public Statement createBreak(SourceLocation sourceLocation) {
-        return new Break();
+        return located(new Break(), sourceLocation);
     }
 
     /**
@@ -102,7 +112,7 @@ public class TaskFactory implements ITaskFactory<Expression<?>, Statement, Task>
      */
     @Override
     public Statement createPrint(Expression<?> value, SourceLocation sourceLocation) {
-        return new Print(value);
+        return located(new Print(value), sourceLocation);
     }
 
     /**
@@ -113,7 +123,7 @@ public class TaskFactory implements ITaskFactory<Expression<?>, Statement, Task>
      */
     @Override
     public Statement createSequence(List<Statement> statements, SourceLocation sourceLocation) {
-        return new Sequence(statements);
+        return located(new Sequence(statements), sourceLocation);
     }
 
     /**
@@ -124,7 +134,7 @@ public class TaskFactory implements ITaskFactory<Expression<?>, Statement, Task>
      */
     @Override
     public Statement createMoveTo(Expression<?> position, SourceLocation sourceLocation) {
-    	return new MoveTo((Expression<Vector>)position);
+    	return located(new MoveTo((Expression<Vector>)position), sourceLocation);
     }
 
     /**
@@ -135,7 +145,7 @@ public class TaskFactory implements ITaskFactory<Expression<?>, Statement, Task>
      */
     @Override
     public Statement createWork(Expression<?> position, SourceLocation sourceLocation) {
-        return new WorkAt((Expression<Vector>)position);
+        return located(new WorkAt((Expression<Vector>)position), sourceLocation);
     }
 
     /**
@@ -146,7 +156,7 @@ public class TaskFactory implements ITaskFactory<Expression<?>, Statement, Task>
      */
     @Override
     public Statement createFollow(Expression<?> unit, SourceLocation sourceLocation) {
-        return new FollowUnit((Expression<Unit>)unit); //TODO
+        return located(new FollowUnit((Expression<Unit>)unit), sourceLocation); //TODO
     }
 
     /**
@@ -157,7 +167,7 @@ public class TaskFactory implements ITaskFactory<Expression<?>, Statement, Task>
      */
     @Override
     public Statement createAttack(Expression<?> unit, SourceLocation sourceLocation) {
-        return new AttackUnit((Expression<Unit>)unit);
+        return located(new AttackUnit((Expression<Unit>)unit), sourceLocation);
     }
 
     /**
@@ -444,4 +454,15 @@ public class TaskFactory implements ITaskFactory<Expression<?>, Statement, Task>
     public Expression<Boolean> createFalse(SourceLocation sourceLocation) {
         return new False();
     }
+
+    /**
+     * Register the given location as the location of the given statement.
+     * @return | result == statement
+     * @effect | if(sourceLocation != null) statement.setSourceLocation(sourceLocation)
+     */
+    private static Statement located(Statement statement, SourceLocation sourceLocation){
+        if(sourceLocation != null)
+            statement.setSourceLocation(sourceLocation);
+        return statement;
+    }
 }
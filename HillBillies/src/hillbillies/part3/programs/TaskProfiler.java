@@ -0,0 +1,245 @@
+package hillbillies.part3.programs;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Immutable;
+import hillbillies.part3.programs.statements.Statement;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * Class recording where task programs spend their time. For each statement of each profiled
+ * program, the profiler counts how often the statement started and measures the wall time
+ * until the next statement started or the program paused, including the time spent in
+ * expressions which search the world.
+ *
+ * Programs are shared by all tasks with the same activity, so all these tasks are profiled
+ * together under the name of the first task which executed the program. Statements are
+ * identified by the source location the task factory gave them, when available.
+ *
+ * A profiler measures one statement at a time, it is used by the thread advancing its world.
+ *
+ * @author Kenneth & Bram
+ * @version 1.0
+ */
+public class TaskProfiler {
+
+    /**
+     * Variable referencing the profile of each profiled program.
+     */
+    private final Map<Program, ProgramProfile> profiles = new IdentityHashMap<>();
+    /**
+     * Variable referencing the profile of the statement being measured, null when no
+     * statement is being measured.
+     */
+    private ProgramProfile current = null;
+    /**
+     * Variables registering the program counter of the statement being measured and the time
+     * at which it started.
+     */
+    private int currentStep;
+    private long currentStart;
+
+    /**
+     * Start measuring the statement which starts at the given program counter of the given
+     * program, which is executed for the task with the given name.
+     * @param taskName The name of the task executing the program.
+     * @param program The program containing the statement.
+     * @param programCounter The position of the STEP instruction of the statement.
+     * @effect The statement being measured is ended first.
+     *          | end()
+     */
+    void start(String taskName, Program program, int programCounter){
+        long now = System.nanoTime();
+        end(now);
+        ProgramProfile profile = profiles.get(program);
+        if(profile == null){
+            profile = new ProgramProfile(taskName, program);
+            profiles.put(program, profile);
+        }
+        profile.counts[programCounter]++;
+        current = profile;
+        currentStep = programCounter;
+        currentStart = now;
+    }
+
+    /**
+     * Stop measuring the statement being measured, because its program paused or finished.
+     */
+    void end(){
+        end(System.nanoTime());
+    }
+
+    private void end(long now){
+        if(current != null){
+            current.nanos[currentStep] += now - currentStart;
+            current = null;
+        }
+    }
+
+    /**
+     * Add the given time, spent searching the world, to the statement being measured.
+     * @param nanos The time in nanoseconds.
+     */
+    void addSearchTime(long nanos){
+        if(current != null)
+            current.searchNanos[currentStep] += nanos;
+    }
+
+    /**
+     * Forget all measurements.
+     */
+    public void reset(){
+        profiles.clear();
+        current = null;
+    }
+
+    /**
+     * Return the statements of all profiled programs which were executed at least once,
+     * in decreasing order of wall time.
+     */
+    public List<Hotspot> getHotspots(){
+        List<Hotspot> hotspots = new ArrayList<>();
+        for(ProgramProfile profile : profiles.values())
+            profile.addHotspots(hotspots);
+        hotspots.sort(Comparator.comparingLong(Hotspot::getWallTime).reversed());
+        return hotspots;
+    }
+
+    /**
+     * Return the statements of the given program which were executed at least once,
+     * in decreasing order of wall time.
+     * @param program The program to return the hotspots of.
+     */
+    public List<Hotspot> getHotspots(Program program){
+        List<Hotspot> hotspots = new ArrayList<>();
+        ProgramProfile profile = profiles.get(program);
+        if(profile != null)
+            profile.addHotspots(hotspots);
+        hotspots.sort(Comparator.comparingLong(Hotspot::getWallTime).reversed());
+        return hotspots;
+    }
+
+    /**
+     * Write a report of the given hotspots to the given output, one hotspot per line.
+     * @param hotspots The hotspots to report.
+     * @param out The output to write to.
+     * @throws UncheckedIOException
+     *          When the given output cannot be written to.
+     */
+    public static void writeReport(List<Hotspot> hotspots, Appendable out) throws UncheckedIOException {
+        try {
+            out.append(String.format("%-24s %-12s %-12s %10s %12s %12s%n", "task", "location", "statement",
+                    "count", "wall (ms)", "search (ms)"));
+            for(Hotspot hotspot : hotspots)
+                out.append(hotspot.toString()).append(System.lineSeparator());
+        }catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Return a report of all hotspots, one hotspot per line.
+     * @return | writeReport(getHotspots(), result)
+     */
+    @Override
+    public String toString(){
+        StringBuilder report = new StringBuilder();
+        writeReport(getHotspots(), report);
+        return report.toString();
+    }
+
+    /**
+     * Class collecting the measurements of one program, indexed by the program counter
+     * of the STEP instruction of each statement.
+     */
+    private static final class ProgramProfile {
+
+        private final String taskName;
+        private final Program program;
+        private final long[] counts, nanos, searchNanos;
+
+        private ProgramProfile(String taskName, Program program){
+            this.taskName = taskName;
+            this.program = program;
+            this.counts = new long[program.code.length];
+            this.nanos = new long[program.code.length];
+            this.searchNanos = new long[program.code.length];
+        }
+
+        private void addHotspots(List<Hotspot> hotspots){
+            for(int pc = 0; pc < counts.length; pc++)
+                if(counts[pc] > 0){
+                    Statement statement = (Statement)program.constants[Program.operand(program.code[pc])];
+                    hotspots.add(new Hotspot(taskName, statement, counts[pc], nanos[pc], searchNanos[pc]));
+                }
+        }
+    }
+
+    /**
+     * Class representing the measurements of one statement of a profiled program.
+     */
+    public static final class Hotspot {
+
+        private final String taskName;
+        private final Statement statement;
+        private final long count, wallTime, searchTime;
+
+        private Hotspot(String taskName, Statement statement, long count, long wallTime, long searchTime){
+            this.taskName = taskName;
+            this.statement = statement;
+            this.count = count;
+            this.wallTime = wallTime;
+            this.searchTime = searchTime;
+        }
+
+        /**
+         * Return the name of the first task which executed the program of this hotspot.
+         */
+        @Basic @Immutable
+        public String getTaskName(){
+            return taskName;
+        }
+
+        /**
+         * Return the statement of this hotspot.
+         */
+        @Basic @Immutable
+        public Statement getStatement(){
+            return statement;
+        }
+
+        /**
+         * Return the number of times the statement of this hotspot started.
+         */
+        @Basic @Immutable
+        public long getCount(){
+            return count;
+        }
+
+        /**
+         * Return the wall time spent in the statement of this hotspot, in nanoseconds.
+         */
+        @Basic @Immutable
+        public long getWallTime(){
+            return wallTime;
+        }
+
+        /**
+         * Return the wall time spent searching the world in the statement of this hotspot,
+         * in nanoseconds.
+         */
+        @Basic @Immutable
+        public long getSearchTime(){
+            return searchTime;
+        }
+
+        @Override
+        public String toString(){
+            SourceLocation location = statement.getSourceLocation();
+            return String.format("%-24s %-12s %-12s %10d %12.3f %12.3f", taskName, location == null ? "?" : location,
+                    statement.getClass().getSimpleName(), count, wallTime / 1e6, searchTime / 1e6);
+        }
+    }
+}
@@ -25,7 +25,7 @@ public class And extends BinaryExpression<Boolean, Boolean, Boolean> {
      * @return | leftValue && rightValue
      */
     @Override
-    protected Boolean combine(Boolean leftValue, Boolean rightValue) {
+    public Boolean combine(Boolean leftValue, Boolean rightValue) {
         return leftValue && rightValue;
     }
 
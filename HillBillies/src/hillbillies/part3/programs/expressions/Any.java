@@ -3,6 +3,7 @@ package hillbillies.part3.programs.expressions;
 import java.util.Set;
 
 import hillbillies.activities.TargetMove;
+import hillbillies.model.Task.TaskRunner;
 import hillbillies.model.Unit;
 
 
@@ -21,18 +22,24 @@ public class Any extends Expression<Unit> {
 	}
 
 	@Override
-	public Unit evaluate() throws NullPointerException {
-		Unit thisUnit = this.getRunner().getExecutingUnit();
-		Set<Unit> units = this.getRunner().getExecutingWorld().getUnits();
+	public Unit evaluate(TaskRunner runner) throws NullPointerException {
+		Unit thisUnit = runner.getExecutingUnit();
+		Set<Unit> units = runner.getExecutingWorld().getUnits();
 		units.removeIf(unit -> unit == thisUnit || unit.isFalling());
 		if (units.isEmpty()){
-			this.getRunner().stop();
+			runner.stop();
 			return null;
 		}
-		TargetMove targetmove = new TargetMove(this.getRunner().getExecutingUnit(), units);
+		TargetMove targetmove = new TargetMove(runner.getExecutingUnit(), units);
 		Unit NearestUnit = (Unit) targetmove.getNearestObject();
 		if(NearestUnit == null)
-			this.getRunner().stop();
+			runner.stop();
 		return NearestUnit;
 	}
-}
\ No newline at end of file
+
+	@Override
+	public boolean isSearch() {
+		return true;
+	}
+
+}
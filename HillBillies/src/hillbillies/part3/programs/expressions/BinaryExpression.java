@@ -1,5 +1,7 @@
 package hillbillies.part3.programs.expressions;
 
+import hillbillies.model.Task.TaskRunner;
+
 /**
  * Class representing a generic BinaryExpression.
  * The generic type L is the type of the leftExpression of this BinaryExpression.
@@ -13,11 +15,17 @@ public abstract class BinaryExpression<L,R,T> extends Expression<T> {
     /**
      * Variable referencing the left hand-side of this BinaryExpression.
      */
-    private Expression<L> leftExpression;
+    private final Expression<L> leftExpression;
     /**
      * Variable referencing the right hand-side of this BinaryExpression.
      */
-    private Expression<R> rightExpression;
+    private final Expression<R> rightExpression;
+    /**
+     * Variables referencing the types of the values this BinaryExpression expects from
+     * its left and right hand-side.
+     */
+    private final Class<L> leftType;
+    private final Class<R> rightType;
 
     /**
      * Initialize a new BinaryExpression with given left and right expressions.
@@ -38,6 +46,36 @@ public abstract class BinaryExpression<L,R,T> extends Expression<T> {
             throw new IllegalArgumentException("The given right Expression's generic type does not correspond to this BinaryExpression's generic rightType.");
         this.leftExpression = left;
         this.rightExpression = right;
+        this.leftType = leftType;
+        this.rightType = rightType;
+    }
+
+    /**
+     * Return the left hand-side of this BinaryExpression.
+     */
+    public Expression<L> getLeftExpression(){
+        return this.leftExpression;
+    }
+
+    /**
+     * Return the right hand-side of this BinaryExpression.
+     */
+    public Expression<R> getRightExpression(){
+        return this.rightExpression;
+    }
+
+    /**
+     * Return the type of the value this BinaryExpression expects from its left hand-side.
+     */
+    public Class<L> getLeftType(){
+        return this.leftType;
+    }
+
+    /**
+     * Return the type of the value this BinaryExpression expects from its right hand-side.
+     */
+    public Class<R> getRightType(){
+        return this.rightType;
     }
 
     /**
@@ -45,14 +83,14 @@ public abstract class BinaryExpression<L,R,T> extends Expression<T> {
      * @return The result of this BinaryExpression
      * @throws NullPointerException
      *          When the evaluation of left or right expression yields null
-     *          | runChild(leftExpression)==null || runChild(rightExpression)==null
+     *          | leftExpression.evaluate(runner)==null || rightExpression.evaluate(runner)==null
      */
     @Override
-    public T evaluate() throws NullPointerException {
-        L leftValue = this.runChild(leftExpression);
-        R rightValue = this.runChild(rightExpression);
+    public T evaluate(TaskRunner runner) throws NullPointerException {
+        L leftValue = leftExpression.evaluate(runner);
+        R rightValue = rightExpression.evaluate(runner);
         if(leftValue==null || rightValue==null)
-            throw new NullPointerException("The left or right expression yield null.");// Is catched inside Expression's process method
+            throw new NullPointerException("The left or right expression yield null.");
         return combine(leftValue, rightValue);
     }
 
@@ -66,5 +104,5 @@ public abstract class BinaryExpression<L,R,T> extends Expression<T> {
      *                   This value is guaranteed to be not null.
      * @return The result of the combination of both values.
      */
-    protected abstract T combine(L leftValue, R rightValue);
+    public abstract T combine(L leftValue, R rightValue);
 }
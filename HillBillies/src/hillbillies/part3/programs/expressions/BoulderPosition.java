@@ -4,6 +4,7 @@ import java.util.Set;
 
 import hillbillies.activities.TargetMove;
 import hillbillies.model.Boulder;
+import hillbillies.model.Task.TaskRunner;
 import hillbillies.utils.Vector;
 
 /**
@@ -21,17 +22,22 @@ public class BoulderPosition extends Expression<Vector> {
 	}
 
 	@Override
-	public Vector evaluate() throws NullPointerException {
-		Set<Boulder> boulders = this.getRunner().getExecutingWorld().getBoulders(true);
+	public Vector evaluate(TaskRunner runner) throws NullPointerException {
+		Set<Boulder> boulders = runner.getExecutingWorld().getBoulders(true);
 		if (boulders.isEmpty()){
-			this.getRunner().stop();
+			runner.stop();
 			return null;
 		}
-		TargetMove targetmove = new TargetMove(this.getRunner().getExecutingUnit(), boulders);
+		TargetMove targetmove = new TargetMove(runner.getExecutingUnit(), boulders);
 		Vector nearestPos = targetmove.getNearestPos();
 		if(nearestPos == null)
-			this.getRunner().stop();
+			runner.stop();
 		return nearestPos;
 	}
 
-}
\ No newline at end of file
+	@Override
+	public boolean isSearch() {
+		return true;
+	}
+
+}
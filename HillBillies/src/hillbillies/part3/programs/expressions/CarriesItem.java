@@ -3,6 +3,7 @@
  */
 package hillbillies.part3.programs.expressions;
 
+import hillbillies.model.Task.TaskRunner;
 import hillbillies.model.Unit;
 
 /**
@@ -25,7 +26,7 @@ public class CarriesItem extends UnaryExpression<Unit, Boolean> {
 	 * @return | unit.isCarryingMaterial()
 	 */
 	@Override
-	protected Boolean compute(Unit unit) {
+	public Boolean compute(TaskRunner runner, Unit unit) {
 		return unit.isCarryingMaterial();
 	}
 
@@ -4,8 +4,10 @@ package hillbillies.part3.programs.expressions;
 import java.util.Set;
 
 import hillbillies.activities.TargetMove;
-import hillbillies.model.Faction;
+import hillbillies.model.InfluenceMap;
+import hillbillies.model.Task.TaskRunner;
 import hillbillies.model.Unit;
+import hillbillies.model.World;
 
 
 /**
@@ -22,20 +24,52 @@ public class Enemy extends Expression<Unit> {
 		super(Unit.class);
 	}
 
+	/**
+	 * The nearest enemy is the enemy with the shortest path from the executing unit, as when all
+	 * enemies are searched. In a World, only the enemies in the nearest cells of its influence maps are
+	 * searched first. The target of a path of n cubes lies at most n cubes away along each axis, so
+	 * when the enemies within the cells covering that distance were not all searched, they are added
+	 * and searched again. Only when none of the nearest enemies can be reached, all enemies are searched.
+	 */
 	@Override
-	public Unit evaluate() throws NullPointerException {
-		Faction thisFaction = this.getRunner().getExecutingUnit().getFaction();
-		Set<Unit> units = this.getRunner().getExecutingWorld().getUnits();
-		units.removeIf(unit -> unit.getFaction()==thisFaction || unit.isFalling());
-		if (units.isEmpty()){
-			this.getRunner().stop();
-			return null;
+	public Unit evaluate(TaskRunner runner) throws NullPointerException {
+		Unit thisUnit = runner.getExecutingUnit();
+		TargetMove targetmove = null;
+		if(runner.getExecutingWorld() instanceof World){
+			World world = (World)runner.getExecutingWorld();
+			Set<Unit> units = world.getNearestEnemies(thisUnit.getFaction(), thisUnit.getCubeCoordinates());
+			units.removeIf(Unit::isFalling);
+			if(!units.isEmpty()){
+				try {
+					targetmove = new TargetMove(thisUnit, units);
+					int cells = (targetmove.getPathLength() + InfluenceMap.CELL_SIZE - 1) / InfluenceMap.CELL_SIZE;
+					Set<Unit> nearer = world.getEnemiesWithin(thisUnit.getFaction(), thisUnit.getCubeCoordinates(), cells);
+					nearer.removeIf(Unit::isFalling);
+					if(units.addAll(nearer))
+						targetmove = new TargetMove(thisUnit, units);
+				}catch(IllegalArgumentException e){
+					// None of the nearest enemies can be reached, try all of them
+				}
+			}
+		}
+		if(targetmove == null){
+			Set<Unit> units = runner.getExecutingWorld().getUnits();
+			units.removeIf(unit -> unit.getFaction()==thisUnit.getFaction() || unit.isFalling());
+			if (units.isEmpty()){
+				runner.stop();
+				return null;
+			}
+			targetmove = new TargetMove(thisUnit, units);
 		}
-		TargetMove targetmove = new TargetMove(this.getRunner().getExecutingUnit(), units);
 		Unit NearestUnit = (Unit) targetmove.getNearestObject();
 		if(NearestUnit == null)
-			this.getRunner().stop();
+			runner.stop();
 		return NearestUnit;
 	}
 
-}
\ No newline at end of file
+	@Override
+	public boolean isSearch() {
+		return true;
+	}
+
+}
@@ -1,5 +1,6 @@
 package hillbillies.part3.programs.expressions;
 
+import hillbillies.model.Task.TaskRunner;
 import hillbillies.part3.programs.Command;
 
 /**
@@ -19,24 +20,35 @@ public abstract class Expression<T> extends Command<T>{
         this.type = type;
     }
 
-    @Override
-    public final T process() throws NullPointerException{
-        try {
-            return evaluate();
-        }catch(NullPointerException e){
-            if(this.getRunner().isPausing() || this.getRunner().isStopping()) return null;// Nothing wrong, runner is pausing or stopping
-            throw new NullPointerException("Strange NullPointerException occurred.");
-        }
-    }
-
     /**
-     * Evaluate this Expression
-     * @return The result this Expression evaluates to.
+     * Evaluate this Expression for the given runner.
+     * @param runner The runner executing the program this Expression is part of.
+     * @return The result this Expression evaluates to. Null when the evaluation
+     *          stopped the given runner.
      * @throws NullPointerException
      *          A subclass may throw a NullPointerException.
      *          | ? true
+     * @note Compiled programs evaluate the sub expressions of unary and binary
+     *       expressions on their operand stack, this method is the equivalent
+     *       evaluation of the whole expression tree.
+     */
+    public abstract T evaluate(TaskRunner runner) throws NullPointerException;
+
+    /**
+     * Return the type of the result of this Expression. Null when the type is only known
+     * once the program containing this Expression is compiled.
      */
-    public abstract T evaluate() throws NullPointerException;
+    public Class<T> getType(){
+        return this.type;
+    }
+
+    /**
+     * Check whether this Expression searches the world when it is evaluated, for example
+     * for the nearest log or a path to a position. Such expressions cost more to evaluate.
+     */
+    public boolean isSearch(){
+        return false;
+    }
 
     /**
      * Check this Expression's return type against the given type.
@@ -3,6 +3,8 @@
  */
 package hillbillies.part3.programs.expressions;
 
+import hillbillies.model.Task.TaskRunner;
+
 /**
  * Class representing the False Boolean Expression
  * @author Kenneth & Bram
@@ -18,7 +20,7 @@ public class False extends Expression<Boolean> {
     }
 
     @Override
-    public Boolean evaluate() throws NullPointerException {
+    public Boolean evaluate(TaskRunner runner) throws NullPointerException {
         return false;
     }
 
@@ -4,7 +4,10 @@ package hillbillies.part3.programs.expressions;
 import java.util.Set;
 
 import hillbillies.activities.TargetMove;
+import hillbillies.model.InfluenceMap;
+import hillbillies.model.Task.TaskRunner;
 import hillbillies.model.Unit;
+import hillbillies.model.World;
 
 
 /**
@@ -21,19 +24,52 @@ public class Friend extends Expression<Unit> {
 		super(Unit.class);
 	}
 
+	/**
+	 * The nearest friend is the friend with the shortest path from the executing unit, as when all
+	 * friends are searched. In a World, only the friends in the nearest cells of its influence maps are
+	 * searched first. The target of a path of n cubes lies at most n cubes away along each axis, so
+	 * when the friends within the cells covering that distance were not all searched, they are added
+	 * and searched again. Only when none of the nearest friends can be reached, all friends are searched.
+	 */
 	@Override
-	public Unit evaluate() throws NullPointerException {
-		Unit thisUnit = this.getRunner().getExecutingUnit();
-		Set<Unit> units = this.getRunner().getExecutingWorld().getUnits();
-		units.removeIf(unit -> unit.getFaction()!=thisUnit.getFaction() || unit.isFalling() || unit == thisUnit);
-		if (units.isEmpty()){
-			this.getRunner().stop();
-			return null;
+	public Unit evaluate(TaskRunner runner) throws NullPointerException {
+		Unit thisUnit = runner.getExecutingUnit();
+		TargetMove targetmove = null;
+		if(runner.getExecutingWorld() instanceof World){
+			World world = (World)runner.getExecutingWorld();
+			Set<Unit> units = world.getNearestFriends(thisUnit);
+			units.removeIf(Unit::isFalling);
+			if(!units.isEmpty()){
+				try {
+					targetmove = new TargetMove(thisUnit, units);
+					int cells = (targetmove.getPathLength() + InfluenceMap.CELL_SIZE - 1) / InfluenceMap.CELL_SIZE;
+					Set<Unit> nearer = world.getFriendsWithin(thisUnit, cells);
+					nearer.removeIf(Unit::isFalling);
+					if(units.addAll(nearer))
+						targetmove = new TargetMove(thisUnit, units);
+				}catch(IllegalArgumentException e){
+					// None of the nearest friends can be reached, try all of them
+				}
+			}
+		}
+		if(targetmove == null){
+			Set<Unit> units = thisUnit.getFaction().getUnits();// Only the units of its own faction, not all units
+			units.removeIf(unit -> unit.isFalling() || unit == thisUnit);
+			if (units.isEmpty()){
+				runner.stop();
+				return null;
+			}
+			targetmove = new TargetMove(thisUnit, units);
 		}
-		TargetMove targetmove = new TargetMove(this.getRunner().getExecutingUnit(), units);
 		Unit NearestUnit = (Unit) targetmove.getNearestObject();
 		if(NearestUnit == null)
-			this.getRunner().stop();
+			runner.stop();
 		return NearestUnit;
 	}
-}
\ No newline at end of file
+
+	@Override
+	public boolean isSearch() {
+		return true;
+	}
+
+}
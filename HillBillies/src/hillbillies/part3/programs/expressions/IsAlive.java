@@ -3,6 +3,7 @@
  */
 package hillbillies.part3.programs.expressions;
 
+import hillbillies.model.Task.TaskRunner;
 import hillbillies.model.Unit;
 
 /**
@@ -28,7 +29,7 @@ public class IsAlive extends UnaryExpression<Unit, Boolean> {
 	 * @return | !unit.isTerminated()
 	 */
 	@Override
-	protected Boolean compute(Unit unit) {
+	public Boolean compute(TaskRunner runner, Unit unit) {
 		return !unit.isTerminated();
 	}
 
@@ -1,5 +1,6 @@
 package hillbillies.part3.programs.expressions;
 
+import hillbillies.model.Task.TaskRunner;
 import hillbillies.model.Unit;
 
 /**
@@ -26,7 +27,7 @@ public class IsEnemy extends UnaryExpression<Unit, Boolean> {
 	 * 			faction. True otherwise.
 	 */
 	@Override
-	protected Boolean compute(Unit unit) {
-		return !this.getRunner().getExecutingUnit().getFaction().equals(unit.getFaction());
+	public Boolean compute(TaskRunner runner, Unit unit) {
+		return !runner.getExecutingUnit().getFaction().equals(unit.getFaction());
 	}
 }
@@ -1,5 +1,6 @@
 package hillbillies.part3.programs.expressions;
 
+import hillbillies.model.Task.TaskRunner;
 import hillbillies.model.Unit;
 
 /**
@@ -26,8 +27,8 @@ public class IsFriend extends UnaryExpression<Unit, Boolean> {
 	 * 			faction. False otherwise.
 	 */
 	@Override
-	protected Boolean compute(Unit unit) {
-		return this.getRunner().getExecutingUnit().getFaction().equals(unit.getFaction());
+	public Boolean compute(TaskRunner runner, Unit unit) {
+		return runner.getExecutingUnit().getFaction().equals(unit.getFaction());
 	}
 
 }
@@ -1,5 +1,6 @@
 package hillbillies.part3.programs.expressions;
 
+import hillbillies.model.Task.TaskRunner;
 import hillbillies.utils.Vector;
 
 /**
@@ -26,8 +27,8 @@ public class IsPassable extends UnaryExpression<Vector, Boolean> {
 	 * 			unit's world is passable. False otherwise
 	 */
 	@Override
-	protected Boolean compute(Vector position) {
-		return this.getRunner().getExecutingWorld().getCube(position).isPassable();
+	public Boolean compute(TaskRunner runner, Vector position) {
+		return runner.getExecutingWorld().getCube(position).isPassable();
 	}
 
 }
@@ -1,5 +1,6 @@
 package hillbillies.part3.programs.expressions;
 
+import hillbillies.model.Task.TaskRunner;
 import hillbillies.utils.Vector;
 
 
@@ -10,7 +11,7 @@ import hillbillies.utils.Vector;
  */
 public class LiteralPosition extends Expression<Vector> {
 
-	private Vector position;
+	private final Vector position;
 	/**
 	 * 
 	 */
@@ -19,8 +20,12 @@ public class LiteralPosition extends Expression<Vector> {
 		this.position = new Vector(x,y,z);
 	}
 
+	public Vector getPosition(){
+		return this.position;
+	}
+
 	@Override
-	public Vector evaluate() {
+	public Vector evaluate(TaskRunner runner) {
 		return position;
 	}
 
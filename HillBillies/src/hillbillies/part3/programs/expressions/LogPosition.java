@@ -4,6 +4,7 @@ import java.util.Set;
 
 import hillbillies.activities.TargetMove;
 import hillbillies.model.Log;
+import hillbillies.model.Task.TaskRunner;
 import hillbillies.utils.Vector;
 
 /**
@@ -21,17 +22,22 @@ public class LogPosition extends Expression<Vector> {
 	}
 
 	@Override
-	public Vector evaluate() throws NullPointerException {
-		Set<Log> logs = this.getRunner().getExecutingWorld().getLogs(true);
+	public Vector evaluate(TaskRunner runner) throws NullPointerException {
+		Set<Log> logs = runner.getExecutingWorld().getLogs(true);
 		if (logs.isEmpty()){
-			this.getRunner().stop();
+			runner.stop();
 			return null;
 		}
-		TargetMove targetmove = new TargetMove(this.getRunner().getExecutingUnit(), logs);
+		TargetMove targetmove = new TargetMove(runner.getExecutingUnit(), logs);
 		Vector nearestPos = targetmove.getNearestPos();
 		if(nearestPos == null)
-			this.getRunner().stop();
+			runner.stop();
 		return nearestPos;
 	}
 
+	@Override
+	public boolean isSearch() {
+		return true;
+	}
+
 }
@@ -1,10 +1,11 @@
 package hillbillies.part3.programs.expressions;
 
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 import hillbillies.activities.TargetMove;
 import hillbillies.model.Cube;
+import hillbillies.model.Task.TaskRunner;
 import hillbillies.utils.Vector;
 
 /**
@@ -31,25 +32,30 @@ public class NextToPosition extends UnaryExpression<Vector, Vector> {
 	 * 			is available.
 	 */
 	@Override
-	protected Vector compute(Vector position) {
-		Set<Cube> positions = new HashSet<>();
-		this.getRunner().getExecutingWorld().getNeighbouringCubesSatisfying(
+	public Vector compute(TaskRunner runner, Vector position) {
+		Set<Cube> positions = new LinkedHashSet<>();
+		runner.getExecutingWorld().getNeighbouringCubesSatisfying(
 				positions,
 				position.getCubeCoordinates(),
-				cube -> this.getRunner().getExecutingUnit().isValidPosition(cube.getPosition()),
+				cube -> runner.getExecutingUnit().isValidPosition(cube.getPosition()),
 				cube -> cube
 		);
 		try {
-			Vector nextTo = new TargetMove(this.getRunner().getExecutingUnit(), positions).getNearestPos();
+			Vector nextTo = new TargetMove(runner.getExecutingUnit(), positions).getNearestPos();
 			if (nextTo == null) {
 				// No accessible positions available => stop activity
-				this.getRunner().stop();
+				runner.stop();
 			}
 			return nextTo;
 		}catch(IllegalArgumentException e){
-			this.getRunner().stop();// No reachable positions available
+			runner.stop();// No reachable positions available
 			return null;
 		}
 	}
 
+	@Override
+	public boolean isSearch() {
+		return true;
+	}
+
 }
@@ -3,6 +3,8 @@
  */
 package hillbillies.part3.programs.expressions;
 
+import hillbillies.model.Task.TaskRunner;
+
 /**
  * Class representing the Not Boolean Expression
  * @author Kenneth & Bram
@@ -23,7 +25,7 @@ public class Not extends UnaryExpression<Boolean, Boolean> {
 	 * @return | !value
 	 */
 	@Override
-	protected Boolean compute(Boolean value) {
+	public Boolean compute(TaskRunner runner, Boolean value) {
 		return !value;
 	}
 
@@ -26,7 +26,7 @@ public class Or extends BinaryExpression<Boolean, Boolean, Boolean> {
      * @return | leftValue || rightValue
      */
     @Override
-    protected Boolean combine(Boolean leftValue, Boolean rightValue) {
+    public Boolean combine(Boolean leftValue, Boolean rightValue) {
         return leftValue || rightValue;
     }
 
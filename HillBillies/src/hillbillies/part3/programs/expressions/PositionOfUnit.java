@@ -1,5 +1,6 @@
 package hillbillies.part3.programs.expressions;
 
+import hillbillies.model.Task.TaskRunner;
 import hillbillies.model.Unit;
 import hillbillies.utils.Vector;
 
@@ -28,7 +29,7 @@ public class PositionOfUnit extends UnaryExpression<Unit, Vector> {
 	 * 			| unit.getPosition()
 	 */
 	@Override
-	protected Vector compute(Unit unit) {
+	public Vector compute(TaskRunner runner, Unit unit) {
 		return unit.getPosition();
 	}
 
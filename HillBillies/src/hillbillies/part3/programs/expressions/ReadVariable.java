@@ -1,5 +1,7 @@
 package hillbillies.part3.programs.expressions;
 
+import hillbillies.model.Task.TaskRunner;
+
 
 /**
  * Class representing the ReadVariable Expression
@@ -22,9 +24,9 @@ public class ReadVariable<T> extends Expression<T> {
 	}
 
 	@Override
-	public T evaluate() throws NullPointerException {
+	public T evaluate(TaskRunner runner) throws NullPointerException {
 		try {
-			return this.getRunner().getVariableValue(variableName);
+			return runner.getVariableValue(variableName);
 		}catch(IllegalArgumentException e){
 			throw new IllegalStateException("The variable to evaluate isn't assigned. This may not happen?", e);
 		}
@@ -3,6 +3,7 @@
  */
 package hillbillies.part3.programs.expressions;
 
+import hillbillies.model.Task.TaskRunner;
 import hillbillies.utils.Vector;
 
 /**
@@ -20,8 +21,8 @@ public class SelectedPosition extends Expression<Vector> {
 	}
 
 	@Override
-	public Vector evaluate() throws NullPointerException {
-		return this.getRunner().getSelectedCube().getPosition();
+	public Vector evaluate(TaskRunner runner) throws NullPointerException {
+		return runner.getSelectedCube().getPosition();
 	}
 
 }
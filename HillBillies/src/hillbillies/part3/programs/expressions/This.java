@@ -1,6 +1,7 @@
 package hillbillies.part3.programs.expressions;
 
 
+import hillbillies.model.Task.TaskRunner;
 import hillbillies.model.Unit;
 
 
@@ -19,8 +20,8 @@ public class This extends Expression<Unit> {
 	}
 
 	@Override
-	public Unit evaluate() throws NullPointerException {
-		return this.getRunner().getExecutingUnit();
+	public Unit evaluate(TaskRunner runner) throws NullPointerException {
+		return runner.getExecutingUnit();
 	}
 
 }
\ No newline at end of file
@@ -3,6 +3,8 @@
  */
 package hillbillies.part3.programs.expressions;
 
+import hillbillies.model.Task.TaskRunner;
+
 /**
  * Class representing the True Boolean Expression
  * @author Kenneth & Bram
@@ -18,7 +20,7 @@ public class True extends Expression<Boolean> {
     }
 
     @Override
-    public Boolean evaluate() {
+    public Boolean evaluate(TaskRunner runner) {
         return true;
     }
 
@@ -1,35 +1,54 @@
 package hillbillies.part3.programs.expressions;
 
+import hillbillies.model.Task.TaskRunner;
+
 /**
  * Created by Bram on 14-5-2016.
  */
 public abstract class UnaryExpression<E, T> extends Expression<T> {
 
-    private Expression<E> expression;
+    private final Expression<E> expression;
+    private final Class<E> subType;
 
     public UnaryExpression(Class<T> resultType, Class<E> subType, Expression<E> expression) throws IllegalArgumentException {
         super(resultType, expression);
         if(!expression.checkType(subType))
             throw new IllegalArgumentException("The given sub Expression's generic type does not correspond to this UnaryExpression's generic subType.");
         this.expression = expression;
+        this.subType = subType;
+    }
+
+    /**
+     * Return the type of the value this UnaryExpression expects from its sub expression.
+     */
+    public Class<E> getSubType(){
+        return this.subType;
+    }
+
+    /**
+     * Return the sub expression of this UnaryExpression.
+     */
+    public Expression<E> getExpression(){
+        return this.expression;
     }
 
     @Override
-    public T evaluate() throws NullPointerException {
-        E value = this.runChild(expression);
+    public T evaluate(TaskRunner runner) throws NullPointerException {
+        E value = expression.evaluate(runner);
         if(value==null)
-            throw new NullPointerException("The expression yields null.");// Is catched inside Expression's process method
-        return compute(value);
+            throw new NullPointerException("The expression yields null.");
+        return compute(runner, value);
     }
 
     /**
      * Compute the value to be returned by this expression, given the value
      * of its child expression.
+     * @param runner The runner executing the program this expression is part of.
      * @param value The value of the child expression. This value is guaranteed
      *              to be not null.
      * @return The value this expression should return based on the given value
      *          of its child expression.
      */
-    protected abstract T compute(E value);
+    public abstract T compute(TaskRunner runner, E value);
 
 }
@@ -4,6 +4,7 @@ import java.util.Set;
 
 import hillbillies.activities.TargetMove;
 import hillbillies.model.Cube;
+import hillbillies.model.Task.TaskRunner;
 import hillbillies.utils.Vector;
 
 /**
@@ -21,17 +22,22 @@ public class WorkshopPosition extends Expression<Vector> {
 	}
 
 	@Override
-	public Vector evaluate() throws NullPointerException {
-		Set<Cube> workshops = this.getRunner().getExecutingWorld().getWorkshops();
+	public Vector evaluate(TaskRunner runner) throws NullPointerException {
+		Set<Cube> workshops = runner.getExecutingWorld().getWorkshops();
 		if (workshops.isEmpty()){
-			this.getRunner().stop();
+			runner.stop();
 			return null;
 		}
-		TargetMove targetmove = new TargetMove(this.getRunner().getExecutingUnit(), workshops);
+		TargetMove targetmove = new TargetMove(runner.getExecutingUnit(), workshops);
 		Vector nearestPos = targetmove.getNearestPos();
 		if(nearestPos == null)
-			this.getRunner().stop();
+			runner.stop();
 		return nearestPos;
 	}
 
-}
\ No newline at end of file
+	@Override
+	public boolean isSearch() {
+		return true;
+	}
+
+}
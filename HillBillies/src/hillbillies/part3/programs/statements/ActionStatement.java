@@ -0,0 +1,59 @@
+package hillbillies.part3.programs.statements;
+
+import hillbillies.model.Task.TaskRunner;
+import hillbillies.part3.programs.expressions.Expression;
+
+/**
+ * Abstract class representing a statement which performs a single action with the
+ * value of its argument expression.
+ * The generic type T is the type of the argument of this ActionStatement.
+ * @author Kenneth & Bram
+ * @version 1.0
+ */
+public abstract class ActionStatement<T> extends Statement {
+
+    /**
+     * Variable referencing the argument of this ActionStatement.
+     */
+    private final Expression<? extends T> argument;
+    /**
+     * Variable referencing the type of the value this ActionStatement expects from its argument.
+     */
+    private final Class<T> argumentType;
+
+    /**
+     * Initialize a new ActionStatement with given argument.
+     * @param argumentType The type of the value this ActionStatement expects from its argument.
+     * @param argument The expression whose value is used to perform the action.
+     * @throws IllegalArgumentException
+     *          When the given argument is not effective.
+     *          | argument == null
+     */
+    public ActionStatement(Class<T> argumentType, Expression<? extends T> argument) throws IllegalArgumentException {
+        super(argument);
+        this.argument = argument;
+        this.argumentType = argumentType;
+    }
+
+    /**
+     * Return the argument of this ActionStatement.
+     */
+    public Expression<? extends T> getArgument(){
+        return this.argument;
+    }
+
+    /**
+     * Return the type of the value this ActionStatement expects from its argument.
+     */
+    public Class<T> getArgumentType(){
+        return this.argumentType;
+    }
+
+    /**
+     * Perform the action of this statement for the given runner.
+     * @param runner The runner executing the program this statement is part of.
+     * @param value The value of the argument. This value is guaranteed to be not null.
+     */
+    public abstract void execute(TaskRunner runner, T value);
+
+}
@@ -22,13 +22,10 @@ public class Assignment<T> extends Statement {
         return this.variableName;
     }
 
-    @Override
-    protected void execute() {
-        try {
-            this.getRunner().assignVariable(variableName, this.runChild(value));
-        }catch(ClassCastException e){
-            this.getCurrentTask().finish();
-            throw new IllegalArgumentException("Illegal variable assignment.", e);
-        }
+    /**
+     * Return the expression whose value is assigned by this Assignment.
+     */
+    public Expression<T> getValue(){
+        return this.value;
     }
 }
@@ -11,9 +11,4 @@ public class Break extends Statement {
     public Break(){
         super();
     }
-
-    @Override
-    public void execute() {
-        this.getRunner().breakLoop = true;
-    }
 }
@@ -18,10 +18,12 @@ public class If extends Statement {
         this.ifBody = ifBody;
     }
 
-    @Override
-    public void execute() {
-        if(this.getCurrentChild()==1 || this.runChild(condition))
-            this.runChild(ifBody);
+    public Expression<Boolean> getCondition(){
+        return this.condition;
+    }
+
+    public Statement getIfBody(){
+        return this.ifBody;
     }
 
 }
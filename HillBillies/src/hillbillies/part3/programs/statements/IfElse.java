@@ -9,7 +9,6 @@ import hillbillies.part3.programs.expressions.Expression;
  */
 public class IfElse extends Statement {
 
-    public static final int IF_INDEX = 1, ELSE_INDEX = 2;
     private final Expression<Boolean> condition;
     private final Statement ifBody, elseBody;
 
@@ -22,11 +21,15 @@ public class IfElse extends Statement {
         this.elseBody = elseBody;
     }
 
-    @Override
-    public void execute() {
-        if(this.getCurrentChild()!=ELSE_INDEX && (this.getCurrentChild()==IF_INDEX || this.runChild(condition)))
-            this.runChild(ifBody);
-        else
-            this.runChild(elseBody);
+    public Expression<Boolean> getCondition(){
+        return this.condition;
+    }
+
+    public Statement getIfBody(){
+        return this.ifBody;
+    }
+
+    public Statement getElseBody(){
+        return this.elseBody;
     }
 }
@@ -8,17 +8,14 @@ import hillbillies.part3.programs.expressions.Expression;
  * @author kenneth
  *
  */
-public class Print extends Statement {
-	private final Expression<?> value;
-
+public class Print extends ActionStatement<Object> {
 	public Print(Expression<?> value) throws IllegalArgumentException {
-		super(value);
-		this.value = value;
+		super(Object.class, value);
 	}
 
 	@Override
-	public void execute() {
-		System.out.println(this.runChild(value));
+	public void execute(TaskRunner runner, Object value) {
+		System.out.println(value);
 	}
 
 }
@@ -3,6 +3,8 @@ package hillbillies.part3.programs.statements;
 import hillbillies.part3.programs.SourceLocation;
 import hillbillies.model.Task.TaskRunner;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -14,13 +16,10 @@ public class Sequence extends Statement {
 
     public Sequence(List<Statement> statements) throws IllegalArgumentException{
         super(statements.toArray(new Statement[]{}));
-        this.statements = statements;
+        this.statements = Collections.unmodifiableList(new ArrayList<>(statements));
     }
 
-    @Override
-    public void execute() {
-        int i = this.getCurrentChild();
-        while(i < statements.size())
-            this.runChild(statements.get(i++));
+    public List<Statement> getStatements(){
+        return this.statements;
     }
 }
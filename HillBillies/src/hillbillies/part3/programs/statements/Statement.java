@@ -1,7 +1,8 @@
 package hillbillies.part3.programs.statements;
 
-import hillbillies.model.Task.TaskRunner;
 import hillbillies.part3.programs.Command;
+import hillbillies.part3.programs.Program;
+import hillbillies.part3.programs.SourceLocation;
 import hillbillies.part3.programs.expressions.ReadVariable;
 
 import java.util.HashSet;
@@ -13,6 +14,19 @@ import java.util.HashSet;
  */
 public abstract class Statement extends Command<Void> {
 
+    /**
+     * Variable referencing the compiled program of this statement, once it is compiled.
+     */
+    private volatile Program program;
+    /**
+     * Variable registering whether this statement is well-formed, once it is checked.
+     */
+    private volatile Boolean isWellFormed;
+    /**
+     * Variable referencing the location of this statement in the source of its task, once it is known.
+     */
+    private volatile SourceLocation sourceLocation;
+
     /**
      * The children must be specified in the order they will be executed.
      * @param children
@@ -21,41 +35,53 @@ public abstract class Statement extends Command<Void> {
         super(children);
     }
 
-    @Override
-    protected final Void process() {
-        TaskRunner runner = this.getRunner();
-        if(runner.isResuming()){
-            this.setCurrentChild(runner.resumeState());
-            if(this.getCurrentChild()>=this.getNbChildren())
-                return null;// This Statement is finished
-            safeExecute();// Execute without consuming dt
-        }
-        else if(!runner.breakLoop && runner.getDt()>0) {
-            this.getRunner().consumeDt();
-            safeExecute();// Otherwise execute and consume dt
-        }
-        else if(this.getRunner().getDt()==0d){
-            this.getRunner().pause();// If all dt is consumed, start pausing
-        }
-        if(this.getRunner().isPausing()) {
-            this.getRunner().saveState(this.getCurrentChild());// If we are interrupting, save the current state
-        }
-        return null;
+    /**
+     * Check whether this statement is well-formed: no variable is read before it is assigned
+     * and each break statement is part of a loop. The statement is only checked the first
+     * time, statements are immutable so the result never changes.
+     */
+    public final boolean check(){
+        Boolean isWellFormed = this.isWellFormed;
+        if(isWellFormed == null)
+            this.isWellFormed = isWellFormed = checkVariableAccess() && checkBreak();
+        return isWellFormed;
     }
 
-    private void safeExecute(){
-        try{
-            execute();
-        }catch(NullPointerException e){
-            if(this.getRunner().isPausing() || this.getRunner().isStopping()) return;// Nothing wrong, runner is pausing or stopping
-            throw new NullPointerException("Strange NullPointerException occurred.");
-        }
+    /**
+     * Return the program compiled from this statement. The statement is compiled the first time
+     * its program is requested, all tasks executing this statement share the same program.
+     * @return | result.getStatement() == this
+     * @throws IllegalArgumentException
+     *          When this statement cannot be compiled.
+     *          | Program.compile(this) throws IllegalArgumentException
+     */
+    public final Program getProgram() throws IllegalArgumentException {
+        Program program = this.program;
+        if(program == null)
+            this.program = program = Program.compile(this);// Compiling twice concurrently yields equivalent programs
+        return program;
     }
 
-    protected abstract void execute() throws NullPointerException;
+    /**
+     * Return the location of this statement in the source of its task, null when it is unknown.
+     */
+    public SourceLocation getSourceLocation(){
+        return this.sourceLocation;
+    }
 
-    public final boolean check(){
-        return checkVariableAccess() && checkBreak();
+    /**
+     * Register the location of this statement in the source of its task. The location of a
+     * statement can only be given once, like the rest of the statement it never changes.
+     * @param sourceLocation The location of this statement.
+     * @post | new.getSourceLocation() == sourceLocation
+     * @throws IllegalStateException
+     *          When this statement already has another location.
+     *          | getSourceLocation() != null && !getSourceLocation().equals(sourceLocation)
+     */
+    public void setSourceLocation(SourceLocation sourceLocation) throws IllegalStateException {
+        if(this.sourceLocation != null && !this.sourceLocation.equals(sourceLocation))
+            throw new IllegalStateException("The location of this statement is already known.");
+        this.sourceLocation = sourceLocation;
     }
 
     protected boolean checkBreak(){
@@ -10,7 +10,6 @@ import hillbillies.part3.programs.expressions.Expression;
  */
 public class While extends Statement {
 
-    public static final int BODY_INDEX = 1;
     private final Expression<Boolean> condition;
     private final Statement body;
 
@@ -22,24 +21,12 @@ public class While extends Statement {
         this.body = body;
     }
 
-    @Override
-    public void execute() {
-        boolean resuming = this.getCurrentChild()==BODY_INDEX;
-        while(resuming || runChild(condition)){
-            resuming = false;
-            runChild(body);
-            if(this.getRunner().breakLoop){
-                this.getRunner().breakLoop = false;
-                break;
-            }
-            if(this.getRunner().isStopping() || this.getRunner().isPausing())
-                break;
-        }
+    public Expression<Boolean> getCondition(){
+        return this.condition;
     }
 
-    @Override
-    protected <E> E runChild(Command<E> child) throws IllegalStateException, IllegalArgumentException {
-        return super.runChild(child);
+    public Statement getBody(){
+        return this.body;
     }
 
     @Override
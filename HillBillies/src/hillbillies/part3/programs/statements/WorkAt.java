@@ -1,6 +1,5 @@
 package hillbillies.part3.programs.statements;
 
-import hillbillies.activities.None;
 import hillbillies.part3.programs.SourceLocation;
 import hillbillies.model.Task.TaskRunner;
 import hillbillies.part3.programs.expressions.Expression;
@@ -9,22 +8,19 @@ import hillbillies.utils.Vector;
  * @author kenneth
  *
  */
-public class WorkAt extends Statement{
-	private final Expression<Vector> position;
+public class WorkAt extends ActionStatement<Vector> {
 	/**
 	 * 
 	 */
 	public WorkAt(Expression<Vector> position) throws IllegalArgumentException {
-		super(position);
+		super(Vector.class, position);
 		if(!position.checkType(Vector.class))
 			throw new IllegalArgumentException("The given position Expression is not of the generic type Vector.");
-		this.position = position;
 	}
 	@Override
-	public void execute() {
-		Vector workPosition = this.runChild(position);
-		this.getRunner().getExecutingUnit().work(workPosition);
-		this.getRunner().waitFor(unit -> unit.isExecuting(None.class));
+	public void execute(TaskRunner runner, Vector workPosition) {
+		runner.getExecutingUnit().work(workPosition);
+		runner.waitForActivity();
 	}
 
 }
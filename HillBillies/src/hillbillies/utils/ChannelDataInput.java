@@ -0,0 +1,198 @@
+package hillbillies.utils;
+
+import java.io.DataInput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * DataInput reading through a reusable ByteBuffer from a ReadableByteChannel. The buffer is
+ * refilled from the channel whenever the next value is not completely buffered. Reading
+ * primitives does not allocate.
+ * @note readUTF reads strings written by ChannelDataOutput's writeUTF.
+ * @author Kenneth & Bram
+ * @version 1.0
+ */
+public class ChannelDataInput implements DataInput {
+
+    /**
+     * Variable referencing the buffer holding the bytes which are read from the channel
+     * but not yet consumed.
+     */
+    private final ByteBuffer buffer;
+    /**
+     * Variable referencing the channel this input reads from.
+     */
+    private ReadableByteChannel channel;
+
+    /**
+     * Initialize a new ChannelDataInput with a buffer of the given capacity.
+     * The input is not bound to a channel yet.
+     * @param bufferSize The capacity of the buffer.
+     * @throws IllegalArgumentException
+     *          When the given buffer size is smaller than 8 bytes.
+     *          | bufferSize < 8
+     */
+    public ChannelDataInput(int bufferSize) throws IllegalArgumentException {
+        if(bufferSize < 8)
+            throw new IllegalArgumentException("The buffer must be able to hold at least one long.");
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.buffer.limit(0);
+    }
+
+    /**
+     * Initialize a new ChannelDataInput reading from the given channel.
+     * @effect A new input with the default buffer size is created and bound to the given channel.
+     *          | this(ChannelDataOutput.DEFAULT_BUFFER_SIZE)
+     *          | this.bind(channel)
+     */
+    public ChannelDataInput(ReadableByteChannel channel) throws NullPointerException {
+        this(ChannelDataOutput.DEFAULT_BUFFER_SIZE);
+        this.bind(channel);
+    }
+
+    /**
+     * Bind this input to the given channel. Bytes which are still buffered are discarded.
+     * @param channel The channel to read from from now on.
+     * @throws NullPointerException
+     *          When the given channel is not effective.
+     */
+    public void bind(ReadableByteChannel channel) throws NullPointerException {
+        if(channel == null)
+            throw new NullPointerException("The given channel is not effective.");
+        this.channel = channel;
+        this.buffer.clear().limit(0);
+    }
+
+    /**
+     * Make sure the given number of bytes is buffered.
+     * @throws EOFException When the channel ends before the given number of bytes is read.
+     */
+    private void require(int nbBytes) throws IOException {
+        if(buffer.remaining() >= nbBytes)
+            return;
+        buffer.compact();
+        while(buffer.position() < nbBytes){
+            if(channel.read(buffer) < 0){
+                buffer.flip();
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+    }
+
+    @Override
+    public void readFully(byte[] b) throws IOException {
+        readFully(b, 0, b.length);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) throws IOException {
+        while(len > 0){
+            require(1);
+            int nbBytes = Math.min(len, buffer.remaining());
+            buffer.get(b, off, nbBytes);
+            off += nbBytes;
+            len -= nbBytes;
+        }
+    }
+
+    @Override
+    public int skipBytes(int n) throws IOException {
+        int skipped = 0;
+        while(skipped < n){
+            try {
+                require(1);
+            }catch(EOFException e){
+                break;
+            }
+            int nbBytes = Math.min(n - skipped, buffer.remaining());
+            buffer.position(buffer.position() + nbBytes);
+            skipped += nbBytes;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        require(1);
+        return buffer.get();
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        return readByte() & 0xFF;
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        require(2);
+        return buffer.getShort();
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        return readShort() & 0xFFFF;
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        require(2);
+        return buffer.getChar();
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        require(4);
+        return buffer.getInt();
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        require(8);
+        return buffer.getLong();
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        require(4);
+        return buffer.getFloat();
+    }
+
+    @Override
+    public double readDouble() throws IOException {
+        require(8);
+        return buffer.getDouble();
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        while(true){
+            int c;
+            try {
+                c = readUnsignedByte();
+            }catch(EOFException e){
+                if(line.length() == 0) return null;
+                break;
+            }
+            if(c == '\n') break;
+            if(c != '\r') line.append((char)c);
+        }
+        return line.toString();
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+        byte[] bytes = new byte[readChar()];
+        readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,182 @@
+package hillbillies.utils;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * DataOutput writing through a reusable ByteBuffer to a WritableByteChannel. Primitive
+ * values are put in the buffer directly, the buffer is only written to the channel once
+ * it is full or when flush is called. Writing primitives does not allocate.
+ * @note Strings written by writeUTF are encoded as standard UTF-8 prefixed by their
+ *       length in bytes, they can be read back by ChannelDataInput's readUTF.
+ * @author Kenneth & Bram
+ * @version 1.0
+ */
+public class ChannelDataOutput implements DataOutput {
+
+    /**
+     * Constant reflecting the default capacity of the buffer.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Variable referencing the buffer holding the bytes which are not yet written to the channel.
+     */
+    private final ByteBuffer buffer;
+    /**
+     * Variable referencing the channel this output writes to.
+     */
+    private WritableByteChannel channel;
+
+    /**
+     * Initialize a new ChannelDataOutput with a buffer of the given capacity.
+     * The output is not bound to a channel yet.
+     * @param bufferSize The capacity of the buffer.
+     * @throws IllegalArgumentException
+     *          When the given buffer size is smaller than 8 bytes.
+     *          | bufferSize < 8
+     */
+    public ChannelDataOutput(int bufferSize) throws IllegalArgumentException {
+        if(bufferSize < 8)
+            throw new IllegalArgumentException("The buffer must be able to hold at least one long.");
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Initialize a new ChannelDataOutput writing to the given channel.
+     * @effect A new output with the default buffer size is created and bound to the given channel.
+     *          | this(DEFAULT_BUFFER_SIZE)
+     *          | this.bind(channel)
+     */
+    public ChannelDataOutput(WritableByteChannel channel) throws NullPointerException {
+        this(DEFAULT_BUFFER_SIZE);
+        this.bind(channel);
+    }
+
+    /**
+     * Bind this output to the given channel. The buffer of this output is reused.
+     * @param channel The channel to write to from now on.
+     * @throws NullPointerException
+     *          When the given channel is not effective.
+     * @throws IllegalStateException
+     *          When there are still buffered bytes which are not flushed to the previous channel.
+     */
+    public void bind(WritableByteChannel channel) throws NullPointerException, IllegalStateException {
+        if(channel == null)
+            throw new NullPointerException("The given channel is not effective.");
+        if(buffer.position() != 0)
+            throw new IllegalStateException("The buffered bytes must be flushed before rebinding this output.");
+        this.channel = channel;
+    }
+
+    /**
+     * Write all buffered bytes to the channel.
+     * @throws IOException When an I/O error occurs.
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while(buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Make sure the buffer has room for the given number of bytes.
+     */
+    private void ensureRemaining(int nbBytes) throws IOException {
+        if(buffer.remaining() < nbBytes)
+            flush();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureRemaining(1);
+        buffer.put((byte)b);
+    }
+
+    @Override
+    public void write(byte[] b) throws IOException {
+        write(b, 0, b.length);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while(len > 0){
+            ensureRemaining(1);
+            int nbBytes = Math.min(len, buffer.remaining());
+            buffer.put(b, off, nbBytes);
+            off += nbBytes;
+            len -= nbBytes;
+        }
+    }
+
+    @Override
+    public void writeBoolean(boolean v) throws IOException {
+        write(v ? 1 : 0);
+    }
+
+    @Override
+    public void writeByte(int v) throws IOException {
+        write(v);
+    }
+
+    @Override
+    public void writeShort(int v) throws IOException {
+        ensureRemaining(2);
+        buffer.putShort((short)v);
+    }
+
+    @Override
+    public void writeChar(int v) throws IOException {
+        ensureRemaining(2);
+        buffer.putChar((char)v);
+    }
+
+    @Override
+    public void writeInt(int v) throws IOException {
+        ensureRemaining(4);
+        buffer.putInt(v);
+    }
+
+    @Override
+    public void writeLong(long v) throws IOException {
+        ensureRemaining(8);
+        buffer.putLong(v);
+    }
+
+    @Override
+    public void writeFloat(float v) throws IOException {
+        ensureRemaining(4);
+        buffer.putFloat(v);
+    }
+
+    @Override
+    public void writeDouble(double v) throws IOException {
+        ensureRemaining(8);
+        buffer.putDouble(v);
+    }
+
+    @Override
+    public void writeBytes(String s) throws IOException {
+        for(int i = 0; i < s.length(); i++)
+            write(s.charAt(i));
+    }
+
+    @Override
+    public void writeChars(String s) throws IOException {
+        for(int i = 0; i < s.length(); i++)
+            writeChar(s.charAt(i));
+    }
+
+    @Override
+    public void writeUTF(String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if(bytes.length > Character.MAX_VALUE)
+            throw new IOException("The given string is too long to be written.");
+        writeChar(bytes.length);
+        write(bytes);
+    }
+}
@@ -0,0 +1,487 @@
+package hillbillies.utils;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Immutable;
+import hillbillies.common.internal.map.IByteMap3D;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A 3D map of byte values which is divided in cubic chunks of CHUNK_SIZE cells along
+ * each axis. A chunk whose cells all share the same value is stored as that single value,
+ * only chunks which differ from their uniform value are backed by an array. Chunks are
+ * materialized lazily on the first mutation that breaks their uniformity and can be
+ * collapsed back to a single value by compact(). Cold chunks can be compressed to a
+ * RunLengthColumns representation by compress(), they are materialized again on their
+ * next mutation.
+ * Immutable snapshots of the map can be taken by snapshot(). A snapshot shares the cell
+ * arrays of the map, these arrays are copied on the next mutation of their chunk. A snapshot
+ * can therefore be read by other threads while this map is mutated.
+ * @author Kenneth & Bram
+ * @version 1.0
+ */
+public class ChunkedByteMap implements IByteMap3D {
+
+    /**
+     * Constant reflecting the number of bits used to index a cell inside a chunk along one axis.
+     */
+    public static final int CHUNK_BITS = 4;
+    /**
+     * Constant reflecting the number of cells of a chunk along one axis.
+     */
+    public static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    /**
+     * Constant reflecting the total number of cells in one chunk.
+     */
+    public static final int CHUNK_VOLUME = CHUNK_SIZE * CHUNK_SIZE * CHUNK_SIZE;
+    /**
+     * Constant reflecting the mask used to retrieve the local index inside a chunk.
+     */
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * Constants reflecting the number of cells in each direction.
+     */
+    private final int nbX, nbY, nbZ;
+    /**
+     * Constants reflecting the number of chunks in each direction.
+     */
+    private final int nbChunksX, nbChunksY, nbChunksZ;
+    /**
+     * Variable referencing the cell arrays of all materialized chunks.
+     * @invar A chunk which is not materialized is referenced as null.
+     *          | for each i in 0..chunks.length-1 :
+     *          |   !isMaterialized(i) == (chunks[i] == null)
+     */
+    private final byte[][] chunks;
+    /**
+     * Variable referencing the compressed representation of all compressed chunks.
+     * @invar A chunk is never materialized and compressed at the same time.
+     *          | for each i in 0..chunks.length-1 :
+     *          |   chunks[i] == null || compressedChunks[i] == null
+     */
+    private final RunLengthColumns[] compressedChunks;
+    /**
+     * Variable referencing the value of each uniform chunk. The value of
+     * a materialized chunk is meaningless.
+     */
+    private final byte[] uniformValues;
+    /**
+     * Variable referencing for each chunk whether its cell array is shared with a snapshot.
+     * A shared cell array is copied before it is mutated.
+     * @invar Only materialized chunks can be shared.
+     *          | for each i in 0..chunks.length-1 :
+     *          |   !sharedChunks[i] || chunks[i] != null
+     */
+    private final boolean[] sharedChunks;
+    /**
+     * Variable referencing the last snapshot of this map, as long as no value changed since it was taken.
+     */
+    private Snapshot lastSnapshot = null;
+    /**
+     * Variable registering the number of materialized chunks.
+     */
+    private int nbMaterializedChunks = 0;
+    /**
+     * Variable registering the number of compressed chunks.
+     */
+    private int nbCompressedChunks = 0;
+    /**
+     * Variable referencing the listeners which are notified of each value change.
+     */
+    private final Set<Listener> listeners = new HashSet<>();
+
+    /**
+     * Initialize a new ChunkedByteMap with the given dimensions where each cell
+     * holds the given initial value.
+     * @param nbX The number of cells along the x-axis.
+     * @param nbY The number of cells along the y-axis.
+     * @param nbZ The number of cells along the z-axis.
+     * @param initialValue The value of each cell of this new map.
+     * @post Each cell of this new map holds the initial value.
+     *          | for each x,y,z with isValidIndex(x,y,z) :
+     *          |   new.getValue(x,y,z) == initialValue
+     * @post No chunk of this new map is materialized.
+     *          | new.getNbMaterializedChunks() == 0
+     * @throws IllegalArgumentException
+     *          When one of the given dimensions is not strictly positive.
+     *          | nbX <= 0 || nbY <= 0 || nbZ <= 0
+     */
+    public ChunkedByteMap(int nbX, int nbY, int nbZ, byte initialValue) throws IllegalArgumentException {
+        if(nbX <= 0 || nbY <= 0 || nbZ <= 0)
+            throw new IllegalArgumentException("The dimensions of a ChunkedByteMap must be strictly positive.");
+        this.nbX = nbX;
+        this.nbY = nbY;
+        this.nbZ = nbZ;
+        this.nbChunksX = (nbX + CHUNK_MASK) >> CHUNK_BITS;
+        this.nbChunksY = (nbY + CHUNK_MASK) >> CHUNK_BITS;
+        this.nbChunksZ = (nbZ + CHUNK_MASK) >> CHUNK_BITS;
+        this.chunks = new byte[nbChunksX * nbChunksY * nbChunksZ][];
+        this.compressedChunks = new RunLengthColumns[chunks.length];
+        this.uniformValues = new byte[chunks.length];
+        this.sharedChunks = new boolean[chunks.length];
+        Arrays.fill(uniformValues, initialValue);
+    }
+
+    @Override
+    @Basic @Immutable
+    public int getNbX() {
+        return nbX;
+    }
+
+    @Override
+    @Basic @Immutable
+    public int getNbY() {
+        return nbY;
+    }
+
+    @Override
+    @Basic @Immutable
+    public int getNbZ() {
+        return nbZ;
+    }
+
+    /**
+     * @return The total number of chunks in this map.
+     */
+    @Immutable
+    public int getNbChunks(){
+        return chunks.length;
+    }
+
+    /**
+     * @return The number of chunks which are currently backed by a cell array.
+     */
+    @Basic
+    public int getNbMaterializedChunks(){
+        return nbMaterializedChunks;
+    }
+
+    /**
+     * @return The number of chunks which are currently compressed.
+     */
+    @Basic
+    public int getNbCompressedChunks(){
+        return nbCompressedChunks;
+    }
+
+    /**
+     * @return An estimate of the number of bytes used to store the values of this map.
+     */
+    public long getEstimatedSize(){
+        long size = (long)chunks.length * (2 * 8 + 1);// Chunk references and uniform values
+        size += (long)nbMaterializedChunks * CHUNK_VOLUME;
+        for(RunLengthColumns compressed : compressedChunks)
+            if(compressed != null)
+                size += compressed.getEncodedSize();
+        return size;
+    }
+
+    @Override
+    public boolean isValidIndex(int x, int y, int z) {
+        return 0 <= x && x < nbX && 0 <= y && y < nbY && 0 <= z && z < nbZ;
+    }
+
+    /**
+     * Retrieve the index of the chunk containing the cell with given coordinates.
+     */
+    private int getChunkIndex(int x, int y, int z){
+        return (x >> CHUNK_BITS) + nbChunksX * ((y >> CHUNK_BITS) + nbChunksY * (z >> CHUNK_BITS));
+    }
+
+    /**
+     * Retrieve the index of the cell with given coordinates inside its chunk.
+     */
+    private static int getLocalIndex(int x, int y, int z){
+        return (x & CHUNK_MASK) | ((y & CHUNK_MASK) << CHUNK_BITS) | ((z & CHUNK_MASK) << (2 * CHUNK_BITS));
+    }
+
+    /**
+     * Check whether the chunk containing the cell with given coordinates is materialized.
+     * @throws IndexOutOfBoundsException
+     *          When the given coordinates are not valid in this map.
+     *          | !isValidIndex(x, y, z)
+     */
+    public boolean isMaterialized(int x, int y, int z) throws IndexOutOfBoundsException {
+        checkIndex(x, y, z);
+        return chunks[getChunkIndex(x, y, z)] != null;
+    }
+
+    @Override
+    public byte getValue(int x, int y, int z) throws IndexOutOfBoundsException {
+        checkIndex(x, y, z);
+        int chunkIndex = getChunkIndex(x, y, z);
+        byte[] chunk = chunks[chunkIndex];
+        if(chunk != null)
+            return chunk[getLocalIndex(x, y, z)];
+        RunLengthColumns compressed = compressedChunks[chunkIndex];
+        if(compressed != null)
+            return compressed.getValue(x & CHUNK_MASK, y & CHUNK_MASK, z & CHUNK_MASK);
+        return uniformValues[chunkIndex];
+    }
+
+    /**
+     * Set the value of the cell with given coordinates. The chunk containing this cell is
+     * materialized when the given value differs from the chunk's uniform value.
+     * @post The cell with given coordinates holds the given value.
+     *          | new.getValue(x, y, z) == value
+     * @effect When the old value of the cell differs from the given value, all listeners are notified.
+     *          | if(getValue(x, y, z) != value)
+     *          |   for each listener in listeners : listener.onChange(x, y, z, getValue(x, y, z), value)
+     * @throws IndexOutOfBoundsException
+     *          When the given coordinates are not valid in this map.
+     *          | !isValidIndex(x, y, z)
+     */
+    @Override
+    public void setValue(int x, int y, int z, byte value) throws IndexOutOfBoundsException {
+        checkIndex(x, y, z);
+        int chunkIndex = getChunkIndex(x, y, z);
+        byte[] chunk = chunks[chunkIndex];
+        byte oldValue;
+        if(chunk == null){
+            if(compressedChunks[chunkIndex] != null){
+                chunk = decompress(chunkIndex);
+            }else{
+                oldValue = uniformValues[chunkIndex];
+                if(oldValue == value)
+                    return;
+                chunk = materialize(chunkIndex);
+            }
+        }
+        int localIndex = getLocalIndex(x, y, z);
+        oldValue = chunk[localIndex];
+        if(oldValue != value){
+            if(sharedChunks[chunkIndex]){
+                chunk = chunk.clone();
+                chunks[chunkIndex] = chunk;
+                sharedChunks[chunkIndex] = false;
+            }
+            lastSnapshot = null;
+            chunk[localIndex] = value;
+            fireChange(x, y, z, oldValue, value);
+        }
+    }
+
+    /**
+     * Back the uniform chunk with given index by a cell array filled with its uniform value.
+     */
+    private byte[] materialize(int chunkIndex){
+        byte[] chunk = new byte[CHUNK_VOLUME];
+        Arrays.fill(chunk, uniformValues[chunkIndex]);
+        chunks[chunkIndex] = chunk;
+        nbMaterializedChunks++;
+        return chunk;
+    }
+
+    /**
+     * Back the compressed chunk with given index by a cell array holding its values.
+     */
+    private byte[] decompress(int chunkIndex){
+        byte[] chunk = new byte[CHUNK_VOLUME];
+        compressedChunks[chunkIndex].decode(chunk, CHUNK_SIZE, CHUNK_SIZE * CHUNK_SIZE);
+        compressedChunks[chunkIndex] = null;
+        nbCompressedChunks--;
+        chunks[chunkIndex] = chunk;
+        nbMaterializedChunks++;
+        return chunk;
+    }
+
+    /**
+     * Compress every materialized chunk whose RunLengthColumns representation is smaller than
+     * its cell array. Materialized chunks which are uniform are collapsed first.
+     * @effect Materialized chunks which are uniform are collapsed.
+     *          | compact()
+     * @post The values of all cells are unchanged.
+     *          | for each x,y,z with isValidIndex(x,y,z) :
+     *          |   new.getValue(x,y,z) == this.getValue(x,y,z)
+     * @return The number of chunks that were compressed.
+     */
+    public int compress(){
+        compact();
+        int compressedCount = 0;
+        for(int chunkIndex = 0; chunkIndex < chunks.length; chunkIndex++){
+            byte[] chunk = chunks[chunkIndex];
+            if(chunk == null)
+                continue;
+            RunLengthColumns compressed = RunLengthColumns.encode(CHUNK_SIZE, CHUNK_SIZE, CHUNK_SIZE,
+                    (x, y, z) -> chunk[getLocalIndex(x, y, z)]);
+            if(compressed.getEncodedSize() < CHUNK_VOLUME){
+                compressedChunks[chunkIndex] = compressed;
+                chunks[chunkIndex] = null;
+                sharedChunks[chunkIndex] = false;
+                nbMaterializedChunks--;
+                nbCompressedChunks++;
+                compressedCount++;
+            }
+        }
+        return compressedCount;
+    }
+
+    /**
+     * Collapse every materialized chunk whose cells (inside the bounds of this map) all hold
+     * the same value back to that single value.
+     * @post The values of all cells are unchanged.
+     *          | for each x,y,z with isValidIndex(x,y,z) :
+     *          |   new.getValue(x,y,z) == this.getValue(x,y,z)
+     * @return The number of chunks that were collapsed.
+     */
+    public int compact(){
+        int collapsed = 0;
+        for(int cz = 0; cz < nbChunksZ; cz++){
+            for(int cy = 0; cy < nbChunksY; cy++){
+                for(int cx = 0; cx < nbChunksX; cx++){
+                    int chunkIndex = cx + nbChunksX * (cy + nbChunksY * cz);
+                    byte[] chunk = chunks[chunkIndex];
+                    if(chunk != null && isUniform(chunk, cx << CHUNK_BITS, cy << CHUNK_BITS, cz << CHUNK_BITS)){
+                        uniformValues[chunkIndex] = chunk[0];
+                        chunks[chunkIndex] = null;
+                        sharedChunks[chunkIndex] = false;
+                        nbMaterializedChunks--;
+                        collapsed++;
+                    }
+                }
+            }
+        }
+        return collapsed;
+    }
+
+    /**
+     * Check whether all cells of the given chunk, with given origin, which lie inside
+     * the bounds of this map hold the same value.
+     */
+    private boolean isUniform(byte[] chunk, int originX, int originY, int originZ){
+        int maxX = Math.min(CHUNK_SIZE, nbX - originX);
+        int maxY = Math.min(CHUNK_SIZE, nbY - originY);
+        int maxZ = Math.min(CHUNK_SIZE, nbZ - originZ);
+        byte value = chunk[0];
+        for(int z = 0; z < maxZ; z++)
+            for(int y = 0; y < maxY; y++)
+                for(int x = 0; x < maxX; x++)
+                    if(chunk[getLocalIndex(x, y, z)] != value)
+                        return false;
+        return true;
+    }
+
+    /**
+     * Fill this map with the values of the given provider and compact it afterwards.
+     * @effect Set the value of each cell to the value given by the provider, then compact this map.
+     *          | for each x,y,z with isValidIndex(x,y,z) :
+     *          |   setValue(x, y, z, provider.getValue(x, y, z))
+     *          | compact()
+     */
+    @Override
+    public void fill(ValueProvider provider) {
+        for(int z = 0; z < nbZ; z++)
+            for(int y = 0; y < nbY; y++)
+                for(int x = 0; x < nbX; x++)
+                    setValue(x, y, z, provider.getValue(x, y, z));
+        compact();
+    }
+
+    /**
+     * Return an immutable snapshot of the current values of this map. Taking a snapshot only
+     * copies the chunk tables, the cell arrays of materialized chunks are shared and are
+     * copied on their next mutation. When no value changed since the last snapshot, that
+     * snapshot is returned again.
+     * @return A snapshot holding the current values of this map.
+     *          | for each x,y,z with isValidIndex(x,y,z) :
+     *          |   result.getValue(x,y,z) == getValue(x,y,z)
+     */
+    public Snapshot snapshot(){
+        if(lastSnapshot == null){
+            for(int chunkIndex = 0; chunkIndex < chunks.length; chunkIndex++)
+                sharedChunks[chunkIndex] = chunks[chunkIndex] != null;
+            lastSnapshot = new Snapshot(this);
+        }
+        return lastSnapshot;
+    }
+
+    @Override
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void fireChange(int x, int y, int z, byte oldValue, byte newValue){
+        for(Listener listener : listeners)
+            listener.onChange(x, y, z, oldValue, newValue);
+    }
+
+    private void checkIndex(int x, int y, int z) throws IndexOutOfBoundsException {
+        if(!isValidIndex(x, y, z))
+            throw new IndexOutOfBoundsException("Invalid coordinates: " + x + ", " + y + ", " + z);
+    }
+
+    /**
+     * Class representing an immutable snapshot of the values of a ChunkedByteMap. A snapshot
+     * never changes after its creation and can be read from any thread.
+     */
+    public static final class Snapshot {
+
+        /**
+         * Constants reflecting the number of cells and chunks in each direction.
+         */
+        private final int nbX, nbY, nbZ, nbChunksX, nbChunksY;
+        /**
+         * Constants referencing the chunk tables of the map at the time this snapshot was taken.
+         */
+        private final byte[][] chunks;
+        private final RunLengthColumns[] compressedChunks;
+        private final byte[] uniformValues;
+
+        private Snapshot(ChunkedByteMap map){
+            this.nbX = map.nbX;
+            this.nbY = map.nbY;
+            this.nbZ = map.nbZ;
+            this.nbChunksX = map.nbChunksX;
+            this.nbChunksY = map.nbChunksY;
+            this.chunks = map.chunks.clone();
+            this.compressedChunks = map.compressedChunks.clone();
+            this.uniformValues = map.uniformValues.clone();
+        }
+
+        @Basic @Immutable
+        public int getNbX() {
+            return nbX;
+        }
+
+        @Basic @Immutable
+        public int getNbY() {
+            return nbY;
+        }
+
+        @Basic @Immutable
+        public int getNbZ() {
+            return nbZ;
+        }
+
+        public boolean isValidIndex(int x, int y, int z) {
+            return 0 <= x && x < nbX && 0 <= y && y < nbY && 0 <= z && z < nbZ;
+        }
+
+        /**
+         * Return the value of the cell with given coordinates at the time this snapshot was taken.
+         * @throws IndexOutOfBoundsException
+         *          When the given coordinates are not valid in this snapshot.
+         *          | !isValidIndex(x, y, z)
+         */
+        @Immutable
+        public byte getValue(int x, int y, int z) throws IndexOutOfBoundsException {
+            if(!isValidIndex(x, y, z))
+                throw new IndexOutOfBoundsException("Invalid coordinates: " + x + ", " + y + ", " + z);
+            int chunkIndex = (x >> CHUNK_BITS) + nbChunksX * ((y >> CHUNK_BITS) + nbChunksY * (z >> CHUNK_BITS));
+            byte[] chunk = chunks[chunkIndex];
+            if(chunk != null)
+                return chunk[getLocalIndex(x, y, z)];
+            RunLengthColumns compressed = compressedChunks[chunkIndex];
+            if(compressed != null)
+                return compressed.getValue(x & CHUNK_MASK, y & CHUNK_MASK, z & CHUNK_MASK);
+            return uniformValues[chunkIndex];
+        }
+    }
+}
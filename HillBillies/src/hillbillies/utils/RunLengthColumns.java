@@ -0,0 +1,310 @@
+package hillbillies.utils;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Immutable;
+import be.kuleuven.cs.som.annotate.Value;
+import hillbillies.common.internal.map.IByteMap3D;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Immutable compressed representation of a 3D volume of byte values. The distinct values of
+ * the volume are collected in a palette, and each column along the x-axis is stored as a
+ * sequence of runs of equal palette entries. An offset table per column allows random access
+ * reads, which binary search the runs of a single column.
+ * @author Kenneth & Bram
+ * @version 1.0
+ */
+@Value
+public final class RunLengthColumns {
+
+    /**
+     * Constant reflecting the maximum number of cells along the x-axis. The end of each
+     * run is stored as a char.
+     */
+    public static final int MAX_NB_X = Character.MAX_VALUE;
+    /**
+     * Constant reflecting the maximum number of distinct values in one volume.
+     */
+    public static final int MAX_PALETTE_SIZE = 256;
+
+    /**
+     * Constants reflecting the number of cells in each direction.
+     */
+    private final int nbX, nbY, nbZ;
+    /**
+     * Variable referencing the distinct values of this volume.
+     */
+    private final byte[] palette;
+    /**
+     * Variable referencing the index of the first run of each column. The runs of column
+     * c are stored at indices columnOffsets[c] (inclusive) until columnOffsets[c+1] (exclusive).
+     */
+    private final int[] columnOffsets;
+    /**
+     * Variable referencing the (exclusive) x-coordinate at which each run ends.
+     */
+    private final char[] runEnds;
+    /**
+     * Variable referencing the palette index of each run.
+     */
+    private final byte[] runValues;
+
+    /**
+     * Initialize a new RunLengthColumns instance with the given encoded data.
+     */
+    private RunLengthColumns(int nbX, int nbY, int nbZ, byte[] palette, int[] columnOffsets, char[] runEnds, byte[] runValues){
+        this.nbX = nbX;
+        this.nbY = nbY;
+        this.nbZ = nbZ;
+        this.palette = palette;
+        this.columnOffsets = columnOffsets;
+        this.runEnds = runEnds;
+        this.runValues = runValues;
+    }
+
+    /**
+     * Encode the volume with given dimensions whose values are given by the provider.
+     * @param nbX The number of cells along the x-axis.
+     * @param nbY The number of cells along the y-axis.
+     * @param nbZ The number of cells along the z-axis.
+     * @param provider The provider of the value of each cell.
+     * @return An encoded volume with the given dimensions holding the values of the provider.
+     *          | for each x,y,z with 0<=x<nbX && 0<=y<nbY && 0<=z<nbZ :
+     *          |   result.getValue(x, y, z) == provider.getValue(x, y, z)
+     * @throws IllegalArgumentException
+     *          When one of the dimensions is not strictly positive or when nbX exceeds MAX_NB_X.
+     *          | nbX <= 0 || nbY <= 0 || nbZ <= 0 || nbX > MAX_NB_X
+     */
+    public static RunLengthColumns encode(int nbX, int nbY, int nbZ, IByteMap3D.ValueProvider provider)
+            throws IllegalArgumentException {
+        if(nbX <= 0 || nbY <= 0 || nbZ <= 0 || nbX > MAX_NB_X)
+            throw new IllegalArgumentException("Invalid dimensions for a RunLengthColumns volume.");
+        int[] paletteIndices = new int[MAX_PALETTE_SIZE];
+        Arrays.fill(paletteIndices, -1);
+        byte[] palette = new byte[MAX_PALETTE_SIZE];
+        int paletteSize = 0;
+        int[] columnOffsets = new int[nbY * nbZ + 1];
+        char[] runEnds = new char[Math.max(16, nbY * nbZ)];
+        byte[] runValues = new byte[runEnds.length];
+        int nbRuns = 0;
+        for(int z = 0; z < nbZ; z++){
+            for(int y = 0; y < nbY; y++){
+                columnOffsets[y + nbY * z] = nbRuns;
+                int currentIndex = -1;
+                for(int x = 0; x < nbX; x++){
+                    byte value = provider.getValue(x, y, z);
+                    int index = paletteIndices[value & 0xFF];
+                    if(index < 0){
+                        index = paletteSize++;
+                        paletteIndices[value & 0xFF] = index;
+                        palette[index] = value;
+                    }
+                    if(index != currentIndex){
+                        if(nbRuns == runEnds.length){
+                            runEnds = Arrays.copyOf(runEnds, 2 * nbRuns);
+                            runValues = Arrays.copyOf(runValues, 2 * nbRuns);
+                        }
+                        runValues[nbRuns++] = (byte)index;
+                        currentIndex = index;
+                    }
+                    runEnds[nbRuns - 1] = (char)(x + 1);
+                }
+            }
+        }
+        columnOffsets[nbY * nbZ] = nbRuns;
+        return new RunLengthColumns(nbX, nbY, nbZ, Arrays.copyOf(palette, paletteSize), columnOffsets,
+                Arrays.copyOf(runEnds, nbRuns), Arrays.copyOf(runValues, nbRuns));
+    }
+
+    /**
+     * Encode the given map.
+     * @param map The map to encode.
+     * @effect Encode the volume with the dimensions and values of the given map.
+     *          | encode(map.getNbX(), map.getNbY(), map.getNbZ(), map::getValue)
+     */
+    public static RunLengthColumns encode(IByteMap3D map) throws IllegalArgumentException {
+        return encode(map.getNbX(), map.getNbY(), map.getNbZ(), map::getValue);
+    }
+
+    @Basic @Immutable
+    public int getNbX(){
+        return nbX;
+    }
+
+    @Basic @Immutable
+    public int getNbY(){
+        return nbY;
+    }
+
+    @Basic @Immutable
+    public int getNbZ(){
+        return nbZ;
+    }
+
+    /**
+     * @return The number of distinct values in this volume.
+     */
+    @Immutable
+    public int getPaletteSize(){
+        return palette.length;
+    }
+
+    /**
+     * @return The total number of runs of all columns.
+     */
+    @Immutable
+    public int getNbRuns(){
+        return runEnds.length;
+    }
+
+    /**
+     * @return The number of bytes used by the arrays of this encoded volume.
+     */
+    @Immutable
+    public int getEncodedSize(){
+        return palette.length + 4 * columnOffsets.length + 3 * runEnds.length;
+    }
+
+    /**
+     * Check whether the given coordinates reference a cell of this volume.
+     */
+    public boolean isValidIndex(int x, int y, int z){
+        return 0 <= x && x < nbX && 0 <= y && y < nbY && 0 <= z && z < nbZ;
+    }
+
+    /**
+     * Retrieve the value of the cell with given coordinates.
+     * @throws IndexOutOfBoundsException
+     *          When the given coordinates do not reference a cell of this volume.
+     *          | !isValidIndex(x, y, z)
+     */
+    public byte getValue(int x, int y, int z) throws IndexOutOfBoundsException {
+        if(!isValidIndex(x, y, z))
+            throw new IndexOutOfBoundsException("Invalid coordinates: " + x + ", " + y + ", " + z);
+        int column = y + nbY * z;
+        int low = columnOffsets[column];
+        int high = columnOffsets[column + 1] - 1;
+        // Find the first run of this column which ends after x
+        while(low < high){
+            int mid = (low + high) >>> 1;
+            if(runEnds[mid] <= x)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return palette[runValues[low] & 0xFF];
+    }
+
+    /**
+     * Write the values of this volume to the given array, using the given strides.
+     * @param target The array to write to.
+     * @param strideY The distance in target between two cells which differ by one along the y-axis.
+     * @param strideZ The distance in target between two cells which differ by one along the z-axis.
+     * @post Each cell of this volume is written to the target array.
+     *          | for each x,y,z with isValidIndex(x, y, z) :
+     *          |   target[x + y*strideY + z*strideZ] == getValue(x, y, z)
+     */
+    public void decode(byte[] target, int strideY, int strideZ){
+        for(int z = 0; z < nbZ; z++){
+            for(int y = 0; y < nbY; y++){
+                int column = y + nbY * z;
+                int offset = y * strideY + z * strideZ;
+                int start = 0;
+                for(int run = columnOffsets[column]; run < columnOffsets[column + 1]; run++){
+                    Arrays.fill(target, offset + start, offset + runEnds[run], palette[runValues[run] & 0xFF]);
+                    start = runEnds[run];
+                }
+            }
+        }
+    }
+
+    /**
+     * Write this encoded volume to the given output. The column offsets are not written,
+     * they are reconstructed by readFrom.
+     * @param out The output to write to.
+     * @throws IOException
+     *          When an I/O error occurs.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(nbX);
+        out.writeInt(nbY);
+        out.writeInt(nbZ);
+        out.writeShort(palette.length);
+        out.write(palette);
+        for(int column = 0; column < nbY * nbZ; column++){
+            out.writeChar(columnOffsets[column + 1] - columnOffsets[column]);
+            for(int run = columnOffsets[column]; run < columnOffsets[column + 1]; run++){
+                out.writeChar(runEnds[run]);
+                out.writeByte(runValues[run]);
+            }
+        }
+    }
+
+    /**
+     * Read an encoded volume which was written by writeTo from the given input.
+     * @param in The input to read from.
+     * @return An encoded volume equal to the written one.
+     * @throws IOException
+     *          When an I/O error occurs or when the read data is no valid encoded volume.
+     */
+    public static RunLengthColumns readFrom(DataInput in) throws IOException {
+        int nbX = in.readInt();
+        int nbY = in.readInt();
+        int nbZ = in.readInt();
+        int paletteSize = in.readUnsignedShort();
+        if(nbX <= 0 || nbY <= 0 || nbZ <= 0 || nbX > MAX_NB_X || paletteSize == 0 || paletteSize > MAX_PALETTE_SIZE)
+            throw new IOException("Invalid RunLengthColumns header.");
+        byte[] palette = new byte[paletteSize];
+        in.readFully(palette);
+        int[] columnOffsets = new int[nbY * nbZ + 1];
+        char[] runEnds = new char[Math.max(16, nbY * nbZ)];
+        byte[] runValues = new byte[runEnds.length];
+        int nbRuns = 0;
+        for(int column = 0; column < nbY * nbZ; column++){
+            columnOffsets[column] = nbRuns;
+            int nbColumnRuns = in.readChar();
+            if(nbColumnRuns == 0)
+                throw new IOException("Invalid RunLengthColumns column.");
+            if(nbRuns + nbColumnRuns > runEnds.length){
+                int length = Math.max(2 * runEnds.length, nbRuns + nbColumnRuns);
+                runEnds = Arrays.copyOf(runEnds, length);
+                runValues = Arrays.copyOf(runValues, length);
+            }
+            for(int run = 0; run < nbColumnRuns; run++, nbRuns++){
+                runEnds[nbRuns] = in.readChar();
+                runValues[nbRuns] = in.readByte();
+                if((runValues[nbRuns] & 0xFF) >= paletteSize)
+                    throw new IOException("Invalid RunLengthColumns palette index.");
+            }
+            if(runEnds[nbRuns - 1] != nbX)
+                throw new IOException("Invalid RunLengthColumns column.");
+        }
+        columnOffsets[nbY * nbZ] = nbRuns;
+        return new RunLengthColumns(nbX, nbY, nbZ, palette, columnOffsets,
+                Arrays.copyOf(runEnds, nbRuns), Arrays.copyOf(runValues, nbRuns));
+    }
+
+    @Override
+    public boolean equals(Object other){
+        if(!(other instanceof RunLengthColumns))
+            return false;
+        RunLengthColumns o = (RunLengthColumns)other;
+        return nbX == o.nbX && nbY == o.nbY && nbZ == o.nbZ && Arrays.equals(palette, o.palette) &&
+                Arrays.equals(columnOffsets, o.columnOffsets) && Arrays.equals(runEnds, o.runEnds) &&
+                Arrays.equals(runValues, o.runValues);
+    }
+
+    @Override
+    public int hashCode(){
+        int hashCode = 17;
+        hashCode = hashCode*31 + nbX;
+        hashCode = hashCode*31 + nbY;
+        hashCode = hashCode*31 + nbZ;
+        hashCode = hashCode*31 + Arrays.hashCode(runEnds);
+        return hashCode*31 + Arrays.hashCode(runValues);
+    }
+}
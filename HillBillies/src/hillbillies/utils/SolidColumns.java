@@ -0,0 +1,153 @@
+package hillbillies.utils;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Immutable;
+
+/**
+ * Index registering which cells of a 3D volume are solid, stored per column along the z-axis
+ * as a bit set. Each column occupies the same number of words, so a cell is found without
+ * any lookup structure. The highest solid cell below a given height is found by scanning the
+ * words of a single column, which makes the support of falling objects cheap to compute.
+ * @author Kenneth & Bram
+ * @version 1.0
+ */
+public final class SolidColumns {
+
+    /**
+     * Constants reflecting the number of cells in each direction.
+     */
+    private final int nbX, nbY, nbZ;
+    /**
+     * Constant reflecting the number of words of each column.
+     */
+    private final int wordsPerColumn;
+    /**
+     * Variable referencing the bits of all columns, bit z%64 of word z/64 of a column is set
+     * when the cell at height z is solid.
+     */
+    private final long[] words;
+
+    /**
+     * Initialize a new SolidColumns index for a volume with the given dimensions, without solid cells.
+     * @param nbX The number of cells along the x-axis.
+     * @param nbY The number of cells along the y-axis.
+     * @param nbZ The number of cells along the z-axis.
+     * @post | for each x,y,z : !new.isSolid(x, y, z)
+     * @throws IllegalArgumentException
+     *          When one of the dimensions is not strictly positive.
+     *          | nbX <= 0 || nbY <= 0 || nbZ <= 0
+     */
+    public SolidColumns(int nbX, int nbY, int nbZ) throws IllegalArgumentException {
+        if(nbX <= 0 || nbY <= 0 || nbZ <= 0)
+            throw new IllegalArgumentException("The dimensions must be strictly positive.");
+        this.nbX = nbX;
+        this.nbY = nbY;
+        this.nbZ = nbZ;
+        this.wordsPerColumn = (nbZ + 63) / 64;
+        this.words = new long[nbX * nbY * wordsPerColumn];
+    }
+
+    @Basic @Immutable
+    public int getNbX(){
+        return nbX;
+    }
+
+    @Basic @Immutable
+    public int getNbY(){
+        return nbY;
+    }
+
+    @Basic @Immutable
+    public int getNbZ(){
+        return nbZ;
+    }
+
+    /**
+     * Check whether the cell at the given coordinates is solid.
+     * @throws IndexOutOfBoundsException
+     *          When the given coordinates lie outside the volume.
+     */
+    public boolean isSolid(int x, int y, int z) throws IndexOutOfBoundsException {
+        checkCell(x, y, z);
+        return (words[column(x, y) + (z >> 6)] & (1L << z)) != 0;
+    }
+
+    /**
+     * Register whether the cell at the given coordinates is solid.
+     * @post | new.isSolid(x, y, z) == solid
+     * @throws IndexOutOfBoundsException
+     *          When the given coordinates lie outside the volume.
+     */
+    public void setSolid(int x, int y, int z, boolean solid) throws IndexOutOfBoundsException {
+        checkCell(x, y, z);
+        int index = column(x, y) + (z >> 6);
+        if(solid)
+            words[index] |= 1L << z;
+        else
+            words[index] &= ~(1L << z);
+    }
+
+    /**
+     * Return the height of the highest solid cell of the column at the given x and y
+     * coordinates below the given height.
+     * @return -1 when no cell of the column below the given height is solid.
+     *          | if(result != -1) isSolid(x, y, result) && result < z
+     *          | for each h in result+1..z-1 : !isSolid(x, y, h)
+     * @throws IndexOutOfBoundsException
+     *          When the given coordinates lie outside the volume.
+     */
+    public int getHighestSolidBelow(int x, int y, int z) throws IndexOutOfBoundsException {
+        checkCell(x, y, z);
+        if(z == 0)
+            return -1;
+        int start = column(x, y), height = z - 1;
+        int word = height >> 6;
+        long bits = words[start + word] & (-1L >>> (63 - (height & 63)));
+        while(true){
+            if(bits != 0)
+                return (word << 6) + 63 - Long.numberOfLeadingZeros(bits);
+            if(--word < 0)
+                return -1;
+            bits = words[start + word];
+        }
+    }
+
+    /**
+     * Return the height at which an object falling down from the given height comes to rest
+     * on top of a solid cell, or on the bottom of the volume.
+     * @return | result == getHighestSolidBelow(x, y, z) + 1
+     * @throws IndexOutOfBoundsException
+     *          When the given coordinates lie outside the volume.
+     */
+    public int getSupportLevel(int x, int y, int z) throws IndexOutOfBoundsException {
+        return getHighestSolidBelow(x, y, z) + 1;
+    }
+
+    /**
+     * Return the height of the highest cell of the column at the given x and y coordinates,
+     * at most the given height, which isn't solid and lies on top of a solid cell or on the
+     * bottom of the volume. This is where a unit falling down from the given height lands.
+     * @return -1 when there is no such cell.
+     *          | if(result != -1) !isSolid(x, y, result) && (result == 0 || isSolid(x, y, result-1))
+     * @throws IndexOutOfBoundsException
+     *          When the given coordinates lie outside the volume.
+     */
+    public int getLandingLevel(int x, int y, int z) throws IndexOutOfBoundsException {
+        int level = getSupportLevel(x, y, z);
+        while(isSolid(x, y, level)){// Only possible for the cell at the given height or right below a solid cell
+            if(level == 0)
+                return -1;
+            level = getSupportLevel(x, y, level - 1);
+        }
+        return level;
+    }
+
+    private int column(int x, int y){
+        return (x * nbY + y) * wordsPerColumn;
+    }
+
+    private void checkCell(int x, int y, int z) throws IndexOutOfBoundsException {
+        if(x < 0 || x >= nbX || y < 0 || y >= nbY || z < 0 || z >= nbZ)
+            throw new IndexOutOfBoundsException("Invalid cell (" + x + ", " + y + ", " + z + ").");
+    }
+}
@@ -3,6 +3,7 @@ package hillbillies.utils;
 import hillbillies.model.IWorld;
 import hillbillies.model.World;
 
+import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 
 /**
@@ -12,6 +13,37 @@ import java.util.concurrent.ThreadLocalRandom;
  */
 public final class Utils {
 
+    /**
+     * Variable referencing the random generator used by randInt and randDouble, or null
+     * when they use the thread local random generator.
+     */
+    private static volatile Random seededRandom = null;
+
+    /**
+     * Make randInt and randDouble deterministic. From now on, they return the values
+     * of a random generator initialized with the given seed.
+     * @param seed The seed of the random generator.
+     * @post A sequence of calls to randInt and randDouble returns the same values after
+     *          each call to setRandomSeed with the same seed.
+     */
+    public static void setRandomSeed(long seed){
+        seededRandom = new Random(seed);
+    }
+
+    /**
+     * Make randInt and randDouble use the thread local random generator again.
+     */
+    public static void clearRandomSeed(){
+        seededRandom = null;
+    }
+
+    /**
+     * Check whether randInt and randDouble are deterministic.
+     */
+    public static boolean hasRandomSeed(){
+        return seededRandom != null;
+    }
+
     /**
      * Returns a random integer between min and max, inclusive.
      *
@@ -28,7 +60,18 @@ public final class Utils {
     public static int randInt(int min, int max) throws IllegalArgumentException {
         if (max < min)
             throw new IllegalArgumentException();
-        return ThreadLocalRandom.current().nextInt(min, max + 1);
+        Random random = seededRandom;
+        if(random == null)
+            return ThreadLocalRandom.current().nextInt(min, max + 1);
+        int bound = max - min + 1;
+        if(bound > 0)
+            return min + random.nextInt(bound);
+        // The range does not fit in an int
+        int result;
+        do {
+            result = random.nextInt();
+        }while(result < min || result > max);
+        return result;
     }
     
     /**
@@ -47,7 +90,11 @@ public final class Utils {
     public static double randDouble(double min, double max) throws IllegalArgumentException {
         if (max < min)
             throw new IllegalArgumentException();
-        return ThreadLocalRandom.current().nextDouble(min, max);
+        Random random = seededRandom;
+        if(random == null)
+            return ThreadLocalRandom.current().nextDouble(min, max);
+        double result = min + random.nextDouble() * (max - min);
+        return result < max ? result : Math.max(min, Math.nextDown(max));
     }
 
     
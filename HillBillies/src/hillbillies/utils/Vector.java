@@ -58,6 +58,19 @@ public class Vector {
         this.vectorList = vectorList.clone();
     }
 
+    /**
+     * Initialize a new immutable 3-dimensional vector with given coordinates. This constructor
+     * avoids the intermediate array of the variable arity constructor.
+     * @param x The X-coordinate of this new vector.
+     * @param y The Y-coordinate of this new vector.
+     * @param z The Z-coordinate of this new vector.
+     * @post | this.dimension() == 3
+     * @post | this.X() == x && this.Y() == y && this.Z() == z
+     */
+    public Vector(double x, double y, double z){
+        this.vectorList = new double[]{ x, y, z };
+    }
+
     /**
      * Initialize a new immutable N-dimensional vector with given coordinates. This is an alternative
      * constructor for when the specified vectorList contains only longs.
@@ -257,11 +270,7 @@ public class Vector {
      *          | result.equals(this) == true
      */
     public Vector clone() {
-        try {
-            return (Vector)super.clone();
-        }catch(CloneNotSupportedException e){
-            return new Vector(this.vectorList);
-        }
+        return new Vector(this.vectorList);
     }
 
     /**
@@ -21,7 +21,14 @@ import org.junit.runners.Suite;
         WorldTest.class,
         SchedulerTest.class,
         TaskFactoryTest.class,
-        MaterialTest.class
+        MaterialTest.class,
+        ChunkedByteMapTest.class,
+        RunLengthColumnsTest.class,
+        SolidColumnsTest.class,
+        WorldSerializerTest.class,
+        JournalTest.class,
+        ProgramTest.class,
+        TaskParserTest.class
 })
 public class TestSuite {
 }
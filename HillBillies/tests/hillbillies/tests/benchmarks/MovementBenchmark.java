@@ -0,0 +1,79 @@
+package hillbillies.tests.benchmarks;
+
+import hillbillies.model.Unit;
+import hillbillies.model.World;
+import hillbillies.utils.Vector;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * Benchmark measuring the heap allocation and the time per moving unit per tick, for units
+ * moving between adjacent cubes and for units following a path. The units walk back and forth
+ * between the borders of a flat world.
+ *
+ * Usage: MovementBenchmark [nbUnits nbTicks]
+ * @author Kenneth & Bram
+ * @version 1.0
+ */
+public class MovementBenchmark {
+
+    private static final int SIZE = 16;
+    private static final double DT = 0.02;
+
+    public static void main(String[] args) {
+        int nbUnits = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int nbTicks = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        System.out.printf("%d units, %d ticks of %.2fs%n", nbUnits, nbTicks, DT);
+        System.out.printf("%-16s %16s %16s%n", "movement", "bytes/unit/tick", "ns/unit/tick");
+        run("adjacent", nbUnits, nbTicks, unit -> unit.moveToAdjacent(new Vector(direction(unit), 0, 0)));
+        run("path", nbUnits, nbTicks, unit -> unit.moveToTarget(new Vector(direction(unit) > 0 ? SIZE-1 : 0,
+                unit.getPosition().cubeY(), 0)));
+    }
+
+    /**
+     * Let the units in a new world move for the given number of ticks, starting the given
+     * movement for each unit which stopped moving, and report the allocation and time per
+     * moving unit per tick. Starting the movements is not measured.
+     */
+    private static void run(String name, int nbUnits, int nbTicks, Consumer<Unit> movement){
+        World world = new World(new int[SIZE][SIZE][2], null);
+        Random random = new Random(42);
+        List<Unit> units = new ArrayList<>();
+        for(int i=0;i<nbUnits;i++)
+            units.add(new Unit(world, "Walker", new Vector(random.nextInt(SIZE), random.nextInt(SIZE), 0),
+                    100, 100, 100, 100));
+        for(int run=0;run<3;run++){// The first runs warm up the JIT
+            long moving = 0, allocated = 0, time = 0;
+            for(int tick=0;tick<nbTicks;tick++){
+                for(Unit unit : units)
+                    if(!unit.isMoving())
+                        movement.accept(unit);
+                long bytes = allocatedBytes(), start = System.nanoTime();
+                world.advanceTime(DT);
+                time += System.nanoTime() - start;
+                allocated += allocatedBytes() - bytes;
+                for(Unit unit : units)
+                    if(unit.isMoving())
+                        moving++;
+            }
+            if(run == 2)
+                System.out.printf("%-16s %16.1f %16.1f%n", name, allocated/(double)moving, time/(double)moving);
+        }
+    }
+
+    /**
+     * Return the direction along the X-axis in which the given unit walks to the farthest border.
+     */
+    private static int direction(Unit unit){
+        return unit.getPosition().cubeX() < SIZE/2 ? 1 : -1;
+    }
+
+    private static long allocatedBytes(){
+        return ((com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,83 @@
+package hillbillies.tests.benchmarks;
+
+import hillbillies.model.Terrain;
+import hillbillies.model.Unit;
+import hillbillies.model.World;
+import hillbillies.model.WorldLimits;
+import hillbillies.utils.Vector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark measuring the headless tick rate of a large colony in a world with the scale-out
+ * limits, standing on a rock floor. A fifth of the units walks back and forth between adjacent
+ * cubes, a tenth digs out the floor below it, which changes the terrain, and the others are
+ * idle. Diggers stand in other rows than walkers, so walkers never walk over a hole. Idle units fall asleep, unless -awake is given.
+ * The benchmark reports the mean and worst duration of a tick and the resulting tick rate,
+ * which should stay above 30 ticks per second.
+ *
+ * Usage: ScaleOutBenchmark [-awake] [nbUnits nbTicks]
+ * @author Kenneth & Bram
+ * @version 1.0
+ */
+public class ScaleOutBenchmark {
+
+    private static final int SIZE = 128;
+    private static final double DT = 1 / 30d;
+
+    public static void main(String[] args) {
+        boolean awake = args.length > 0 && args[0].equals("-awake");
+        int first = awake ? 1 : 0;
+        int nbUnits = args.length > first ? Integer.parseInt(args[first]) : WorldLimits.SCALE_OUT.getMaxUnits();
+        int nbTicks = args.length > first + 1 ? Integer.parseInt(args[first + 1]) : 900;
+
+        long start = System.nanoTime();
+        int[][][] terrain = new int[SIZE][SIZE][3];
+        for(int[][] column : terrain)
+            for(int[] cubes : column)
+                cubes[0] = Terrain.ROCK.getId();
+        World world = new World(terrain, null);
+        world.setLimits(WorldLimits.SCALE_OUT);
+        world.setLettingUnitsSleep(!awake);
+        Random random = new Random(42);
+        List<Unit> walkers = new ArrayList<>(), workers = new ArrayList<>();
+        for(int i=0;i<nbUnits;i++){
+            int y = random.nextInt(SIZE);
+            if(i % 10 == 2)
+                y -= y % 4;// Diggers only stand in every fourth row
+            else if(y % 4 == 0)
+                y++;
+            Unit unit = new Unit(world, "Colonist", new Vector(random.nextInt(SIZE), y, 1), 100, 100, 100, 100);
+            if(i % 10 < 2)
+                walkers.add(unit);
+            else if(i % 10 == 2)
+                workers.add(unit);
+        }
+        System.out.printf("%d units (%d walking, %d working) created in %.1f ms%n", nbUnits, walkers.size(),
+                workers.size(), (System.nanoTime() - start) / 1e6);
+
+        long total = 0, worst = 0;
+        for(int tick=0;tick<nbTicks;tick++){
+            for(Unit unit : walkers)
+                if(!unit.isMoving())
+                    unit.moveToAdjacent(new Vector(unit.getPosition().cubeX() < SIZE/2 ? 1 : -1, 0, 0));
+            for(Unit unit : workers)
+                if(!unit.isWorking() && !unit.isResting() && !unit.isFalling()){
+                    Vector below = unit.getPosition().add(new Vector(0, 0, -1));
+                    unit.work(world.isValidPosition(below) && !world.isCubePassable(below) ? below : unit.getPosition());
+                }
+            long tickStart = System.nanoTime();
+            world.advanceTime(DT);
+            long duration = System.nanoTime() - tickStart;
+            if(tick >= nbTicks / 3){// The first ticks warm up the JIT
+                total += duration;
+                worst = Math.max(worst, duration);
+            }
+        }
+        double mean = total / (double)(nbTicks - nbTicks / 3);
+        System.out.printf("mean tick %.2f ms, worst tick %.2f ms, %.0f ticks per second, %d units sleeping%n",
+                mean / 1e6, worst / 1e6, 1e9 / mean, world.getNbSleepingUnits());
+    }
+}
@@ -0,0 +1,130 @@
+package hillbillies.tests.benchmarks;
+
+import hillbillies.model.Cube;
+import hillbillies.model.Terrain;
+import hillbillies.model.World;
+import hillbillies.utils.ChunkedByteMap;
+import hillbillies.utils.RunLengthColumns;
+import hillbillies.utils.Vector;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Benchmark comparing the footprint and isCubePassable latency of the different terrain
+ * representations: a HashMap of all Cubes (the original World layout), the chunked map
+ * with hot (materialized) chunks and the chunked map with compressed chunks.
+ *
+ * Usage: TerrainStorageBenchmark [nbX nbY nbZ]
+ * @author Kenneth & Bram
+ * @version 1.0
+ */
+public class TerrainStorageBenchmark {
+
+    private static final int NB_LOOKUPS = 2_000_000;
+
+    public static void main(String[] args) {
+        int nbX = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int nbY = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int nbZ = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+        int[][][] terrain = generateTerrain(nbX, nbY, nbZ, new Random(42));
+
+        Random random = new Random(7);
+        int[] xs = new int[NB_LOOKUPS], ys = new int[NB_LOOKUPS], zs = new int[NB_LOOKUPS];
+        Vector[] positions = new Vector[NB_LOOKUPS];
+        for(int i=0;i<NB_LOOKUPS;i++){
+            xs[i] = random.nextInt(nbX);
+            ys[i] = random.nextInt(nbY);
+            zs[i] = random.nextInt(nbZ);
+            positions[i] = new Vector(xs[i], ys[i], zs[i]);
+        }
+
+        long before = usedMemory();
+        World world = new World(terrain, null);
+        long worldSize = usedMemory() - before;
+
+        before = usedMemory();
+        Map<Vector, Cube> cubeMap = new HashMap<>();
+        for(int x=0;x<nbX;x++)
+            for(int y=0;y<nbY;y++)
+                for(int z=0;z<nbZ;z++){
+                    Vector position = new Vector(x, y, z);
+                    cubeMap.put(position, world.getCube(position));
+                }
+        long cubeMapSize = usedMemory() - before;
+
+        ChunkedByteMap hot = new ChunkedByteMap(nbX, nbY, nbZ, (byte)Terrain.AIR.getId());
+        hot.fill((x, y, z) -> (byte)terrain[x][y][z]);
+        ChunkedByteMap cold = new ChunkedByteMap(nbX, nbY, nbZ, (byte)Terrain.AIR.getId());
+        cold.fill((x, y, z) -> (byte)terrain[x][y][z]);
+        cold.compress();
+        RunLengthColumns columns = RunLengthColumns.encode(hot);
+
+        System.out.printf("Terrain %dx%dx%d (%d cubes)%n", nbX, nbY, nbZ, nbX*nbY*nbZ);
+        System.out.printf("%-32s %12s %14s%n", "representation", "bytes", "ns/lookup");
+        for(int run=0;run<3;run++){// The first runs warm up the JIT
+            boolean print = run == 2;
+            long start = System.nanoTime();
+            int count = 0;
+            for(int i=0;i<NB_LOOKUPS;i++)
+                if(cubeMap.get(positions[i]).isPassable()) count++;
+            report(print, "HashMap<Vector, Cube>", cubeMapSize, start, count);
+
+            start = System.nanoTime();
+            count = 0;
+            for(int i=0;i<NB_LOOKUPS;i++)
+                if(world.isCubePassable(positions[i])) count++;
+            report(print, "World.isCubePassable", worldSize, start, count);
+
+            start = System.nanoTime();
+            count = 0;
+            for(int i=0;i<NB_LOOKUPS;i++)
+                if(Terrain.fromId(hot.getValue(xs[i], ys[i], zs[i])).isPassable()) count++;
+            report(print, "ChunkedByteMap (hot)", hot.getEstimatedSize(), start, count);
+
+            start = System.nanoTime();
+            count = 0;
+            for(int i=0;i<NB_LOOKUPS;i++)
+                if(Terrain.fromId(cold.getValue(xs[i], ys[i], zs[i])).isPassable()) count++;
+            report(print, "ChunkedByteMap (compressed)", cold.getEstimatedSize(), start, count);
+
+            start = System.nanoTime();
+            count = 0;
+            for(int i=0;i<NB_LOOKUPS;i++)
+                if(Terrain.fromId(columns.getValue(xs[i], ys[i], zs[i])).isPassable()) count++;
+            report(print, "RunLengthColumns (whole world)", columns.getEncodedSize(), start, count);
+        }
+    }
+
+    /**
+     * Generate a terrain with rolling hills of rock, some trees and a few workshops.
+     */
+    private static int[][][] generateTerrain(int nbX, int nbY, int nbZ, Random random){
+        int[][][] terrain = new int[nbX][nbY][nbZ];
+        for(int x=0;x<nbX;x++)
+            for(int y=0;y<nbY;y++){
+                int height = (int)(nbZ/3 + nbZ/8*(Math.sin(x/9d) + Math.cos(y/13d)));
+                for(int z=0;z<height && z<nbZ;z++)
+                    terrain[x][y][z] = Terrain.ROCK.getId();
+                if(height < nbZ-2 && random.nextInt(40)==0)
+                    terrain[x][y][height] = terrain[x][y][height+1] = Terrain.WOOD.getId();
+                else if(height < nbZ && random.nextInt(500)==0)
+                    terrain[x][y][height] = Terrain.WORKSHOP.getId();
+            }
+        return terrain;
+    }
+
+    private static void report(boolean print, String name, long size, long start, int count){
+        if(print)
+            System.out.printf("%-32s %12d %14.1f   (%d passable)%n", name, size,
+                    (System.nanoTime()-start)/(double)NB_LOOKUPS, count);
+    }
+
+    private static long usedMemory(){
+        Runtime runtime = Runtime.getRuntime();
+        for(int i=0;i<3;i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
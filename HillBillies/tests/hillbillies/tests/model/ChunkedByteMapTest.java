@@ -0,0 +1,147 @@
+package hillbillies.tests.model;
+
+import hillbillies.utils.ChunkedByteMap;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for ChunkedByteMap
+ * @author Kenneth & Bram
+ * @version 1.0
+ */
+public class ChunkedByteMapTest {
+
+    private ChunkedByteMap map;
+
+    @Before
+    public void setUp() throws Exception {
+        // Dimensions which are not a multiple of the chunk size
+        map = new ChunkedByteMap(40, 20, 17, (byte)1);
+    }
+
+    @Test
+    public void testConstructor() throws Exception {
+        assertEquals(40, map.getNbX());
+        assertEquals(20, map.getNbY());
+        assertEquals(17, map.getNbZ());
+        assertEquals(3*2*2, map.getNbChunks());
+        assertEquals(0, map.getNbMaterializedChunks());
+        for(int x=0;x<map.getNbX();x++)
+            for(int y=0;y<map.getNbY();y++)
+                for(int z=0;z<map.getNbZ();z++)
+                    assertEquals(1, map.getValue(x, y, z));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorIllegal() throws Exception {
+        new ChunkedByteMap(0, 5, 5, (byte)0);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetValueIllegal() throws Exception {
+        map.getValue(40, 0, 0);
+    }
+
+    @Test
+    public void testLazyMaterialization() throws Exception {
+        map.setValue(3, 3, 3, (byte)1);
+        assertEquals(0, map.getNbMaterializedChunks());
+        map.setValue(3, 3, 3, (byte)2);
+        assertEquals(1, map.getNbMaterializedChunks());
+        assertTrue(map.isMaterialized(0, 0, 0));
+        assertFalse(map.isMaterialized(ChunkedByteMap.CHUNK_SIZE, 0, 0));
+        assertEquals(2, map.getValue(3, 3, 3));
+        assertEquals(1, map.getValue(3, 3, 4));
+    }
+
+    @Test
+    public void testCompact() throws Exception {
+        map.setValue(3, 3, 3, (byte)2);
+        map.setValue(39, 19, 16, (byte)2);
+        map.setValue(3, 3, 3, (byte)1);
+        assertEquals(1, map.compact());
+        assertEquals(1, map.getNbMaterializedChunks());
+        assertEquals(1, map.getValue(3, 3, 3));
+        assertEquals(2, map.getValue(39, 19, 16));
+        // The last chunk is only partially inside the map
+        for(int x=32;x<40;x++)
+            for(int y=16;y<20;y++)
+                map.setValue(x, y, 16, (byte)2);
+        assertEquals(1, map.compact());
+        assertEquals(0, map.getNbMaterializedChunks());
+        assertEquals(2, map.getValue(35, 17, 16));
+    }
+
+    @Test
+    public void testFill() throws Exception {
+        map.fill((x, y, z) -> (byte)(z < 16 ? 1 : 0));
+        assertEquals(0, map.getNbMaterializedChunks());
+        map.fill((x, y, z) -> (byte)(z < 4 ? 1 : 0));
+        assertEquals(6, map.getNbMaterializedChunks());
+        assertEquals(1, map.getValue(5, 5, 3));
+        assertEquals(0, map.getValue(5, 5, 4));
+    }
+
+    @Test
+    public void testCompress() throws Exception {
+        map.fill((x, y, z) -> (byte)(z < 4 ? 1 : 0));
+        assertEquals(6, map.compress());
+        assertEquals(0, map.getNbMaterializedChunks());
+        assertEquals(6, map.getNbCompressedChunks());
+        assertTrue(map.getEstimatedSize() < 6 * ChunkedByteMap.CHUNK_VOLUME);
+        assertEquals(1, map.getValue(5, 5, 3));
+        assertEquals(0, map.getValue(5, 5, 4));
+        // A compressed chunk is materialized again on its first mutation
+        map.setValue(5, 5, 4, (byte)3);
+        assertEquals(1, map.getNbMaterializedChunks());
+        assertEquals(5, map.getNbCompressedChunks());
+        assertEquals(3, map.getValue(5, 5, 4));
+        assertEquals(1, map.getValue(5, 5, 3));
+        assertEquals(0, map.getValue(15, 15, 15));
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        map.setValue(3, 4, 5, (byte)7);
+        map.fill((x, y, z) -> (byte)(x == 20 ? 2 : 1));
+        ChunkedByteMap.Snapshot snapshot = map.snapshot();
+        assertSame(snapshot, map.snapshot());
+        map.setValue(20, 0, 0, (byte)3);
+        map.setValue(0, 0, 0, (byte)4);
+        map.compress();
+        map.setValue(20, 1, 0, (byte)5);
+        assertNotSame(snapshot, map.snapshot());
+        for(int x=0;x<map.getNbX();x++)
+            for(int y=0;y<map.getNbY();y++)
+                for(int z=0;z<map.getNbZ();z++)
+                    assertEquals(x == 20 ? 2 : 1, snapshot.getValue(x, y, z));
+        assertEquals(3, map.snapshot().getValue(20, 0, 0));
+        assertEquals(4, map.snapshot().getValue(0, 0, 0));
+        assertEquals(5, map.snapshot().getValue(20, 1, 0));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testSnapshotIllegalIndex() throws Exception {
+        map.snapshot().getValue(40, 0, 0);
+    }
+
+    @Test
+    public void testListener() throws Exception {
+        List<Byte> changes = new ArrayList<>();
+        map.addListener((x, y, z, oldValue, newValue) -> {
+            changes.add(oldValue);
+            changes.add(newValue);
+        });
+        map.setValue(1, 2, 3, (byte)1);
+        assertTrue(changes.isEmpty());
+        map.setValue(1, 2, 3, (byte)5);
+        assertEquals(2, changes.size());
+        assertEquals(1, (byte)changes.get(0));
+        assertEquals(5, (byte)changes.get(1));
+    }
+}
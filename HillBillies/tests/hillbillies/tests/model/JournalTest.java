@@ -0,0 +1,148 @@
+package hillbillies.tests.model;
+
+import static org.junit.Assert.*;
+
+import hillbillies.model.*;
+import hillbillies.utils.Utils;
+import hillbillies.utils.Vector;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test class for JournalRecorder, JournalPlayer and the seeded random generator of Utils.
+ * @author Kenneth & Bram
+ * @version 1.0
+ */
+public class JournalTest {
+
+    private World w;
+    private Unit u;
+    private ByteArrayOutputStream journal;
+    private JournalRecorder recorder;
+
+    @Before
+    public void setUp() throws Exception {
+        int[][][] terrain = new int[10][10][4];
+        for(int x=0;x<10;x++)
+            for(int y=0;y<10;y++)
+                terrain[x][y][0] = Terrain.ROCK.getId();
+        terrain[5][5][1] = Terrain.WOOD.getId();
+        terrain[2][7][1] = Terrain.ROCK.getId();
+        w = new World(terrain, null);
+        u = new Unit(w, "Recorded", new Vector(1,1,1), 50, 50, 50, 50);
+        journal = new ByteArrayOutputStream();
+        recorder = new JournalRecorder(w, 42L, Channels.newChannel(journal));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Utils.clearRandomSeed();
+    }
+
+    private void advanceTime(double time) throws IOException {
+        for(double t=0;t<time;t+=0.1){
+            recorder.recordAdvanceTime(0.1);
+            w.advanceTime(0.1);
+        }
+    }
+
+    private JournalPlayer replay() throws IOException {
+        recorder.close();
+        JournalPlayer player = new JournalPlayer(Channels.newChannel(new ByteArrayInputStream(journal.toByteArray())), null);
+        player.play();
+        return player;
+    }
+
+    private static List<String> describe(World world){
+        List<String> result = new ArrayList<>();
+        for(Unit unit : world.getUnits())
+            result.add(unit.getName() + " " + unit.getPosition() + " " + unit.getHitpoints() + " " + unit.getStamina() +
+                    " " + unit.getXP() + " " + unit.getFaction().getNbUnits() + " " + unit.getCurrentActivity());
+        for(Material material : world.getMaterials(Material.class, false))
+            result.add(material.getClass().getSimpleName() + " " + material.getPosition() + " " + material.getWeight());
+        for(int x=0;x<world.getNbCubesX();x++)
+            for(int y=0;y<world.getNbCubesY();y++)
+                for(int z=0;z<world.getNbCubesZ();z++)
+                    result.add(world.getCube(new Vector(x,y,z)).getTerrain().toString());
+        return result;
+    }
+
+    @Test
+    public void testSeededRandom() throws Exception {
+        Utils.setRandomSeed(7);
+        assertTrue(Utils.hasRandomSeed());
+        int[] first = new int[20];
+        for(int i=0;i<first.length;i++)
+            first[i] = Utils.randInt(-5, 5);
+        double d = Utils.randDouble(1, 2);
+        Utils.setRandomSeed(7);
+        for(int value : first)
+            assertEquals(value, Utils.randInt(-5, 5));
+        assertEquals(d, Utils.randDouble(1, 2), 0d);
+        assertTrue(Utils.randInt(Integer.MIN_VALUE, Integer.MAX_VALUE) <= Integer.MAX_VALUE);
+        Utils.clearRandomSeed();
+        assertFalse(Utils.hasRandomSeed());
+    }
+
+    @Test
+    public void testReplayCommands() throws Exception {
+        recorder.recordWork(u, 9, 9, 0);
+        try {
+            u.work(new Vector(9, 9, 0));
+            fail("The unit is not standing next to this cube");
+        }catch(IllegalArgumentException e){
+            // Failed commands fail again during the replay
+        }
+        recorder.recordMoveTo(u, 5, 4, 1);
+        u.moveToTarget(new Vector(5, 4, 1));
+        advanceTime(10);
+        recorder.recordWork(u, 5, 5, 1);
+        u.work(new Vector(5, 5, 1));
+        advanceTime(15);
+        recorder.recordSetCubeType(2, 7, 1, Terrain.AIR.getId());
+        w.getCube(new Vector(2, 7, 1)).setTerrain(Terrain.AIR);
+        advanceTime(1);
+
+        JournalPlayer player = replay();
+        assertEquals(recorder.getNbCommands(), player.getNbCommands());
+        assertEquals(1, player.getNbFailedCommands());
+        assertEquals(w.getTick(), player.getWorld().getTick());
+        assertEquals(describe(w), describe(player.getWorld()));
+        assertEquals(Terrain.AIR, player.getWorld().getCube(new Vector(5, 5, 1)).getTerrain());
+    }
+
+    @Test
+    public void testReplayDefaultBehaviour() throws Exception {
+        for(int i=0;i<6;i++){
+            recorder.recordSpawnUnit(true);
+            recorder.registerUnit(w.spawnUnit(true));
+        }
+        recorder.recordDefaultBehaviour(u, true);
+        u.startDefaultBehaviour();
+        advanceTime(60);
+
+        JournalPlayer player = replay();
+        assertEquals(0, player.getNbFailedCommands());
+        assertEquals(42L, player.getSeed());
+        assertEquals(describe(w), describe(player.getWorld()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnregisteredUnit() throws Exception {
+        Unit unit = w.spawnUnit(false);
+        recorder.recordRest(unit);
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidJournal() throws Exception {
+        new JournalPlayer(Channels.newChannel(new ByteArrayInputStream(new byte[]{1,2,3,4,5,6,7,8})), null);
+    }
+}
@@ -15,6 +15,7 @@ import org.junit.Test;
 import hillbillies.model.Boulder;
 import hillbillies.model.Log;
 import hillbillies.model.Material;
+import hillbillies.model.Terrain;
 import hillbillies.model.Unit;
 import hillbillies.model.World;
 import hillbillies.part2.listener.TerrainChangeListener;
@@ -259,4 +260,23 @@ public class MaterialTest {
 		assertTrue(testLog.isTerminated());
 	}
 
+	@Test
+	public void testFallingLanding() {
+		int[][][] types = new int[1][1][6];
+		types[0][0][1] = Terrain.ROCK.getId();
+		types[0][0][3] = Terrain.ROCK.getId();
+		World column = new World(types, null);
+		Material log = new Log(column, column.getCube(new Vector(0,0,4)));
+		column.getCube(new Vector(0,0,3)).setTerrain(Terrain.AIR);
+		column.advanceTime(dt);
+		assertNull(log.getOwner());
+		assertEquals(2, column.getSupportLevel(log.getPosition()));
+		// The terrain below changes while the log is falling, it lands on the bottom instead
+		column.getCube(new Vector(0,0,1)).setTerrain(Terrain.AIR);
+		for(int i = 0; i < 20 && log.getOwner() == null; i++)
+			column.advanceTime(dt);
+		assertEquals(column.getCube(new Vector(0,0,0)), log.getOwner());
+		assertEquals(new Vector(0.5,0.5,0.5), log.getPosition());
+	}
+
 }
@@ -0,0 +1,81 @@
+package hillbillies.tests.model;
+
+import hillbillies.utils.RunLengthColumns;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for RunLengthColumns
+ * @author Kenneth & Bram
+ * @version 1.0
+ */
+public class RunLengthColumnsTest {
+
+    private static byte valueAt(int x, int y, int z){
+        if(z < 3) return 1;
+        if(x == y) return 2;
+        return (byte)(x > 10 ? -1 : 0);
+    }
+
+    private RunLengthColumns columns;
+
+    @Before
+    public void setUp() throws Exception {
+        columns = RunLengthColumns.encode(20, 6, 5, RunLengthColumnsTest::valueAt);
+    }
+
+    @Test
+    public void testEncode() throws Exception {
+        assertEquals(20, columns.getNbX());
+        assertEquals(6, columns.getNbY());
+        assertEquals(5, columns.getNbZ());
+        assertEquals(4, columns.getPaletteSize());
+        for(int x=0;x<20;x++)
+            for(int y=0;y<6;y++)
+                for(int z=0;z<5;z++)
+                    assertEquals(valueAt(x, y, z), columns.getValue(x, y, z));
+        // 3*6 uniform columns, 2 columns with 3 runs (y==0) and 2*5 columns with 4 runs
+        assertEquals(3*6 + 2*3 + 2*5*4, columns.getNbRuns());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEncodeIllegal() throws Exception {
+        RunLengthColumns.encode(RunLengthColumns.MAX_NB_X + 1, 1, 1, (x, y, z) -> 0);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetValueIllegal() throws Exception {
+        columns.getValue(0, 6, 0);
+    }
+
+    @Test
+    public void testDecode() throws Exception {
+        byte[] target = new byte[20*6*5];
+        columns.decode(target, 20, 20*6);
+        for(int x=0;x<20;x++)
+            for(int y=0;y<6;y++)
+                for(int z=0;z<5;z++)
+                    assertEquals(valueAt(x, y, z), target[x + 20*y + 20*6*z]);
+    }
+
+    @Test
+    public void testWriteRead() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        columns.writeTo(new DataOutputStream(bytes));
+        RunLengthColumns read = RunLengthColumns.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(columns, read);
+        assertEquals(valueAt(12, 0, 4), read.getValue(12, 0, 4));
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadIllegal() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        columns.writeTo(new DataOutputStream(bytes));
+        byte[] data = bytes.toByteArray();
+        RunLengthColumns.readFrom(new DataInputStream(new ByteArrayInputStream(data, 0, data.length/2)));
+    }
+}
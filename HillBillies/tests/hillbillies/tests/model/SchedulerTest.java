@@ -236,6 +236,74 @@ public class SchedulerTest {
         assertEquals(task2, scheduler1.getHighestPriorityAssignableTask());
     }
 
+    @Test
+    public void getHighestPriorityAssignableTaskShared() throws Exception {
+        scheduler1.addTask(task2);
+        scheduler2.addTask(task2);
+        scheduler2.schedule(task2, unit21);// Assigned by the other scheduler
+        assertEquals(task1, scheduler1.getHighestPriorityAssignableTask());
+        assertEquals(null, scheduler2.getHighestPriorityAssignableTask());
+        scheduler2.deschedule(task2);
+        assertEquals(task2, scheduler1.getHighestPriorityAssignableTask());
+        assertEquals(task2, scheduler2.getHighestPriorityAssignableTask());
+        scheduler2.removeTask(task2);
+        assertEquals(task2, scheduler1.getHighestPriorityAssignableTask());
+    }
+
+    @Test
+    public void getAssignableTasks() throws Exception {
+        scheduler1.addTask(task2);
+        scheduler1.addTask(task3);
+        assertEquals(3, scheduler1.getNbAssignableTasks());
+        scheduler1.schedule(task2, unit11);
+        assertEquals(2, scheduler1.getNbAssignableTasks());
+        Iterator<Task> iterator = scheduler1.getAssignableTasks().iterator();
+        assertEquals(task3, iterator.next());
+        assertEquals(task1, iterator.next());
+        assertFalse(iterator.hasNext());
+        scheduler1.deschedule(task2);// Lowers the priority of task2 to 199
+        iterator = scheduler1.getAssignableTasks().iterator();
+        assertEquals(task3, iterator.next());
+        assertEquals(task2, iterator.next());
+        assertEquals(task1, iterator.next());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void getAssignableTasksRemove() throws Exception {
+        Iterator<Task> iterator = scheduler1.getAssignableTasks().iterator();
+        iterator.next();
+        iterator.remove();
+    }
+
+    @Test
+    public void assignTasks() throws Exception {
+        World world = new World(new int[10][1][1], null);
+        Unit[] units = new Unit[6];
+        for(int i=0;i<units.length;i++)
+            units[i] = new Unit(world, "Unit" + (char)('A' + i), new Vector(i,0,0));
+        Faction faction = units[5].getFaction();// Shared with one of the first units
+        Unit other = null;
+        for(Unit unit : faction.getUnits()) {
+            unit.startDefaultBehaviour();
+            if(unit != units[5])
+                other = unit;
+        }
+        int otherX = other.getPosition().cubeX();
+        Scheduler scheduler = faction.getScheduler();
+        Task near5 = new Task("near", 10, new MoveTo(new SelectedPosition()), new int[]{5,0,0});
+        Task nearOther = new Task("other", 20, new MoveTo(new SelectedPosition()), new int[]{otherX,0,0});
+        Task extra = new Task("extra", 5, new MoveTo(new SelectedPosition()), new int[]{9,0,0});
+        scheduler.addTask(near5);
+        scheduler.addTask(nearOther);
+        scheduler.addTask(extra);
+        assertEquals(2, scheduler.assignTasks());
+        assertEquals(units[5], near5.getAssignedUnit());
+        assertEquals(other, nearOther.getAssignedUnit());
+        assertEquals(null, extra.getAssignedUnit());
+        assertEquals(extra, scheduler.getHighestPriorityAssignableTask());
+        assertEquals(0, scheduler.assignTasks());
+    }
+
     @Test
     public void getHighestPriorityNotRunningTask() throws Exception {
         scheduler1.addTask(task2);
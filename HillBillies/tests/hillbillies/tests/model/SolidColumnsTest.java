@@ -0,0 +1,75 @@
+package hillbillies.tests.model;
+
+import hillbillies.utils.SolidColumns;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for SolidColumns
+ * @author Kenneth & Bram
+ * @version 1.0
+ */
+public class SolidColumnsTest {
+
+    private SolidColumns columns;
+
+    @Before
+    public void setUp() throws Exception {
+        columns = new SolidColumns(3, 2, 150);
+        columns.setSolid(1, 1, 0, true);
+        columns.setSolid(1, 1, 5, true);
+        columns.setSolid(1, 1, 6, true);
+        columns.setSolid(1, 1, 70, true);
+    }
+
+    @Test
+    public void testSetSolid() throws Exception {
+        assertTrue(columns.isSolid(1, 1, 70));
+        assertFalse(columns.isSolid(1, 0, 70));
+        assertFalse(columns.isSolid(0, 1, 70));
+        columns.setSolid(1, 1, 70, false);
+        assertFalse(columns.isSolid(1, 1, 70));
+        assertTrue(columns.isSolid(1, 1, 6));
+    }
+
+    @Test
+    public void testGetHighestSolidBelow() throws Exception {
+        assertEquals(70, columns.getHighestSolidBelow(1, 1, 149));
+        assertEquals(70, columns.getHighestSolidBelow(1, 1, 71));
+        assertEquals(6, columns.getHighestSolidBelow(1, 1, 70));
+        assertEquals(6, columns.getHighestSolidBelow(1, 1, 64));
+        assertEquals(5, columns.getHighestSolidBelow(1, 1, 6));
+        assertEquals(0, columns.getHighestSolidBelow(1, 1, 5));
+        assertEquals(-1, columns.getHighestSolidBelow(1, 1, 0));
+        assertEquals(-1, columns.getHighestSolidBelow(2, 1, 149));
+    }
+
+    @Test
+    public void testGetSupportLevel() throws Exception {
+        assertEquals(71, columns.getSupportLevel(1, 1, 100));
+        assertEquals(7, columns.getSupportLevel(1, 1, 70));
+        assertEquals(0, columns.getSupportLevel(0, 0, 149));
+    }
+
+    @Test
+    public void testGetLandingLevel() throws Exception {
+        assertEquals(71, columns.getLandingLevel(1, 1, 100));
+        assertEquals(7, columns.getLandingLevel(1, 1, 70));
+        // Falling from inside solid cubes lands on the highest free cube below them
+        assertEquals(1, columns.getLandingLevel(1, 1, 6));
+        assertEquals(-1, columns.getLandingLevel(1, 1, 0));
+        assertEquals(0, columns.getLandingLevel(2, 0, 149));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testIsSolidIllegal() throws Exception {
+        columns.isSolid(0, 0, 150);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorIllegal() throws Exception {
+        new SolidColumns(1, 0, 1);
+    }
+}
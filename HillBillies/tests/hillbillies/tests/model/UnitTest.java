@@ -8,6 +8,7 @@ import hillbillies.part3.programs.statements.Print;
 import hillbillies.utils.Vector;
 
 import org.junit.After;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -15,6 +16,7 @@ import org.junit.Test;
 import static hillbillies.tests.util.TestHelper.advanceTimeFor;
 import static org.junit.Assert.*;
 
+import java.lang.management.ManagementFactory;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
@@ -793,6 +795,32 @@ public class UnitTest {
     	assertTrue(mazeWorld.getNeighbouringCubesPositions(leader.getPosition().getCubeCoordinates()).
     			contains(follower.getPosition().getCubeCoordinates()));
     }
+    @Test
+    public void testMovementAllocation(){
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        World flatWorld = new World(new int[16][16][2], null);
+        Set<Unit> walkers = new HashSet<>();
+        for(int i=0;i<16;i++)
+            walkers.add(new Unit(flatWorld, "Walker", new Vector(i % 2 == 0 ? 0 : 15, i, 0), 100, 100, 100, 100));
+        long moving = 0, allocated = 0;
+        for(int tick=0;tick<6000;tick++){
+            for(Unit walker : walkers)
+                if(!walker.isMoving())
+                    walker.moveToAdjacent(new Vector(walker.getPosition().cubeX() < 8 ? 1 : -1, 0, 0));
+            long bytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            flatWorld.advanceTime(0.02);
+            if(tick >= 4000){// The first ticks warm up the JIT
+                allocated += threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - bytes;
+                for(Unit walker : walkers)
+                    if(walker.isMoving())
+                        moving++;
+            }
+        }
+        // Moving a unit allocates its new position only, about 90 bytes per moving unit per tick
+        assertTrue(allocated / (double)moving < 128);
+    }
+
     @Test
     public void testTastk(){
     	unitx.setTask(task1);
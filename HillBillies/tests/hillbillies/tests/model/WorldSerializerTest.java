@@ -0,0 +1,273 @@
+package hillbillies.tests.model;
+
+import static hillbillies.tests.util.TestHelper.advanceTimeFor;
+import static org.junit.Assert.*;
+
+import hillbillies.model.*;
+import hillbillies.part3.programs.expressions.Enemy;
+import hillbillies.part3.programs.expressions.LiteralPosition;
+import hillbillies.part3.programs.expressions.ReadVariable;
+import hillbillies.part3.programs.statements.Assignment;
+import hillbillies.part3.programs.statements.FollowUnit;
+import hillbillies.part3.programs.statements.MoveTo;
+import hillbillies.part3.programs.statements.Statement;
+import hillbillies.part3.programs.statements.Sequence;
+import hillbillies.utils.ChannelDataInput;
+import hillbillies.utils.ChannelDataOutput;
+import hillbillies.utils.Vector;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.*;
+
+/**
+ * Test class for WorldSerializer, ChannelDataOutput and ChannelDataInput.
+ * @author Kenneth & Bram
+ * @version 1.0
+ */
+public class WorldSerializerTest {
+
+    private static int[][][] terrain;
+
+    private World w;
+    private Unit mover, worker, runner;
+    private Task task;
+    private WorldSerializer serializer;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        terrain = new int[8][8][4];
+        for(int x=0;x<8;x++)
+            for(int y=0;y<8;y++)
+                terrain[x][y][0] = Terrain.ROCK.getId();
+        terrain[0][7][1] = Terrain.WORKSHOP.getId();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        w = new World(terrain, null);
+        mover = new Unit(w, "Mover", new Vector(0,0,1), 50, 50, 50, 50);
+        worker = new Unit(w, "Worker", new Vector(1,1,1), 50, 50, 50, 50);
+        runner = new Unit(w, "Runner", new Vector(2,2,1), 50, 50, 50, 50);
+        new Log(w, w.getCube(new Vector(1,2,1)));
+        new Boulder(w, w.getCube(new Vector(3,3,1)));
+
+        worker.work(new Vector(1,2,1));
+        advanceTimeFor(w, 12);
+        assertTrue(worker.isCarryingLog());
+        worker.work(new Vector(1,1,1));
+        mover.moveToTarget(new Vector(7,0,1));
+
+        Statement program = new Sequence(Arrays.asList(
+                new Assignment<>("p", new LiteralPosition(5,5,1)),
+                new MoveTo(new ReadVariable<>("p"))
+        ));
+        task = new Task("walk", 10, program, new int[]{4,4,1});
+        runner.getFaction().getScheduler().addTask(task);
+        runner.getFaction().getScheduler().schedule(task, runner);
+        runner.startDefaultBehaviour();
+        advanceTimeFor(w, 1);
+        assertTrue(mover.isMoving());
+        assertTrue(worker.isWorking());
+        assertTrue(task.isRunning());
+
+        serializer = new WorldSerializer();
+    }
+
+    private World roundTrip(World world) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        serializer.save(world, Channels.newChannel(bytes));
+        return serializer.restore(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())), null);
+    }
+
+    private static Unit getUnit(World world, String name){
+        for(Unit unit : world.getUnits())
+            if(unit.getName().equals(name))
+                return unit;
+        fail("No unit named " + name);
+        return null;
+    }
+
+    @Test
+    public void testTerrain() throws IOException {
+        World restored = roundTrip(w);
+        for(int x=0;x<terrain.length;x++)
+            for(int y=0;y<terrain[x].length;y++)
+                for(int z=0;z<terrain[x][y].length;z++){
+                    Vector position = new Vector(x,y,z);
+                    assertEquals(w.getCube(position).getTerrain(), restored.getCube(position).getTerrain());
+                }
+    }
+
+    @Test
+    public void testUnits() throws IOException {
+        World restored = roundTrip(w);
+        assertEquals(w.getNbUnits(), restored.getNbUnits());
+        assertEquals(w.getNbFactions(), restored.getNbFactions());
+        for(Unit unit : w.getUnits()){
+            Unit copy = getUnit(restored, unit.getName());
+            assertArrayEquals(unit.getPosition().asArray(), copy.getPosition().asArray(), 1e-9);
+            assertEquals(unit.getStrength(), copy.getStrength());
+            assertEquals(unit.getAgility(), copy.getAgility());
+            assertEquals(unit.getToughness(), copy.getToughness());
+            assertEquals(unit.getWeight(), copy.getWeight());
+            assertEquals(unit.getStamina(), copy.getStamina());
+            assertEquals(unit.getHitpoints(), copy.getHitpoints());
+            assertEquals(unit.getOrientation(), copy.getOrientation(), 0f);
+            assertEquals(unit.getXP(), copy.getXP());
+            assertEquals(unit.isMoving(), copy.isMoving());
+            assertEquals(unit.isWorking(), copy.isWorking());
+            assertEquals(unit.isDefaultActive(), copy.isDefaultActive());
+            assertEquals(unit.getFaction().getNbUnits(), copy.getFaction().getNbUnits());
+        }
+        assertTrue(getUnit(restored, "Worker").isCarryingLog());
+        assertEquals(worker.getCarriedMaterial().getWeight(), getUnit(restored, "Worker").getCarriedMaterial().getWeight());
+    }
+
+    @Test
+    public void testExecutionBudget() throws IOException {
+        w.setExecutionBudget(new ExecutionBudget(500, 4000, 5, 2, 40, 8));
+        ExecutionBudget budget = roundTrip(w).getExecutionBudget();
+        assertEquals(500, budget.getUnitBudget());
+        assertEquals(4000, budget.getGlobalBudget());
+        assertEquals(5, budget.getStatementCost());
+        assertEquals(2, budget.getExpressionCost());
+        assertEquals(40, budget.getSearchCost());
+        assertEquals(8, budget.getActionCost());
+    }
+
+    @Test
+    public void testLimits() throws IOException {
+        w.setLimits(WorldLimits.SCALE_OUT);
+        World restored = roundTrip(w);
+        assertEquals(WorldLimits.SCALE_OUT, restored.getLimits());
+        for(Faction faction : restored.getFactions())
+            assertEquals(WorldLimits.SCALE_OUT.getMaxUnitsPerFaction(), faction.getMaxUnits());
+    }
+
+    @Test
+    public void testMaterials() throws IOException {
+        World restored = roundTrip(w);
+        assertEquals(w.getNbMaterials(), restored.getNbMaterials());
+        assertEquals(w.getMaterials(Log.class, false).size(), restored.getMaterials(Log.class, false).size());
+        assertEquals(w.getMaterials(Boulder.class, true).size(), restored.getMaterials(Boulder.class, true).size());
+        Boulder boulder = restored.getMaterials(Boulder.class, true).iterator().next();
+        assertEquals(restored.getCube(new Vector(3,3,1)), boulder.getOwner());
+    }
+
+    @Test
+    public void testTasks() throws IOException {
+        World restored = roundTrip(w);
+        Unit copy = getUnit(restored, "Runner");
+        Collection<Task> tasks = copy.getFaction().getScheduler().getAllTasks();
+        assertEquals(1, tasks.size());
+        Task restoredTask = tasks.iterator().next();
+        assertEquals(task.getName(), restoredTask.getName());
+        assertEquals(task.getPriority(), restoredTask.getPriority());
+        assertEquals(task.getSelectedCube(), restoredTask.getSelectedCube());
+        assertEquals(copy, restoredTask.getAssignedUnit());
+        assertEquals(new Vector(5,5,1), restoredTask.getRunner().<Vector>getVariableValue("p"));
+    }
+
+    @Test
+    public void testTerminatedUnitVariable() throws IOException {
+        Unit hunter = new Unit(w, "Hunter", new Vector(6,6,1), 50, 50, 50, 50);
+        Statement program = new Sequence(Arrays.asList(
+                new Assignment<>("u", new Enemy()),
+                new MoveTo(new LiteralPosition(7,7,1)),
+                new FollowUnit(new ReadVariable<>("u"))
+        ));
+        Task hunt = new Task("hunt", 10, program, null);
+        hunter.getFaction().getScheduler().addTask(hunt);
+        hunter.getFaction().getScheduler().schedule(hunt, hunter);
+        hunter.startDefaultBehaviour();
+        advanceTimeFor(w, 0.4);
+        assertTrue(hunt.isRunning());
+        Unit enemy = hunt.getRunner().getVariableValue("u");
+        enemy.terminate();
+        World restored = roundTrip(w);
+        Task restoredHunt = getUnit(restored, "Hunter").getTask();
+        assertEquals("hunt", restoredHunt.getName());
+        assertTrue(restoredHunt.getRunner().isVariableAssigned("u"));
+        assertNull(restoredHunt.getRunner().getVariableValue("u"));
+        // The unit stays unavailable after another round trip
+        assertNull(getUnit(roundTrip(restored), "Hunter").getTask().getRunner().getVariableValue("u"));
+        // Reading the variable stops the task like a search finding no unit, it isn't finished
+        int priority = restoredHunt.getPriority();
+        advanceTimeFor(restored, 5);
+        assertTrue(restoredHunt.getPriority() < priority);
+        assertTrue(getUnit(restored, "Hunter").getFaction().getScheduler().getAllTasks().contains(restoredHunt));
+    }
+
+    @Test
+    public void testContinuation() throws IOException {
+        World restored = roundTrip(w);
+        advanceTimeFor(w, 30);
+        advanceTimeFor(restored, 30);
+        for(String name : Arrays.asList("Mover", "Worker")){
+            Unit unit = getUnit(w, name), copy = getUnit(restored, name);
+            assertEquals(name, unit.getPosition().getCubeCoordinates(), copy.getPosition().getCubeCoordinates());
+            assertEquals(unit.isCarryingMaterial(), copy.isCarryingMaterial());
+        }
+        assertEquals(new Vector(7,0,1), getUnit(restored, "Mover").getPosition().getCubeCoordinates());
+        assertFalse(getUnit(restored, "Worker").isCarryingMaterial());
+        assertTrue(restored.getCube(new Vector(1,1,1)).containsLogs());
+        assertEquals(w.getMaterials(Log.class, false).size(), restored.getMaterials(Log.class, false).size());
+        // The runner wanders around once its task is finished, it may dig up boulders
+        assertTrue(w.getFactions().stream().allMatch(f -> f.getScheduler().getAllTasks().isEmpty()));
+        assertTrue(restored.getFactions().stream().allMatch(f -> f.getScheduler().getAllTasks().isEmpty()));
+    }
+
+    @Test
+    public void testRepeatedSave() throws IOException {
+        ByteArrayOutputStream first = new ByteArrayOutputStream(), second = new ByteArrayOutputStream();
+        serializer.save(w, Channels.newChannel(first));
+        serializer.save(roundTrip(w), Channels.newChannel(second));
+        assertEquals(first.size(), second.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void testRestoreInvalid() throws IOException {
+        serializer.restore(Channels.newChannel(new ByteArrayInputStream(new byte[]{1,2,3,4,5,6,7,8})), null);
+    }
+
+    @Test
+    public void testChannelData() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ChannelDataOutput out = new ChannelDataOutput(8);// Smallest buffer, forces a flush for nearly every value
+        out.bind(Channels.newChannel(bytes));
+        out.writeInt(42);
+        out.writeLong(-7L);
+        out.writeDouble(Math.PI);
+        out.writeUTF("Hillébillies");
+        out.writeBoolean(true);
+        out.writeShort(-2);
+        out.flush();
+
+        ChannelDataInput in = new ChannelDataInput(8);
+        in.bind(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(42, in.readInt());
+        assertEquals(-7L, in.readLong());
+        assertEquals(Math.PI, in.readDouble(), 0d);
+        assertEquals("Hillébillies", in.readUTF());
+        assertTrue(in.readBoolean());
+        assertEquals(-2, in.readShort());
+        try {
+            in.readByte();
+            fail("Expected end of input");
+        }catch(EOFException e){
+            // Expected
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testChannelDataIllegalBuffer(){
+        new ChannelDataOutput(4);
+    }
+}
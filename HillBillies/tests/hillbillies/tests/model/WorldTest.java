@@ -3,8 +3,11 @@ package hillbillies.tests.model;
 import static hillbillies.tests.util.TestHelper.advanceTimeFor;
 import static org.junit.Assert.*;
 
+import hillbillies.activities.Rest;
 import hillbillies.model.*;
+import hillbillies.part3.facade.Facade;
 import hillbillies.part2.listener.TerrainChangeListener;
+import hillbillies.util.ConnectedToBorder;
 import hillbillies.utils.Vector;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -13,6 +16,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import hillbillies.part2.listener.DefaultTerrainChangeListener;
 
+import java.io.*;
 import java.util.*;
 
 public class WorldTest {
@@ -117,6 +121,72 @@ public class WorldTest {
 		new World(wrongTerrain, null);
 	}
 
+	@Test
+	public void testLazyCubes() {
+		int[][][] terrainMatrix = new int[40][40][40];
+		for(int x=0;x<40;x++)
+			for(int y=0;y<40;y++)
+				for(int z=0;z<20;z++)
+					terrainMatrix[x][y][z] = Terrain.ROCK.getId();
+		World world = new World(terrainMatrix, null);
+		assertEquals(0, world.getNbMaterializedCubes());
+		assertEquals(Terrain.ROCK, world.getTerrain(10, 10, 19));
+		assertTrue(world.isCubePassable(new Vector(10, 10, 20)));
+		assertEquals(0, world.getNbMaterializedCubes());
+		Cube cube = world.getCube(new Vector(10, 10, 19));
+		assertEquals(1, world.getNbMaterializedCubes());
+		assertSame(cube, world.getCube(new Vector(10, 10, 19)));
+		cube.setTerrain(Terrain.AIR);
+		assertEquals(Terrain.AIR, world.getTerrain(10, 10, 19));
+		assertTrue(world.isCubePassable(new Vector(10, 10, 19)));
+	}
+
+	@Test
+	public void testConstructorConnectivity() {
+		Random random = new Random(31);
+		int[][][] terrainMatrix = new int[16][16][16];
+		ConnectedToBorder expected = new ConnectedToBorder(16, 16, 16);
+		for(int x=0;x<16;x++)
+			for(int y=0;y<16;y++)
+				for(int z=0;z<16;z++)
+					if(random.nextInt(100) < 55)
+						terrainMatrix[x][y][z] = Terrain.ROCK.getId();
+					else
+						expected.changeSolidToPassable(x, y, z);
+		World world = new World(terrainMatrix, null);
+		int nbDetached = 0;
+		for(int x=0;x<16;x++)
+			for(int y=0;y<16;y++)
+				for(int z=0;z<16;z++){
+					assertEquals(expected.isSolidConnectedToBorder(x, y, z), world.isSolidConnectedToBorder(x, y, z));
+					if(terrainMatrix[x][y][z] == Terrain.ROCK.getId() && !expected.isSolidConnectedToBorder(x, y, z)){
+						// Detached cubes start collapsing when the world is constructed
+						assertTrue(world.getCube(new Vector(x, y, z)).isCollapsing());
+						nbDetached++;
+					}
+				}
+		assertTrue(nbDetached > 0);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testInitializePassableTwice() {
+		ConnectedToBorder connectedToBorder = new ConnectedToBorder(4, 4, 4);
+		connectedToBorder.changeSolidToPassable(1, 1, 1);
+		connectedToBorder.initializePassable((x, y, z) -> z == 3);
+	}
+
+	@Test
+	public void testWriteReadTerrain() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		w.writeTerrain(new DataOutputStream(bytes));
+		int[][][] read = World.readTerrain(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		assertEquals(w.getNbCubesX(), read.length);
+		for(int x=0;x<w.getNbCubesX();x++)
+			for(int y=0;y<w.getNbCubesY();y++)
+				for(int z=0;z<w.getNbCubesZ();z++)
+					assertEquals(w.getTerrain(x, y, z).getId(), read[x][y][z]);
+	}
+
 	@Test
 	public void worldTest() {
 		int nbX = 10;
@@ -572,6 +642,210 @@ public class WorldTest {
 		assertTrue(w.getUnitsInCube(w.getCube(new Vector(0,0,0))).containsAll(Arrays.asList(u2, t)));
 	}
 
+	@Test
+	public void getUnitsInCubeAfterMove() throws Exception {
+		Vector cube = u2.getCubeCoordinates();
+		u2.setPosition(new Vector(0.2, 0.7, 0.4));// Same cube
+		assertSame(cube, u2.getCubeCoordinates());
+		u2.setPosition(new Vector(1.5, 1.5, 0.5));// The index is updated without advancing the time
+		assertEquals(new Vector(1,1,0), u2.getCubeCoordinates());
+		assertFalse(w.getUnitsInCube(w.getCube(new Vector(0,0,0))).contains(u2));
+		assertTrue(w.getUnitsInCube(w.getCube(new Vector(1,1,0))).containsAll(Arrays.asList(u1, u2)));
+		u2.terminate();
+		w.advanceTime(0.1);
+		assertFalse(w.getUnitsInCube(w.getCube(new Vector(1,1,0))).contains(u2));
+	}
+
+	@Test
+	public void sleepingUnits() throws Exception {
+		World flat = new World(new int[4][4][2], null);
+		Unit idle = new Unit(flat, "Idle", new Vector(0,0,0)), other = new Unit(flat, "Other", new Vector(3,3,0));
+		flat.advanceTime(0.1);
+		assertFalse(idle.isSleeping());
+		flat.setLettingUnitsSleep(true);
+		flat.advanceTime(0.1);
+		assertTrue(idle.isSleeping() && other.isSleeping());
+		assertEquals(2, flat.getNbSleepingUnits());
+		assertEquals(0, flat.getNbAwakeUnits());
+
+		idle.moveToAdjacent(new Vector(1,0,0));// A new command wakes the unit up
+		assertFalse(idle.isSleeping());
+		assertEquals(1, flat.getNbAwakeUnits());
+		while(idle.isMoving())
+			flat.advanceTime(0.1);
+		flat.advanceTime(0.1);
+		assertTrue(idle.isSleeping());
+
+		flat.getCube(new Vector(3,3,1)).setTerrain(Terrain.ROCK);// Terrain changes next to a unit wake it up
+		assertFalse(other.isSleeping());
+		assertTrue(idle.isSleeping());
+		flat.advanceTime(0.1);
+		assertTrue(other.isSleeping());
+
+		flat.setLettingUnitsSleep(false);
+		assertEquals(0, flat.getNbSleepingUnits());
+		assertFalse(idle.isSleeping() || other.isSleeping());
+	}
+
+	@Test
+	public void sleepingUnitWakesUpToRest() throws Exception {
+		World flat = new World(new int[3][3][2], null);
+		flat.setLettingUnitsSleep(true);
+		Unit tired = new Unit(flat, "Tired", new Vector(1,1,0));
+		tired.setStamina(tired.getStamina() - 1);
+		double time = 0;
+		while(!tired.isResting() && time < Rest.REST_INTERVAL + 1){
+			flat.advanceTime(0.2);
+			time += 0.2;
+			if(time > 1 && time < Rest.REST_INTERVAL - 1)
+				assertTrue(tired.isSleeping());
+		}
+		assertTrue(tired.isResting());
+		assertEquals(Rest.REST_INTERVAL, time, 0.3);
+	}
+
+	@Test
+	public void levelOfDetail() throws Exception {
+		World flat = new World(new int[20][20][2], null);
+		Unit near = new Unit(flat, "Near", new Vector(1,1,0)), far = new Unit(flat, "Far", new Vector(18,18,0));
+		LevelOfDetail lod = new LevelOfDetail(4, 2);
+		lod.setViewport(0, 0, 0, 3, 3, 0);
+		flat.setLevelOfDetail(lod);
+		assertTrue(lod.isDetailed(near));
+		assertFalse(lod.isDetailed(far));
+		// The progress of the idle activity shows how much time each unit advanced
+		int farUpdates = 0;
+		for(int tick = 0; tick < 8; tick++){
+			double nearProgress = near.getCurrentActivity().getActivityProgress();
+			double farProgress = far.getCurrentActivity().getActivityProgress();
+			flat.advanceTime(0.1);
+			assertEquals(nearProgress + 0.1, near.getCurrentActivity().getActivityProgress(), 1e-9);
+			if(far.getCurrentActivity().getActivityProgress() != farProgress){
+				assertTrue(far.getCurrentActivity().getActivityProgress() <= farProgress + 0.4 + 1e-9);
+				farUpdates++;
+			}
+		}
+		assertEquals(2, farUpdates);
+		assertTrue(far.getCurrentActivity().getActivityProgress() > near.getCurrentActivity().getActivityProgress() - 0.4);
+		lod.addFocusUnit(far);
+		assertTrue(lod.isDetailed(far));
+		flat.advanceTime(0.1);// The collected time is advanced at once
+		assertEquals(near.getCurrentActivity().getActivityProgress(), far.getCurrentActivity().getActivityProgress(), 1e-9);
+	}
+
+	@Test
+	public void levelOfDetailOutcomes() throws Exception {
+		// Units walking to random targets reach the same targets, gain the same experience and
+		// arrive at most one coarse step later, on average
+		double[] full = walkToTargets(null), coarse = walkToTargets(new LevelOfDetail(5, 1));
+		assertEquals(20, full[0], 0);
+		assertEquals(full[0], coarse[0], 0);
+		assertEquals(full[1], coarse[1], 0);
+		assertEquals(full[2], coarse[2], 5 * 0.2);
+	}
+
+	/**
+	 * Let 20 units walk to random targets in a flat world with the given level of detail, with
+	 * a viewport covering a corner of the world. Return the number of units which reached their
+	 * target, their total experience and their mean arrival time.
+	 */
+	private static double[] walkToTargets(LevelOfDetail lod){
+		World flat = new World(new int[16][16][2], null);
+		if(lod != null){
+			lod.setViewport(0, 0, 0, 3, 3, 0);
+			flat.setLevelOfDetail(lod);
+		}
+		Random random = new Random(7);
+		List<Unit> units = new ArrayList<>();
+		List<Vector> targets = new ArrayList<>();
+		for(int i = 0; i < 20; i++){
+			Unit unit = new Unit(flat, "Walker", new Vector(random.nextInt(16), random.nextInt(16), 0), 50, 50, 50, 50, 50, 50);
+			Vector target = new Vector(random.nextInt(16), random.nextInt(16), 0);
+			unit.moveToTarget(target);
+			units.add(unit);
+			targets.add(target);
+		}
+		double[] arrival = new double[units.size()];
+		for(int tick = 1; tick <= 300; tick++){
+			flat.advanceTime(0.2);
+			for(int i = 0; i < units.size(); i++)
+				if(arrival[i] == 0 && !units.get(i).isMoving())
+					arrival[i] = tick * 0.2;
+		}
+		double reached = 0, xp = 0, totalArrival = 0;
+		for(int i = 0; i < units.size(); i++){
+			if(units.get(i).getCubeCoordinates().equals(targets.get(i)))
+				reached++;
+			xp += units.get(i).getXP();
+			totalArrival += arrival[i];
+		}
+		return new double[]{ reached, xp, totalArrival / units.size() };
+	}
+
+	@Test
+	public void limits() throws Exception {
+		assertEquals(WorldLimits.DEFAULT, w.getLimits());
+		assertEquals(World.MAX_UNITS, w.getMaxUnits());
+		World large = new World(new int[20][20][2], null);
+		large.setLimits(WorldLimits.SCALE_OUT);
+		for(int i = 0; i < 150; i++)
+			new Unit(large, "Colonist", new Vector(i % 20, i / 20, 0));
+		assertEquals(150, large.getNbUnits());
+		assertEquals(World.MAX_FACTIONS, large.getNbFactions());
+		for(Faction faction : large.getFactions()){
+			assertEquals(30, faction.getNbUnits());
+			assertEquals(WorldLimits.SCALE_OUT.getMaxUnitsPerFaction(), faction.getMaxUnits());
+		}
+		try{
+			large.setLimits(WorldLimits.DEFAULT);
+			fail();
+		}catch(IllegalArgumentException e){
+			assertEquals(WorldLimits.SCALE_OUT, large.getLimits());
+		}
+	}
+
+	@Test
+	public void limitsThroughFacade() throws Exception {
+		Facade facade = new Facade();
+		World large = facade.createWorld(new int[20][20][2], null);
+		large.setLimits(WorldLimits.SCALE_OUT);
+		for(int i = 0; i < 150; i++)
+			facade.addUnit(facade.createUnit("Colonist", new int[]{i % 20, i / 20, 0}, 50, 50, 50, 50, false), large);
+		assertEquals(150, facade.getUnits(large).size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void limitsInvalid() throws Exception {
+		new WorldLimits(100, 0, 50);
+	}
+
+	@Test
+	public void influenceMaps() throws Exception {
+		World open = new World(new int[20][20][2], null);
+		Unit a = new Unit(open, "UnitA", new Vector(0,0,0));
+		Unit b = new Unit(open, "UnitB", new Vector(16,16,0));
+		InfluenceMap mapA = open.getInfluenceMap(a.getFaction()), mapB = open.getInfluenceMap(b.getFaction());
+		assertEquals(1, mapA.getNbUnits());
+		assertEquals(1, mapA.getInfluence(new Vector(3,3,1)));
+		assertEquals(0, mapA.getInfluence(new Vector(4,0,0)));
+		assertEquals(0, open.getThreat(a.getFaction(), new Vector(0,0,0)));
+		assertEquals(1, open.getThreat(a.getFaction(), new Vector(12,12,0)));
+		assertEquals(new HashSet<>(Collections.singletonList(b)), open.getNearestEnemies(a.getFaction(), new Vector(0,0,0)));
+		assertTrue(open.getNearestFriends(a).isEmpty());
+		assertTrue(open.getEnemiesWithin(a.getFaction(), new Vector(0,0,0), 3).isEmpty());
+		assertEquals(new HashSet<>(Collections.singletonList(b)), open.getEnemiesWithin(a.getFaction(), new Vector(0,0,0), 4));
+		// Units are moved to another cell when they cross its border
+		b.moveToAdjacent(new Vector(-1,0,0));
+		while(b.isMoving())
+			open.advanceTime(0.1);
+		assertEquals(1, mapB.getInfluence(new Vector(15,16,0)));
+		assertEquals(0, mapB.getInfluence(new Vector(16,16,0)));
+		assertEquals(1, open.getThreat(a.getFaction(), new Vector(8,12,0)));
+		b.terminate();
+		assertEquals(0, mapB.getNbUnits());
+		assertTrue(open.getNearestEnemies(a.getFaction(), new Vector(0,0,0)).isEmpty());
+	}
+
 	@Test(expected = NullPointerException.class)
 	public void getUnitsInCubeInvalid() throws NullPointerException{
 		w.getUnitsInCube(null);
@@ -663,4 +937,71 @@ public class WorldTest {
 			assertTrue(w.hasAsMaterial(boulder));
 	}
 
+	@Test
+	public void testSnapshot() throws Exception {
+		assertNull(w.getSnapshot());
+		w.setPublishingSnapshots(true);
+		WorldSnapshot snapshot = w.getSnapshot();
+		assertEquals(w.getTick(), snapshot.getTick());
+		assertEquals(w.getNbUnits(), snapshot.getUnits().size());
+		assertEquals(w.getNbMaterials(), snapshot.getMaterials().size());
+		assertEquals(Terrain.WOOD, snapshot.getTerrain(1, 3, 1));
+
+		u1.moveToAdjacent(new Vector(1, 0, 0));
+		w.getCube(new Vector(1, 3, 1)).setTerrain(Terrain.AIR);
+		w.advanceTime(0.1);
+		WorldSnapshot next = w.getSnapshot();
+		assertNotSame(snapshot, next);
+		assertEquals(snapshot.getTick() + 1, next.getTick());
+		// The old snapshot is not affected by the changes of the world
+		assertEquals(Terrain.WOOD, snapshot.getTerrain(1, 3, 1));
+		assertEquals(Terrain.AIR, next.getTerrain(1, 3, 1));
+		for(WorldSnapshot.UnitState state : snapshot.getUnits())
+			if(state.getUnit() == u1){
+				assertEquals(new Vector(1.5, 1.5, 0.5), state.getPosition());
+				assertEquals("none", state.getActivity());
+			}
+		for(WorldSnapshot.UnitState state : next.getUnits())
+			if(state.getUnit() == u1)
+				assertEquals(u1.getPosition(), state.getPosition());
+		// The states of the units and materials are values
+		assertFalse(snapshot.getUnits().equals(next.getUnits()));
+		assertEquals(new HashSet<>(snapshot.getMaterials()), new HashSet<>(next.getMaterials()));
+
+		w.setPublishingSnapshots(false);
+		assertNull(w.getSnapshot());
+	}
+
+	@Test
+	public void testSnapshotConcurrentReader() throws Exception {
+		w.setPublishingSnapshots(true);
+		u1.startDefaultBehaviour();
+		u2.startDefaultBehaviour();
+		List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+		Thread reader = new Thread(() -> {
+			try {
+				long lastTick = -1;
+				while(lastTick < 100){
+					WorldSnapshot snapshot = w.getSnapshot();
+					assertTrue(snapshot.getTick() >= lastTick);
+					lastTick = snapshot.getTick();
+					for(int x=0;x<snapshot.getNbCubesX();x++)
+						for(int y=0;y<snapshot.getNbCubesY();y++)
+							for(int z=0;z<snapshot.getNbCubesZ();z++)
+								assertNotNull(snapshot.getTerrain(x, y, z));
+					for(WorldSnapshot.UnitState state : snapshot.getUnits())
+						assertNotNull(state.getPosition());
+				}
+			}catch(Throwable e){
+				errors.add(e);
+			}
+		});
+		reader.start();
+		for(int i=0;i<100;i++)
+			w.advanceTime(0.1);
+		reader.join(10000);
+		assertFalse(reader.isAlive());
+		assertTrue(errors.toString(), errors.isEmpty());
+	}
+
 }
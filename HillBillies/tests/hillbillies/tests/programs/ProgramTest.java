@@ -0,0 +1,434 @@
+package hillbillies.tests.programs;
+
+import hillbillies.model.*;
+import hillbillies.part3.programs.Command;
+import hillbillies.part3.programs.Program;
+import hillbillies.part3.programs.TaskFactory;
+import hillbillies.part3.programs.TaskParser;
+import hillbillies.part3.programs.TaskProfiler;
+import hillbillies.part3.programs.expressions.*;
+import hillbillies.part3.programs.statements.*;
+import hillbillies.utils.Vector;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static hillbillies.tests.util.TestHelper.advanceTimeFor;
+import static hillbillies.tests.util.TestHelper.runStatementFor;
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the Program class and the execution of compiled programs.
+ * @author Kenneth & Bram
+ * @version 1.0
+ */
+public class ProgramTest {
+
+    private World w;
+    private Unit u;
+
+    @Before
+    public void setUp() throws Exception {
+        w = new World(new int[3][3][3], null);
+        u = new Unit(w, "Unit", new Vector(0,0,0));
+    }
+
+    @Test
+    public void testCompile() {
+        Statement print = new Print(new True());
+        Program program = Program.compile(print);
+        assertSame(print, program.getStatement());
+        assertEquals(3, program.getNbInstructions());// STEP, PUSH, EXECUTE
+        assertEquals(1, program.getMaxStackSize());
+
+        Expression<Boolean> condition = new And(new And(new True(), new False()), new Or(new True(), new IsAlive(new This())));
+        program = Program.compile(new If(condition, print));
+        assertEquals(3, program.getMaxStackSize());
+        assertTrue(program.toString().contains("COMBINE And"));
+        assertTrue(program.toString().contains("COMPUTE IsAlive"));
+
+        program = Program.compile(new MoveTo(new NextToPosition(new LogPosition())));
+        assertEquals("0: STEP\n1: RECALL LogPosition\n2: SEARCH\n3: COMPUTE NextToPosition\n4: EXECUTE MoveTo\n",
+                program.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompileBreakOutsideLoop() {
+        Program.compile(new Sequence(Arrays.asList(new Print(new True()), new Break())));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testCompileNull() {
+        Program.compile(null);
+    }
+
+    @Test
+    public void testBreak() {
+        Statement body = new Sequence(Arrays.asList(
+                new Assignment<>("before", new True()),
+                new Break(),
+                new Assignment<>("after", new True())
+        ));
+        runStatementFor(u, new While(new True(), body), 0.2);
+        assertNull(u.getTask());
+        assertEquals(0, u.getFaction().getScheduler().getNbTasks());
+    }
+
+    @Test
+    public void testPauseAndResume() {
+        List<Statement> statements = new ArrayList<>();
+        for(int i=0;i<200;i++)
+            statements.add(new Assignment<>("v" + i, new HerePosition()));
+        Task task = new Task("assign", 10, new Sequence(statements), null);
+        u.getFaction().getScheduler().addTask(task);
+        u.getFaction().getScheduler().schedule(task, u);
+        // Each assignment costs 11, so the task executes 100 statements each tick
+        w.setExecutionBudget(new ExecutionBudget(1100, 100000, 10, 1, 50, 10));
+        u.startDefaultBehaviour();
+        w.advanceTime(0.1);
+        assertTrue(task.isRunning());
+        Task.TaskRunner runner = task.getRunner();
+        assertTrue(runner.isVariableAssigned("v99"));
+        assertFalse(runner.isVariableAssigned("v100"));
+        assertEquals(u.getPosition(), runner.getVariableValue("v0"));
+        assertEquals(1, w.getExecutionBudget().getNbUnitBudgetHits());
+        // The budget doesn't depend on the duration of a tick
+        w.advanceTime(0.001);
+        assertTrue(runner.isVariableAssigned("v199"));
+        advanceTimeFor(w, 0.2, 0.1);
+        assertFalse(task.isRunning());
+        assertEquals(0, u.getFaction().getScheduler().getNbTasks());
+    }
+
+    @Test
+    public void testGlobalBudget() {
+        Unit other = new Unit(w, "Other", new Vector(2,2,0));
+        Unit third = new Unit(w, "Third", new Vector(2,0,0));
+        // Each iteration of the idle loop costs 20
+        w.setExecutionBudget(new ExecutionBudget(1000, 1500, 10, 1, 50, 10));
+        for(Unit unit : Arrays.asList(u, other, third)){
+            Task task = new Task("idle", 10, idle(), null);
+            unit.getFaction().getScheduler().addTask(task);
+            unit.getFaction().getScheduler().schedule(task, unit);
+            unit.startDefaultBehaviour();
+        }
+        w.advanceTime(0.1);
+        ExecutionBudget budget = w.getExecutionBudget();
+        assertEquals(1, budget.getNbUnitBudgetHits());
+        assertEquals(2, budget.getNbGlobalBudgetHits());// The second unit gets 500, the third unit nothing
+        assertEquals(1500, budget.getSpentBudget());
+        assertEquals(0, budget.getRemainingGlobalBudget());
+        w.advanceTime(0.1);
+        assertEquals(2, budget.getNbUnitBudgetHits());
+        assertEquals(3000, budget.getSpentBudget());
+    }
+
+    @Test
+    public void testStarvedUnitsServedFirst() {
+        Unit other = new Unit(w, "Other", new Vector(2,2,0));
+        Unit third = new Unit(w, "Third", new Vector(2,0,0));
+        w.setExecutionBudget(new ExecutionBudget(1000, 1500, 10, 1, 50, 10));
+        List<Task> tasks = new ArrayList<>();
+        for(Unit unit : Arrays.asList(u, other, third)){
+            Task task = new Task("idle", 10, new Sequence(Arrays.asList(new Assignment<>("started", new True()), idle())), null);
+            unit.getFaction().getScheduler().addTask(task);
+            unit.getFaction().getScheduler().schedule(task, unit);
+            unit.startDefaultBehaviour();
+            tasks.add(task);
+        }
+        w.advanceTime(0.1);
+        assertFalse(tasks.get(2).getRunner().isVariableAssigned("started"));
+        // The second unit starved first, so its unit budget is reserved before the first unit is served
+        w.advanceTime(0.1);
+        assertEquals(2, w.getExecutionBudget().getNbUnitBudgetHits());
+        assertFalse(tasks.get(2).getRunner().isVariableAssigned("started"));
+        w.advanceTime(0.1);
+        assertEquals(3, w.getExecutionBudget().getNbUnitBudgetHits());
+        assertTrue(tasks.get(2).getRunner().isVariableAssigned("started"));
+    }
+
+    @Test
+    public void testOverspentBudget() {
+        // A single iteration of the idle loop costs more than the unit budget
+        w.setExecutionBudget(new ExecutionBudget(5, 100, 10, 1, 50, 10));
+        Task task = new Task("idle", 10, idle(), null);
+        u.getFaction().getScheduler().addTask(task);
+        u.getFaction().getScheduler().schedule(task, u);
+        u.startDefaultBehaviour();
+        w.advanceTime(0.1);
+        ExecutionBudget budget = w.getExecutionBudget();
+        assertTrue(budget.getSpentBudget() > 5);
+        assertEquals(100 - budget.getSpentBudget(), budget.getRemainingGlobalBudget());
+    }
+
+    @Test
+    public void testSearchCache() {
+        new Log(w, w.getCube(new Vector(2,2,0)));
+        Task task = new Task("watch", 10, new While(new True(), new Assignment<>("log", new LogPosition())), null);
+        u.getFaction().getScheduler().addTask(task);
+        u.getFaction().getScheduler().schedule(task, u);
+        u.startDefaultBehaviour();
+        w.advanceTime(0.1);
+        // The loop evaluates log many times in one tick, only the first evaluation searches
+        assertEquals(1, w.getNbSearchCacheMisses());
+        assertTrue(w.getNbSearchCacheHits() > 10);
+        assertTrue(w.getSearchCacheHitRate() > 0.9);
+        assertEquals(new Vector(2,2,0), task.getRunner().<Vector>getVariableValue("log").getCubeCoordinates());
+        w.advanceTime(0.1);
+        assertEquals(2, w.getNbSearchCacheMisses());
+
+        // Memorized values are forgotten once the terrain changes
+        Task.TaskRunner runner = task.getRunner();
+        Expression<Vector> log = new LogPosition();
+        assertNull(runner.recallSearch(log));
+        runner.memorizeSearch(log, new Vector(2,2,0));
+        assertEquals(new Vector(2,2,0), runner.recallSearch(new LogPosition()));
+        w.getCube(new Vector(0,2,2)).setTerrain(Terrain.WORKSHOP);
+        assertNull(runner.recallSearch(log));
+    }
+
+    @Test
+    public void testSearchCacheWithMaterials() {
+        new Log(w, w.getCube(new Vector(2,2,0)));
+        new Boulder(w, w.getCube(new Vector(2,0,0)));
+        Task task = new Task("watch", 10, new While(new True(), new Assignment<>("log", new LogPosition())), null);
+        u.getFaction().getScheduler().addTask(task);
+        u.getFaction().getScheduler().schedule(task, u);
+        u.startDefaultBehaviour();
+        w.advanceTime(0.1);
+        long version = w.getObjectVersion();
+        // Resting materials don't change the objects of the world, so each tick searches only once
+        for(int tick = 2; tick <= 5; tick++){
+            long hits = w.getNbSearchCacheHits();
+            w.advanceTime(0.1);
+            assertEquals(version, w.getObjectVersion());
+            assertEquals(tick, w.getNbSearchCacheMisses());
+            assertTrue(w.getNbSearchCacheHits() - hits > 10);
+        }
+    }
+
+    @Test
+    public void testProfiler() {
+        assertFalse(w.isProfiling());
+        w.setProfiling(true);
+        TaskProfiler profiler = w.getProfiler();
+        String text = "name: \"count\"\npriority: 1\nactivities:\n\tx := true;\n\ty := true;\n\twhile y do\n" +
+                "\t\tif x then\n\t\t\tx := false;\n\t\telse\n\t\t\ty := false;\n\t\tfi\n\tdone";
+        Task task = TaskParser.parseTasksFromString(text, new TaskFactory(), Collections.emptyList()).get(0);
+        u.getFaction().getScheduler().addTask(task);
+        u.getFaction().getScheduler().schedule(task, u);
+        u.startDefaultBehaviour();
+        w.advanceTime(0.1);
+        assertFalse(task.isRunning());
+
+        Map<Integer, Long> counts = new HashMap<>();
+        for(TaskProfiler.Hotspot hotspot : profiler.getHotspots(task.getActivity().getProgram())){
+            assertEquals("count", hotspot.getTaskName());
+            assertTrue(hotspot.getSearchTime() <= hotspot.getWallTime());
+            counts.put(hotspot.getStatement().getSourceLocation().getLine(), hotspot.getCount());
+        }
+        assertEquals(Long.valueOf(1), counts.get(4));// x := true
+        assertEquals(Long.valueOf(2), counts.get(7));// if x then
+        assertEquals(Long.valueOf(1), counts.get(8));// x := false
+        assertEquals(Long.valueOf(1), counts.get(10));// y := false
+        assertEquals(profiler.getHotspots().size(), profiler.getHotspots(task.getActivity().getProgram()).size());
+        assertTrue(profiler.toString().contains("@7,2"));
+
+        profiler.reset();
+        assertTrue(profiler.getHotspots().isEmpty());
+        w.setProfiling(false);
+        assertNull(w.getProfiler());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeBudget() {
+        new ExecutionBudget(-1, 1000, 10, 1, 50, 10);
+    }
+
+    /**
+     * Return a statement which keeps the task busy without giving its unit any activity.
+     */
+    @Test
+    public void testNearestEnemyBehindWall() {
+        World walled = wallWorld();
+        Unit hunter = new Unit(walled, "Hunter", new Vector(0,0,0));
+        new Unit(walled, "Behind", new Vector(0,5,0));
+        Unit open = new Unit(walled, "Open", new Vector(12,0,0));
+        assertEquals(3, walled.getFactions().size());
+        // The enemy behind the wall is in a nearer cell, but has a longer path than the other enemy
+        assertSame(open, searchFor(hunter, new Enemy()));
+    }
+
+    @Test
+    public void testNearestFriendBehindWall() {
+        World walled = wallWorld();
+        walled.setLimits(new WorldLimits(100, 1, 50));
+        Unit hunter = new Unit(walled, "Hunter", new Vector(0,0,0));
+        new Unit(walled, "Behind", new Vector(0,5,0));
+        Unit open = new Unit(walled, "Open", new Vector(12,0,0));
+        assertSame(open, searchFor(hunter, new Friend()));
+    }
+
+    /**
+     * Return a world with a wall at y == 3, which can only be passed at x > 16.
+     */
+    private static World wallWorld(){
+        int[][][] terrain = new int[20][20][1];
+        for(int x = 0; x <= 16; x++)
+            terrain[x][3][0] = 1;
+        return new World(terrain, null);
+    }
+
+    private static Unit searchFor(Unit unit, Expression<Unit> search){
+        Task task = new Task("search", 10, new Sequence(Arrays.asList(new Assignment<>("found", search), idle())), null);
+        unit.getFaction().getScheduler().addTask(task);
+        unit.getFaction().getScheduler().schedule(task, unit);
+        unit.startDefaultBehaviour();
+        ((World)unit.getWorld()).advanceTime(0.1);
+        return task.getRunner().getVariableValue("found");
+    }
+
+    private static Statement idle(){
+        return new While(new True(), new Assignment<>("idle", new True()));
+    }
+
+    @Test
+    public void testWaitForActivity() {
+        Statement stmt = new Sequence(Arrays.asList(
+                new MoveTo(new LiteralPosition(2,2,0)),
+                new Assignment<>("arrived", new HerePosition()),
+                idle()
+        ));
+        Task task = new Task("walk", 10, stmt, null);
+        u.getFaction().getScheduler().addTask(task);
+        u.getFaction().getScheduler().schedule(task, u);
+        u.startDefaultBehaviour();
+        w.advanceTime(0.1);
+        assertTrue(u.isMoving());
+        assertFalse(task.getRunner().isVariableAssigned("arrived"));
+        assertFalse(task.getRunner().isDue());
+        advanceTimeFor(w, 5);
+        assertTrue(task.getRunner().isDue());
+        assertEquals(new Vector(2,2,0), task.getRunner().<Vector>getVariableValue("arrived").getCubeCoordinates());
+        assertEquals(new Vector(2,2,0), u.getPosition().getCubeCoordinates());
+    }
+
+    @Test
+    public void testWaitForFinishedActivity() {
+        // Moving to the current cube ends right away, the task must not keep waiting
+        Statement stmt = new Sequence(Arrays.asList(
+                new MoveTo(new HerePosition()),
+                new Assignment<>("done", new True()),
+                idle()
+        ));
+        Task task = new Task("stay", 10, stmt, null);
+        u.getFaction().getScheduler().addTask(task);
+        u.getFaction().getScheduler().schedule(task, u);
+        u.startDefaultBehaviour();
+        advanceTimeFor(w, 0.5, 0.1);
+        assertTrue(task.getRunner().isVariableAssigned("done"));
+    }
+
+    @Test
+    public void testSharedProgram() {
+        Unit other = new Unit(w, "Other", new Vector(2,2,0));
+        Statement stmt = new Sequence(Arrays.asList(new MoveTo(new SelectedPosition()), idle()));
+        Task first = new Task("a", 10, stmt, new int[]{0,2,0}), second = new Task("b", 10, stmt, new int[]{2,0,0});
+        u.getFaction().getScheduler().addTask(first);
+        u.getFaction().getScheduler().schedule(first, u);
+        other.getFaction().getScheduler().addTask(second);
+        other.getFaction().getScheduler().schedule(second, other);
+        u.startDefaultBehaviour();
+        other.startDefaultBehaviour();
+        w.advanceTime(0.1);
+        assertTrue(u.isMoving() && other.isMoving());
+        advanceTimeFor(w, 5);
+        assertEquals(new Vector(0,2,0), u.getPosition().getCubeCoordinates());
+        assertEquals(new Vector(2,0,0), other.getPosition().getCubeCoordinates());
+    }
+
+    @Test
+    public void testSeparateFrames() {
+        Unit other = new Unit(w, "Other", new Vector(2,2,0));
+        Statement stmt = new Sequence(Arrays.asList(new Assignment<>("here", new HerePosition()), idle()));
+        Task first = new Task("a", 10, stmt, null), second = new Task("b", 10, stmt, null);
+        u.getFaction().getScheduler().addTask(first);
+        u.getFaction().getScheduler().schedule(first, u);
+        other.getFaction().getScheduler().addTask(second);
+        other.getFaction().getScheduler().schedule(second, other);
+        assertSame(stmt.getProgram(), stmt.getProgram());
+        u.startDefaultBehaviour();
+        other.startDefaultBehaviour();
+        w.advanceTime(0.1);
+        assertEquals(u.getPosition(), first.getRunner().getVariableValue("here"));
+        assertEquals(other.getPosition(), second.getRunner().getVariableValue("here"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutableTree() {
+        List<Statement> statements = new ArrayList<>(Arrays.asList(new Print(new True())));
+        Sequence sequence = new Sequence(statements);
+        statements.add(new Break());
+        assertEquals(1, sequence.getStatements().size());
+        Iterator<Command<?>> it = sequence.iterator();
+        it.next();
+        it.remove();
+    }
+
+    @Test
+    public void testVariableSlots() {
+        Statement stmt = new Sequence(Arrays.asList(
+                new Assignment<>("a", new True()),
+                new Assignment<>("b", new HerePosition()),
+                new Assignment<>("a", new Not(new ReadVariable<>("a"))),
+                new MoveTo(new ReadVariable<>("b"))
+        ));
+        Program program = Program.compile(stmt);
+        assertEquals(2, program.getNbVariables());
+        assertEquals(0, program.getVariableSlot("a"));
+        assertEquals(Vector.class, program.getVariableType(program.getVariableSlot("b")));
+        assertEquals(-1, program.getVariableSlot("c"));
+        assertTrue(program.toString().contains("LOAD a"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompileInconsistentAssignment() {
+        Program.compile(new Sequence(Arrays.asList(
+                new Assignment<>("a", new True()),
+                new Assignment<>("a", new HerePosition())
+        )));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompileInconsistentRead() {
+        Program.compile(new Sequence(Arrays.asList(
+                new Assignment<>("a", new HerePosition()),
+                new While(new ReadVariable<>("a"), new Print(new True()))
+        )));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllTypedTask() {
+        Statement stmt = new Sequence(Arrays.asList(
+                new Assignment<>("a", new This()),
+                new MoveTo(new ReadVariable<>("a"))
+        ));
+        new Task("typo", 10, stmt, null);
+    }
+
+    @Test(timeout = 10000)
+    public void testLargeProgram() {
+        Statement stmt = new Print(new True());
+        for(int i=0;i<1000;i++){
+            stmt = new Sequence(Arrays.asList(stmt, new Assignment<>("y" + i, new Not(new ReadVariable<>("x")))));
+            if(i%2==0)
+                stmt = new While(new ReadVariable<>("x"), stmt);
+        }
+        stmt = new Sequence(Arrays.asList(new Assignment<>("x", new True()), stmt));
+        assertTrue(stmt.check());
+        assertTrue(stmt.check());
+        assertEquals(1001, stmt.getProgram().getNbVariables());
+        assertFalse(new Sequence(Arrays.asList(stmt, new Break())).check());
+    }
+}
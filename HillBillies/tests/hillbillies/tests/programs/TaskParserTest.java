@@ -0,0 +1,130 @@
+package hillbillies.tests.programs;
+
+import hillbillies.model.Task;
+import hillbillies.part3.programs.SourceLocation;
+import hillbillies.part3.programs.TaskFactory;
+import hillbillies.part3.programs.TaskParser;
+import hillbillies.part3.programs.expressions.Expression;
+import hillbillies.part3.programs.statements.Statement;
+import hillbillies.utils.Vector;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the parsed activity cache and the parallel parsing of TaskParser.
+ * @author Kenneth & Bram
+ * @version 1.0
+ */
+public class TaskParserTest {
+
+    private static final String WORK = "name: \"work task\"\npriority: 1\nactivities: work selected;";
+    private static final String LOOP = "name: \"loop\"\npriority: 5\nactivities:\n\tx := true;\n\twhile x do\n\t\tx := false;\n\tdone";
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws Exception {
+        TaskParser.clearCache();
+        directory = Files.createTempDirectory("tasks");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(directory)){
+            for(Path file : files)
+                Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testSharedActivity() {
+        List<int[]> cubes = Arrays.asList(new int[]{0,0,0}, new int[]{1,1,1});
+        List<Task> first = TaskParser.parseTasksFromString(WORK, new TaskFactory(), cubes);
+        List<Task> second = TaskParser.parseTasksFromString(WORK, new TaskFactory(), cubes);
+        assertEquals(2, first.size());
+        assertEquals(2, second.size());
+        assertNotSame(first.get(0), second.get(0));
+        assertSame(first.get(0).getActivity(), second.get(0).getActivity());
+        assertSame(first.get(0).getActivity(), first.get(1).getActivity());
+        assertEquals("work task", second.get(1).getName());
+        assertEquals(1, second.get(1).getPriority());
+    }
+
+    @Test
+    public void testUnsharedActivity() {
+        TaskFactory factory = new TaskFactory(){
+            @Override
+            public boolean canShareActivities() {
+                return false;
+            }
+        };
+        List<Task> first = TaskParser.parseTasksFromString(LOOP, factory, Collections.emptyList());
+        List<Task> second = TaskParser.parseTasksFromString(LOOP, factory, Collections.emptyList());
+        assertNotSame(first.get(0).getActivity(), second.get(0).getActivity());
+    }
+
+    @Test
+    public void testErrors() {
+        TaskParser<?,?,Task> parser = TaskParser.create(new TaskFactory());
+        for(int i=0;i<2;i++){// Failed parses are not cached
+            assertFalse(parser.parseString("name: \"broken\"\npriority: 1\nactivities: work;", Collections.emptyList()).isPresent());
+            assertFalse(parser.getErrors().isEmpty());
+        }
+        assertTrue(parser.parseString(LOOP, Collections.emptyList()).isPresent());
+        assertTrue(parser.getErrors().isEmpty());
+    }
+
+    @Test
+    public void testParseAll() throws IOException {
+        write("work.txt", WORK);
+        write("loop.txt", LOOP);
+        write("broken.txt", "name: \"broken\"\npriority: 1\nactivities: moveTo;");
+        write("notes.md", "not a task");
+        TaskParser<?,?,Task> parser = TaskParser.create(new TaskFactory());
+        Map<Path, List<Task>> tasks = parser.parseAll(directory, Collections.singletonList(new int[]{1,1,1}));
+        assertEquals(2, tasks.size());
+        assertEquals("loop", tasks.get(directory.resolve("loop.txt")).get(0).getName());
+        assertEquals(new Vector(1,1,1), tasks.get(directory.resolve("work.txt")).get(0).getSelectedCube());
+        assertFalse(parser.getErrors().isEmpty());
+        for(String error : parser.getErrors())
+            assertTrue(error.startsWith("broken.txt: "));
+    }
+
+    @Test
+    public void testParseAllFactoryThread() throws IOException {
+        for(int i=0;i<16;i++)
+            write("loop" + i + ".txt", LOOP.replace("loop", "loop" + i));
+        Set<Thread> threads = Collections.synchronizedSet(new HashSet<>());
+        TaskFactory factory = new TaskFactory(){
+            @Override
+            public boolean canShareActivities() {
+                return false;
+            }
+
+            @Override
+            public Statement createAssignment(String variableName, Expression<?> value, SourceLocation sourceLocation) {
+                threads.add(Thread.currentThread());
+                return super.createAssignment(variableName, value, sourceLocation);
+            }
+        };
+        TaskParser<?,?,Task> parser = TaskParser.create(factory);
+        assertEquals(16, parser.parseAll(directory).size());
+        // Only the parse trees are built in parallel, the factory is only called by this thread
+        assertEquals(Collections.singleton(Thread.currentThread()), threads);
+    }
+
+    private void write(String name, String text) throws IOException {
+        Files.write(directory.resolve(name), text.getBytes(StandardCharsets.UTF_8));
+    }
+}